@@ -0,0 +1,138 @@
+package io.improbable.keanu.benchmarks;
+
+import io.improbable.keanu.network.BayesianNetwork;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.tensor.intgr.IntegerTensor;
+import io.improbable.keanu.vertices.ConstantVertex;
+import io.improbable.keanu.vertices.bool.BoolVertex;
+import io.improbable.keanu.vertices.bool.nonprobabilistic.operators.binary.compare.GreaterThanVertex;
+import io.improbable.keanu.vertices.bool.probabilistic.BernoulliVertex;
+import io.improbable.keanu.vertices.dbl.DoubleVertex;
+import io.improbable.keanu.vertices.dbl.KeanuRandom;
+import io.improbable.keanu.vertices.dbl.probabilistic.ExponentialVertex;
+import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
+import io.improbable.keanu.vertices.generic.nonprobabilistic.ConditionalProbabilityTable;
+import io.improbable.keanu.vertices.generic.nonprobabilistic.If;
+import io.improbable.keanu.vertices.intgr.probabilistic.PoissonVertex;
+import io.improbable.keanu.vertices.intgr.probabilistic.UniformIntVertex;
+
+/**
+ * The models that are benchmarked. Observations are drawn from a seeded {@link KeanuRandom} so that every run
+ * of a benchmark sees the same network.
+ */
+public enum BenchmarkModels {
+
+    /**
+     * The coal mining disasters switchpoint model from keanu-examples, on synthetic data.
+     */
+    COAL_MINING {
+        @Override
+        public BayesianNetwork build(KeanuRandom random) {
+            int startYear = 1851;
+            int yearCount = 111;
+            int trueSwitchYear = 1890;
+
+            int[] years = new int[yearCount];
+            int[] disasters = new int[yearCount];
+            for (int i = 0; i < yearCount; i++) {
+                years[i] = startYear + i;
+                double rate = years[i] < trueSwitchYear ? 3.0 : 1.0;
+                disasters[i] = random.nextPoisson(new long[]{1, 1}, DoubleTensor.scalar(rate)).scalar();
+            }
+
+            UniformIntVertex switchpoint = new UniformIntVertex(startYear, startYear + yearCount);
+            ExponentialVertex earlyRate = new ExponentialVertex(1.0);
+            ExponentialVertex lateRate = new ExponentialVertex(1.0);
+
+            DoubleVertex rateForYear = If.isTrue(new GreaterThanVertex<>(switchpoint, ConstantVertex.of(years)))
+                .then(earlyRate)
+                .orElse(lateRate);
+
+            PoissonVertex disastersForYear = new PoissonVertex(rateForYear);
+            disastersForYear.observe(IntegerTensor.create(disasters));
+
+            return new BayesianNetwork(switchpoint.getConnectedGraph());
+        }
+    },
+
+    /**
+     * The wet grass model from the docs, which is discrete and uses a conditional probability table.
+     */
+    WET_GRASS {
+        @Override
+        public BayesianNetwork build(KeanuRandom random) {
+            BoolVertex rain = new BernoulliVertex(0.2);
+
+            BoolVertex sprinkler = new BernoulliVertex(
+                If.isTrue(rain)
+                    .then(0.01)
+                    .orElse(0.4)
+            );
+
+            BoolVertex wetGrass = new BernoulliVertex(
+                ConditionalProbabilityTable.of(sprinkler, rain)
+                    .when(false, false).then(1e-2)
+                    .when(false, true).then(0.8)
+                    .when(true, false).then(0.9)
+                    .orDefault(0.99)
+            );
+
+            wetGrass.observe(true);
+
+            return new BayesianNetwork(wetGrass.getConnectedGraph());
+        }
+    },
+
+    /**
+     * A linear regression with a Gaussian prior on its weights and intercept, which is continuous and so can also
+     * be sampled with NUTS.
+     */
+    LINEAR_REGRESSION {
+        @Override
+        public BayesianNetwork build(KeanuRandom random) {
+            int featureCount = 4;
+            int dataCount = 200;
+
+            DoubleTensor x = random.nextGaussian(new long[]{dataCount, featureCount});
+            DoubleTensor trueWeights = DoubleTensor.create(new double[]{0.5, -2.0, 1.5, 3.0}, featureCount, 1);
+            DoubleTensor y = x.matrixMultiply(trueWeights)
+                .plusInPlace(2.0)
+                .plusInPlace(random.nextGaussian(new long[]{dataCount, 1}));
+
+            GaussianVertex weights = new GaussianVertex(new long[]{featureCount, 1}, 0.0, 10.0);
+            GaussianVertex intercept = new GaussianVertex(0.0, 10.0);
+
+            DoubleVertex prediction = ConstantVertex.of(x).matrixMultiply(weights).plus(intercept);
+            GaussianVertex observedY = new GaussianVertex(prediction, 1.0);
+            observedY.observe(y);
+
+            return new BayesianNetwork(observedY.getConnectedGraph());
+        }
+    };
+
+    public abstract BayesianNetwork build(KeanuRandom random);
+
+    /**
+     * A pair of latents that feed a chain of deterministic operations of the given depth, which ends in an
+     * observed Gaussian.
+     *
+     * @param depth the number of operations between the latents and the observation
+     * @return the network
+     */
+    public static BayesianNetwork deepChain(int depth) {
+        GaussianVertex a = new GaussianVertex(0.0, 1.0);
+        GaussianVertex b = new GaussianVertex(0.0, 1.0);
+        a.setValue(0.5);
+        b.setValue(0.5);
+
+        DoubleVertex link = a;
+        for (int i = 0; i < depth; i++) {
+            link = link.times(b).plus(a).sin();
+        }
+
+        GaussianVertex observed = new GaussianVertex(link, 1.0);
+        observed.observe(0.25);
+
+        return new BayesianNetwork(observed.getConnectedGraph());
+    }
+}
@@ -0,0 +1,53 @@
+package io.improbable.keanu.benchmarks;
+
+import io.improbable.keanu.algorithms.graphtraversal.VertexValuePropagation;
+import io.improbable.keanu.network.BayesianNetwork;
+import io.improbable.keanu.vertices.Vertex;
+import io.improbable.keanu.vertices.dbl.DoubleVertex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cascade updates per second from a latent at the top of a chain of deterministic operations, which is what
+ * every Metropolis Hastings proposal does before it calculates the log prob of the network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CascadeUpdateBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int depth;
+
+    private DoubleVertex latent;
+    private double value;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BayesianNetwork network = BenchmarkModels.deepChain(depth);
+        network.cascadeObservations();
+
+        for (Vertex vertex : network.getLatentVertices()) {
+            if (vertex instanceof DoubleVertex) {
+                latent = (DoubleVertex) vertex;
+                break;
+            }
+        }
+    }
+
+    @Benchmark
+    public void cascadeUpdate() {
+        value = value == 0.5 ? 0.6 : 0.5;
+        latent.setValue(value);
+        VertexValuePropagation.cascadeUpdate(latent);
+    }
+}
@@ -0,0 +1,86 @@
+package io.improbable.keanu.benchmarks;
+
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.tensor.dbl.JavaDoubleTensor;
+import io.improbable.keanu.vertices.dbl.KeanuRandom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Core tensor operations on square matrices of several sizes, on each tensor backend. The operands are made with
+ * {@link DoubleTensor#create(double[], long...)} after setting {@link JavaDoubleTensor#setMaxLength(long)} so that
+ * it picks the backend being measured. Comparing the backends at each size gives the default max length of a
+ * JavaDoubleTensor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DoubleTensorBenchmark {
+
+    public enum Backend {
+        JAVA, ND4J
+    }
+
+    @Param({"2", "8", "32", "64", "256"})
+    public int size;
+
+    @Param({"JAVA", "ND4J"})
+    public Backend backend;
+
+    private DoubleTensor left;
+    private DoubleTensor right;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        KeanuRandom random = new KeanuRandom(1);
+        long[] shape = new long[]{size, size};
+        JavaDoubleTensor.setMaxLength(backend == Backend.JAVA ? Long.MAX_VALUE : 0);
+        left = DoubleTensor.create(random.nextGaussian(shape).asFlatDoubleArray(), shape);
+        right = DoubleTensor.create(random.nextGaussian(shape).asFlatDoubleArray(), shape);
+        JavaDoubleTensor.setMaxLength(JavaDoubleTensor.DEFAULT_MAX_LENGTH);
+    }
+
+    @Benchmark
+    public DoubleTensor plus() {
+        return left.plus(right);
+    }
+
+    @Benchmark
+    public DoubleTensor times() {
+        return left.times(right);
+    }
+
+    @Benchmark
+    public DoubleTensor exp() {
+        return left.exp();
+    }
+
+    @Benchmark
+    public double sum() {
+        return left.sum();
+    }
+
+    @Benchmark
+    public DoubleTensor sumOverRows() {
+        return left.sum(0);
+    }
+
+    @Benchmark
+    public DoubleTensor matrixMultiply() {
+        return left.matrixMultiply(right);
+    }
+
+    @Benchmark
+    public DoubleTensor transpose() {
+        return left.transpose();
+    }
+}
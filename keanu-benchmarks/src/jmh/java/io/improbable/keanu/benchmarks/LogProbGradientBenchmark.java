@@ -0,0 +1,49 @@
+package io.improbable.keanu.benchmarks;
+
+import io.improbable.keanu.network.BayesianNetwork;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.vertices.VertexId;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.diff.LogProbGradientCalculator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Joint log prob gradients per second on a chain of deterministic operations between two latents and an
+ * observation, to show how the cost of back propagation grows with the depth of the graph.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class LogProbGradientBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int depth;
+
+    private LogProbGradientCalculator gradientCalculator;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BayesianNetwork network = BenchmarkModels.deepChain(depth);
+        network.cascadeObservations();
+
+        gradientCalculator = new LogProbGradientCalculator(
+            network.getLatentOrObservedVertices(),
+            network.getContinuousLatentVertices()
+        );
+    }
+
+    @Benchmark
+    public Map<VertexId, DoubleTensor> gradient() {
+        return gradientCalculator.getJointLogProbGradientWrtLatents();
+    }
+}
@@ -0,0 +1,60 @@
+package io.improbable.keanu.benchmarks;
+
+import io.improbable.keanu.algorithms.mcmc.MetropolisHastings;
+import io.improbable.keanu.network.BayesianNetwork;
+import io.improbable.keanu.network.NetworkState;
+import io.improbable.keanu.util.ProgressBar;
+import io.improbable.keanu.vertices.dbl.KeanuRandom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Metropolis Hastings steps per second. The chain is set up once per trial and each operation is a single step,
+ * so the cost of building the network and the sampler is not included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MetropolisHastingsBenchmark {
+
+    @Param({"COAL_MINING", "WET_GRASS", "LINEAR_REGRESSION"})
+    public BenchmarkModels model;
+
+    private Stream<NetworkState> samples;
+    private Iterator<NetworkState> chain;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ProgressBar.disable();
+        KeanuRandom random = new KeanuRandom(1);
+        BayesianNetwork network = model.build(random);
+        network.probeForNonZeroProbability(100, random);
+
+        samples = MetropolisHastings.withDefaultConfig(random)
+            .generatePosteriorSamples(network, network.getLatentVertices())
+            .stream();
+        chain = samples.iterator();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        samples.close();
+    }
+
+    @Benchmark
+    public NetworkState step() {
+        return chain.next();
+    }
+}
@@ -0,0 +1,67 @@
+package io.improbable.keanu.benchmarks;
+
+import io.improbable.keanu.algorithms.NetworkSamples;
+import io.improbable.keanu.algorithms.mcmc.NUTS;
+import io.improbable.keanu.network.BayesianNetwork;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.util.ProgressBar;
+import io.improbable.keanu.vertices.VertexId;
+import io.improbable.keanu.vertices.dbl.KeanuRandom;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.diff.LogProbGradientCalculator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NUTS on the linear regression model. Each NUTS sample takes up to 2^treeHeight leapfrog steps and so that many
+ * gradients, so both the rate of samples and the rate of joint log prob gradients of the same model are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class NUTSBenchmark {
+
+    private static final int SAMPLE_COUNT = 200;
+
+    private BayesianNetwork network;
+    private NUTS nuts;
+    private LogProbGradientCalculator gradientCalculator;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ProgressBar.disable();
+        KeanuRandom random = new KeanuRandom(1);
+        network = BenchmarkModels.LINEAR_REGRESSION.build(random);
+        network.probeForNonZeroProbability(100, random);
+
+        nuts = NUTS.builder()
+            .random(random)
+            .adaptCount(SAMPLE_COUNT / 2)
+            .build();
+
+        gradientCalculator = new LogProbGradientCalculator(
+            network.getLatentOrObservedVertices(),
+            network.getContinuousLatentVertices()
+        );
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLE_COUNT)
+    public NetworkSamples sample() {
+        return nuts.getPosteriorSamples(network, network.getLatentVertices(), SAMPLE_COUNT);
+    }
+
+    @Benchmark
+    public Map<VertexId, DoubleTensor> gradient() {
+        return gradientCalculator.getJointLogProbGradientWrtLatents();
+    }
+}
@@ -0,0 +1,47 @@
+package io.improbable.keanu.algorithms;
+
+/**
+ * Double samples, such as the log of the master probability of each network sample, held in a double[]
+ * rather than as boxed Doubles.
+ */
+public class DoubleColumn extends SampleColumn<Double> {
+
+    private final DoubleStorage buffer;
+
+    public DoubleColumn() {
+        this(new GrowableDoubleArray(INITIAL_CAPACITY), 0, false);
+    }
+
+    DoubleColumn(DoubleStorage buffer, int size, boolean isReadOnly) {
+        super(0, 1, size, isReadOnly);
+        this.buffer = buffer;
+    }
+
+    private DoubleColumn(DoubleColumn viewOf, int start, int interval, int size) {
+        super(start, interval, size, true);
+        this.buffer = viewOf.buffer;
+    }
+
+    /**
+     * @param index the index of the sample
+     * @return the sample without boxing it
+     */
+    public double getDouble(int index) {
+        return buffer.get(bufferIndex(index));
+    }
+
+    @Override
+    protected Double getFromBuffer(int bufferIndex) {
+        return buffer.get(bufferIndex);
+    }
+
+    @Override
+    protected void addToBuffer(Double sample) {
+        buffer.add(sample);
+    }
+
+    @Override
+    protected DoubleColumn view(int start, int interval, int size) {
+        return new DoubleColumn(this, start, interval, size);
+    }
+}
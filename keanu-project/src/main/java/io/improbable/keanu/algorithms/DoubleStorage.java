@@ -0,0 +1,15 @@
+package io.improbable.keanu.algorithms;
+
+/**
+ * Append only storage for the doubles of a {@link SampleColumn}.
+ */
+interface DoubleStorage {
+
+    void add(double value);
+
+    void addAll(double[] values);
+
+    double get(long index);
+
+    double[] copyOfRange(long from, long to);
+}
@@ -0,0 +1,101 @@
+package io.improbable.keanu.algorithms;
+
+import com.google.common.base.Preconditions;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+
+import java.util.Arrays;
+
+/**
+ * Double tensor samples of a fixed shape held back to back in a single double[].
+ */
+public class DoubleTensorColumn extends SampleColumn<DoubleTensor> {
+
+    private final long[] shape;
+    private final int stride;
+    private final DoubleStorage buffer;
+
+    public DoubleTensorColumn(long[] shape) {
+        this(shape, new GrowableDoubleArray(INITIAL_CAPACITY * strideOf(shape)), 0, false);
+    }
+
+    DoubleTensorColumn(long[] shape, DoubleStorage buffer, int size, boolean isReadOnly) {
+        super(0, 1, size, isReadOnly);
+        this.shape = Arrays.copyOf(shape, shape.length);
+        this.stride = strideOf(shape);
+        this.buffer = buffer;
+    }
+
+    private DoubleTensorColumn(DoubleTensorColumn viewOf, int start, int interval, int size) {
+        super(start, interval, size, true);
+        this.shape = viewOf.shape;
+        this.stride = viewOf.stride;
+        this.buffer = viewOf.buffer;
+    }
+
+    public long[] getShape() {
+        return Arrays.copyOf(shape, shape.length);
+    }
+
+    /**
+     * @return the element-wise mean of the samples, found without creating a tensor per sample
+     */
+    public DoubleTensor getAverages() {
+        if (isEmpty()) {
+            throw new IllegalStateException("No samples exist for averaging.");
+        }
+
+        double[] sums = new double[stride];
+        for (int i = 0; i < size(); i++) {
+            long offset = (long) bufferIndex(i) * stride;
+            for (int j = 0; j < stride; j++) {
+                sums[j] += buffer.get(offset + j);
+            }
+        }
+
+        for (int j = 0; j < stride; j++) {
+            sums[j] /= size();
+        }
+        return DoubleTensor.create(sums, shape);
+    }
+
+    /**
+     * @param flatIndex the index of an element of the samples in flat order
+     * @return the value of that element in each sample, in sample order
+     */
+    public double[] getElementSeries(int flatIndex) {
+        Preconditions.checkElementIndex(flatIndex, stride);
+
+        double[] series = new double[size()];
+        for (int i = 0; i < series.length; i++) {
+            series[i] = buffer.get((long) bufferIndex(i) * stride + flatIndex);
+        }
+        return series;
+    }
+
+    @Override
+    protected DoubleTensor getFromBuffer(int bufferIndex) {
+        long offset = (long) bufferIndex * stride;
+        return DoubleTensor.create(buffer.copyOfRange(offset, offset + stride), shape);
+    }
+
+    @Override
+    protected void addToBuffer(DoubleTensor sample) {
+        if (!Arrays.equals(shape, sample.getShape())) {
+            throw new IllegalArgumentException(
+                "Cannot add a sample of shape " + Arrays.toString(sample.getShape()) +
+                    " to samples of shape " + Arrays.toString(shape)
+            );
+        }
+
+        if (stride == 1) {
+            buffer.add(sample.scalar());
+        } else {
+            buffer.addAll(sample.asFlatDoubleArray());
+        }
+    }
+
+    @Override
+    protected DoubleTensorColumn view(int start, int interval, int size) {
+        return new DoubleTensorColumn(this, start, interval, size);
+    }
+}
@@ -0,0 +1,52 @@
+package io.improbable.keanu.algorithms;
+
+import java.util.Arrays;
+
+/**
+ * An int[] that doubles in capacity when it is full. It is shared by a {@link SampleColumn} and its views.
+ */
+class GrowableIntArray implements IntStorage {
+
+    private static final int MAX_LENGTH = Integer.MAX_VALUE - 8;
+
+    private int[] values;
+    private int length;
+
+    GrowableIntArray(int initialCapacity) {
+        this.values = new int[Math.max(initialCapacity, 1)];
+        this.length = 0;
+    }
+
+    @Override
+    public void add(int value) {
+        ensureCapacity(length + 1);
+        values[length++] = value;
+    }
+
+    @Override
+    public void addAll(int[] toAdd) {
+        ensureCapacity(length + toAdd.length);
+        System.arraycopy(toAdd, 0, values, length, toAdd.length);
+        length += toAdd.length;
+    }
+
+    @Override
+    public int get(long index) {
+        return values[(int) index];
+    }
+
+    @Override
+    public int[] copyOfRange(long from, long to) {
+        return Arrays.copyOfRange(values, (int) from, (int) to);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required < 0 || required > MAX_LENGTH) {
+            throw new IllegalStateException("Cannot hold more than " + MAX_LENGTH + " values");
+        }
+        if (required > values.length) {
+            long doubled = Math.max(2L * values.length, required);
+            values = Arrays.copyOf(values, (int) Math.min(doubled, MAX_LENGTH));
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package io.improbable.keanu.algorithms;
+
+/**
+ * Append only storage for the ints of a {@link SampleColumn}.
+ */
+interface IntStorage {
+
+    void add(int value);
+
+    void addAll(int[] values);
+
+    int get(long index);
+
+    int[] copyOfRange(long from, long to);
+}
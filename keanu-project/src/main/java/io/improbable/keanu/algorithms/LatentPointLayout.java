@@ -0,0 +1,149 @@
+package io.improbable.keanu.algorithms;
+
+import io.improbable.keanu.algorithms.variational.optimizer.Optimizer;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.vertices.Vertex;
+import io.improbable.keanu.vertices.VertexId;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps the values of a list of continuous latent vertices to and from a single flat double[], with each
+ * vertex's values flattened and concatenated in the order of the list. This is the same layout as
+ * {@link Optimizer#currentPoint(List)} so points, gradients and momentums can be held as primitive arrays
+ * and worked on with plain loops rather than as a tensor per vertex.
+ * <p>
+ * The shapes of the vertices are taken when the layout is created, so every vertex must have a value by then.
+ * A layout reuses buffers when setting a point, so it shouldn't be shared between threads.
+ */
+public class LatentPointLayout {
+
+    private final Vertex<DoubleTensor>[] latentVertices;
+    private final long[][] shapes;
+    private final int[] offsets;
+    private final double[][] buffers;
+    private final int dimensionCount;
+
+    public LatentPointLayout(List<? extends Vertex<DoubleTensor>> latentVertices) {
+        this.latentVertices = latentVertices.toArray(new Vertex[0]);
+        this.shapes = new long[this.latentVertices.length][];
+        this.offsets = new int[this.latentVertices.length];
+
+        long position = 0;
+        for (int i = 0; i < this.latentVertices.length; i++) {
+            DoubleTensor value = this.latentVertices[i].getValue();
+            shapes[i] = value.getShape();
+            offsets[i] = (int) position;
+            position += value.getLength();
+
+            if (position > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Greater than " + Integer.MAX_VALUE + " latent dimensions not supported");
+            }
+        }
+        this.dimensionCount = (int) position;
+
+        this.buffers = new double[this.latentVertices.length][];
+        for (int i = 0; i < this.latentVertices.length; i++) {
+            buffers[i] = new double[getLength(i)];
+        }
+    }
+
+    public int getLatentCount() {
+        return latentVertices.length;
+    }
+
+    public int getDimensionCount() {
+        return dimensionCount;
+    }
+
+    public Vertex<DoubleTensor> getLatent(int latentIndex) {
+        return latentVertices[latentIndex];
+    }
+
+    public long[] getShape(int latentIndex) {
+        return shapes[latentIndex];
+    }
+
+    /**
+     * @param latentIndex the index of a vertex in the layout
+     * @return the index in a point of the first value of the vertex
+     */
+    public int getOffset(int latentIndex) {
+        return offsets[latentIndex];
+    }
+
+    public int getLength(int latentIndex) {
+        int end = latentIndex + 1 < offsets.length ? offsets[latentIndex + 1] : dimensionCount;
+        return end - offsets[latentIndex];
+    }
+
+    /**
+     * @return the current values of the latent vertices as a point
+     */
+    public double[] currentPoint() {
+        double[] point = new double[dimensionCount];
+        for (int i = 0; i < latentVertices.length; i++) {
+            copyInto(latentVertices[i].getValue(), point, i);
+        }
+        return point;
+    }
+
+    /**
+     * Sets the values of the latent vertices from a point. This doesn't cascade the new values.
+     * <p>
+     * Each vertex is given a new tensor, as its previous value may still be held, e.g. as a sample. The values of
+     * a vertex are gathered into a buffer that is reused from call to call, and a vertex with a single value is
+     * set straight from the point.
+     *
+     * @param point the values to set, in the layout of this object
+     */
+    public void setPoint(double[] point) {
+        for (int i = 0; i < latentVertices.length; i++) {
+            double[] buffer = buffers[i];
+            if (buffer.length == 1) {
+                latentVertices[i].setValue(DoubleTensor.create(point[offsets[i]], shapes[i]));
+            } else {
+                System.arraycopy(point, offsets[i], buffer, 0, buffer.length);
+                latentVertices[i].setValue(DoubleTensor.create(buffer, shapes[i]));
+            }
+        }
+    }
+
+    /**
+     * Writes tensors held per vertex, e.g. the gradient from a
+     * {@link io.improbable.keanu.vertices.dbl.nonprobabilistic.diff.LogProbGradientCalculator}, into a point.
+     *
+     * @param valuesByVertex the tensor for each latent vertex. A vertex without a tensor is treated as all zeros.
+     * @param point          the array to write to
+     * @return the point that was written to
+     */
+    public double[] flatten(Map<VertexId, DoubleTensor> valuesByVertex, double[] point) {
+        for (int i = 0; i < latentVertices.length; i++) {
+            DoubleTensor value = valuesByVertex.get(latentVertices[i].getId());
+            if (value != null) {
+                copyInto(value, point, i);
+            } else {
+                Arrays.fill(point, offsets[i], offsets[i] + getLength(i), 0.0);
+            }
+        }
+        return point;
+    }
+
+    public double[] flatten(Map<VertexId, DoubleTensor> valuesByVertex) {
+        return flatten(valuesByVertex, new double[dimensionCount]);
+    }
+
+    /**
+     * Writes a tensor into the slice of a point that belongs to one latent vertex.
+     *
+     * @param value       the tensor to write, with the shape of the vertex
+     * @param point       the array to write to
+     * @param latentIndex the index of the vertex in the layout
+     */
+    public void copyInto(DoubleTensor value, double[] point, int latentIndex) {
+        double[] values = value.asFlatDoubleArray();
+        System.arraycopy(values, 0, point, offsets[latentIndex], getLength(latentIndex));
+    }
+}
@@ -0,0 +1,50 @@
+package io.improbable.keanu.algorithms;
+
+import java.nio.file.Path;
+
+/**
+ * Doubles appended to a memory mapped file.
+ */
+class MappedDoubleArray extends MappedSegments implements DoubleStorage {
+
+    private MappedDoubleArray(Path file, long length) {
+        super(file, Double.BYTES, length);
+    }
+
+    static MappedDoubleArray create(Path file) {
+        return new MappedDoubleArray(file, -1);
+    }
+
+    static MappedDoubleArray open(Path file, long length) {
+        return new MappedDoubleArray(file, length);
+    }
+
+    @Override
+    public void add(double value) {
+        checkCanAdd();
+        segmentOf(length).putDouble(offsetInSegment(length), value);
+        length++;
+    }
+
+    @Override
+    public void addAll(double[] values) {
+        for (double value : values) {
+            add(value);
+        }
+    }
+
+    @Override
+    public double get(long index) {
+        checkIndex(index);
+        return segmentOf(index).getDouble(offsetInSegment(index));
+    }
+
+    @Override
+    public double[] copyOfRange(long from, long to) {
+        double[] values = new double[(int) (to - from)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = get(from + i);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,50 @@
+package io.improbable.keanu.algorithms;
+
+import java.nio.file.Path;
+
+/**
+ * Ints appended to a memory mapped file.
+ */
+class MappedIntArray extends MappedSegments implements IntStorage {
+
+    private MappedIntArray(Path file, long length) {
+        super(file, Integer.BYTES, length);
+    }
+
+    static MappedIntArray create(Path file) {
+        return new MappedIntArray(file, -1);
+    }
+
+    static MappedIntArray open(Path file, long length) {
+        return new MappedIntArray(file, length);
+    }
+
+    @Override
+    public void add(int value) {
+        checkCanAdd();
+        segmentOf(length).putInt(offsetInSegment(length), value);
+        length++;
+    }
+
+    @Override
+    public void addAll(int[] values) {
+        for (int value : values) {
+            add(value);
+        }
+    }
+
+    @Override
+    public int get(long index) {
+        checkIndex(index);
+        return segmentOf(index).getInt(offsetInSegment(index));
+    }
+
+    @Override
+    public int[] copyOfRange(long from, long to) {
+        int[] values = new int[(int) (to - from)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = get(from + i);
+        }
+        return values;
+    }
+}
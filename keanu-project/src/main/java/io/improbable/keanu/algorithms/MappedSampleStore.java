@@ -0,0 +1,204 @@
+package io.improbable.keanu.algorithms;
+
+import com.google.common.base.Preconditions;
+import io.improbable.keanu.vertices.VertexId;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Stores network samples in memory mapped files in a directory rather than on the heap, so that a chain can take
+ * more samples than fit in memory. There is one file per vertex and one for the log of the master probability of
+ * each sample. Each file holds fixed width binary records, one per sample, so any sample of any vertex can be read
+ * without loading the rest. An index file describes the columns and records the number of samples, which gives the
+ * number of records in each file, so that the samples can be reopened later with {@link #open(Path)}. The files
+ * themselves are a whole number of segments long, see {@link MappedSegments}.
+ * <p>
+ * Only double tensor and integer tensor samples can be stored.
+ */
+public class MappedSampleStore implements AutoCloseable {
+
+    private static final String INDEX_FILE = "index.txt";
+    private static final String LOG_PROB_FILE = "log-prob.bin";
+    private static final String SEPARATOR = " ";
+    private static final String LIST_SEPARATOR = ",";
+
+    private static final String SAMPLES_ENTRY = "samples";
+    private static final String LOG_PROB_ENTRY = "logProb";
+    private static final String VERTEX_ENTRY = "vertex";
+
+    private enum ColumnType {
+        DOUBLE, INTEGER
+    }
+
+    private final Path directory;
+    private final Map<VertexId, List<?>> samplesByVertex = new SampleColumns(this::mappedColumnFor);
+    private final List<String> vertexIndexEntries = new ArrayList<>();
+    private final List<MappedSegments> files = new ArrayList<>();
+    private final DoubleColumn logOfMasterPForEachSample;
+
+    private MappedSampleStore(Path directory) {
+        this.directory = directory;
+
+        MappedDoubleArray logProbFile = MappedDoubleArray.create(directory.resolve(LOG_PROB_FILE));
+        files.add(logProbFile);
+        this.logOfMasterPForEachSample = new DoubleColumn(logProbFile, 0, false);
+    }
+
+    /**
+     * @param directory the directory to store the samples in, which is created if it does not exist
+     * @return an empty store
+     * @throws IllegalArgumentException if the directory already holds samples
+     */
+    public static MappedSampleStore create(Path directory) {
+        Preconditions.checkArgument(!Files.exists(directory.resolve(INDEX_FILE)),
+            "%s already holds samples", directory
+        );
+
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new MappedSampleStore(directory);
+    }
+
+    /**
+     * Reopens the samples that were stored in a directory. The samples are mapped read only and are paged in as
+     * they are read.
+     *
+     * @param directory a directory that samples were stored in
+     * @return the stored samples
+     */
+    public static NetworkSamples open(Path directory) {
+        List<String> index;
+        try {
+            index = Files.readAllLines(directory.resolve(INDEX_FILE));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        int sampleCount = 0;
+        List<Double> logOfMasterPForEachSample = null;
+        Map<VertexId, List<?>> samplesByVertex = new HashMap<>();
+
+        for (String line : index) {
+            String[] entry = line.split(SEPARATOR);
+            switch (entry[0]) {
+                case SAMPLES_ENTRY:
+                    sampleCount = Integer.parseInt(entry[1]);
+                    break;
+                case LOG_PROB_ENTRY:
+                    MappedDoubleArray logProbs = MappedDoubleArray.open(directory.resolve(entry[1]), sampleCount);
+                    logOfMasterPForEachSample = new DoubleColumn(logProbs, sampleCount, true);
+                    break;
+                case VERTEX_ENTRY:
+                    VertexId id = new VertexId(parseLongs(entry[1]));
+                    long[] shape = parseLongs(entry[3]);
+                    long length = (long) sampleCount * SampleColumn.strideOf(shape);
+                    Path file = directory.resolve(entry[4]);
+                    if (ColumnType.valueOf(entry[2]) == ColumnType.DOUBLE) {
+                        samplesByVertex.put(id, new DoubleTensorColumn(shape, MappedDoubleArray.open(file, length), sampleCount, true));
+                    } else {
+                        samplesByVertex.put(id, new IntegerTensorColumn(shape, MappedIntArray.open(file, length), sampleCount, true));
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unrecognised index entry " + line + " in " + directory);
+            }
+        }
+
+        return new NetworkSamples(samplesByVertex, logOfMasterPForEachSample, sampleCount);
+    }
+
+    /**
+     * @return the samples of each vertex, to be added to by a sampling algorithm. A column for a vertex is
+     * mapped to a new file the first time that vertex is sampled.
+     */
+    public Map<VertexId, List<?>> getSamplesByVertex() {
+        return samplesByVertex;
+    }
+
+    public List<Double> getLogOfMasterPForEachSample() {
+        return logOfMasterPForEachSample;
+    }
+
+    /**
+     * Writes the index of the store so that it can be reopened and closes its files. The samples can still be
+     * read afterwards.
+     *
+     * @param sampleCount the number of samples that were added
+     * @return the stored samples
+     */
+    public NetworkSamples finish(int sampleCount) {
+        List<String> index = new ArrayList<>();
+        index.add(SAMPLES_ENTRY + SEPARATOR + sampleCount);
+        index.add(LOG_PROB_ENTRY + SEPARATOR + LOG_PROB_FILE);
+        index.addAll(vertexIndexEntries);
+
+        try {
+            Files.write(directory.resolve(INDEX_FILE), index);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        close();
+        return new NetworkSamples(samplesByVertex, logOfMasterPForEachSample, sampleCount);
+    }
+
+    @Override
+    public void close() {
+        files.forEach(MappedSegments::close);
+    }
+
+    /**
+     * The column for a vertex is mapped to a new file with records of the type and shape of its first sample.
+     */
+    private List<?> mappedColumnFor(VertexId id, Object firstSample) {
+        List<?> column = SampleColumn.newColumnFor(firstSample);
+        String fileName = VERTEX_ENTRY + "-" + joinLongs(id.getIdValues(), "_") + ".bin";
+        Path file = directory.resolve(fileName);
+
+        ColumnType type;
+        long[] shape;
+        List<?> mappedColumn;
+        if (column instanceof DoubleTensorColumn) {
+            type = ColumnType.DOUBLE;
+            shape = ((DoubleTensorColumn) column).getShape();
+            MappedDoubleArray storage = MappedDoubleArray.create(file);
+            files.add(storage);
+            mappedColumn = new DoubleTensorColumn(shape, storage, 0, false);
+        } else if (column instanceof IntegerTensorColumn) {
+            type = ColumnType.INTEGER;
+            shape = ((IntegerTensorColumn) column).getShape();
+            MappedIntArray storage = MappedIntArray.create(file);
+            files.add(storage);
+            mappedColumn = new IntegerTensorColumn(shape, storage, 0, false);
+        } else {
+            throw new IllegalArgumentException(
+                "Only double and integer tensor samples can be stored on disk. Vertex " + id + " cannot be stored."
+            );
+        }
+
+        vertexIndexEntries.add(String.join(SEPARATOR,
+            VERTEX_ENTRY, joinLongs(id.getIdValues(), LIST_SEPARATOR), type.name(), joinLongs(shape, LIST_SEPARATOR), fileName
+        ));
+        return mappedColumn;
+    }
+
+    private static String joinLongs(long[] values, String separator) {
+        return Arrays.stream(values).mapToObj(Long::toString).collect(Collectors.joining(separator));
+    }
+
+    private static long[] parseLongs(String joined) {
+        return Arrays.stream(joined.split(LIST_SEPARATOR)).mapToLong(Long::parseLong).toArray();
+    }
+}
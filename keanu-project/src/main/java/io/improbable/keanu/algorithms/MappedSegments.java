@@ -0,0 +1,118 @@
+package io.improbable.keanu.algorithms;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A file of fixed width elements that is memory mapped in segments, so that it can be larger than a single
+ * mapping allows and only the pages in use need to be held in memory. Appending past the last segment maps a new
+ * segment, which grows the file by a whole segment. Files are left at a whole number of segments when they are
+ * closed, since a file can't be truncated while it is mapped on every platform, so the number of elements in a file
+ * must be recorded elsewhere, e.g. in the index of a {@link MappedSampleStore}. The unwritten end of the last segment
+ * is never touched, so it takes no disk space on file systems with sparse files. A reopened file is mapped read only
+ * up to its number of elements and its channel closed straight away.
+ */
+abstract class MappedSegments implements AutoCloseable {
+
+    static final int SEGMENT_BYTES = 1 << 24;
+
+    private final FileChannel channel;
+    private final boolean isReadOnly;
+    private final int elementBytes;
+    private final int elementsPerSegment;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+    protected long length;
+
+    /**
+     * @param file         the file to map
+     * @param elementBytes the number of bytes in an element
+     * @param length       the number of elements in the file when it is reopened, or -1 to create a new file
+     */
+    MappedSegments(Path file, int elementBytes, long length) {
+        this.elementBytes = elementBytes;
+        this.elementsPerSegment = SEGMENT_BYTES / elementBytes;
+        this.isReadOnly = length >= 0;
+        this.length = Math.max(length, 0);
+
+        try {
+            if (isReadOnly) {
+                this.channel = FileChannel.open(file, StandardOpenOption.READ);
+                if (this.length > 0) {
+                    segmentOf(this.length - 1);
+                }
+                channel.close();
+            } else {
+                this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE_NEW);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param index the index of an element
+     * @return the segment that holds the element, which is mapped if it was not already
+     */
+    protected ByteBuffer segmentOf(long index) {
+        int segmentIndex = (int) (index / elementsPerSegment);
+        while (segments.size() <= segmentIndex) {
+            segments.add(map(segments.size()));
+        }
+        return segments.get(segmentIndex);
+    }
+
+    /**
+     * @param index the index of an element
+     * @return the byte offset of the element within its segment
+     */
+    protected int offsetInSegment(long index) {
+        return (int) (index % elementsPerSegment) * elementBytes;
+    }
+
+    protected void checkCanAdd() {
+        if (isReadOnly) {
+            throw new UnsupportedOperationException("Cannot add to a reopened file");
+        }
+    }
+
+    protected void checkIndex(long index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for length " + length);
+        }
+    }
+
+    private MappedByteBuffer map(int segmentIndex) {
+        long position = (long) segmentIndex * elementsPerSegment * elementBytes;
+        try {
+            if (isReadOnly) {
+                long size = Math.min((long) elementsPerSegment * elementBytes, length * elementBytes - position);
+                return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            } else {
+                return channel.map(FileChannel.MapMode.READ_WRITE, position, (long) elementsPerSegment * elementBytes);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Mapped segments stay valid after the file is closed, so what was written can still be read.
+     */
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
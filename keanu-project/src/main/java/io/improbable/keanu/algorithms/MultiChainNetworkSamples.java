@@ -0,0 +1,94 @@
+package io.improbable.keanu.algorithms;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import io.improbable.keanu.vertices.VertexId;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Network samples that were taken from several independent chains. As a {@link NetworkSamples} it behaves
+ * as the samples of every chain concatenated in chain order. The samples of each chain are also available
+ * individually, e.g. for convergence diagnostics.
+ */
+public class MultiChainNetworkSamples extends NetworkSamples {
+
+    private final List<NetworkSamples> chains;
+
+    public MultiChainNetworkSamples(List<? extends NetworkSamples> chains) {
+        super(concatenateSamples(chains), concatenateLogProbs(chains), totalSize(chains));
+        this.chains = ImmutableList.copyOf(chains);
+    }
+
+    public int getChainCount() {
+        return chains.size();
+    }
+
+    public NetworkSamples getChain(int chainIndex) {
+        return chains.get(chainIndex);
+    }
+
+    public List<NetworkSamples> getChains() {
+        return chains;
+    }
+
+    /**
+     * @param dropCount the number of samples to drop from the start of each chain
+     * @return samples with dropCount samples removed from each chain
+     */
+    @Override
+    public MultiChainNetworkSamples drop(int dropCount) {
+        Preconditions.checkArgument(dropCount >= 0, "Cannot drop %s samples. Drop count must be positive.", dropCount);
+        if (dropCount == 0) {
+            return this;
+        }
+
+        return new MultiChainNetworkSamples(
+            chains.stream().map(chain -> chain.drop(dropCount)).collect(toList())
+        );
+    }
+
+    /**
+     * @param downSampleInterval collect 1 sample for every downSampleInterval of each chain
+     * @return the down-sampled chains
+     */
+    @Override
+    public MultiChainNetworkSamples downSample(final int downSampleInterval) {
+        return new MultiChainNetworkSamples(
+            chains.stream().map(chain -> chain.downSample(downSampleInterval)).collect(toList())
+        );
+    }
+
+    private static Map<VertexId, List<?>> concatenateSamples(List<? extends NetworkSamples> chains) {
+        Map<VertexId, List<Object>> concatenated = new HashMap<>();
+        for (NetworkSamples chain : chains) {
+            for (Map.Entry<VertexId, ? extends List> samplesForVertex : chain.getSamplesByVertex().entrySet()) {
+                List<Object> samples = samplesForVertex.getValue();
+                List<Object> concatenatedForVertex = concatenated.get(samplesForVertex.getKey());
+                if (concatenatedForVertex == null || (concatenatedForVertex.isEmpty() && !samples.isEmpty())) {
+                    concatenatedForVertex = samples.isEmpty() ? new ArrayList<>() : SampleColumn.newColumnFor(samples.get(0));
+                    concatenated.put(samplesForVertex.getKey(), concatenatedForVertex);
+                }
+                concatenatedForVertex.addAll(samples);
+            }
+        }
+        return new HashMap<>(concatenated);
+    }
+
+    private static List<Double> concatenateLogProbs(List<? extends NetworkSamples> chains) {
+        List<Double> concatenated = new DoubleColumn();
+        for (NetworkSamples chain : chains) {
+            concatenated.addAll(chain.getLogOfMasterPForEachSample());
+        }
+        return concatenated;
+    }
+
+    private static int totalSize(List<? extends NetworkSamples> chains) {
+        return chains.stream().mapToInt(NetworkSamples::size).sum();
+    }
+}
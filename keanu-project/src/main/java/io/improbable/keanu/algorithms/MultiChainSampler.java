@@ -0,0 +1,128 @@
+package io.improbable.keanu.algorithms;
+
+import com.google.common.base.Preconditions;
+import io.improbable.keanu.network.BayesianNetwork;
+import io.improbable.keanu.network.ExecutionContext;
+import io.improbable.keanu.vertices.Vertex;
+import io.improbable.keanu.vertices.dbl.KeanuRandom;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Runs several independent chains of a {@link PosteriorSamplingAlgorithm} in parallel on the same network.
+ * Each chain runs on its own thread with its own copy of the network's state (see {@link ExecutionContext})
+ * and its own {@link KeanuRandom}. The network itself is left in the state it was in before sampling.
+ * <p>
+ * For example, four chains of NUTS:
+ * <pre>
+ * MultiChainSampler.builder()
+ *     .algorithm(NUTS::withDefaultConfig)
+ *     .chainCount(4)
+ *     .build()
+ *     .getPosteriorSamples(bayesNet, vertices, sampleCount);
+ * </pre>
+ */
+@Builder
+public class MultiChainSampler implements PosteriorSamplingAlgorithm {
+
+    public static MultiChainSampler withDefaultConfig(Function<KeanuRandom, ? extends PosteriorSamplingAlgorithm> algorithm) {
+        return withDefaultConfig(algorithm, KeanuRandom.getDefaultRandom());
+    }
+
+    public static MultiChainSampler withDefaultConfig(Function<KeanuRandom, ? extends PosteriorSamplingAlgorithm> algorithm,
+                                                      KeanuRandom random) {
+        return MultiChainSampler.builder()
+            .algorithm(algorithm)
+            .random(random)
+            .build();
+    }
+
+    //Creates the algorithm for a chain given the chain's source of randomness, e.g. MetropolisHastings::withDefaultConfig
+    @Getter
+    @Setter
+    private Function<KeanuRandom, ? extends PosteriorSamplingAlgorithm> algorithm;
+
+    //Used to seed the source of randomness of each chain
+    @Getter
+    @Setter
+    @Builder.Default
+    private KeanuRandom random = KeanuRandom.getDefaultRandom();
+
+    @Getter
+    @Setter
+    @Builder.Default
+    private int chainCount = Runtime.getRuntime().availableProcessors();
+
+    //The number of threads to run the chains on. By default there is one thread per core.
+    @Getter
+    @Setter
+    @Builder.Default
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * @param bayesNet             a bayesian network containing latent vertices
+     * @param verticesToSampleFrom the vertices to include in the returned samples
+     * @param sampleCount          number of samples to take in each chain
+     * @return Samples from every chain
+     */
+    @Override
+    public MultiChainNetworkSamples getPosteriorSamples(BayesianNetwork bayesNet,
+                                                        List<? extends Vertex> verticesToSampleFrom,
+                                                        int sampleCount) {
+        Preconditions.checkArgument(chainCount > 0, "Chain count of %s is invalid. Must run at least one chain.", chainCount);
+        Preconditions.checkArgument(threadCount > 0, "Thread count of %s is invalid. Must use at least one thread.", threadCount);
+        Preconditions.checkNotNull(algorithm, "An algorithm is required to run each chain");
+
+        bayesNet.cascadeObservations();
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(chainCount, threadCount), runnable -> {
+            Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            List<Future<NetworkSamples>> chains = new ArrayList<>();
+            for (int chain = 0; chain < chainCount; chain++) {
+
+                ExecutionContext chainContext = ExecutionContext.of(bayesNet);
+                PosteriorSamplingAlgorithm chainAlgorithm = algorithm.apply(new KeanuRandom(random.nextInt(Integer.MAX_VALUE)));
+
+                chains.add(executor.submit(() -> chainContext.run(
+                    () -> chainAlgorithm.getPosteriorSamples(bayesNet, verticesToSampleFrom, sampleCount)
+                )));
+            }
+
+            return new MultiChainNetworkSamples(getAll(chains));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<NetworkSamples> getAll(List<Future<NetworkSamples>> chains) {
+        List<NetworkSamples> samples = new ArrayList<>();
+        try {
+            for (Future<NetworkSamples> chain : chains) {
+                samples.add(chain.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for chains to complete", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Chain failed to complete", e.getCause());
+        }
+        return samples;
+    }
+}
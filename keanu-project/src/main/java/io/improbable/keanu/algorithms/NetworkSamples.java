@@ -21,6 +21,9 @@ import static java.util.stream.Collectors.toMap;
 /**
  * An immutable collection of network samples. A network sample is a collection
  * of values from vertices in a network at a given point in time.
+ * <p>
+ * When the samples are held in {@link SampleColumn}s, dropping and down-sampling
+ * return views onto the same columns rather than copies.
  */
 public class NetworkSamples {
 
@@ -84,29 +87,14 @@ public class NetworkSamples {
         final Map<VertexId, List<?>> withSamplesDownSampled = samplesByVertex.entrySet().parallelStream()
             .collect(toMap(
                 Map.Entry::getKey,
-                e -> downSample((List<?>) e.getValue(), downSampleInterval)
+                e -> SampleColumn.downSample((List<?>) e.getValue(), downSampleInterval)
                 )
             );
-        final List<Double> withLogProbsDownSampled = downSample(logOfMasterPForEachSample, downSampleInterval);
+        final List<Double> withLogProbsDownSampled = SampleColumn.downSample(logOfMasterPForEachSample, downSampleInterval);
 
         return new NetworkSamples(withSamplesDownSampled, withLogProbsDownSampled, size / downSampleInterval);
     }
 
-    private static <T> List<T> downSample(final List<T> samples, final int downSampleInterval) {
-
-        List<T> downSampled = new ArrayList<>();
-        int i = 0;
-
-        for (T sample : samples) {
-            if (i % downSampleInterval == 0) {
-                downSampled.add(sample);
-            }
-            i++;
-        }
-
-        return downSampled;
-    }
-
     public double probability(Function<NetworkState, Boolean> predicate) {
         List<NetworkState> networkStates = toNetworkStates();
         long trueCount = networkStates.parallelStream()
@@ -124,6 +112,14 @@ public class NetworkSamples {
         return logOfMasterPForEachSample.get(sample);
     }
 
+    Map<VertexId, ? extends List> getSamplesByVertex() {
+        return samplesByVertex;
+    }
+
+    List<Double> getLogOfMasterPForEachSample() {
+        return logOfMasterPForEachSample;
+    }
+
     public List<NetworkState> toNetworkStates() {
         List<NetworkState> states = new ArrayList<>(size);
         for (int i = 0; i < size; i++) {
@@ -0,0 +1,129 @@
+package io.improbable.keanu.algorithms;
+
+import io.improbable.keanu.tensor.Tensor;
+import io.improbable.keanu.vertices.Vertex;
+import io.improbable.keanu.vertices.VertexId;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Summaries of the samples of a network that are updated as each sample is taken rather than from stored
+ * samples, so that memory grows with the number of vertices sampled rather than the number of samples. A
+ * {@link VertexSummary} is kept for each sampled vertex and for the log of the master probability.
+ * <p>
+ * Sampling algorithms add samples to the lists of {@link #getSamplesByVertex()}. These lists update the summary
+ * of their vertex and then discard the sample.
+ */
+public class NetworkSummaries {
+
+    private static final long[] SCALAR_SHAPE = new long[]{1, 1};
+
+    private final double[] quantileProbabilities;
+    private final boolean withCovariance;
+
+    private final Map<VertexId, List<?>> summariesByVertex = new SampleColumns((id, firstSample) -> new SummarisingList());
+    private final SummarisingList logOfMasterPSummary = new SummarisingList();
+
+    /**
+     * @param quantileProbabilities the probabilities of the quantiles to estimate, e.g. 0.05, 0.5 and 0.95
+     */
+    public NetworkSummaries(double... quantileProbabilities) {
+        this(false, quantileProbabilities);
+    }
+
+    /**
+     * @param withCovariance        whether to summarise the covariance between the elements of each vertex, which
+     *                              takes memory in the square of the length of the vertex
+     * @param quantileProbabilities the probabilities of the quantiles to estimate, e.g. 0.05, 0.5 and 0.95
+     */
+    public NetworkSummaries(boolean withCovariance, double... quantileProbabilities) {
+        for (double probability : quantileProbabilities) {
+            if (!(probability > 0 && probability < 1)) {
+                throw new IllegalArgumentException("Quantile probability " + probability + " must be between 0 and 1");
+            }
+        }
+        this.withCovariance = withCovariance;
+        this.quantileProbabilities = Arrays.copyOf(quantileProbabilities, quantileProbabilities.length);
+    }
+
+    public VertexSummary get(Vertex<?> vertex) {
+        return get(vertex.getId());
+    }
+
+    public VertexSummary get(VertexId vertexId) {
+        SummarisingList summary = (SummarisingList) summariesByVertex.get(vertexId);
+        if (summary == null || summary.summary == null) {
+            throw new IllegalArgumentException("Vertex " + vertexId + " has not been sampled");
+        }
+        return summary.summary;
+    }
+
+    public VertexSummary getLogOfMasterP() {
+        if (logOfMasterPSummary.summary == null) {
+            throw new IllegalStateException("No samples have been summarised.");
+        }
+        return logOfMasterPSummary.summary;
+    }
+
+    public Set<VertexId> getVertexIds() {
+        return Collections.unmodifiableSet(summariesByVertex.keySet());
+    }
+
+    /**
+     * @return the samples of each vertex, to be added to by a sampling algorithm. The lists only summarise the
+     * samples that are added to them and cannot be read.
+     */
+    public Map<VertexId, List<?>> getSamplesByVertex() {
+        return summariesByVertex;
+    }
+
+    public List<Double> getLogOfMasterPForEachSample() {
+        return (List) logOfMasterPSummary;
+    }
+
+    private static double[] asFlatDoubleArray(Object sample) {
+        if (sample instanceof Tensor) {
+            return ((Tensor<?>) sample).asFlatDoubleArray();
+        } else if (sample instanceof Number) {
+            return new double[]{((Number) sample).doubleValue()};
+        } else {
+            throw new IllegalArgumentException("Cannot summarise samples of " + sample.getClass().getSimpleName());
+        }
+    }
+
+    private static long[] shapeOf(Object sample) {
+        if (sample instanceof Tensor) {
+            return ((Tensor<?>) sample).getShape();
+        }
+        return SCALAR_SHAPE;
+    }
+
+    private class SummarisingList extends AbstractList<Object> {
+
+        private VertexSummary summary;
+
+        @Override
+        public boolean add(Object sample) {
+            if (summary == null) {
+                summary = new VertexSummary(shapeOf(sample), quantileProbabilities, withCovariance);
+            }
+            summary.add(asFlatDoubleArray(sample));
+            return true;
+        }
+
+        @Override
+        public Object get(int index) {
+            throw new UnsupportedOperationException("Samples are summarised rather than kept");
+        }
+
+        @Override
+        public int size() {
+            return summary == null ? 0 : (int) Math.min(summary.getCount(), Integer.MAX_VALUE);
+        }
+    }
+}
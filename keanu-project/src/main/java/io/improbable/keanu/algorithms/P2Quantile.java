@@ -0,0 +1,114 @@
+package io.improbable.keanu.algorithms;
+
+import java.util.Arrays;
+
+/**
+ * Estimates a quantile of a stream of values in constant memory with the P-square algorithm of
+ * Jain and Chlamtac, 1985. Five markers track the minimum, the maximum, the quantile and two points either side
+ * of it. As values arrive the markers are moved towards their desired positions and their heights adjusted with
+ * a piecewise parabolic interpolation.
+ */
+class P2Quantile {
+
+    private static final int MARKER_COUNT = 5;
+
+    private final double probability;
+    private final double[] heights = new double[MARKER_COUNT];
+    private final double[] positions = new double[MARKER_COUNT];
+    private final double[] desiredPositions = new double[MARKER_COUNT];
+    private final double[] desiredPositionIncrements;
+
+    private long count;
+
+    P2Quantile(double probability) {
+        this.probability = probability;
+        this.desiredPositionIncrements = new double[]{0, probability / 2, probability, (1 + probability) / 2, 1};
+    }
+
+    void add(double value) {
+        if (count < MARKER_COUNT) {
+            heights[(int) count] = value;
+            count++;
+            if (count == MARKER_COUNT) {
+                Arrays.sort(heights);
+                for (int i = 0; i < MARKER_COUNT; i++) {
+                    positions[i] = i + 1;
+                }
+                desiredPositions[0] = 1;
+                desiredPositions[1] = 1 + 2 * probability;
+                desiredPositions[2] = 1 + 4 * probability;
+                desiredPositions[3] = 3 + 2 * probability;
+                desiredPositions[4] = 5;
+            }
+            return;
+        }
+        count++;
+
+        int cell;
+        if (value < heights[0]) {
+            heights[0] = value;
+            cell = 0;
+        } else if (value >= heights[MARKER_COUNT - 1]) {
+            heights[MARKER_COUNT - 1] = value;
+            cell = MARKER_COUNT - 2;
+        } else {
+            cell = 0;
+            while (value >= heights[cell + 1]) {
+                cell++;
+            }
+        }
+
+        for (int i = cell + 1; i < MARKER_COUNT; i++) {
+            positions[i]++;
+        }
+        for (int i = 0; i < MARKER_COUNT; i++) {
+            desiredPositions[i] += desiredPositionIncrements[i];
+        }
+
+        for (int i = 1; i < MARKER_COUNT - 1; i++) {
+            double offset = desiredPositions[i] - positions[i];
+            if ((offset >= 1 && positions[i + 1] - positions[i] > 1) || (offset <= -1 && positions[i - 1] - positions[i] < -1)) {
+                int direction = offset > 0 ? 1 : -1;
+                double parabolic = parabolic(i, direction);
+                if (heights[i - 1] < parabolic && parabolic < heights[i + 1]) {
+                    heights[i] = parabolic;
+                } else {
+                    heights[i] = linear(i, direction);
+                }
+                positions[i] += direction;
+            }
+        }
+    }
+
+    /**
+     * @return the estimated quantile, or NaN if no values have been added. Until there are enough values to
+     * place the markers the quantile is interpolated from the values themselves.
+     */
+    double getQuantile() {
+        if (count >= MARKER_COUNT) {
+            return heights[2];
+        } else if (count == 0) {
+            return Double.NaN;
+        }
+
+        double[] sorted = Arrays.copyOf(heights, (int) count);
+        Arrays.sort(sorted);
+        double position = probability * (count - 1);
+        int below = (int) Math.floor(position);
+        int above = Math.min(below + 1, sorted.length - 1);
+        return sorted[below] + (position - below) * (sorted[above] - sorted[below]);
+    }
+
+    private double parabolic(int i, int direction) {
+        double toPrevious = positions[i] - positions[i - 1];
+        double toNext = positions[i + 1] - positions[i];
+        return heights[i] + direction / (positions[i + 1] - positions[i - 1]) * (
+            (toPrevious + direction) * (heights[i + 1] - heights[i]) / toNext +
+                (toNext - direction) * (heights[i] - heights[i - 1]) / toPrevious
+        );
+    }
+
+    private double linear(int i, int direction) {
+        return heights[i] + direction * (heights[i + direction] - heights[i]) / (positions[i + direction] - positions[i]);
+    }
+}
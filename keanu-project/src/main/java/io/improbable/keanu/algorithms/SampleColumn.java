@@ -0,0 +1,135 @@
+package io.improbable.keanu.algorithms;
+
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.Ints;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.tensor.intgr.IntegerTensor;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The samples of a single vertex held in primitive storage rather than as a list of boxed values. The storage is
+ * either a growable array on the heap or a memory mapped file, see {@link MappedSampleStore}. Every sample takes up
+ * the same fixed number of elements of the storage. A column that is a sub list or a
+ * down-sample of another column is a view onto the same buffer, so neither copies any samples.
+ * <p>
+ * Samples can only be added to a column that was created empty. Views and columns that were reopened from disk
+ * are read only.
+ *
+ * @param <T> the type of the samples
+ */
+public abstract class SampleColumn<T> extends AbstractList<T> implements RandomAccess {
+
+    static final int INITIAL_CAPACITY = 16;
+
+    private final int start;
+    private final int interval;
+    private final boolean isReadOnly;
+    private int size;
+
+    protected SampleColumn(int start, int interval, int size, boolean isReadOnly) {
+        this.start = start;
+        this.interval = interval;
+        this.size = size;
+        this.isReadOnly = isReadOnly;
+    }
+
+    /**
+     * @param firstSample the first sample that will be added to the column
+     * @param <T>         the type of the samples
+     * @return an empty column that holds samples like firstSample as primitives when possible, otherwise a list
+     */
+    public static <T> List<T> newColumnFor(T firstSample) {
+        if (firstSample instanceof DoubleTensor) {
+            return (List<T>) new DoubleTensorColumn(((DoubleTensor) firstSample).getShape());
+        } else if (firstSample instanceof IntegerTensor) {
+            return (List<T>) new IntegerTensorColumn(((IntegerTensor) firstSample).getShape());
+        } else if (firstSample instanceof Double) {
+            return (List<T>) new DoubleColumn();
+        } else {
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * @param samples            the samples to down-sample
+     * @param downSampleInterval keep 1 sample for every downSampleInterval
+     * @param <T>                the type of the samples
+     * @return a view of the samples when they are in a column, otherwise a copy
+     */
+    public static <T> List<T> downSample(List<T> samples, int downSampleInterval) {
+        if (samples instanceof SampleColumn) {
+            return ((SampleColumn<T>) samples).downSample(downSampleInterval);
+        }
+
+        List<T> downSampled = new ArrayList<>();
+        for (int i = 0; i < samples.size(); i += downSampleInterval) {
+            downSampled.add(samples.get(i));
+        }
+        return downSampled;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public T get(int index) {
+        return getFromBuffer(bufferIndex(index));
+    }
+
+    @Override
+    public boolean add(T sample) {
+        if (isReadOnly) {
+            throw new UnsupportedOperationException("Cannot add samples to a view of a column or a reopened column");
+        }
+        addToBuffer(sample);
+        size++;
+        return true;
+    }
+
+    @Override
+    public SampleColumn<T> subList(int fromIndex, int toIndex) {
+        Preconditions.checkPositionIndexes(fromIndex, toIndex, size);
+        return view(start + fromIndex * interval, interval, toIndex - fromIndex);
+    }
+
+    /**
+     * @param downSampleInterval keep 1 sample for every downSampleInterval
+     * @return a view of every downSampleInterval'th sample starting from the first
+     */
+    public SampleColumn<T> downSample(int downSampleInterval) {
+        Preconditions.checkArgument(downSampleInterval > 0,
+            "Down sample interval of %s is invalid. Sample interval must be positive.", downSampleInterval
+        );
+        int downSampledSize = (size + downSampleInterval - 1) / downSampleInterval;
+        return view(start, interval * downSampleInterval, downSampledSize);
+    }
+
+    /**
+     * @param index the index of a sample in this column
+     * @return the index of the sample in the underlying buffer, in samples rather than elements
+     */
+    protected int bufferIndex(int index) {
+        Preconditions.checkElementIndex(index, size);
+        return start + index * interval;
+    }
+
+    protected abstract T getFromBuffer(int bufferIndex);
+
+    protected abstract void addToBuffer(T sample);
+
+    protected abstract SampleColumn<T> view(int start, int interval, int size);
+
+    static int strideOf(long[] shape) {
+        long length = 1;
+        for (long dimension : shape) {
+            length *= dimension;
+        }
+        return Ints.checkedCast(length);
+    }
+}
@@ -0,0 +1,55 @@
+package io.improbable.keanu.algorithms;
+
+import io.improbable.keanu.vertices.VertexId;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The samples of each vertex, keyed by vertex id, where the column for a vertex is created by a
+ * {@link ColumnFactory} the first time the vertex is sampled. This lets a sample sink such as
+ * {@link MappedSampleStore} or {@link NetworkSummaries} decide where the samples of each vertex go.
+ * <p>
+ * Sampling algorithms should add to the samples map they are given through {@link #columnFor(Map, VertexId, Object)}
+ * so that the sink's factory is used when the map is a SampleColumns.
+ */
+public class SampleColumns extends HashMap<VertexId, List<?>> {
+
+    public interface ColumnFactory {
+
+        /**
+         * @param id          the vertex that is being sampled for the first time
+         * @param firstSample the first sample of the vertex, which gives the type and shape of its samples
+         * @return an empty column to add the samples of the vertex to
+         */
+        List<?> createColumn(VertexId id, Object firstSample);
+    }
+
+    private final ColumnFactory columnFactory;
+
+    public SampleColumns(ColumnFactory columnFactory) {
+        this.columnFactory = columnFactory;
+    }
+
+    /**
+     * @param samples the samples of each vertex
+     * @param id      the vertex to find the column of
+     * @param sample  a sample of the vertex, used to create the column if the vertex hasn't been sampled yet
+     * @param <T>     the type of the samples
+     * @return the column for the vertex, created by the factory of samples if it is a SampleColumns or as a
+     * {@link SampleColumn#newColumnFor(Object)} otherwise
+     */
+    public static <T> List<T> columnFor(Map<VertexId, List<?>> samples, VertexId id, T sample) {
+        List<?> column = samples.get(id);
+        if (column == null) {
+            if (samples instanceof SampleColumns) {
+                column = ((SampleColumns) samples).columnFactory.createColumn(id, sample);
+            } else {
+                column = SampleColumn.newColumnFor(sample);
+            }
+            samples.put(id, column);
+        }
+        return (List<T>) column;
+    }
+}
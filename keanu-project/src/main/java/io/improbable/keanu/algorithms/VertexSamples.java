@@ -1,5 +1,7 @@
 package io.improbable.keanu.algorithms;
 
+import io.improbable.keanu.tensor.Tensor;
+
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -49,4 +51,29 @@ public class VertexSamples<T> {
     public List<T> asList() {
         return new ArrayList<>(samples);
     }
+
+    /**
+     * @param flatIndex the index of an element of the samples in flat order
+     * @return the value of that element in each sample
+     */
+    public double[] getElementSeries(int flatIndex) {
+        if (samples instanceof DoubleTensorColumn) {
+            return ((DoubleTensorColumn) samples).getElementSeries(flatIndex);
+        } else if (samples instanceof IntegerTensorColumn) {
+            return ((IntegerTensorColumn) samples).getElementSeries(flatIndex);
+        }
+
+        double[] series = new double[samples.size()];
+        for (int i = 0; i < series.length; i++) {
+            Object sample = samples.get(i);
+            if (sample instanceof Tensor) {
+                series[i] = ((Tensor<?>) sample).asFlatDoubleArray()[flatIndex];
+            } else if (sample instanceof Number && flatIndex == 0) {
+                series[i] = ((Number) sample).doubleValue();
+            } else {
+                throw new IllegalArgumentException("Samples have no element " + flatIndex);
+            }
+        }
+        return series;
+    }
 }
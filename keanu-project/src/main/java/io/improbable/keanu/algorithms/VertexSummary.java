@@ -0,0 +1,146 @@
+package io.improbable.keanu.algorithms;
+
+import com.google.common.base.Preconditions;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+
+import java.util.Arrays;
+
+/**
+ * Element-wise summaries of the samples of a single vertex that are updated as each sample is taken, so that the
+ * samples themselves need not be kept. Means and variances are found with Welford's algorithm and quantiles are
+ * estimated with the P-square algorithm.
+ */
+public class VertexSummary {
+
+    private final long[] shape;
+    private final double[] quantileProbabilities;
+    private final P2Quantile[][] quantiles;
+
+    private long count;
+    private final double[] mean;
+    private final double[] sumOfSquaredDifferences;
+    private final double[][] sumOfDifferenceProducts;
+
+    VertexSummary(long[] shape, double[] quantileProbabilities, boolean withCovariance) {
+        this.shape = Arrays.copyOf(shape, shape.length);
+        this.quantileProbabilities = quantileProbabilities;
+
+        int length = SampleColumn.strideOf(shape);
+        this.mean = new double[length];
+        this.sumOfSquaredDifferences = new double[length];
+        this.sumOfDifferenceProducts = withCovariance ? new double[length][length] : null;
+
+        this.quantiles = new P2Quantile[quantileProbabilities.length][length];
+        for (int q = 0; q < quantileProbabilities.length; q++) {
+            for (int i = 0; i < length; i++) {
+                quantiles[q][i] = new P2Quantile(quantileProbabilities[q]);
+            }
+        }
+    }
+
+    void add(double[] sample) {
+        Preconditions.checkArgument(sample.length == mean.length,
+            "Cannot summarise a sample of length %s with samples of shape %s", sample.length, Arrays.toString(shape)
+        );
+
+        count++;
+
+        double[] differenceBefore = new double[mean.length];
+        for (int i = 0; i < mean.length; i++) {
+            differenceBefore[i] = sample[i] - mean[i];
+            mean[i] += differenceBefore[i] / count;
+            sumOfSquaredDifferences[i] += differenceBefore[i] * (sample[i] - mean[i]);
+        }
+
+        if (sumOfDifferenceProducts != null) {
+            for (int i = 0; i < mean.length; i++) {
+                for (int j = 0; j < mean.length; j++) {
+                    sumOfDifferenceProducts[i][j] += differenceBefore[i] * (sample[j] - mean[j]);
+                }
+            }
+        }
+
+        for (P2Quantile[] quantile : quantiles) {
+            for (int i = 0; i < mean.length; i++) {
+                quantile[i].add(sample[i]);
+            }
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long[] getShape() {
+        return Arrays.copyOf(shape, shape.length);
+    }
+
+    public DoubleTensor getMean() {
+        checkHasSamples();
+        return DoubleTensor.create(Arrays.copyOf(mean, mean.length), shape);
+    }
+
+    /**
+     * @return the element-wise sample variance, with Bessel's correction
+     */
+    public DoubleTensor getVariance() {
+        checkHasSamples();
+        double[] variance = new double[mean.length];
+        for (int i = 0; i < mean.length; i++) {
+            variance[i] = count > 1 ? sumOfSquaredDifferences[i] / (count - 1) : 0.0;
+        }
+        return DoubleTensor.create(variance, shape);
+    }
+
+    public DoubleTensor getStandardDeviation() {
+        return getVariance().sqrtInPlace();
+    }
+
+    /**
+     * @return the sample covariance between every pair of elements of the vertex, as a matrix with a row and
+     * column for each element in flat order
+     * @throws IllegalStateException if covariances were not summarised
+     */
+    public DoubleTensor getCovariance() {
+        checkHasSamples();
+        if (sumOfDifferenceProducts == null) {
+            throw new IllegalStateException("Covariances were not summarised");
+        }
+
+        int length = mean.length;
+        double[] covariance = new double[length * length];
+        for (int i = 0; i < length; i++) {
+            for (int j = 0; j < length; j++) {
+                covariance[i * length + j] = count > 1 ? sumOfDifferenceProducts[i][j] / (count - 1) : 0.0;
+            }
+        }
+        return DoubleTensor.create(covariance, length, length);
+    }
+
+    /**
+     * @param probability one of the probabilities that quantiles were summarised for
+     * @return the estimated element-wise quantile
+     * @throws IllegalArgumentException if the quantile was not summarised
+     */
+    public DoubleTensor getQuantile(double probability) {
+        checkHasSamples();
+        for (int q = 0; q < quantileProbabilities.length; q++) {
+            if (quantileProbabilities[q] == probability) {
+                double[] quantile = new double[mean.length];
+                for (int i = 0; i < mean.length; i++) {
+                    quantile[i] = quantiles[q][i].getQuantile();
+                }
+                return DoubleTensor.create(quantile, shape);
+            }
+        }
+        throw new IllegalArgumentException(
+            "The " + probability + " quantile was not summarised. Summarised quantiles are " + Arrays.toString(quantileProbabilities)
+        );
+    }
+
+    private void checkHasSamples() {
+        if (count == 0) {
+            throw new IllegalStateException("No samples have been summarised.");
+        }
+    }
+}
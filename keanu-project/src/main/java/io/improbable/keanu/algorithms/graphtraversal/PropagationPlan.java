@@ -0,0 +1,69 @@
+package io.improbable.keanu.algorithms.graphtraversal;
+
+import io.improbable.keanu.vertices.Vertex;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A compiled cascade update. Compiling a plan finds, once, every vertex that
+ * {@link VertexValuePropagation#cascadeUpdate(Collection)} would update from a given set of vertices and the
+ * order to update them in. Replaying the plan then updates the same vertices in the same order without
+ * searching the graph or allocating.
+ * <p>
+ * A plan only depends on the structure of the graph so it can be reused for as long as the graph isn't changed.
+ */
+public class PropagationPlan {
+
+    public static PropagationPlan compile(Vertex<?> cascadeFrom) {
+        return compile(Collections.singletonList(cascadeFrom));
+    }
+
+    /**
+     * @param cascadeFrom the vertices that will be updated before the plan is replayed
+     * @return a plan that cascades updates from the given vertices
+     */
+    public static PropagationPlan compile(Collection<? extends Vertex> cascadeFrom) {
+
+        Set<Vertex> toUpdate = new HashSet<>(cascadeFrom);
+        Deque<Vertex> stack = new ArrayDeque<>(cascadeFrom);
+
+        while (!stack.isEmpty()) {
+            Vertex<?> visiting = stack.pop();
+
+            for (Vertex<?> child : visiting.getChildren()) {
+                if (!child.isProbabilistic() && toUpdate.add(child)) {
+                    stack.push(child);
+                }
+            }
+        }
+
+        List<Vertex> inUpdateOrder = new ArrayList<>(toUpdate);
+        inUpdateOrder.sort(Comparator.comparing(Vertex::getId, Comparator.naturalOrder()));
+
+        return new PropagationPlan(inUpdateOrder.toArray(new Vertex[0]));
+    }
+
+    private final Vertex[] toUpdate;
+
+    private PropagationPlan(Vertex[] toUpdate) {
+        this.toUpdate = toUpdate;
+    }
+
+    /**
+     * Updates the value of every vertex downstream of the vertices the plan was compiled from, stopping
+     * at probabilistic vertices.
+     */
+    public void cascade() {
+        for (Vertex<?> vertex : toUpdate) {
+            VertexValuePropagation.updateVertexValue(vertex);
+        }
+    }
+}
@@ -32,6 +32,8 @@ public class VertexValuePropagation {
     }
 
     /**
+     * Use a {@link PropagationPlan} instead when cascading from the same vertices repeatedly.
+     *
      * @param cascadeFrom A collection that contains the vertices that have been updated.
      */
     public static void cascadeUpdate(Collection<? extends Vertex> cascadeFrom) {
@@ -143,7 +145,7 @@ public class VertexValuePropagation {
         return stack;
     }
 
-    private static <T> void updateVertexValue(Vertex<T> vertex) {
+    static <T> void updateVertexValue(Vertex<T> vertex) {
         if (vertex.isProbabilistic()) {
             if (!vertex.hasValue()) {
                 vertex.setValue(vertex.sample());
@@ -0,0 +1,338 @@
+package io.improbable.keanu.algorithms.mcmc;
+
+import com.google.common.base.Preconditions;
+import io.improbable.keanu.algorithms.MultiChainNetworkSamples;
+import io.improbable.keanu.algorithms.NetworkSamples;
+import io.improbable.keanu.algorithms.PosteriorSamplingAlgorithm;
+import io.improbable.keanu.algorithms.SampleColumns;
+import io.improbable.keanu.algorithms.graphtraversal.PropagationPlan;
+import io.improbable.keanu.network.BayesianNetwork;
+import io.improbable.keanu.network.ExecutionContext;
+import io.improbable.keanu.network.LambdaSection;
+import io.improbable.keanu.tensor.TensorShape;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.util.ProgressBar;
+import io.improbable.keanu.vertices.ElementwiseProbabilistic;
+import io.improbable.keanu.vertices.Probabilistic;
+import io.improbable.keanu.vertices.Vertex;
+import io.improbable.keanu.vertices.VertexId;
+import io.improbable.keanu.vertices.dbl.KeanuRandom;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs a batch of independent Metropolis Hastings chains at once by giving the value of every latent vertex a
+ * leading batch dimension. Each chain is one row of the batch, so the operators of the graph and the log probs of
+ * the probabilistic vertices are evaluated once per step for every chain rather than once per chain.
+ * <p>
+ * Every latent vertex must be a scalar double and is given a value of shape [batchSize, 1]. Observations and other
+ * constants must be scalars or row vectors of shape [1, N], which broadcast against the batch. Every probabilistic
+ * vertex must be an {@link ElementwiseProbabilistic} so that its log prob can be split between the chains, and a
+ * network with any other probabilistic vertex is rejected before sampling. Each step sweeps
+ * through the latent vertices in turn with a Gaussian random walk proposal, accepting or rejecting each chain's
+ * proposal separately.
+ * <p>
+ * The batched values are held in an {@link ExecutionContext} so the network is left in the state it was in before
+ * sampling. Every chain starts from the network's current values.
+ */
+@Builder
+public class BatchMetropolisHastings implements PosteriorSamplingAlgorithm {
+
+    private static final int DEFAULT_BATCH_SIZE = 100;
+    private static final double DEFAULT_PROPOSAL_SIGMA = 1.0;
+
+    public static BatchMetropolisHastings withDefaultConfig() {
+        return withDefaultConfig(KeanuRandom.getDefaultRandom());
+    }
+
+    public static BatchMetropolisHastings withDefaultConfig(KeanuRandom random) {
+        return BatchMetropolisHastings.builder()
+            .random(random)
+            .build();
+    }
+
+    @Getter
+    @Setter
+    @Builder.Default
+    private KeanuRandom random = KeanuRandom.getDefaultRandom();
+
+    //The number of chains that are run together
+    @Getter
+    @Setter
+    @Builder.Default
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    //The standard deviation of the random walk proposal for every latent vertex
+    @Getter
+    @Setter
+    @Builder.Default
+    private double proposalSigma = DEFAULT_PROPOSAL_SIGMA;
+
+    /**
+     * @param bayesianNetwork      a bayesian network containing scalar double latent vertices
+     * @param verticesToSampleFrom the scalar double vertices to include in the returned samples
+     * @param sampleCount          number of samples to take from each chain
+     * @return the samples of each chain. Every chain takes sampleCount samples.
+     */
+    @Override
+    public MultiChainNetworkSamples getPosteriorSamples(BayesianNetwork bayesianNetwork,
+                                                        List<? extends Vertex> verticesToSampleFrom,
+                                                        int sampleCount) {
+        Preconditions.checkArgument(batchSize > 0, "Batch size of %s is invalid. Must run at least one chain.", batchSize);
+        MetropolisHastings.checkBayesNetInHealthyState(bayesianNetwork);
+
+        ExecutionContext context = ExecutionContext.of(bayesianNetwork);
+        return context.run(() -> {
+            BatchSweep sweep = new BatchSweep(bayesianNetwork, verticesToSampleFrom);
+
+            ProgressBar progressBar = new ProgressBar();
+            for (int sampleNum = 0; sampleNum < sampleCount; sampleNum++) {
+                sweep.step();
+                sweep.takeSamples();
+                progressBar.progress("Sampling...", (sampleNum + 1) / (double) sampleCount);
+            }
+            progressBar.finish();
+
+            return sweep.toNetworkSamples(sampleCount);
+        });
+    }
+
+    /**
+     * The state of the batch of chains. Must be created and used while the execution context holding the batched
+     * values is running.
+     */
+    private class BatchSweep {
+
+        private final List<Vertex<DoubleTensor>> latentVertices;
+        private final List<Vertex<DoubleTensor>> verticesToSampleFrom;
+        private final long[][] sampleShapes;
+        private final Map<Vertex, Vertex[]> affectedVertices;
+        private final Map<Vertex, PropagationPlan> propagationPlans;
+        //The probabilistic vertices whose log probs have a batch dimension: the latent vertices and those they affect
+        private final Set<Vertex> batchedVertices;
+        private final long[] batchShape;
+
+        private final double[] logProbs;
+        private final List<Map<VertexId, List<?>>> samplesByChain;
+        private final List<List<Double>> logProbsByChain;
+
+        BatchSweep(BayesianNetwork bayesianNetwork, List<? extends Vertex> verticesToSampleFrom) {
+            this.latentVertices = scalarDoubleVertices(bayesianNetwork.getLatentVertices(), "latent");
+            this.verticesToSampleFrom = scalarDoubleVertices(verticesToSampleFrom, "sampled");
+            this.batchShape = new long[]{batchSize, 1};
+
+            this.sampleShapes = new long[this.verticesToSampleFrom.size()][];
+            for (int i = 0; i < sampleShapes.length; i++) {
+                sampleShapes[i] = this.verticesToSampleFrom.get(i).getShape();
+            }
+
+            Vertex[] allProbabilisticVertices = probabilisticVertices(bayesianNetwork.getLatentOrObservedVertices());
+            checkUnbatchedInputsBroadcast(latentVertices);
+
+            this.affectedVertices = new HashMap<>();
+            this.propagationPlans = new HashMap<>();
+            this.batchedVertices = new HashSet<>();
+            for (Vertex<DoubleTensor> latent : latentVertices) {
+                LambdaSection downstream = LambdaSection.getDownstreamLambdaSection(latent, false);
+                affectedVertices.put(latent, probabilisticVertices(downstream.getLatentAndObservedVertices()));
+                propagationPlans.put(latent, PropagationPlan.compile(latent));
+                batchedVertices.addAll(downstream.getLatentAndObservedVertices());
+                latent.setValue(DoubleTensor.create(latent.getValue().scalar(), batchShape));
+            }
+            PropagationPlan.compile(latentVertices).cascade();
+
+            this.logProbs = perChainLogProb(allProbabilisticVertices);
+
+            this.samplesByChain = new ArrayList<>(batchSize);
+            this.logProbsByChain = new ArrayList<>(batchSize);
+            for (int chain = 0; chain < batchSize; chain++) {
+                samplesByChain.add(new HashMap<>());
+                logProbsByChain.add(new ArrayList<>());
+            }
+        }
+
+        /**
+         * Proposes a move of every latent vertex in turn, for every chain at once.
+         */
+        void step() {
+            for (Vertex<DoubleTensor> latent : latentVertices) {
+                Vertex[] affected = affectedVertices.get(latent);
+                PropagationPlan propagationPlan = propagationPlans.get(latent);
+
+                double[] logProbsBefore = perChainLogProb(affected);
+                DoubleTensor valuesBefore = latent.getValue();
+                DoubleTensor proposedValues = valuesBefore.plus(random.nextGaussian(batchShape).times(proposalSigma));
+
+                latent.setValue(proposedValues);
+                propagationPlan.cascade();
+                double[] logProbsAfter = perChainLogProb(affected);
+
+                double[] before = valuesBefore.asFlatDoubleArray();
+                double[] accepted = proposedValues.asFlatDoubleArray();
+                boolean anyRejected = false;
+                for (int chain = 0; chain < batchSize; chain++) {
+                    double logProbabilityDelta = logProbsAfter[chain] - logProbsBefore[chain];
+                    if (logProbabilityDelta >= 0 || Math.log(random.nextDouble()) < logProbabilityDelta) {
+                        logProbs[chain] += logProbabilityDelta;
+                    } else {
+                        //also rejects proposals with a NaN log prob, e.g. from an impossible state
+                        accepted[chain] = before[chain];
+                        anyRejected = true;
+                    }
+                }
+
+                if (anyRejected) {
+                    latent.setValue(DoubleTensor.create(accepted, batchShape));
+                    propagationPlan.cascade();
+                }
+            }
+        }
+
+        void takeSamples() {
+            for (int i = 0; i < verticesToSampleFrom.size(); i++) {
+                Vertex<DoubleTensor> vertex = verticesToSampleFrom.get(i);
+                double[] values = vertex.getValue().asFlatDoubleArray();
+
+                for (int chain = 0; chain < batchSize; chain++) {
+                    double value = values.length == 1 ? values[0] : values[chain];
+                    addSample(samplesByChain.get(chain), vertex.getId(), DoubleTensor.create(new double[]{value}, sampleShapes[i]));
+                }
+            }
+
+            for (int chain = 0; chain < batchSize; chain++) {
+                logProbsByChain.get(chain).add(logProbs[chain]);
+            }
+        }
+
+        MultiChainNetworkSamples toNetworkSamples(int sampleCount) {
+            List<NetworkSamples> chains = new ArrayList<>(batchSize);
+            for (int chain = 0; chain < batchSize; chain++) {
+                chains.add(new NetworkSamples(samplesByChain.get(chain), logProbsByChain.get(chain), sampleCount));
+            }
+            return new MultiChainNetworkSamples(chains);
+        }
+
+        /**
+         * Sums the element-wise log probs of the vertices for each chain. The log prob of a batched vertex belongs
+         * to the chains row by row, while that of a vertex that no latent vertex affects is shared by every chain.
+         */
+        private double[] perChainLogProb(Vertex[] vertices) {
+            double[] perChain = new double[batchSize];
+            for (Vertex vertex : vertices) {
+                DoubleTensor logProb = ((ElementwiseProbabilistic) vertex).elementwiseLogProb(vertex.getValue());
+                double[] elements = logProb.asFlatDoubleArray();
+
+                if (batchedVertices.contains(vertex)) {
+                    long[] shape = logProb.getShape();
+                    if (shape.length != 2 || shape[0] != batchSize) {
+                        throw new IllegalArgumentException(
+                            "Cannot batch " + vertex + " with a log prob of shape " + Arrays.toString(shape) +
+                                ". Values must be scalars or row vectors."
+                        );
+                    }
+                    int elementsPerChain = (int) shape[1];
+                    for (int chain = 0; chain < batchSize; chain++) {
+                        for (int j = 0; j < elementsPerChain; j++) {
+                            perChain[chain] += elements[chain * elementsPerChain + j];
+                        }
+                    }
+                } else {
+                    double shared = 0.0;
+                    for (double element : elements) {
+                        shared += element;
+                    }
+                    for (int chain = 0; chain < batchSize; chain++) {
+                        perChain[chain] += shared;
+                    }
+                }
+            }
+            return perChain;
+        }
+
+        /**
+         * Observations and constants aren't given a batch dimension, so a leading dimension of theirs that happened
+         * to be the batch size would be silently paired with the chains row by row. They must be scalars or have a
+         * leading dimension of 1 so that they are broadcast to every chain instead.
+         */
+        private void checkUnbatchedInputsBroadcast(List<Vertex<DoubleTensor>> latentVertices) {
+            Set<Vertex> batchedValues = new HashSet<>();
+            for (Vertex<DoubleTensor> latent : latentVertices) {
+                for (Vertex vertex : LambdaSection.getDownstreamLambdaSection(latent, true).getAllVertices()) {
+                    if (!vertex.isObserved()) {
+                        batchedValues.add(vertex);
+                    }
+                }
+            }
+
+            Set<Vertex> inputs = new HashSet<>();
+            for (Vertex<?> vertex : batchedValues) {
+                for (Vertex<?> child : vertex.getChildren()) {
+                    if (child.isObserved()) {
+                        inputs.add(child);
+                    }
+                }
+                for (Vertex<?> parent : vertex.getParents()) {
+                    if (!batchedValues.contains(parent)) {
+                        inputs.add(parent);
+                    }
+                }
+            }
+
+            for (Vertex<?> input : inputs) {
+                long[] shape = input.getShape();
+                if (TensorShape.getLength(shape) != 1 && (shape.length == 0 || shape[0] != 1)) {
+                    throw new IllegalArgumentException(
+                        "Cannot batch " + input + " of shape " + Arrays.toString(shape) +
+                            ". Observations and constants must be scalars or have a leading dimension of 1."
+                    );
+                }
+            }
+        }
+
+        private <T> void addSample(Map<VertexId, List<?>> samples, VertexId id, T sample) {
+            List<T> samplesForVertex = SampleColumns.columnFor(samples, id, sample);
+            samplesForVertex.add(sample);
+        }
+    }
+
+    private static Vertex[] probabilisticVertices(Iterable<? extends Vertex> vertices) {
+        List<Vertex> probabilistic = new ArrayList<>();
+        for (Vertex vertex : vertices) {
+            if (!(vertex instanceof Probabilistic)) {
+                throw new IllegalArgumentException(
+                    "Cannot batch the observed non-probabilistic vertex " + vertex
+                );
+            }
+            if (!(vertex instanceof ElementwiseProbabilistic)) {
+                throw new IllegalArgumentException(
+                    "Cannot batch " + vertex + " because " + vertex.getClass().getSimpleName() +
+                        " does not support element-wise log probabilities"
+                );
+            }
+            probabilistic.add(vertex);
+        }
+        return probabilistic.toArray(new Vertex[0]);
+    }
+
+    private static List<Vertex<DoubleTensor>> scalarDoubleVertices(List<? extends Vertex> vertices, String role) {
+        List<Vertex<DoubleTensor>> scalarDoubles = new ArrayList<>(vertices.size());
+        for (Vertex<?> vertex : vertices) {
+            if (!(vertex.getValue() instanceof DoubleTensor) || ((DoubleTensor) vertex.getValue()).getLength() != 1) {
+                throw new IllegalArgumentException(
+                    "Only scalar double " + role + " vertices can be batched but " + vertex + " is not"
+                );
+            }
+            scalarDoubles.add((Vertex<DoubleTensor>) vertex);
+        }
+        return scalarDoubles;
+    }
+}
@@ -0,0 +1,87 @@
+package io.improbable.keanu.algorithms.mcmc;
+
+import io.improbable.keanu.algorithms.NetworkSamples;
+import io.improbable.keanu.vertices.Vertex;
+import io.improbable.keanu.vertices.VertexId;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Singular;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * When to stop sampling: once every element of the chosen vertices has at least a minimum effective sample size
+ * and a split R-hat of at most a maximum, e.g. an effective sample size of 1000 and an R-hat below 1.01.
+ *
+ * @see ConvergenceDiagnostics
+ * @see NetworkSamplesGenerator#generateUntil(ConvergenceCriterion, int)
+ */
+@Builder
+public class ConvergenceCriterion {
+
+    private static final int DEFAULT_CHECK_INTERVAL = 100;
+
+    @Getter
+    @Singular("vertex")
+    private List<VertexId> vertices;
+
+    @Getter
+    @Builder.Default
+    private double minEffectiveSampleSize = 0.0;
+
+    @Getter
+    @Builder.Default
+    private double maxRHat = Double.POSITIVE_INFINITY;
+
+    //The number of samples at the first check. Each later check is at twice the samples of the one before, so
+    //all of the checks together cost about twice as much as a single check of the final samples
+    @Getter
+    @Builder.Default
+    private int checkInterval = DEFAULT_CHECK_INTERVAL;
+
+    /**
+     * @param sampleCount the number of samples at the last check, or 0 before the first check
+     * @return the number of samples to check at next
+     */
+    public int nextCheckAfter(int sampleCount) {
+        return Math.max(checkInterval, 2 * sampleCount);
+    }
+
+    public static ConvergenceCriterion forVertices(List<? extends Vertex> vertices, double minEffectiveSampleSize, double maxRHat) {
+        ConvergenceCriterionBuilder builder = ConvergenceCriterion.builder()
+            .minEffectiveSampleSize(minEffectiveSampleSize)
+            .maxRHat(maxRHat);
+        for (Vertex<?> vertex : vertices) {
+            builder.vertex(vertex.getId());
+        }
+        return builder.build();
+    }
+
+    /**
+     * @param chains the samples of each chain
+     * @return whether every element of every vertex meets the criterion. Samples that do not vary, and so have
+     * no defined diagnostics, never meet it.
+     */
+    public boolean isMetBy(List<? extends NetworkSamples> chains) {
+        for (VertexId vertex : vertices) {
+            for (double ess : ConvergenceDiagnostics.effectiveSampleSize(chains, vertex).asFlatDoubleArray()) {
+                if (!(ess >= minEffectiveSampleSize)) {
+                    return false;
+                }
+            }
+            if (maxRHat < Double.POSITIVE_INFINITY) {
+                for (double rHat : ConvergenceDiagnostics.splitRHat(chains, vertex).asFlatDoubleArray()) {
+                    if (!(rHat <= maxRHat)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    public boolean isMetBy(NetworkSamples chain) {
+        return isMetBy(Collections.singletonList(chain));
+    }
+}
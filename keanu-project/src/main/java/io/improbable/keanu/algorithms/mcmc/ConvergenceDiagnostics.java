@@ -0,0 +1,234 @@
+package io.improbable.keanu.algorithms.mcmc;
+
+import com.google.common.base.Preconditions;
+import io.improbable.keanu.algorithms.NetworkSamples;
+import io.improbable.keanu.tensor.Tensor;
+import io.improbable.keanu.tensor.TensorShape;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.vertices.VertexId;
+import org.apache.commons.math3.complex.Complex;
+import org.apache.commons.math3.transform.DftNormalization;
+import org.apache.commons.math3.transform.FastFourierTransformer;
+import org.apache.commons.math3.transform.TransformType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Convergence diagnostics for one or more MCMC chains, following Gelman et al., Bayesian Data Analysis (3rd ed.)
+ * and Stan. Each chain is split in half so that a single chain that has not converged is also detected.
+ * <p>
+ * The split potential scale reduction (R-hat) compares the variance between the halves of the chains with the
+ * variance within them, and tends to 1 as the chains converge. The effective sample size is the number of
+ * independent samples with the same variance of the mean as the chains, found from their autocorrelation, which
+ * is calculated with an FFT.
+ */
+public class ConvergenceDiagnostics {
+
+    private static final long[] SCALAR_SHAPE = new long[]{1, 1};
+    private static final FastFourierTransformer FFT = new FastFourierTransformer(DftNormalization.STANDARD);
+
+    private ConvergenceDiagnostics() {
+    }
+
+    /**
+     * @param chains the samples of each chain
+     * @param vertex the vertex to diagnose
+     * @return the element-wise split R-hat of the vertex's samples over the chains
+     */
+    public static DoubleTensor splitRHat(List<? extends NetworkSamples> chains, VertexId vertex) {
+        return elementWise(chains, vertex, ConvergenceDiagnostics::splitRHat);
+    }
+
+    /**
+     * @param chains the samples of each chain
+     * @param vertex the vertex to diagnose
+     * @return the element-wise effective sample size of the vertex's samples over the chains
+     */
+    public static DoubleTensor effectiveSampleSize(List<? extends NetworkSamples> chains, VertexId vertex) {
+        return elementWise(chains, vertex, ConvergenceDiagnostics::effectiveSampleSize);
+    }
+
+    /**
+     * @param chains the samples of a scalar in each chain, which must all have the same length of at least 4
+     * @return the split R-hat, or NaN if the samples do not vary
+     */
+    public static double splitRHat(List<double[]> chains) {
+        SplitChains split = new SplitChains(chains);
+        return Math.sqrt(split.pooledVariance() / split.withinChainVariance);
+    }
+
+    /**
+     * @param chains the samples of a scalar in each chain, which must all have the same length of at least 4
+     * @return the effective sample size, or NaN if the samples do not vary
+     */
+    public static double effectiveSampleSize(List<double[]> chains) {
+        SplitChains split = new SplitChains(chains);
+        int length = split.length;
+        int chainCount = split.chains.size();
+
+        double[] meanAutocovariance = new double[length];
+        for (double[] chain : split.chains) {
+            double[] autocovariance = autocovariance(chain);
+            for (int lag = 0; lag < length; lag++) {
+                meanAutocovariance[lag] += autocovariance[lag] / chainCount;
+            }
+        }
+
+        double pooledVariance = split.pooledVariance();
+        double meanVariance = meanAutocovariance[0] * length / (length - 1.0);
+
+        double[] autocorrelation = new double[length];
+        autocorrelation[0] = 1.0;
+        double evenAutocorrelation = 1.0;
+        double oddAutocorrelation = 1.0 - (meanVariance - meanAutocovariance[1]) / pooledVariance;
+        autocorrelation[1] = oddAutocorrelation;
+
+        //Geyer's initial positive sequence: sum pairs of autocorrelations while their sum is positive
+        int lag = 0;
+        while (lag < length - 4 && evenAutocorrelation + oddAutocorrelation > 0) {
+            evenAutocorrelation = 1.0 - (meanVariance - meanAutocovariance[lag + 2]) / pooledVariance;
+            oddAutocorrelation = 1.0 - (meanVariance - meanAutocovariance[lag + 3]) / pooledVariance;
+            if (evenAutocorrelation + oddAutocorrelation >= 0) {
+                autocorrelation[lag + 2] = evenAutocorrelation;
+                autocorrelation[lag + 3] = oddAutocorrelation;
+            }
+            lag += 2;
+        }
+        int maxLag = lag;
+
+        //Geyer's initial monotone sequence: the sums of pairs must not increase
+        for (lag = 1; lag <= maxLag - 3; lag += 2) {
+            double previousPair = autocorrelation[lag - 1] + autocorrelation[lag];
+            if (autocorrelation[lag + 1] + autocorrelation[lag + 2] > previousPair) {
+                autocorrelation[lag + 1] = previousPair / 2;
+                autocorrelation[lag + 2] = previousPair / 2;
+            }
+        }
+
+        double sumOfAutocorrelations = 0.0;
+        for (lag = 0; lag <= maxLag && lag < length; lag++) {
+            sumOfAutocorrelations += autocorrelation[lag];
+        }
+        double integratedAutocorrelationTime = -1.0 + 2.0 * sumOfAutocorrelations;
+
+        return chainCount * length / integratedAutocorrelationTime;
+    }
+
+    /**
+     * @param chain samples of a scalar
+     * @return the biased autocovariance at every lag up to the length of the chain
+     */
+    static double[] autocovariance(double[] chain) {
+        int length = chain.length;
+        double mean = 0.0;
+        for (double value : chain) {
+            mean += value / length;
+        }
+
+        //zero padding to at least twice the length stops the FFT's circular correlation wrapping around
+        int paddedLength = Integer.highestOneBit(Math.max(2 * length - 1, 1)) << 1;
+        double[] centered = new double[paddedLength];
+        for (int i = 0; i < length; i++) {
+            centered[i] = chain[i] - mean;
+        }
+
+        Complex[] transformed = FFT.transform(centered, TransformType.FORWARD);
+        for (int i = 0; i < transformed.length; i++) {
+            transformed[i] = new Complex(transformed[i].abs() * transformed[i].abs(), 0.0);
+        }
+        Complex[] correlation = FFT.transform(transformed, TransformType.INVERSE);
+
+        double[] autocovariance = new double[length];
+        for (int lag = 0; lag < length; lag++) {
+            autocovariance[lag] = correlation[lag].getReal() / length;
+        }
+        return autocovariance;
+    }
+
+    private static DoubleTensor elementWise(List<? extends NetworkSamples> chains,
+                                            VertexId vertex,
+                                            Function<List<double[]>, Double> diagnostic) {
+        Preconditions.checkArgument(!chains.isEmpty(), "At least one chain is required");
+        Preconditions.checkArgument(chains.get(0).size() > 0, "Vertex %s has no samples", vertex);
+
+        Object firstSample = chains.get(0).getNetworkState(0).get(vertex);
+        long[] shape = firstSample instanceof Tensor ? ((Tensor<?>) firstSample).getShape() : SCALAR_SHAPE;
+        int length = (int) TensorShape.getLength(shape);
+
+        double[] result = new double[length];
+        for (int i = 0; i < length; i++) {
+            List<double[]> series = new ArrayList<>();
+            for (NetworkSamples chain : chains) {
+                series.add(chain.get(vertex).getElementSeries(i));
+            }
+            result[i] = diagnostic.apply(series);
+        }
+        return DoubleTensor.create(result, shape);
+    }
+
+    /**
+     * Chains split into halves, with the statistics of the halves that both diagnostics use.
+     */
+    private static class SplitChains {
+
+        private final List<double[]> chains = new ArrayList<>();
+        private final int length;
+        private final double withinChainVariance;
+        private final double betweenChainVariance;
+
+        SplitChains(List<double[]> unsplitChains) {
+            Preconditions.checkArgument(!unsplitChains.isEmpty(), "At least one chain is required");
+            int unsplitLength = unsplitChains.get(0).length;
+            Preconditions.checkArgument(unsplitLength >= 4, "At least 4 samples are required but there are %s", unsplitLength);
+
+            this.length = unsplitLength / 2;
+            for (double[] chain : unsplitChains) {
+                Preconditions.checkArgument(chain.length == unsplitLength, "Chains must all be the same length");
+                double[] firstHalf = new double[length];
+                double[] secondHalf = new double[length];
+                System.arraycopy(chain, 0, firstHalf, 0, length);
+                System.arraycopy(chain, unsplitLength - length, secondHalf, 0, length);
+                chains.add(firstHalf);
+                chains.add(secondHalf);
+            }
+
+            double[] means = new double[chains.size()];
+            double sumOfVariances = 0.0;
+            double meanOfMeans = 0.0;
+            for (int j = 0; j < chains.size(); j++) {
+                double[] chain = chains.get(j);
+                double mean = 0.0;
+                for (double value : chain) {
+                    mean += value;
+                }
+                mean /= length;
+
+                double sumOfSquares = 0.0;
+                for (double value : chain) {
+                    sumOfSquares += (value - mean) * (value - mean);
+                }
+
+                means[j] = mean;
+                meanOfMeans += mean / chains.size();
+                sumOfVariances += sumOfSquares / (length - 1);
+            }
+
+            double sumOfSquaredMeanDifferences = 0.0;
+            for (double mean : means) {
+                sumOfSquaredMeanDifferences += (mean - meanOfMeans) * (mean - meanOfMeans);
+            }
+
+            this.withinChainVariance = sumOfVariances / chains.size();
+            this.betweenChainVariance = length * sumOfSquaredMeanDifferences / (chains.size() - 1);
+        }
+
+        /**
+         * @return the estimate of the marginal posterior variance that pools the between and within chain variances
+         */
+        double pooledVariance() {
+            return (length - 1.0) / length * withinChainVariance + betweenChainVariance / length;
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package io.improbable.keanu.algorithms.mcmc;
 
+import io.improbable.keanu.algorithms.DoubleColumn;
+import io.improbable.keanu.algorithms.LatentPointLayout;
 import io.improbable.keanu.algorithms.NetworkSamples;
 import io.improbable.keanu.algorithms.PosteriorSamplingAlgorithm;
-import io.improbable.keanu.algorithms.graphtraversal.VertexValuePropagation;
+import io.improbable.keanu.algorithms.SampleColumns;
+import io.improbable.keanu.algorithms.graphtraversal.PropagationPlan;
 import io.improbable.keanu.network.BayesianNetwork;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
 import io.improbable.keanu.vertices.Vertex;
@@ -13,7 +16,6 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,6 +27,8 @@ import java.util.Map;
  * Algorithm 1: "Hamiltonian Monte Carlo".
  * The No-U-Turn Sampler: Adaptively Setting Path Lengths in Hamiltonian Monte Carlo
  * https://arxiv.org/pdf/1111.4246.pdf
+ * <p>
+ * Positions, momentums and gradients are held as flat double[] in the layout of a {@link LatentPointLayout}.
  */
 @Builder
 public class Hamiltonian implements PosteriorSamplingAlgorithm {
@@ -76,22 +80,24 @@ public class Hamiltonian implements PosteriorSamplingAlgorithm {
 
         final List<Vertex<DoubleTensor>> latentVertices = bayesNet.getContinuousLatentVertices();
         final LogProbGradientCalculator logProbGradientCalculator = new LogProbGradientCalculator(bayesNet.getLatentOrObservedVertices(), latentVertices);
+        final LatentPointLayout layout = new LatentPointLayout(latentVertices);
+        final PropagationPlan propagationPlan = PropagationPlan.compile(latentVertices);
+        final int dimensionCount = layout.getDimensionCount();
 
         final Map<VertexId, List<?>> samples = new HashMap<>();
         addSampleFromVertices(samples, fromVertices);
 
-        Map<VertexId, DoubleTensor> position = new HashMap<>();
-        cachePosition(latentVertices, position);
-        Map<VertexId, DoubleTensor> positionBeforeLeapfrog = new HashMap<>();
+        double[] position = layout.currentPoint();
+        double[] positionBeforeLeapfrog = new double[dimensionCount];
 
-        Map<VertexId, DoubleTensor> gradient = logProbGradientCalculator.getJointLogProbGradientWrtLatents();
-        Map<VertexId, DoubleTensor> gradientBeforeLeapfrog = new HashMap<>();
+        double[] gradient = layout.flatten(logProbGradientCalculator.getJointLogProbGradientWrtLatents());
+        double[] gradientBeforeLeapfrog = new double[dimensionCount];
 
-        final Map<VertexId, DoubleTensor> momentum = new HashMap<>();
-        final Map<VertexId, DoubleTensor> momentumBeforeLeapfrog = new HashMap<>();
+        final double[] momentum = new double[dimensionCount];
+        final double[] momentumBeforeLeapfrog = new double[dimensionCount];
 
         double logOfMasterPBeforeLeapfrog = bayesNet.getLogOfMasterP();
-        final List<Double> logOfMasterPForEachSample = new ArrayList<>();
+        final List<Double> logOfMasterPForEachSample = new DoubleColumn();
         logOfMasterPForEachSample.add(logOfMasterPBeforeLeapfrog);
 
         final Map<VertexId, ?> sampleBeforeLeapfrog = new HashMap<>();
@@ -101,14 +107,15 @@ public class Hamiltonian implements PosteriorSamplingAlgorithm {
             cache(position, positionBeforeLeapfrog);
             cache(gradient, gradientBeforeLeapfrog);
 
-            initializeMomentumForEachVertex(latentVertices, momentum, random);
+            initializeMomentum(layout, momentum, random);
             cache(momentum, momentumBeforeLeapfrog);
 
             takeSample(sampleBeforeLeapfrog, fromVertices);
 
             for (int leapFrogNum = 0; leapFrogNum < leapFrogCount; leapFrogNum++) {
-                gradient = leapfrog(
-                    latentVertices,
+                leapfrog(
+                    layout,
+                    propagationPlan,
                     position,
                     gradient,
                     momentum,
@@ -129,7 +136,7 @@ public class Hamiltonian implements PosteriorSamplingAlgorithm {
             if (shouldReject(likelihoodOfLeapfrog, random)) {
 
                 //Revert to position and gradient before leapfrog
-                Map<VertexId, DoubleTensor> tempSwap = position;
+                double[] tempSwap = position;
                 position = positionBeforeLeapfrog;
                 positionBeforeLeapfrog = tempSwap;
 
@@ -148,82 +155,67 @@ public class Hamiltonian implements PosteriorSamplingAlgorithm {
         return new NetworkSamples(samples, logOfMasterPForEachSample, sampleCount);
     }
 
-    private static void cachePosition(List<Vertex<DoubleTensor>> latentVertices, Map<VertexId, DoubleTensor> position) {
-        for (Vertex<DoubleTensor> vertex : latentVertices) {
-            position.put(vertex.getId(), vertex.getValue());
+    private static void initializeMomentum(LatentPointLayout layout,
+                                           double[] momentum,
+                                           KeanuRandom random) {
+        for (int i = 0; i < layout.getLatentCount(); i++) {
+            layout.copyInto(random.nextGaussian(layout.getShape(i)), momentum, i);
         }
     }
 
-    private static void initializeMomentumForEachVertex(List<Vertex<DoubleTensor>> vertexes,
-                                                        Map<VertexId, DoubleTensor> momentums,
-                                                        KeanuRandom random) {
-        for (Vertex<DoubleTensor> currentVertex : vertexes) {
-            momentums.put(currentVertex.getId(), random.nextGaussian(currentVertex.getShape()));
-        }
-    }
-
-    private static void cache(Map<VertexId, DoubleTensor> from, Map<VertexId, DoubleTensor> to) {
-        for (Map.Entry<VertexId, DoubleTensor> entry : from.entrySet()) {
-            to.put(entry.getKey(), entry.getValue());
-        }
+    private static void cache(double[] from, double[] to) {
+        System.arraycopy(from, 0, to, 0, from.length);
     }
 
     /**
      * function Leapfrog(T, r)
-     * Set `r = r + (eps/2)dTL(T)
-     * Set `T = T + r`
+     * Set `r = r + (eps/2)dTL(T)
+     * Set `T = T + r`
      * Set `r = r` + (eps/2)dTL(`T)
      * return `T, r`
+     * <p>
+     * The position, gradient and momentum are updated in place.
      *
-     * @param latentVertices
-     * @param position
+     * @param layout          the layout of the position, gradient and momentum
+     * @param propagationPlan plan used to cascade the updated position to the rest of the network
+     * @param position        current position
      * @param gradient        gradient at current position
-     * @param momentums       current vertex momentums
-     * @param stepSize
+     * @param momentum        current momentum
+     * @param stepSize        the amount of distance to move
      * @param logProbGradient calculator of the logProb gradients
-     * @return the gradient at the updated position
      */
-    private static Map<VertexId, DoubleTensor> leapfrog(final List<Vertex<DoubleTensor>> latentVertices,
-                                                        final Map<VertexId, DoubleTensor> position,
-                                                        final Map<VertexId, DoubleTensor> gradient,
-                                                        final Map<VertexId, DoubleTensor> momentums,
-                                                        final double stepSize,
-                                                        final LogProbGradientCalculator logProbGradient) {
+    private static void leapfrog(final LatentPointLayout layout,
+                                 final PropagationPlan propagationPlan,
+                                 final double[] position,
+                                 final double[] gradient,
+                                 final double[] momentum,
+                                 final double stepSize,
+                                 final LogProbGradientCalculator logProbGradient) {
 
         final double halfTimeStep = stepSize / 2.0;
 
-        Map<VertexId, DoubleTensor> momentumsAtHalfTimeStep = new HashMap<>();
-
-        //Set `r = r + (eps/2)dTL(T)
-        for (Map.Entry<VertexId, DoubleTensor> vertexMomentum : momentums.entrySet()) {
-            final DoubleTensor updatedMomentum = gradient.get(vertexMomentum.getKey()).times(halfTimeStep).plusInPlace(vertexMomentum.getValue());
-            momentumsAtHalfTimeStep.put(vertexMomentum.getKey(), updatedMomentum);
-        }
-
-        //Set `T = T + `r.
-        for (Vertex<DoubleTensor> latent : latentVertices) {
-            final DoubleTensor nextPosition = momentumsAtHalfTimeStep.get(latent.getId()).times(halfTimeStep).plusInPlace(position.get(latent.getId()));
-            position.put(latent.getId(), nextPosition);
-            latent.setValue(nextPosition);
+        for (int i = 0; i < position.length; i++) {
+            //Set `r = r + (eps/2)dTL(T)
+            momentum[i] = gradient[i] * halfTimeStep + momentum[i];
+            //Set `T = T + `r.
+            position[i] = momentum[i] * halfTimeStep + position[i];
         }
 
-        VertexValuePropagation.cascadeUpdate(latentVertices);
+        layout.setPoint(position);
+        propagationPlan.cascade();
 
         //Set `r = `r + (eps/2)dTL(`T)
-        Map<VertexId, DoubleTensor> newGradient = logProbGradient.getJointLogProbGradientWrtLatents();
+        layout.flatten(logProbGradient.getJointLogProbGradientWrtLatents(), gradient);
 
-        for (Map.Entry<VertexId, DoubleTensor> halfTimeStepMomentum : momentumsAtHalfTimeStep.entrySet()) {
-            final DoubleTensor updatedMomentum = newGradient.get(halfTimeStepMomentum.getKey()).times(halfTimeStep).plusInPlace(halfTimeStepMomentum.getValue());
-            momentums.put(halfTimeStepMomentum.getKey(), updatedMomentum);
+        for (int i = 0; i < momentum.length; i++) {
+            momentum[i] = gradient[i] * halfTimeStep + momentum[i];
         }
-
-        return newGradient;
     }
 
     private static double getLikelihoodOfLeapfrog(final double logOfMasterPAfterLeapfrog,
                                                   final double previousLogOfMasterP,
-                                                  final Map<VertexId, DoubleTensor> leapfroggedMomentum,
-                                                  final Map<VertexId, DoubleTensor> momentumPreviousTimeStep) {
+                                                  final double[] leapfroggedMomentum,
+                                                  final double[] momentumPreviousTimeStep) {
 
         final double leapFroggedMomentumDotProduct = (0.5 * dotProduct(leapfroggedMomentum));
         final double previousMomentumDotProduct = (0.5 * dotProduct(momentumPreviousTimeStep));
@@ -241,10 +233,10 @@ public class Hamiltonian implements PosteriorSamplingAlgorithm {
         return likelihood < random.nextDouble();
     }
 
-    private static double dotProduct(Map<VertexId, DoubleTensor> momentums) {
+    private static double dotProduct(double[] momentum) {
         double dotProduct = 0.0;
-        for (DoubleTensor momentum : momentums.values()) {
-            dotProduct += momentum.pow(2).sum();
+        for (double momentumForDimension : momentum) {
+            dotProduct += momentumForDimension * momentumForDimension;
         }
         return dotProduct;
     }
@@ -293,7 +285,7 @@ public class Hamiltonian implements PosteriorSamplingAlgorithm {
     }
 
     private static <T> void addSampleForVertex(VertexId id, T value, Map<VertexId, List<?>> samples) {
-        List<T> samplesForVertex = (List<T>) samples.computeIfAbsent(id, v -> new ArrayList<T>());
+        List<T> samplesForVertex = SampleColumns.columnFor(samples, id, value);
         samplesForVertex.add(value);
     }
 }
@@ -0,0 +1,160 @@
+package io.improbable.keanu.algorithms.mcmc;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * The mass matrix M of Hamiltonian dynamics, held as its inverse, which is the estimated covariance of the
+ * posterior. Momentums are drawn from N(0, M), the kinetic energy is 0.5 * p^T M^-1 p and positions move
+ * with the velocity M^-1 p.
+ */
+abstract class MassMatrix {
+
+    static MassMatrix identity(int dimensionCount) {
+        double[] ones = new double[dimensionCount];
+        Arrays.fill(ones, 1.0);
+        return new Diagonal(ones);
+    }
+
+    static MassMatrix diagonal(double[] inverseDiagonal) {
+        return new Diagonal(inverseDiagonal);
+    }
+
+    static MassMatrix dense(double[][] inverse) {
+        return new Dense(inverse);
+    }
+
+    /**
+     * Transforms a draw from the standard normal into a draw from N(0, M).
+     *
+     * @param standardNormal a draw from N(0, I) that is transformed in place
+     * @return the transformed draw
+     */
+    abstract double[] scaleMomentum(double[] standardNormal);
+
+    /**
+     * @param momentum the momentum to find the velocity of
+     * @return M^-1 p
+     */
+    abstract double[] velocity(double[] momentum);
+
+    /**
+     * @param momentum the momentum to find the kinetic energy of
+     * @return 0.5 * p^T M^-1 p
+     */
+    abstract double kineticEnergy(double[] momentum);
+
+    private static class Diagonal extends MassMatrix {
+
+        private final double[] inverseDiagonal;
+        private final double[] inverseSqrtDiagonal;
+
+        Diagonal(double[] inverseDiagonal) {
+            this.inverseDiagonal = inverseDiagonal;
+            this.inverseSqrtDiagonal = new double[inverseDiagonal.length];
+            for (int i = 0; i < inverseDiagonal.length; i++) {
+                Preconditions.checkArgument(inverseDiagonal[i] > 0, "Mass matrix must be positive definite");
+                inverseSqrtDiagonal[i] = Math.sqrt(inverseDiagonal[i]);
+            }
+        }
+
+        @Override
+        double[] scaleMomentum(double[] standardNormal) {
+            for (int i = 0; i < standardNormal.length; i++) {
+                standardNormal[i] = standardNormal[i] / inverseSqrtDiagonal[i];
+            }
+            return standardNormal;
+        }
+
+        @Override
+        double[] velocity(double[] momentum) {
+            double[] velocity = new double[momentum.length];
+            for (int i = 0; i < momentum.length; i++) {
+                velocity[i] = momentum[i] * inverseDiagonal[i];
+            }
+            return velocity;
+        }
+
+        @Override
+        double kineticEnergy(double[] momentum) {
+            double energy = 0.0;
+            for (int i = 0; i < momentum.length; i++) {
+                energy += momentum[i] * momentum[i] * inverseDiagonal[i];
+            }
+            return 0.5 * energy;
+        }
+    }
+
+    private static class Dense extends MassMatrix {
+
+        private final double[][] inverse;
+        private final double[][] inverseCholesky;
+
+        Dense(double[][] inverse) {
+            this.inverse = inverse;
+            this.inverseCholesky = cholesky(inverse);
+        }
+
+        /**
+         * If M^-1 = L L^T and z ~ N(0, I) then L^-T z ~ N(0, M)
+         */
+        @Override
+        double[] scaleMomentum(double[] standardNormal) {
+            int n = standardNormal.length;
+            for (int i = n - 1; i >= 0; i--) {
+                double sum = standardNormal[i];
+                for (int j = i + 1; j < n; j++) {
+                    sum -= inverseCholesky[j][i] * standardNormal[j];
+                }
+                standardNormal[i] = sum / inverseCholesky[i][i];
+            }
+            return standardNormal;
+        }
+
+        @Override
+        double[] velocity(double[] momentum) {
+            int n = momentum.length;
+            double[] velocity = new double[n];
+            for (int i = 0; i < n; i++) {
+                double[] row = inverse[i];
+                double sum = 0.0;
+                for (int j = 0; j < n; j++) {
+                    sum += row[j] * momentum[j];
+                }
+                velocity[i] = sum;
+            }
+            return velocity;
+        }
+
+        @Override
+        double kineticEnergy(double[] momentum) {
+            double[] velocity = velocity(momentum);
+            double energy = 0.0;
+            for (int i = 0; i < momentum.length; i++) {
+                energy += momentum[i] * velocity[i];
+            }
+            return 0.5 * energy;
+        }
+
+        private static double[][] cholesky(double[][] matrix) {
+            int n = matrix.length;
+            double[][] lower = new double[n][n];
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j <= i; j++) {
+                    double sum = matrix[i][j];
+                    for (int k = 0; k < j; k++) {
+                        sum -= lower[i][k] * lower[j][k];
+                    }
+                    if (i == j) {
+                        Preconditions.checkArgument(sum > 0, "Mass matrix must be positive definite");
+                        lower[i][i] = Math.sqrt(sum);
+                    } else {
+                        lower[i][j] = sum / lower[j][j];
+                    }
+                }
+            }
+            return lower;
+        }
+    }
+}
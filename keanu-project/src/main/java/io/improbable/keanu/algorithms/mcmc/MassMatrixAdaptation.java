@@ -0,0 +1,26 @@
+package io.improbable.keanu.algorithms.mcmc;
+
+/**
+ * How {@link NUTS} should adapt its mass matrix during the samples in which it adapts its step size.
+ * The mass matrix is estimated from the variance of the samples taken in a series of windows, so that
+ * momentums are drawn on the same scale as the posterior. This lets badly scaled posteriors be
+ * explored with larger steps and shallower trees.
+ */
+public enum MassMatrixAdaptation {
+
+    /**
+     * Use the identity mass matrix throughout.
+     */
+    NONE,
+
+    /**
+     * Estimate the variance of each latent dimension independently.
+     */
+    DIAGONAL,
+
+    /**
+     * Estimate the full covariance of the latent dimensions. This can also account for correlations in the
+     * posterior but costs O(n^2) per leapfrog and O(n^3) per adaptation window for n latent dimensions.
+     */
+    DENSE
+}
@@ -0,0 +1,159 @@
+package io.improbable.keanu.algorithms.mcmc;
+
+/**
+ * Estimates the mass matrix for {@link NUTS} from the samples taken while adapting, in the style of Stan's
+ * windowed adaptation. Samples in an initial buffer are ignored while the sampler moves towards the typical
+ * set. The following samples are split into windows that double in size. At the end of each window the
+ * covariance of the samples in that window becomes the inverse of the mass matrix. A terminal buffer is left
+ * at the end so that the step size can settle on the final mass matrix.
+ */
+class MassMatrixAdapter {
+
+    private static final int MIN_ADAPT_COUNT = 20;
+    private static final int DEFAULT_INITIAL_BUFFER = 75;
+    private static final int DEFAULT_TERMINAL_BUFFER = 50;
+    private static final int DEFAULT_BASE_WINDOW = 25;
+
+    private static final double SHRINKAGE_WEIGHT = 5.0;
+    private static final double SHRINKAGE_TARGET = 1e-3;
+
+    private final MassMatrixAdaptation adaptation;
+    private final int dimensionCount;
+    private final int firstWindowStart;
+    private final int lastWindowEnd;
+
+    private int windowSize;
+    private int windowEnd;
+
+    private int samplesInWindow;
+    private double[] mean;
+    private double[] sumOfSquaredDifferences;
+    private double[][] sumOfDifferenceProducts;
+
+    /**
+     * @param adaptation     the kind of mass matrix to estimate
+     * @param dimensionCount the number of latent dimensions
+     * @param adaptCount     the number of samples over which to adapt
+     */
+    MassMatrixAdapter(MassMatrixAdaptation adaptation, int dimensionCount, int adaptCount) {
+        this.adaptation = adaptation;
+        this.dimensionCount = dimensionCount;
+
+        int initialBuffer = DEFAULT_INITIAL_BUFFER;
+        int terminalBuffer = DEFAULT_TERMINAL_BUFFER;
+        int baseWindow = DEFAULT_BASE_WINDOW;
+
+        if (initialBuffer + baseWindow + terminalBuffer > adaptCount) {
+            initialBuffer = (int) (0.15 * adaptCount);
+            terminalBuffer = (int) (0.1 * adaptCount);
+            baseWindow = adaptCount - (initialBuffer + terminalBuffer);
+        }
+
+        this.firstWindowStart = initialBuffer;
+        this.lastWindowEnd = adaptCount - terminalBuffer - 1;
+        this.windowSize = baseWindow;
+        this.windowEnd = adaptCount < MIN_ADAPT_COUNT || adaptation == MassMatrixAdaptation.NONE ?
+            -1 : boundedWindowEnd(initialBuffer + baseWindow - 1, baseWindow);
+
+        resetWindow();
+    }
+
+    /**
+     * @param sampleNum the number of the sample being adapted to, starting at 1
+     * @param position  the position of the sample
+     * @return a new mass matrix if an adaptation window ended at this sample, otherwise null
+     */
+    MassMatrix update(int sampleNum, double[] position) {
+        int iteration = sampleNum - 1;
+        if (windowEnd < 0 || iteration < firstWindowStart || iteration > windowEnd) {
+            return null;
+        }
+
+        addToWindow(position);
+
+        if (iteration < windowEnd) {
+            return null;
+        }
+
+        MassMatrix massMatrix = estimateFromWindow();
+        resetWindow();
+
+        if (windowEnd == lastWindowEnd) {
+            windowEnd = -1;
+        } else {
+            windowSize *= 2;
+            windowEnd = boundedWindowEnd(iteration + windowSize, windowSize);
+        }
+
+        return massMatrix;
+    }
+
+    /**
+     * A window that would leave too little room for the one after it is stretched to the end of adaptation.
+     */
+    private int boundedWindowEnd(int end, int size) {
+        if (end + 2 * size > lastWindowEnd) {
+            return lastWindowEnd;
+        }
+        return end;
+    }
+
+    private void resetWindow() {
+        samplesInWindow = 0;
+        mean = new double[dimensionCount];
+        if (adaptation == MassMatrixAdaptation.DENSE) {
+            sumOfDifferenceProducts = new double[dimensionCount][dimensionCount];
+        } else {
+            sumOfSquaredDifferences = new double[dimensionCount];
+        }
+    }
+
+    private void addToWindow(double[] position) {
+        samplesInWindow++;
+
+        double[] differenceBefore = new double[dimensionCount];
+        for (int i = 0; i < dimensionCount; i++) {
+            differenceBefore[i] = position[i] - mean[i];
+            mean[i] += differenceBefore[i] / samplesInWindow;
+        }
+
+        if (adaptation == MassMatrixAdaptation.DENSE) {
+            for (int i = 0; i < dimensionCount; i++) {
+                for (int j = 0; j < dimensionCount; j++) {
+                    sumOfDifferenceProducts[i][j] += differenceBefore[i] * (position[j] - mean[j]);
+                }
+            }
+        } else {
+            for (int i = 0; i < dimensionCount; i++) {
+                sumOfSquaredDifferences[i] += differenceBefore[i] * (position[i] - mean[i]);
+            }
+        }
+    }
+
+    /**
+     * The sample covariance is shrunk towards a small multiple of the identity so that it is well conditioned
+     * even for short windows.
+     */
+    private MassMatrix estimateFromWindow() {
+        double n = samplesInWindow;
+        double scale = n / ((n + SHRINKAGE_WEIGHT) * Math.max(n - 1, 1));
+        double shrinkage = SHRINKAGE_TARGET * SHRINKAGE_WEIGHT / (n + SHRINKAGE_WEIGHT);
+
+        if (adaptation == MassMatrixAdaptation.DENSE) {
+            double[][] covariance = new double[dimensionCount][dimensionCount];
+            for (int i = 0; i < dimensionCount; i++) {
+                for (int j = 0; j < dimensionCount; j++) {
+                    double symmetric = 0.5 * (sumOfDifferenceProducts[i][j] + sumOfDifferenceProducts[j][i]);
+                    covariance[i][j] = scale * symmetric + (i == j ? shrinkage : 0.0);
+                }
+            }
+            return MassMatrix.dense(covariance);
+        } else {
+            double[] variance = new double[dimensionCount];
+            for (int i = 0; i < dimensionCount; i++) {
+                variance[i] = scale * sumOfSquaredDifferences[i] + shrinkage;
+            }
+            return MassMatrix.diagonal(variance);
+        }
+    }
+}
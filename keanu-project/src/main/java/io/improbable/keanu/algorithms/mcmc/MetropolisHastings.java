@@ -2,6 +2,7 @@ package io.improbable.keanu.algorithms.mcmc;
 
 import io.improbable.keanu.algorithms.NetworkSamples;
 import io.improbable.keanu.algorithms.PosteriorSamplingAlgorithm;
+import io.improbable.keanu.algorithms.SampleColumns;
 import io.improbable.keanu.algorithms.mcmc.proposal.MHStepVariableSelector;
 import io.improbable.keanu.algorithms.mcmc.proposal.ProposalDistribution;
 import io.improbable.keanu.network.BayesianNetwork;
@@ -15,7 +16,6 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -158,7 +158,7 @@ public class MetropolisHastings implements PosteriorSamplingAlgorithm {
         }
     }
 
-    private static Map<VertexId, ?> takeSample(List<? extends Vertex> fromVertices) {
+    static Map<VertexId, ?> takeSample(List<? extends Vertex> fromVertices) {
         Map<VertexId, Object> sample = new HashMap<>();
         for (Vertex v : fromVertices) {
             sample.put(v.getId(), v.getValue());
@@ -166,16 +166,16 @@ public class MetropolisHastings implements PosteriorSamplingAlgorithm {
         return sample;
     }
 
-    private static void takeSamples(Map<VertexId, List<?>> samples, List<? extends Vertex> fromVertices) {
+    static void takeSamples(Map<VertexId, List<?>> samples, List<? extends Vertex> fromVertices) {
         fromVertices.forEach(vertex -> addSampleForVertex((Vertex<?>) vertex, samples));
     }
 
     private static <T> void addSampleForVertex(Vertex<T> vertex, Map<VertexId, List<?>> samples) {
-        List<T> samplesForVertex = (List<T>) samples.computeIfAbsent(vertex.getId(), v -> new ArrayList<T>());
+        List<T> samplesForVertex = SampleColumns.columnFor(samples, vertex.getId(), vertex.getValue());
         samplesForVertex.add(vertex.getValue());
     }
 
-    private static void checkBayesNetInHealthyState(BayesianNetwork bayesNet) {
+    static void checkBayesNetInHealthyState(BayesianNetwork bayesNet) {
         bayesNet.cascadeObservations();
         if (bayesNet.getLatentOrObservedVertices().isEmpty()) {
             throw new IllegalArgumentException("Cannot sample from a completely deterministic BayesNet");
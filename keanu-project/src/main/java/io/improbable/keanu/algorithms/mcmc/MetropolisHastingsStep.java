@@ -1,6 +1,7 @@
 package io.improbable.keanu.algorithms.mcmc;
 
-import io.improbable.keanu.algorithms.graphtraversal.VertexValuePropagation;
+import com.google.common.collect.ImmutableSet;
+import io.improbable.keanu.algorithms.graphtraversal.PropagationPlan;
 import io.improbable.keanu.algorithms.mcmc.proposal.Proposal;
 import io.improbable.keanu.algorithms.mcmc.proposal.ProposalDistribution;
 import io.improbable.keanu.network.LambdaSection;
@@ -10,7 +11,11 @@ import io.improbable.keanu.vertices.Vertex;
 import io.improbable.keanu.vertices.dbl.KeanuRandom;
 import lombok.Value;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -23,9 +28,20 @@ class MetropolisHastingsStep {
     //Temperature for standard MH step accept/reject calculation
     private static final double DEFAULT_TEMPERATURE = 1.0;
 
+    //a fixed block selector only ever chooses a few sets but a random one can choose a new set every step
+    static final int MAX_CACHED_MULTI_VERTEX_SETS = 64;
+
     private final ProposalDistribution proposalDistribution;
     private final boolean useCacheOnRejection;
+    private final boolean temperLikelihoodOnly;
     private final Map<Vertex, LambdaSection> affectedVerticesCache;
+    private final Map<Vertex, PropagationPlan> propagationPlans;
+    private final Map<Set<Vertex>, PropagationPlan> multiVertexPropagationPlans;
+    private final Map<Set<Vertex>, Collection<Vertex>> multiVertexAffectedVertices;
+    private final Map<Vertex, NetworkSnapshot> snapshots;
+    private final Map<Set<Vertex>, NetworkSnapshot> multiVertexSnapshots;
+    private final Map<Vertex, double[]> logProbBuffers;
+    private final Map<Set<Vertex>, double[]> multiVertexLogProbBuffers;
     private final KeanuRandom random;
 
     /**
@@ -39,14 +55,41 @@ class MetropolisHastingsStep {
                            ProposalDistribution proposalDistribution,
                            boolean useCacheOnRejection,
                            KeanuRandom random) {
+        this(latentVertices, proposalDistribution, useCacheOnRejection, false, random);
+    }
+
+    /**
+     * @param latentVertices       Vertices that are unknown/hidden variables
+     * @param proposalDistribution The proposal distribution
+     * @param useCacheOnRejection  True if caching values of the network such that recalculation isn't required
+     *                             on step rejection
+     * @param temperLikelihoodOnly True if the temperature should only apply to the log prob of the observed
+     *                             vertices, so a step targets prior * likelihood^(1/T) rather than
+     *                             (prior * likelihood)^(1/T)
+     * @param random               Source of randomness
+     */
+    MetropolisHastingsStep(List<? extends Vertex> latentVertices,
+                           ProposalDistribution proposalDistribution,
+                           boolean useCacheOnRejection,
+                           boolean temperLikelihoodOnly,
+                           KeanuRandom random) {
 
         this.proposalDistribution = proposalDistribution;
         this.useCacheOnRejection = useCacheOnRejection;
+        this.temperLikelihoodOnly = temperLikelihoodOnly;
         this.random = random;
         this.affectedVerticesCache = createVerticesAffectedByCache(
             latentVertices,
             useCacheOnRejection
         );
+        this.propagationPlans = latentVertices.stream()
+            .collect(Collectors.toMap(v -> v, PropagationPlan::compile));
+        this.multiVertexPropagationPlans = leastRecentlyUsedCache();
+        this.multiVertexAffectedVertices = leastRecentlyUsedCache();
+        this.snapshots = new HashMap<>();
+        this.multiVertexSnapshots = leastRecentlyUsedCache();
+        this.logProbBuffers = new HashMap<>();
+        this.multiVertexLogProbBuffers = leastRecentlyUsedCache();
     }
 
     public StepResult step(final Set<Vertex> chosenVertices,
@@ -65,18 +108,29 @@ class MetropolisHastingsStep {
                            final double logProbabilityBeforeStep,
                            final double temperature) {
 
-        final double affectedVerticesLogProbOld = sumLogProbabilityOfAffected(chosenVertices, affectedVerticesCache);
+        final Set<Vertex> chosenKey = cacheKeyOf(chosenVertices);
+        final Collection<Vertex> affectedVertices = getLatentAndObservedAffectedBy(chosenKey);
+        final double affectedVerticesLogProbOld = ProbabilityCalculator.calculateLogProbFor(affectedVertices);
+        //keeping the log probs cached by the sum above means a rejected proposal doesn't cause them to be recalculated
+        final double[] cachedLogProbsBeforeStep = ProbabilityCalculator.getCachedLogProbs(
+            affectedVertices,
+            getLogProbBuffer(chosenKey, affectedVertices.size())
+        );
+        final double affectedLikelihoodOld = temperLikelihoodOnly ? ProbabilityCalculator.calculateObservedLogProbFor(affectedVertices) : 0.0;
 
         NetworkSnapshot preProposalSnapshot = null;
         if (useCacheOnRejection) {
-            preProposalSnapshot = getSnapshotOfAllAffectedVertices(chosenVertices, affectedVerticesCache);
+            preProposalSnapshot = getSnapshot(chosenKey);
+            preProposalSnapshot.save();
         }
 
         Proposal proposal = proposalDistribution.getProposal(chosenVertices, random);
+        PropagationPlan propagationPlan = getPropagationPlan(chosenKey);
+
         proposal.apply();
-        VertexValuePropagation.cascadeUpdate(chosenVertices);
+        propagationPlan.cascade();
 
-        final double affectedVerticesLogProbNew = sumLogProbabilityOfAffected(chosenVertices, affectedVerticesCache);
+        final double affectedVerticesLogProbNew = ProbabilityCalculator.calculateLogProbFor(affectedVertices);
 
         if (affectedVerticesLogProbNew != LOG_ZERO_PROBABILITY) {
 
@@ -88,45 +142,129 @@ class MetropolisHastingsStep {
 
             final double annealFactor = (1.0 / temperature);
             final double hastingsCorrection = pqxOld - pqxNew;
-            final double logR = annealFactor * logProbabilityDelta + hastingsCorrection;
+            final double temperedLogProbabilityDelta;
+            if (temperLikelihoodOnly) {
+                final double likelihoodDelta = ProbabilityCalculator.calculateObservedLogProbFor(affectedVertices) - affectedLikelihoodOld;
+                temperedLogProbabilityDelta = logProbabilityDelta + (annealFactor - 1.0) * likelihoodDelta;
+            } else {
+                temperedLogProbabilityDelta = annealFactor * logProbabilityDelta;
+            }
+            final double logR = temperedLogProbabilityDelta + hastingsCorrection;
             final double r = Math.exp(logR);
 
             final boolean shouldAccept = r >= random.nextDouble();
 
             if (shouldAccept) {
+                proposalDistribution.onProposalAccepted(proposal);
                 return new StepResult(true, logProbabilityAfterStep);
             }
         }
 
+        proposalDistribution.onProposalRejected(proposal);
         proposal.reject();
 
         if (useCacheOnRejection) {
             preProposalSnapshot.apply();
         } else {
-            VertexValuePropagation.cascadeUpdate(chosenVertices);
+            propagationPlan.cascade();
         }
 
+        ProbabilityCalculator.restoreCachedLogProbs(affectedVertices, cachedLogProbsBeforeStep);
+
         return new StepResult(false, logProbabilityBeforeStep);
     }
 
-    private static NetworkSnapshot getSnapshotOfAllAffectedVertices(final Set<Vertex> chosenVertices,
-                                                                    final Map<Vertex, LambdaSection> affectedVertices) {
+    /**
+     * The caches below are keyed by the chosen vertices. A set of several is copied once per step, as the caller
+     * may change the set it passed in after the step, and the copy is used for every lookup in the step.
+     */
+    private static Set<Vertex> cacheKeyOf(Set<Vertex> chosenVertices) {
+        return chosenVertices.size() == 1 ? chosenVertices : ImmutableSet.copyOf(chosenVertices);
+    }
 
-        Set<Vertex> allAffectedVertices = new HashSet<>();
-        for (Vertex vertex : chosenVertices) {
-            allAffectedVertices.addAll(affectedVertices.get(vertex).getAllVertices());
+    private PropagationPlan getPropagationPlan(Set<Vertex> chosenVertices) {
+        if (chosenVertices.size() == 1) {
+            PropagationPlan propagationPlan = propagationPlans.get(chosenVertices.iterator().next());
+            if (propagationPlan != null) {
+                return propagationPlan;
+            }
         }
+        return multiVertexPropagationPlans.computeIfAbsent(chosenVertices, PropagationPlan::compile);
+    }
 
-        return NetworkSnapshot.create(allAffectedVertices);
+    /**
+     * Snapshots are reused from step to step so that saving the state of the affected vertices before a proposal
+     * doesn't allocate.
+     */
+    private NetworkSnapshot getSnapshot(Set<Vertex> chosenVertices) {
+        if (chosenVertices.size() == 1) {
+            Vertex chosenVertex = chosenVertices.iterator().next();
+            NetworkSnapshot snapshot = snapshots.get(chosenVertex);
+            if (snapshot == null) {
+                snapshot = NetworkSnapshot.reusable(affectedVerticesCache.get(chosenVertex).getAllVertices());
+                snapshots.put(chosenVertex, snapshot);
+            }
+            return snapshot;
+        }
+        return multiVertexSnapshots.computeIfAbsent(chosenVertices, vertices -> {
+            Set<Vertex> allAffectedVertices = new HashSet<>();
+            for (Vertex vertex : vertices) {
+                allAffectedVertices.addAll(affectedVerticesCache.get(vertex).getAllVertices());
+            }
+            return NetworkSnapshot.reusable(allAffectedVertices);
+        });
     }
 
-    private static double sumLogProbabilityOfAffected(Set<Vertex> vertices,
-                                                      Map<Vertex, LambdaSection> affectedVertices) {
-        double sumLogProb = 0.0;
-        for (Vertex v : vertices) {
-            sumLogProb += ProbabilityCalculator.calculateLogProbFor(affectedVertices.get(v).getLatentAndObservedVertices());
+    /**
+     * Like the snapshots, the array that holds the cached log probs of the affected vertices during a step is
+     * reused from step to step.
+     */
+    private double[] getLogProbBuffer(Set<Vertex> chosenVertices, int affectedVertexCount) {
+        if (chosenVertices.size() == 1) {
+            Vertex chosenVertex = chosenVertices.iterator().next();
+            double[] buffer = logProbBuffers.get(chosenVertex);
+            if (buffer == null) {
+                buffer = new double[affectedVertexCount];
+                logProbBuffers.put(chosenVertex, buffer);
+            }
+            return buffer;
         }
-        return sumLogProb;
+        double[] buffer = multiVertexLogProbBuffers.get(chosenVertices);
+        if (buffer == null) {
+            buffer = new double[affectedVertexCount];
+            multiVertexLogProbBuffers.put(chosenVertices, buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * The latent and observed vertices whose log prob can change when the chosen vertices change. When several
+     * vertices are chosen their downstream sections can overlap, so the union is taken to count each vertex once.
+     */
+    private Collection<Vertex> getLatentAndObservedAffectedBy(Set<Vertex> chosenVertices) {
+        if (chosenVertices.size() == 1) {
+            return affectedVerticesCache.get(chosenVertices.iterator().next()).getLatentAndObservedVertices();
+        }
+        return multiVertexAffectedVertices.computeIfAbsent(chosenVertices, vertices -> {
+            Set<Vertex> union = new LinkedHashSet<>();
+            for (Vertex vertex : vertices) {
+                union.addAll(affectedVerticesCache.get(vertex).getLatentAndObservedVertices());
+            }
+            return union;
+        });
+    }
+
+    /**
+     * The plans, affected vertices, snapshots and log prob buffers for sets of several chosen vertices are kept for
+     * the sets that were chosen most recently, so a selector that picks random sets doesn't grow them without bound.
+     */
+    private static <V> Map<Set<Vertex>, V> leastRecentlyUsedCache() {
+        return new LinkedHashMap<Set<Vertex>, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Set<Vertex>, V> eldest) {
+                return size() > MAX_CACHED_MULTI_VERTEX_SETS;
+            }
+        };
     }
 
     /**
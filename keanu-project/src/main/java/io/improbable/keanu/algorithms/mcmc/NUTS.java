@@ -1,8 +1,11 @@
 package io.improbable.keanu.algorithms.mcmc;
 
+import io.improbable.keanu.algorithms.DoubleColumn;
+import io.improbable.keanu.algorithms.LatentPointLayout;
 import io.improbable.keanu.algorithms.NetworkSamples;
 import io.improbable.keanu.algorithms.PosteriorSamplingAlgorithm;
-import io.improbable.keanu.algorithms.graphtraversal.VertexValuePropagation;
+import io.improbable.keanu.algorithms.SampleColumns;
+import io.improbable.keanu.algorithms.graphtraversal.PropagationPlan;
 import io.improbable.keanu.network.BayesianNetwork;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
 import io.improbable.keanu.vertices.Probabilistic;
@@ -14,7 +17,6 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -23,6 +25,9 @@ import java.util.Map;
  * Algorithm 6: "No-U-Turn Sampler with Dual Averaging".
  * The No-U-Turn Sampler: Adaptively Setting Path Lengths in Hamiltonian Monte Carlo
  * https://arxiv.org/pdf/1111.4246.pdf
+ * <p>
+ * Positions, momentums and gradients are held as flat double[] in the layout of a {@link LatentPointLayout}.
+ * They are never modified once created so trees can share them freely.
  */
 @Builder
 public class NUTS implements PosteriorSamplingAlgorithm {
@@ -64,6 +69,13 @@ public class NUTS implements PosteriorSamplingAlgorithm {
     @Builder.Default
     private double targetAcceptanceProb = DEFAULT_TARGET_ACCEPTANCE_PROB;
 
+    //How to adapt the mass matrix over the adaptCount samples. Without adaptation the identity
+    //mass matrix is used, which suits posteriors where every latent dimension has a similar scale
+    @Getter
+    @Setter
+    @Builder.Default
+    private MassMatrixAdaptation massMatrixAdaptation = MassMatrixAdaptation.NONE;
+
     /**
      * Sample from the posterior of a Bayesian Network using the No-U-Turn-Sampling algorithm
      *
@@ -82,26 +94,25 @@ public class NUTS implements PosteriorSamplingAlgorithm {
         final List<Vertex<DoubleTensor>> latentVertices = bayesNet.getContinuousLatentVertices();
         final LogProbGradientCalculator logProbGradientCalculator = new LogProbGradientCalculator(bayesNet.getLatentOrObservedVertices(), latentVertices);
         List<? extends Probabilistic> probabilisticVertices = Probabilistic.keepOnlyProbabilisticVertices(bayesNet.getLatentOrObservedVertices());
+        final PhaseSpace phaseSpace = new PhaseSpace(latentVertices, logProbGradientCalculator);
 
         final Map<VertexId, List<?>> samples = new HashMap<>();
         addSampleFromCache(samples, takeSample(sampleFromVertices));
 
-        Map<VertexId, DoubleTensor> position = new HashMap<>();
-        cachePosition(latentVertices, position);
+        double[] position = phaseSpace.layout.currentPoint();
 
-        Map<VertexId, DoubleTensor> gradient = logProbGradientCalculator.getJointLogProbGradientWrtLatents();
+        double[] gradient = phaseSpace.gradientAtCurrentPoint();
 
-        Map<VertexId, DoubleTensor> momentum = new HashMap<>();
+        double[] momentum = new double[phaseSpace.layout.getDimensionCount()];
 
         double initialLogOfMasterP = getLogProb(probabilisticVertices);
-        final List<Double> logOfMasterPForEachSample = new ArrayList<>();
+        final List<Double> logOfMasterPForEachSample = new DoubleColumn();
         logOfMasterPForEachSample.add(initialLogOfMasterP);
 
         double stepSize = findStartingStepSize(position,
             gradient,
-            latentVertices,
+            phaseSpace,
             probabilisticVertices,
-            logProbGradientCalculator,
             random
         );
 
@@ -111,6 +122,12 @@ public class NUTS implements PosteriorSamplingAlgorithm {
             adaptCount
         );
 
+        MassMatrixAdapter massMatrixAdapter = new MassMatrixAdapter(
+            massMatrixAdaptation,
+            phaseSpace.layout.getDimensionCount(),
+            adaptCount
+        );
+
         BuiltTree tree = new BuiltTree(
             position,
             gradient,
@@ -130,10 +147,10 @@ public class NUTS implements PosteriorSamplingAlgorithm {
 
         for (int sampleNum = 1; sampleNum < sampleCount; sampleNum++) {
 
-            initializeMomentumForEachVertex(latentVertices, tree.momentumForward, random);
-            cache(tree.momentumForward, tree.momentumBackward);
+            tree.momentumForward = sampleMomentum(phaseSpace, random);
+            tree.momentumBackward = tree.momentumForward;
 
-            double u = random.nextDouble() * Math.exp(tree.logOfMasterPAtAcceptedPosition - 0.5 * dotProduct(tree.momentumForward));
+            double u = random.nextDouble() * Math.exp(tree.logOfMasterPAtAcceptedPosition - phaseSpace.massMatrix.kineticEnergy(tree.momentumForward));
 
             int treeHeight = 0;
             tree.shouldContinueFlag = true;
@@ -146,9 +163,8 @@ public class NUTS implements PosteriorSamplingAlgorithm {
 
                 BuiltTree otherHalfTree = buildOtherHalfOfTree(
                     tree,
-                    latentVertices,
+                    phaseSpace,
                     probabilisticVertices,
-                    logProbGradientCalculator,
                     sampleFromVertices,
                     u,
                     buildDirection,
@@ -173,6 +189,7 @@ public class NUTS implements PosteriorSamplingAlgorithm {
                 tree.treeSize = otherHalfTree.treeSize;
 
                 tree.shouldContinueFlag = otherHalfTree.shouldContinueFlag && isNotUTurning(
+                    phaseSpace.massMatrix,
                     tree.positionForward,
                     tree.positionBackward,
                     tree.momentumForward,
@@ -184,6 +201,14 @@ public class NUTS implements PosteriorSamplingAlgorithm {
 
             stepSize = adaptStepSize(autoTune, tree, sampleNum);
 
+            if (sampleNum <= adaptCount) {
+                MassMatrix adaptedMassMatrix = massMatrixAdapter.update(sampleNum, tree.acceptedPosition);
+                if (adaptedMassMatrix != null) {
+                    phaseSpace.massMatrix = adaptedMassMatrix;
+                    autoTune.restart(stepSize, sampleNum);
+                }
+            }
+
             tree.positionForward = tree.acceptedPosition;
             tree.gradientForward = tree.gradientAtAcceptedPosition;
             tree.positionBackward = tree.acceptedPosition;
@@ -197,9 +222,8 @@ public class NUTS implements PosteriorSamplingAlgorithm {
     }
 
     private static BuiltTree buildOtherHalfOfTree(BuiltTree currentTree,
-                                                  List<Vertex<DoubleTensor>> latentVertices,
+                                                  PhaseSpace phaseSpace,
                                                   List<? extends Probabilistic> probabilisticVertices,
-                                                  LogProbGradientCalculator logProbGradientCalculator,
                                                   final List<? extends Vertex> sampleFromVertices,
                                                   double u,
                                                   int buildDirection,
@@ -210,14 +234,13 @@ public class NUTS implements PosteriorSamplingAlgorithm {
         BuiltTree otherHalfTree;
 
         final double logOfMasterPBeforeLeapfrog = getLogProb(probabilisticVertices);
-        final double logOfMasterPMinusMomentumBeforeLeapfrog = logOfMasterPBeforeLeapfrog - 0.5 * dotProduct(currentTree.momentumBackward);
+        final double logOfMasterPMinusMomentumBeforeLeapfrog = logOfMasterPBeforeLeapfrog - phaseSpace.massMatrix.kineticEnergy(currentTree.momentumBackward);
 
         if (buildDirection == -1) {
 
             otherHalfTree = buildTree(
-                latentVertices,
+                phaseSpace,
                 probabilisticVertices,
-                logProbGradientCalculator,
                 sampleFromVertices,
                 currentTree.positionBackward,
                 currentTree.gradientBackward,
@@ -237,9 +260,8 @@ public class NUTS implements PosteriorSamplingAlgorithm {
         } else {
 
             otherHalfTree = buildTree(
-                latentVertices,
+                phaseSpace,
                 probabilisticVertices,
-                logProbGradientCalculator,
                 sampleFromVertices,
                 currentTree.positionForward,
                 currentTree.gradientForward,
@@ -260,13 +282,12 @@ public class NUTS implements PosteriorSamplingAlgorithm {
         return otherHalfTree;
     }
 
-    private static BuiltTree buildTree(List<Vertex<DoubleTensor>> latentVertices,
+    private static BuiltTree buildTree(PhaseSpace phaseSpace,
                                        List<? extends Probabilistic> probabilisticVertices,
-                                       LogProbGradientCalculator logProbGradientCalculator,
                                        final List<? extends Vertex> sampleFromVertices,
-                                       Map<VertexId, DoubleTensor> position,
-                                       Map<VertexId, DoubleTensor> gradient,
-                                       Map<VertexId, DoubleTensor> momentum,
+                                       double[] position,
+                                       double[] gradient,
+                                       double[] momentum,
                                        double u,
                                        int buildDirection,
                                        int treeHeight,
@@ -277,9 +298,8 @@ public class NUTS implements PosteriorSamplingAlgorithm {
 
             //Base case-take one leapfrog step in the build direction
 
-            return builtTreeBaseCase(latentVertices,
+            return builtTreeBaseCase(phaseSpace,
                 probabilisticVertices,
-                logProbGradientCalculator,
                 sampleFromVertices,
                 position,
                 gradient,
@@ -294,9 +314,8 @@ public class NUTS implements PosteriorSamplingAlgorithm {
             //Recursion-implicitly build the left and right subtrees.
 
             BuiltTree tree = buildTree(
-                latentVertices,
+                phaseSpace,
                 probabilisticVertices,
-                logProbGradientCalculator,
                 sampleFromVertices,
                 position,
                 gradient,
@@ -314,9 +333,8 @@ public class NUTS implements PosteriorSamplingAlgorithm {
 
                 BuiltTree otherHalfTree = buildOtherHalfOfTree(
                     tree,
-                    latentVertices,
+                    phaseSpace,
                     probabilisticVertices,
-                    logProbGradientCalculator,
                     sampleFromVertices,
                     u,
                     buildDirection,
@@ -334,6 +352,7 @@ public class NUTS implements PosteriorSamplingAlgorithm {
                 );
 
                 tree.shouldContinueFlag = otherHalfTree.shouldContinueFlag && isNotUTurning(
+                    phaseSpace.massMatrix,
                     tree.positionForward,
                     tree.positionBackward,
                     tree.momentumForward,
@@ -350,21 +369,19 @@ public class NUTS implements PosteriorSamplingAlgorithm {
 
     }
 
-    private static BuiltTree builtTreeBaseCase(List<Vertex<DoubleTensor>> latentVertices,
+    private static BuiltTree builtTreeBaseCase(PhaseSpace phaseSpace,
                                                List<? extends Probabilistic> probabilisticVertices,
-                                               LogProbGradientCalculator logProbGradientCalculator,
                                                final List<? extends Vertex> sampleFromVertices,
-                                               Map<VertexId, DoubleTensor> position,
-                                               Map<VertexId, DoubleTensor> gradient,
-                                               Map<VertexId, DoubleTensor> momentum,
+                                               double[] position,
+                                               double[] gradient,
+                                               double[] momentum,
                                                double u,
                                                int buildDirection,
                                                double epsilon,
                                                double logOfMasterPMinusMomentumBeforeLeapfrog) {
 
         LeapFrogged leapfrog = leapfrog(
-            latentVertices,
-            logProbGradientCalculator,
+            phaseSpace,
             position,
             gradient,
             momentum,
@@ -373,7 +390,7 @@ public class NUTS implements PosteriorSamplingAlgorithm {
 
         final double logOfMasterPAfterLeapfrog = getLogProb(probabilisticVertices);
 
-        final double logOfMasterPMinusMomentum = logOfMasterPAfterLeapfrog - 0.5 * dotProduct(leapfrog.momentum);
+        final double logOfMasterPMinusMomentum = logOfMasterPAfterLeapfrog - phaseSpace.massMatrix.kineticEnergy(leapfrog.momentum);
         final int acceptedLeapfrogCount = u <= Math.exp(logOfMasterPMinusMomentum) ? 1 : 0;
         final boolean shouldContinueFlag = u < Math.exp(DELTA_MAX + logOfMasterPMinusMomentum);
 
@@ -424,98 +441,72 @@ public class NUTS implements PosteriorSamplingAlgorithm {
         return random.nextDouble() < probability;
     }
 
-    private static boolean isNotUTurning(Map<VertexId, DoubleTensor> positionForward,
-                                         Map<VertexId, DoubleTensor> positionBackward,
-                                         Map<VertexId, DoubleTensor> momentumForward,
-                                         Map<VertexId, DoubleTensor> momentumBackward) {
+    /**
+     * The trajectory is U-turning once either end is moving back towards the other. How fast each end is moving
+     * is given by its velocity, which is its momentum scaled by the inverse of the mass matrix.
+     */
+    private static boolean isNotUTurning(MassMatrix massMatrix,
+                                         double[] positionForward,
+                                         double[] positionBackward,
+                                         double[] momentumForward,
+                                         double[] momentumBackward) {
+        final double[] velocityForward = massMatrix.velocity(momentumForward);
+        final double[] velocityBackward = massMatrix.velocity(momentumBackward);
+
         double forward = 0.0;
         double backward = 0.0;
 
-        for (Map.Entry<VertexId, DoubleTensor> forwardPositionForLatent : positionForward.entrySet()) {
-
-            final VertexId latentId = forwardPositionForLatent.getKey();
-            final DoubleTensor forwardMinusBackward = forwardPositionForLatent.getValue().minus(
-                positionBackward.get(latentId)
-            );
-
-            forward += forwardMinusBackward.times(momentumForward.get(latentId)).sum();
-            backward += forwardMinusBackward.timesInPlace(momentumBackward.get(latentId)).sum();
+        for (int i = 0; i < positionForward.length; i++) {
+            final double forwardMinusBackward = positionForward[i] - positionBackward[i];
+            forward += forwardMinusBackward * velocityForward[i];
+            backward += forwardMinusBackward * velocityBackward[i];
         }
 
         return (forward >= 0.0) && (backward >= 0.0);
     }
 
-    private static void cachePosition(List<Vertex<DoubleTensor>> latentVertices, Map<VertexId, DoubleTensor> position) {
-        for (Vertex<DoubleTensor> vertex : latentVertices) {
-            position.put(vertex.getId(), vertex.getValue());
-        }
-    }
-
-    private static void initializeMomentumForEachVertex(List<Vertex<DoubleTensor>> vertices,
-                                                        Map<VertexId, DoubleTensor> momentums,
-                                                        KeanuRandom random) {
-        for (Vertex<DoubleTensor> vertex : vertices) {
-            momentums.put(vertex.getId(), random.nextGaussian(vertex.getShape()));
-        }
-    }
-
-    private static void cache(Map<VertexId, DoubleTensor> from, Map<VertexId, DoubleTensor> to) {
-        for (Map.Entry<VertexId, DoubleTensor> entry : from.entrySet()) {
-            to.put(entry.getKey(), entry.getValue());
+    private static double[] sampleMomentum(PhaseSpace phaseSpace, KeanuRandom random) {
+        final LatentPointLayout layout = phaseSpace.layout;
+        double[] momentum = new double[layout.getDimensionCount()];
+        for (int i = 0; i < layout.getLatentCount(); i++) {
+            layout.copyInto(random.nextGaussian(layout.getShape(i)), momentum, i);
         }
+        return phaseSpace.massMatrix.scaleMomentum(momentum);
     }
 
-    private static LeapFrogged leapfrog(final List<Vertex<DoubleTensor>> latentVertices,
-                                        final LogProbGradientCalculator logProbGradientCalculator,
-                                        final Map<VertexId, DoubleTensor> position,
-                                        final Map<VertexId, DoubleTensor> gradient,
-                                        final Map<VertexId, DoubleTensor> momentum,
+    private static LeapFrogged leapfrog(final PhaseSpace phaseSpace,
+                                        final double[] position,
+                                        final double[] gradient,
+                                        final double[] momentum,
                                         final double epsilon) {
 
         final double halfTimeStep = epsilon / 2.0;
+        final int dimensionCount = position.length;
 
-        Map<VertexId, DoubleTensor> nextMomentum = new HashMap<>();
-        Map<VertexId, DoubleTensor> nextPosition = new HashMap<>();
+        double[] nextMomentum = new double[dimensionCount];
+        double[] nextPosition = new double[dimensionCount];
 
-        for (Map.Entry<VertexId, DoubleTensor> rEntry : momentum.entrySet()) {
-            final DoubleTensor updatedMomentum = (gradient.get(rEntry.getKey()).times(halfTimeStep)).plusInPlace(rEntry.getValue());
-            nextMomentum.put(rEntry.getKey(), updatedMomentum);
+        for (int i = 0; i < dimensionCount; i++) {
+            nextMomentum[i] = gradient[i] * halfTimeStep + momentum[i];
         }
 
-        for (Vertex<DoubleTensor> latent : latentVertices) {
-            final DoubleTensor nextPositionForLatent = nextMomentum.get(latent.getId()).
-                times(halfTimeStep).
-                plusInPlace(
-                    position.get(latent.getId())
-                );
-            nextPosition.put(latent.getId(), nextPositionForLatent);
-            latent.setValue(nextPositionForLatent);
+        final double[] velocity = phaseSpace.massMatrix.velocity(nextMomentum);
+
+        for (int i = 0; i < dimensionCount; i++) {
+            nextPosition[i] = velocity[i] * halfTimeStep + position[i];
         }
 
-        VertexValuePropagation.cascadeUpdate(latentVertices);
+        phaseSpace.setAndCascadePosition(nextPosition);
 
-        Map<VertexId, DoubleTensor> nextPositionGradient = logProbGradientCalculator.getJointLogProbGradientWrtLatents();
+        double[] nextPositionGradient = phaseSpace.gradientAtCurrentPoint();
 
-        for (Map.Entry<VertexId, DoubleTensor> nextMomentumForLatent : nextMomentum.entrySet()) {
-            final DoubleTensor nextNextMomentumForLatent = nextPositionGradient.get(nextMomentumForLatent.getKey()).
-                times(halfTimeStep).
-                plusInPlace(
-                    nextMomentumForLatent.getValue()
-                );
-            nextMomentum.put(nextMomentumForLatent.getKey(), nextNextMomentumForLatent);
+        for (int i = 0; i < dimensionCount; i++) {
+            nextMomentum[i] = nextPositionGradient[i] * halfTimeStep + nextMomentum[i];
         }
 
         return new LeapFrogged(nextPosition, nextMomentum, nextPositionGradient);
     }
 
-    private static double dotProduct(Map<VertexId, DoubleTensor> momentums) {
-        double dotProduct = 0.0;
-        for (DoubleTensor momentum : momentums.values()) {
-            dotProduct += momentum.pow(2).sum();
-        }
-        return dotProduct;
-    }
-
     /**
      * This is meant to be used for tracking a sample while building tree.
      *
@@ -546,18 +537,46 @@ public class NUTS implements PosteriorSamplingAlgorithm {
     }
 
     private static <T> void addSampleForVertex(VertexId id, T value, Map<VertexId, List<?>> samples) {
-        List<T> samplesForVertex = (List<T>) samples.computeIfAbsent(id, v -> new ArrayList<T>());
+        List<T> samplesForVertex = SampleColumns.columnFor(samples, id, value);
         samplesForVertex.add(value);
     }
 
+    /**
+     * The continuous latent vertices along with what is needed to move them to a position and to find the
+     * gradient there, compiled once per call to getPosteriorSamples, and the current mass matrix.
+     */
+    private static class PhaseSpace {
+        final LatentPointLayout layout;
+        final PropagationPlan propagationPlan;
+        final LogProbGradientCalculator logProbGradientCalculator;
+        MassMatrix massMatrix;
+
+        PhaseSpace(List<Vertex<DoubleTensor>> latentVertices,
+                   LogProbGradientCalculator logProbGradientCalculator) {
+            this.layout = new LatentPointLayout(latentVertices);
+            this.propagationPlan = PropagationPlan.compile(latentVertices);
+            this.logProbGradientCalculator = logProbGradientCalculator;
+            this.massMatrix = MassMatrix.identity(layout.getDimensionCount());
+        }
+
+        void setAndCascadePosition(double[] position) {
+            layout.setPoint(position);
+            propagationPlan.cascade();
+        }
+
+        double[] gradientAtCurrentPoint() {
+            return layout.flatten(logProbGradientCalculator.getJointLogProbGradientWrtLatents());
+        }
+    }
+
     private static class LeapFrogged {
-        final Map<VertexId, DoubleTensor> position;
-        final Map<VertexId, DoubleTensor> momentum;
-        final Map<VertexId, DoubleTensor> gradient;
+        final double[] position;
+        final double[] momentum;
+        final double[] gradient;
 
-        LeapFrogged(Map<VertexId, DoubleTensor> position,
-                    Map<VertexId, DoubleTensor> momentum,
-                    Map<VertexId, DoubleTensor> gradient) {
+        LeapFrogged(double[] position,
+                    double[] momentum,
+                    double[] gradient) {
             this.position = position;
             this.momentum = momentum;
             this.gradient = gradient;
@@ -566,14 +585,14 @@ public class NUTS implements PosteriorSamplingAlgorithm {
 
     private static class BuiltTree {
 
-        Map<VertexId, DoubleTensor> positionBackward;
-        Map<VertexId, DoubleTensor> gradientBackward;
-        Map<VertexId, DoubleTensor> momentumBackward;
-        Map<VertexId, DoubleTensor> positionForward;
-        Map<VertexId, DoubleTensor> gradientForward;
-        Map<VertexId, DoubleTensor> momentumForward;
-        Map<VertexId, DoubleTensor> acceptedPosition;
-        Map<VertexId, DoubleTensor> gradientAtAcceptedPosition;
+        double[] positionBackward;
+        double[] gradientBackward;
+        double[] momentumBackward;
+        double[] positionForward;
+        double[] gradientForward;
+        double[] momentumForward;
+        double[] acceptedPosition;
+        double[] gradientAtAcceptedPosition;
         double logOfMasterPAtAcceptedPosition;
         Map<VertexId, ?> sampleAtAcceptedPosition;
         int acceptedLeapfrogCount;
@@ -581,14 +600,14 @@ public class NUTS implements PosteriorSamplingAlgorithm {
         double deltaLikelihoodOfLeapfrog;
         double treeSize;
 
-        BuiltTree(Map<VertexId, DoubleTensor> positionBackward,
-                  Map<VertexId, DoubleTensor> gradientBackward,
-                  Map<VertexId, DoubleTensor> momentumBackward,
-                  Map<VertexId, DoubleTensor> positionForward,
-                  Map<VertexId, DoubleTensor> gradientForward,
-                  Map<VertexId, DoubleTensor> momentumForward,
-                  Map<VertexId, DoubleTensor> acceptedPosition,
-                  Map<VertexId, DoubleTensor> gradientAtAcceptedPosition,
+        BuiltTree(double[] positionBackward,
+                  double[] gradientBackward,
+                  double[] momentumBackward,
+                  double[] positionForward,
+                  double[] gradientForward,
+                  double[] momentumForward,
+                  double[] acceptedPosition,
+                  double[] gradientAtAcceptedPosition,
                   double logOfMasterPAtAcceptedPosition,
                   Map<VertexId, ?> sampleAtAcceptedPosition,
                   int acceptedLeapfrogCount,
@@ -622,6 +641,7 @@ public class NUTS implements PosteriorSamplingAlgorithm {
         double logStepSizeFrozen;
         double adaptCount;
         double shrinkageTarget;
+        int samplesBeforeRestart;
 
         AutoTune(double stepSize, double targetAcceptanceProb, double logStepSize, int adaptCount) {
             this.stepSize = stepSize;
@@ -631,27 +651,41 @@ public class NUTS implements PosteriorSamplingAlgorithm {
             this.logStepSizeFrozen = Math.log(1);
             this.adaptCount = adaptCount;
             this.shrinkageTarget = Math.log(10 * stepSize);
+            this.samplesBeforeRestart = 0;
+        }
+
+        /**
+         * Starts adapting the step size afresh from the given step size, e.g. after the mass matrix has changed
+         *
+         * @param stepSize  the step size to adapt from
+         * @param sampleNum the number of samples adapted to so far
+         */
+        void restart(double stepSize, int sampleNum) {
+            this.stepSize = stepSize;
+            this.averageAcceptanceProb = 0;
+            this.logStepSize = Math.log(stepSize);
+            this.logStepSizeFrozen = Math.log(1);
+            this.shrinkageTarget = Math.log(10 * stepSize);
+            this.samplesBeforeRestart = sampleNum;
         }
     }
 
-    private static double findStartingStepSize(Map<VertexId, DoubleTensor> position,
-                                               Map<VertexId, DoubleTensor> gradient,
-                                               List<Vertex<DoubleTensor>> vertices,
+    private static double findStartingStepSize(double[] position,
+                                               double[] gradient,
+                                               PhaseSpace phaseSpace,
                                                List<? extends Probabilistic> probabilisticVertices,
-                                               LogProbGradientCalculator logProbGradientCalculator,
                                                KeanuRandom random) {
         double stepsize = 1;
         double probBeforeLeapfrog = getLogProb(probabilisticVertices);
-        Map<VertexId, DoubleTensor> momentums = new HashMap<>();
-        initializeMomentumForEachVertex(vertices, momentums, random);
-        leapfrog(vertices, logProbGradientCalculator, position, gradient, momentums, stepsize);
+        double[] momentums = sampleMomentum(phaseSpace, random);
+        leapfrog(phaseSpace, position, gradient, momentums, stepsize);
         double probAfterLeapfrog = getLogProb(probabilisticVertices);
         double likelihoodRatio = probAfterLeapfrog - probBeforeLeapfrog;
         double scalingFactor = likelihoodRatio > Math.log(0.5) ? 1 : -1;
 
         while (scalingFactor * (likelihoodRatio) > -scalingFactor * Math.log(2)) {
             stepsize = stepsize * Math.pow(2, scalingFactor);
-            leapfrog(vertices, logProbGradientCalculator, position, gradient, momentums, stepsize);
+            leapfrog(phaseSpace, position, gradient, momentums, stepsize);
             likelihoodRatio = getLogProb(probabilisticVertices) - probBeforeLeapfrog;
         }
 
@@ -660,15 +694,16 @@ public class NUTS implements PosteriorSamplingAlgorithm {
 
     private static double adaptStepSize(AutoTune autoTune, BuiltTree tree, int sampleNum) {
         if (sampleNum <= autoTune.adaptCount) {
-            double percentageLeftToTune = (1 / (sampleNum + STABILISER));
+            int adaptedSampleNum = sampleNum - autoTune.samplesBeforeRestart;
+            double percentageLeftToTune = (1 / (adaptedSampleNum + STABILISER));
             double acceptanceProb = (autoTune.targetAcceptanceProb - (tree.deltaLikelihoodOfLeapfrog / tree.treeSize));
             double proportionalAcceptanceProb = (1 - percentageLeftToTune) * autoTune.averageAcceptanceProb;
             autoTune.averageAcceptanceProb = proportionalAcceptanceProb + (percentageLeftToTune * acceptanceProb);
 
-            double shrunkSampleCount = Math.sqrt(sampleNum) / SHRINKAGE_FACTOR;
+            double shrunkSampleCount = Math.sqrt(adaptedSampleNum) / SHRINKAGE_FACTOR;
             autoTune.logStepSize = autoTune.shrinkageTarget - (shrunkSampleCount * autoTune.averageAcceptanceProb);
 
-            double tendToZero = Math.pow(sampleNum, -TEND_TO_ZERO_EXPONENT);
+            double tendToZero = Math.pow(adaptedSampleNum, -TEND_TO_ZERO_EXPONENT);
             double reducedStepSize = tendToZero * autoTune.logStepSize;
             double increasedStepSizeFrozen = (1 - tendToZero) * autoTune.logStepSizeFrozen;
             autoTune.logStepSizeFrozen = reducedStepSize + increasedStepSizeFrozen;
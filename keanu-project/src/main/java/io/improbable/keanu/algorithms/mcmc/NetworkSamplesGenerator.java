@@ -1,12 +1,14 @@
 package io.improbable.keanu.algorithms.mcmc;
 
 import com.google.common.base.Preconditions;
+import io.improbable.keanu.algorithms.DoubleColumn;
+import io.improbable.keanu.algorithms.MappedSampleStore;
 import io.improbable.keanu.algorithms.NetworkSamples;
+import io.improbable.keanu.algorithms.NetworkSummaries;
 import io.improbable.keanu.network.NetworkState;
 import io.improbable.keanu.util.ProgressBar;
 import io.improbable.keanu.vertices.VertexId;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -77,6 +79,77 @@ public class NetworkSamplesGenerator {
      * @return Samples after dropping and down-sampling.
      */
     public NetworkSamples generate(final int totalSampleCount) {
+        Map<VertexId, List<?>> samplesByVertex = new HashMap<>();
+        List<Double> logOfMasterPForEachSample = new DoubleColumn();
+
+        int sampleCount = generate(totalSampleCount, samplesByVertex, logOfMasterPForEachSample);
+        return new NetworkSamples(samplesByVertex, logOfMasterPForEachSample, sampleCount);
+    }
+
+    /**
+     * Generates samples into memory mapped files rather than onto the heap, for chains with more samples than fit
+     * in memory.
+     *
+     * @param totalSampleCount The total number of samples to generate before any dropping or down-sampling.
+     * @param store            An empty store to write the samples to.
+     * @return Samples after dropping and down-sampling, which are read from the store.
+     * @see #generate(int)
+     */
+    public NetworkSamples generate(final int totalSampleCount, MappedSampleStore store) {
+        try {
+            int sampleCount = generate(totalSampleCount, store.getSamplesByVertex(), store.getLogOfMasterPForEachSample());
+            return store.finish(sampleCount);
+        } finally {
+            store.close();
+        }
+    }
+
+    /**
+     * Summarises samples as they are generated rather than keeping them, for when only moments and quantiles
+     * are needed.
+     *
+     * @param totalSampleCount The total number of samples to generate before any dropping or down-sampling.
+     * @param summaries        The summaries to update with each sample after dropping and down-sampling.
+     * @return the updated summaries
+     * @see #generate(int)
+     */
+    public NetworkSummaries generate(final int totalSampleCount, NetworkSummaries summaries) {
+        generate(totalSampleCount, summaries.getSamplesByVertex(), summaries.getLogOfMasterPForEachSample());
+        return summaries;
+    }
+
+    /**
+     * Generates samples until they meet a convergence criterion, which is checked periodically as the samples are
+     * taken. Each check costs about as much as the diagnostics of all the samples so far, so the number of samples
+     * doubles between checks and all of the checks together cost about twice as much as checking the final samples.
+     *
+     * @param criterion           when to stop sampling. The single chain is split in half for the R-hat.
+     * @param maxTotalSampleCount the most samples to generate, before any dropping or down-sampling, if the
+     *                            criterion is never met
+     * @return Samples after dropping and down-sampling, up to the first check that met the criterion.
+     */
+    public NetworkSamples generateUntil(ConvergenceCriterion criterion, final int maxTotalSampleCount) {
+        Map<VertexId, List<?>> samplesByVertex = new HashMap<>();
+        List<Double> logOfMasterPForEachSample = new DoubleColumn();
+
+        int sampleCount = generate(maxTotalSampleCount, samplesByVertex, logOfMasterPForEachSample, criterion);
+        return new NetworkSamples(samplesByVertex, logOfMasterPForEachSample, sampleCount);
+    }
+
+    private int generate(final int totalSampleCount,
+                         Map<VertexId, List<?>> samplesByVertex,
+                         List<Double> logOfMasterPForEachSample) {
+        return generate(totalSampleCount, samplesByVertex, logOfMasterPForEachSample, null);
+    }
+
+    /**
+     * @param criterion when to stop sampling before totalSampleCount, or null to take all of the samples
+     * @return the number of samples taken
+     */
+    private int generate(final int totalSampleCount,
+                         Map<VertexId, List<?>> samplesByVertex,
+                         List<Double> logOfMasterPForEachSample,
+                         ConvergenceCriterion criterion) {
         Preconditions.checkArgument(dropCount < totalSampleCount,
             "Cannot drop more samples than requested or all of the samples. Samples requested %s and dropping %s",
             totalSampleCount, dropCount
@@ -84,17 +157,22 @@ public class NetworkSamplesGenerator {
 
         ProgressBar progressBar = progressBarSupplier.get();
 
-        Map<VertexId, List<?>> samplesByVertex = new HashMap<>();
-        List<Double> logOfMasterPForEachSample = new ArrayList<>();
-
         dropSamples(dropCount, progressBar);
 
         int sampleCount = 0;
+        int nextCheck = criterion == null ? Integer.MAX_VALUE : criterion.nextCheckAfter(0);
         int samplesLeft = totalSampleCount - dropCount;
         for (int i = 0; i < samplesLeft; i++) {
             if (i % downSampleInterval == 0) {
                 algorithm.sample(samplesByVertex, logOfMasterPForEachSample);
                 sampleCount++;
+
+                if (sampleCount == nextCheck) {
+                    if (criterion.isMetBy(new NetworkSamples(samplesByVertex, logOfMasterPForEachSample, sampleCount))) {
+                        break;
+                    }
+                    nextCheck = criterion.nextCheckAfter(sampleCount);
+                }
             } else {
                 algorithm.step();
             }
@@ -103,7 +181,7 @@ public class NetworkSamplesGenerator {
         }
 
         progressBar.finish();
-        return new NetworkSamples(samplesByVertex, logOfMasterPForEachSample, sampleCount);
+        return sampleCount;
     }
 
     /**
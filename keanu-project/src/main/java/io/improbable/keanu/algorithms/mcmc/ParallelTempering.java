@@ -0,0 +1,300 @@
+package io.improbable.keanu.algorithms.mcmc;
+
+import com.google.common.base.Preconditions;
+import io.improbable.keanu.algorithms.NetworkSamples;
+import io.improbable.keanu.algorithms.PosteriorSamplingAlgorithm;
+import io.improbable.keanu.algorithms.mcmc.proposal.MHStepVariableSelector;
+import io.improbable.keanu.algorithms.mcmc.proposal.ProposalDistribution;
+import io.improbable.keanu.network.BayesianNetwork;
+import io.improbable.keanu.network.ExecutionContext;
+import io.improbable.keanu.network.NetworkState;
+import io.improbable.keanu.network.SimpleNetworkState;
+import io.improbable.keanu.util.ProgressBar;
+import io.improbable.keanu.vertices.Vertex;
+import io.improbable.keanu.vertices.VertexId;
+import io.improbable.keanu.vertices.dbl.KeanuRandom;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static io.improbable.keanu.algorithms.mcmc.proposal.MHStepVariableSelector.SINGLE_VARIABLE_SELECTOR;
+
+/**
+ * Parallel tempering (replica exchange MCMC) runs a ladder of Metropolis Hastings chains, each targeting the
+ * posterior raised to the power 1/T for its temperature T. Hot chains move freely between modes and pass their
+ * states down the ladder through swaps between adjacent temperatures, which lets the T=1 chain mix between modes
+ * that a single chain would rarely cross. Only the T=1 chain is sampled.
+ * <p>
+ * Each replica holds its state in its own {@link ExecutionContext} so the replicas step in parallel on the same
+ * network. The network itself is left in the state it was in before sampling. Swaps exchange the temperatures of
+ * two replicas rather than their states.
+ */
+@Builder
+public class ParallelTempering implements PosteriorSamplingAlgorithm {
+
+    private static final MHStepVariableSelector DEFAULT_VARIABLE_SELECTOR = SINGLE_VARIABLE_SELECTOR;
+    private static final boolean DEFAULT_USE_CACHE_ON_REJECTION = true;
+    private static final double DEFAULT_MAX_TEMPERATURE = 10.0;
+    private static final int DEFAULT_STEPS_PER_SWAP = 10;
+
+    public static ParallelTempering withDefaultConfig() {
+        return withDefaultConfig(KeanuRandom.getDefaultRandom());
+    }
+
+    public static ParallelTempering withDefaultConfig(KeanuRandom random) {
+        return ParallelTempering.builder()
+            .random(random)
+            .build();
+    }
+
+    //Used to propose swaps and to seed the source of randomness of each replica
+    @Getter
+    @Setter
+    @Builder.Default
+    private KeanuRandom random = KeanuRandom.getDefaultRandom();
+
+    //Creates the proposal distribution of each replica. The replicas step in parallel, so a proposal
+    //distribution that adapts as it is used must not be shared between them.
+    @Getter
+    @Setter
+    @Builder.Default
+    private Supplier<ProposalDistribution> proposalDistributionSupplier = ProposalDistribution::usePrior;
+
+    @Getter
+    @Setter
+    @Builder.Default
+    private MHStepVariableSelector variableSelector = DEFAULT_VARIABLE_SELECTOR;
+
+    @Getter
+    @Setter
+    @Builder.Default
+    private boolean useCacheOnRejection = DEFAULT_USE_CACHE_ON_REJECTION;
+
+    //The number of tempered chains, including the T=1 chain. By default there is one replica per core.
+    @Getter
+    @Setter
+    @Builder.Default
+    private int replicaCount = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    //The temperature of the hottest replica. Temperatures are spaced geometrically between 1 and this.
+    @Getter
+    @Setter
+    @Builder.Default
+    private double maxTemperature = DEFAULT_MAX_TEMPERATURE;
+
+    //Overrides the geometric ladder given by replicaCount and maxTemperature if set. Must start at 1 and increase.
+    @Getter
+    @Setter
+    private double[] temperatures;
+
+    //The number of MH steps every replica takes between swap proposals. Each sample is taken after a round of
+    //steps and swaps, so this is also the number of MH steps per sample for each replica.
+    @Getter
+    @Setter
+    @Builder.Default
+    private int stepsPerSwap = DEFAULT_STEPS_PER_SWAP;
+
+    /**
+     * @param bayesianNetwork      a bayesian network containing latent vertices
+     * @param verticesToSampleFrom the vertices to include in the returned samples
+     * @param sampleCount          number of samples to take from the T=1 chain
+     * @return Samples for each vertex ordered by MCMC iteration
+     */
+    @Override
+    public NetworkSamples getPosteriorSamples(BayesianNetwork bayesianNetwork,
+                                              List<? extends Vertex> verticesToSampleFrom,
+                                              int sampleCount) {
+        return generatePosteriorSamples(bayesianNetwork, verticesToSampleFrom)
+            .generate(sampleCount);
+    }
+
+    public NetworkSamplesGenerator generatePosteriorSamples(final BayesianNetwork bayesianNetwork,
+                                                            final List<? extends Vertex> verticesToSampleFrom) {
+
+        return new NetworkSamplesGenerator(setupSampler(bayesianNetwork, verticesToSampleFrom), ProgressBar::new);
+    }
+
+    /**
+     * @param count          the number of temperatures
+     * @param maxTemperature the highest temperature
+     * @return temperatures from 1 to maxTemperature with a constant ratio between neighbours
+     */
+    public static double[] geometricLadder(int count, double maxTemperature) {
+        Preconditions.checkArgument(count > 0, "Replica count of %s is invalid. Must have at least one replica.", count);
+        Preconditions.checkArgument(maxTemperature >= 1.0, "Max temperature of %s is invalid. Must be at least 1.", maxTemperature);
+
+        double[] ladder = new double[count];
+        for (int i = 0; i < count; i++) {
+            ladder[i] = count == 1 ? 1.0 : Math.pow(maxTemperature, i / (count - 1.0));
+        }
+        return ladder;
+    }
+
+    private Sampler setupSampler(final BayesianNetwork bayesianNetwork,
+                                 final List<? extends Vertex> verticesToSampleFrom) {
+        MetropolisHastings.checkBayesNetInHealthyState(bayesianNetwork);
+        Preconditions.checkArgument(stepsPerSwap > 0, "Steps per swap of %s is invalid. Must step at least once.", stepsPerSwap);
+
+        double[] ladder = temperatures != null ? temperatures : geometricLadder(replicaCount, maxTemperature);
+        checkLadder(ladder);
+
+        List<Vertex> latentVertices = bayesianNetwork.getLatentVertices();
+
+        Replica[] replicas = new Replica[ladder.length];
+        for (int i = 0; i < ladder.length; i++) {
+            ExecutionContext context = ExecutionContext.of(bayesianNetwork);
+            KeanuRandom replicaRandom = new KeanuRandom(random.nextInt(Integer.MAX_VALUE));
+            MetropolisHastingsStep mhStep = context.run(() -> new MetropolisHastingsStep(
+                latentVertices,
+                proposalDistributionSupplier.get(),
+                useCacheOnRejection,
+                replicaRandom
+            ));
+            double logProb = context.run(bayesianNetwork::getLogOfMasterP);
+            replicas[i] = new Replica(context, mhStep, latentVertices, variableSelector, ladder[i], logProb);
+        }
+
+        return new Sampler(replicas, verticesToSampleFrom, stepsPerSwap, random);
+    }
+
+    private static void checkLadder(double[] ladder) {
+        Preconditions.checkArgument(ladder.length > 0, "At least one temperature is required");
+        Preconditions.checkArgument(ladder[0] == 1.0,
+            "The first temperature must be 1 to sample from the posterior but is %s", ladder[0]
+        );
+        for (int i = 1; i < ladder.length; i++) {
+            Preconditions.checkArgument(ladder[i] > ladder[i - 1],
+                "Temperatures must increase but %s follows %s", ladder[i], ladder[i - 1]
+            );
+        }
+    }
+
+    public static class Sampler implements SamplingAlgorithm {
+
+        //ladder[k] is the replica currently at the k-th temperature, so ladder[0] is the T=1 chain
+        private final Replica[] ladder;
+        private final List<? extends Vertex> verticesToSampleFrom;
+        private final int stepsPerSwap;
+        private final KeanuRandom random;
+
+        private final long[] swapsProposed;
+        private final long[] swapsAccepted;
+        private int round;
+
+        Sampler(Replica[] ladder,
+                List<? extends Vertex> verticesToSampleFrom,
+                int stepsPerSwap,
+                KeanuRandom random) {
+            this.ladder = ladder;
+            this.verticesToSampleFrom = verticesToSampleFrom;
+            this.stepsPerSwap = stepsPerSwap;
+            this.random = random;
+            this.swapsProposed = new long[Math.max(ladder.length - 1, 0)];
+            this.swapsAccepted = new long[swapsProposed.length];
+        }
+
+        /**
+         * Steps every replica in parallel then proposes swaps between adjacent temperatures. Even and odd pairs
+         * of neighbours are proposed on alternate rounds so that no replica is in two swaps at once.
+         */
+        @Override
+        public void step() {
+            Arrays.stream(ladder).parallel().forEach(replica -> replica.step(stepsPerSwap));
+
+            for (int k = round % 2; k + 1 < ladder.length; k += 2) {
+                proposeSwap(k);
+            }
+            round++;
+        }
+
+        private void proposeSwap(int k) {
+            Replica colder = ladder[k];
+            Replica hotter = ladder[k + 1];
+
+            double logR = (1.0 / colder.temperature - 1.0 / hotter.temperature) * (hotter.logProb - colder.logProb);
+
+            swapsProposed[k]++;
+            if (logR >= 0 || Math.exp(logR) >= random.nextDouble()) {
+                double colderTemperature = colder.temperature;
+                colder.temperature = hotter.temperature;
+                hotter.temperature = colderTemperature;
+
+                ladder[k] = hotter;
+                ladder[k + 1] = colder;
+                swapsAccepted[k]++;
+            }
+        }
+
+        @Override
+        public void sample(Map<VertexId, List<?>> samplesByVertex, List<Double> logOfMasterPForEachSample) {
+            step();
+            Replica cold = ladder[0];
+            cold.context.run(() -> {
+                MetropolisHastings.takeSamples(samplesByVertex, verticesToSampleFrom);
+                return null;
+            });
+            logOfMasterPForEachSample.add(cold.logProb);
+        }
+
+        @Override
+        public NetworkState sample() {
+            step();
+            return ladder[0].context.run(() -> new SimpleNetworkState(MetropolisHastings.takeSample(verticesToSampleFrom)));
+        }
+
+        /**
+         * @return for each pair of adjacent temperatures, the fraction of proposed swaps between them that were
+         * accepted. Rates that are close to zero suggest the temperatures are too far apart.
+         */
+        public double[] getSwapAcceptanceRates() {
+            double[] rates = new double[swapsProposed.length];
+            for (int k = 0; k < rates.length; k++) {
+                rates[k] = swapsProposed[k] == 0 ? 0.0 : swapsAccepted[k] / (double) swapsProposed[k];
+            }
+            return rates;
+        }
+    }
+
+    private static class Replica {
+
+        private final ExecutionContext context;
+        private final MetropolisHastingsStep mhStep;
+        private final List<Vertex> latentVertices;
+        private final MHStepVariableSelector variableSelector;
+
+        private double temperature;
+        private double logProb;
+        private int sampleNum;
+
+        Replica(ExecutionContext context,
+                MetropolisHastingsStep mhStep,
+                List<Vertex> latentVertices,
+                MHStepVariableSelector variableSelector,
+                double temperature,
+                double logProb) {
+            this.context = context;
+            this.mhStep = mhStep;
+            this.latentVertices = latentVertices;
+            this.variableSelector = variableSelector;
+            this.temperature = temperature;
+            this.logProb = logProb;
+        }
+
+        void step(int stepCount) {
+            context.run(() -> {
+                for (int i = 0; i < stepCount; i++) {
+                    Set<Vertex> chosenVertices = variableSelector.select(latentVertices, sampleNum);
+                    logProb = mhStep.step(chosenVertices, logProb, temperature).getLogProbabilityAfterStep();
+                    sampleNum++;
+                }
+                return null;
+            });
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package io.improbable.keanu.algorithms.mcmc;
+
+import com.google.common.base.Preconditions;
+import io.improbable.keanu.algorithms.NetworkSamples;
+import io.improbable.keanu.algorithms.graphtraversal.PropagationPlan;
+import io.improbable.keanu.algorithms.graphtraversal.TopologicalSort;
+import io.improbable.keanu.algorithms.mcmc.proposal.MHStepVariableSelector;
+import io.improbable.keanu.algorithms.mcmc.proposal.ProposalDistribution;
+import io.improbable.keanu.algorithms.particlefiltering.Resampling;
+import io.improbable.keanu.network.BayesianNetwork;
+import io.improbable.keanu.network.ExecutionContext;
+import io.improbable.keanu.vertices.ProbabilityCalculator;
+import io.improbable.keanu.vertices.Vertex;
+import io.improbable.keanu.vertices.VertexId;
+import io.improbable.keanu.vertices.dbl.KeanuRandom;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static io.improbable.keanu.algorithms.mcmc.proposal.MHStepVariableSelector.SINGLE_VARIABLE_SELECTOR;
+
+/**
+ * Sequential Monte Carlo with likelihood tempering (Del Moral, Doucet and Jasra, 2006). A population of particles
+ * is drawn from the prior and moved through the tempered posteriors prior * likelihood^beta as beta rises from 0
+ * to 1. At each stage the particles are reweighted by the increase in their tempered likelihood, resampled, and
+ * rejuvenated with Metropolis Hastings steps that target the new tempered posterior.
+ * <p>
+ * Each increase in beta is chosen so that the effective sample size of the reweighted particles is a fixed
+ * fraction of the particle count. The average weights of the stages multiply to an estimate of the marginal
+ * likelihood of the observations, which MCMC does not give.
+ * <p>
+ * Each particle holds its state in its own {@link ExecutionContext} so particles are rejuvenated in parallel on the
+ * same network. The network itself is left in the state it was in before sampling.
+ */
+@Builder
+public class SequentialMonteCarlo {
+
+    private static final MHStepVariableSelector DEFAULT_VARIABLE_SELECTOR = SINGLE_VARIABLE_SELECTOR;
+    private static final boolean DEFAULT_USE_CACHE_ON_REJECTION = true;
+    private static final int DEFAULT_PARTICLE_COUNT = 1000;
+    private static final double DEFAULT_TARGET_ESS_FRACTION = 0.5;
+    private static final int DEFAULT_REJUVENATION_STEPS = 10;
+    private static final int BISECTION_ITERATIONS = 50;
+    private static final double MIN_BETA_INCREASE = 1e-12;
+
+    public static SequentialMonteCarlo withDefaultConfig() {
+        return withDefaultConfig(KeanuRandom.getDefaultRandom());
+    }
+
+    public static SequentialMonteCarlo withDefaultConfig(KeanuRandom random) {
+        return SequentialMonteCarlo.builder()
+            .random(random)
+            .build();
+    }
+
+    //Used to resample and to seed the source of randomness of each particle
+    @Getter
+    @Setter
+    @Builder.Default
+    private KeanuRandom random = KeanuRandom.getDefaultRandom();
+
+    //Creates the proposal distribution of the rejuvenation steps of each particle. The particles are rejuvenated
+    //in parallel, so a proposal distribution that adapts as it is used must not be shared between them.
+    @Getter
+    @Setter
+    @Builder.Default
+    private Supplier<ProposalDistribution> proposalDistributionSupplier = ProposalDistribution::usePrior;
+
+    @Getter
+    @Setter
+    @Builder.Default
+    private MHStepVariableSelector variableSelector = DEFAULT_VARIABLE_SELECTOR;
+
+    @Getter
+    @Setter
+    @Builder.Default
+    private boolean useCacheOnRejection = DEFAULT_USE_CACHE_ON_REJECTION;
+
+    @Getter
+    @Setter
+    @Builder.Default
+    private int particleCount = DEFAULT_PARTICLE_COUNT;
+
+    //The effective sample size, as a fraction of the particle count, that each increase in beta is chosen to keep
+    @Getter
+    @Setter
+    @Builder.Default
+    private double targetEssFraction = DEFAULT_TARGET_ESS_FRACTION;
+
+    //The number of MH steps that each particle takes after every resampling
+    @Getter
+    @Setter
+    @Builder.Default
+    private int rejuvenationSteps = DEFAULT_REJUVENATION_STEPS;
+
+    /**
+     * @param bayesianNetwork      a bayesian network containing latent and observed vertices
+     * @param verticesToSampleFrom the vertices to include in the returned samples
+     * @return one sample from each particle of the final population, which targets the posterior, along with the
+     * estimated log marginal likelihood of the observations
+     */
+    public Result run(BayesianNetwork bayesianNetwork, List<? extends Vertex> verticesToSampleFrom) {
+        MetropolisHastings.checkBayesNetInHealthyState(bayesianNetwork);
+        Preconditions.checkArgument(particleCount > 0, "Particle count of %s is invalid. Must have at least one particle.", particleCount);
+        Preconditions.checkArgument(targetEssFraction > 0 && targetEssFraction < 1,
+            "Target ESS fraction of %s is invalid. Must be between 0 and 1.", targetEssFraction
+        );
+
+        List<Vertex> latentVertices = bayesianNetwork.getLatentVertices();
+        List<Vertex> observedVertices = bayesianNetwork.getObservedVertices();
+        Particle[] particles = createParticles(bayesianNetwork, latentVertices, observedVertices);
+
+        List<Double> betas = new ArrayList<>();
+        betas.add(0.0);
+        double beta = 0.0;
+        double logMarginalLikelihood = 0.0;
+
+        while (beta < 1.0) {
+            double[] logLikelihoods = new double[particles.length];
+            for (int i = 0; i < particles.length; i++) {
+                logLikelihoods[i] = particles[i].logLikelihood;
+            }
+
+            double nextBeta = nextBeta(logLikelihoods, beta);
+            double[] logWeights = incrementalLogWeights(logLikelihoods, nextBeta - beta);
+
+            double logSumOfWeights = Resampling.logSumExp(logWeights);
+            if (logSumOfWeights == Double.NEGATIVE_INFINITY) {
+                throw new IllegalStateException("Every particle has a zero probability of the observations");
+            }
+            logMarginalLikelihood += logSumOfWeights - Math.log(particles.length);
+
+            resample(particles, logWeights);
+
+            double temperature = 1.0 / nextBeta;
+            Arrays.stream(particles).parallel().forEach(particle -> particle.rejuvenate(temperature));
+
+            beta = nextBeta;
+            betas.add(beta);
+        }
+
+        return new Result(toNetworkSamples(particles, verticesToSampleFrom), logMarginalLikelihood, betas);
+    }
+
+    private Particle[] createParticles(BayesianNetwork bayesianNetwork,
+                                       List<Vertex> latentVertices,
+                                       List<Vertex> observedVertices) {
+        List<Vertex> sortedByDependency = TopologicalSort.sort(latentVertices);
+        PropagationPlan[] propagationPlans = new PropagationPlan[sortedByDependency.size()];
+        for (int i = 0; i < propagationPlans.length; i++) {
+            propagationPlans[i] = PropagationPlan.compile(sortedByDependency.get(i));
+        }
+
+        Particle[] particles = new Particle[particleCount];
+        for (int i = 0; i < particles.length; i++) {
+            ExecutionContext context = ExecutionContext.of(bayesianNetwork);
+            KeanuRandom particleRandom = new KeanuRandom(random.nextInt(Integer.MAX_VALUE));
+            MetropolisHastingsStep mhStep = context.run(() -> new MetropolisHastingsStep(
+                latentVertices,
+                proposalDistributionSupplier.get(),
+                useCacheOnRejection,
+                true,
+                particleRandom
+            ));
+            particles[i] = new Particle(context, mhStep, particleRandom, latentVertices, observedVertices);
+        }
+
+        Arrays.stream(particles).parallel().forEach(particle -> particle.sampleFromPrior(sortedByDependency, propagationPlans));
+        return particles;
+    }
+
+    /**
+     * Finds the largest beta, up to 1, for which the effective sample size of the incremental weights is at least
+     * the target, by bisection on the increase in beta.
+     */
+    private double nextBeta(double[] logLikelihoods, double beta) {
+        double targetEss = targetEssFraction * logLikelihoods.length;
+        if (effectiveSampleSize(logLikelihoods, 1.0 - beta) >= targetEss) {
+            return 1.0;
+        }
+
+        double lower = 0.0;
+        double upper = 1.0 - beta;
+        for (int i = 0; i < BISECTION_ITERATIONS; i++) {
+            double middle = (lower + upper) / 2;
+            if (effectiveSampleSize(logLikelihoods, middle) >= targetEss) {
+                lower = middle;
+            } else {
+                upper = middle;
+            }
+        }
+
+        //always move forward, even if the weights collapse for the smallest step that bisection can find
+        return Math.min(1.0, beta + Math.max(lower, MIN_BETA_INCREASE));
+    }
+
+    private static double effectiveSampleSize(double[] logLikelihoods, double betaIncrease) {
+        return Resampling.effectiveSampleSize(incrementalLogWeights(logLikelihoods, betaIncrease));
+    }
+
+    private static double[] incrementalLogWeights(double[] logLikelihoods, double betaIncrease) {
+        double[] logWeights = new double[logLikelihoods.length];
+        for (int i = 0; i < logWeights.length; i++) {
+            logWeights[i] = logLikelihoods[i] == Double.NEGATIVE_INFINITY ?
+                Double.NEGATIVE_INFINITY : betaIncrease * logLikelihoods[i];
+        }
+        return logWeights;
+    }
+
+    /**
+     * Systematic resampling. Every particle takes a copy of the state of its ancestor so that particles which
+     * share an ancestor are rejuvenated independently.
+     */
+    private void resample(Particle[] particles, double[] logWeights) {
+        int count = particles.length;
+        ExecutionContext[] contexts = new ExecutionContext[count];
+        double[] logLikelihoods = new double[count];
+        double[] logProbs = new double[count];
+
+        int[] ancestors = Resampling.SYSTEMATIC.sampleAncestors(logWeights, count, random);
+        for (int i = 0; i < count; i++) {
+            Particle ancestor = particles[ancestors[i]];
+            contexts[i] = ancestor.context.copy();
+            logLikelihoods[i] = ancestor.logLikelihood;
+            logProbs[i] = ancestor.logProb;
+        }
+
+        for (int i = 0; i < count; i++) {
+            particles[i].context = contexts[i];
+            particles[i].logLikelihood = logLikelihoods[i];
+            particles[i].logProb = logProbs[i];
+        }
+    }
+
+    private static NetworkSamples toNetworkSamples(Particle[] particles, List<? extends Vertex> verticesToSampleFrom) {
+        Map<VertexId, List<?>> samplesByVertex = new HashMap<>();
+        List<Double> logOfMasterPForEachSample = new ArrayList<>(particles.length);
+        for (Particle particle : particles) {
+            particle.context.run(() -> {
+                MetropolisHastings.takeSamples(samplesByVertex, verticesToSampleFrom);
+                return null;
+            });
+            logOfMasterPForEachSample.add(particle.logProb);
+        }
+        return new NetworkSamples(samplesByVertex, logOfMasterPForEachSample, particles.length);
+    }
+
+    @Getter
+    public static class Result {
+
+        //One sample from each particle of the final population
+        private final NetworkSamples samples;
+
+        //The estimated natural log of the probability of the observations with the latent vertices integrated out
+        private final double logMarginalLikelihood;
+
+        //The beta of each stage, from 0 to 1
+        private final List<Double> betas;
+
+        Result(NetworkSamples samples, double logMarginalLikelihood, List<Double> betas) {
+            this.samples = samples;
+            this.logMarginalLikelihood = logMarginalLikelihood;
+            this.betas = Collections.unmodifiableList(betas);
+        }
+    }
+
+    private class Particle {
+
+        private final MetropolisHastingsStep mhStep;
+        private final KeanuRandom random;
+        private final List<Vertex> latentVertices;
+        private final List<Vertex> observedVertices;
+
+        private ExecutionContext context;
+        private double logLikelihood;
+        private double logProb;
+        private int sampleNum;
+
+        Particle(ExecutionContext context,
+                 MetropolisHastingsStep mhStep,
+                 KeanuRandom random,
+                 List<Vertex> latentVertices,
+                 List<Vertex> observedVertices) {
+            this.context = context;
+            this.mhStep = mhStep;
+            this.random = random;
+            this.latentVertices = latentVertices;
+            this.observedVertices = observedVertices;
+        }
+
+        void sampleFromPrior(List<Vertex> sortedByDependency, PropagationPlan[] propagationPlans) {
+            context.run(() -> {
+                for (int i = 0; i < propagationPlans.length; i++) {
+                    setValueFromSample(sortedByDependency.get(i), random);
+                    propagationPlans[i].cascade();
+                }
+                updateLogProbs();
+                return null;
+            });
+        }
+
+        void rejuvenate(double temperature) {
+            context.run(() -> {
+                for (int i = 0; i < rejuvenationSteps; i++) {
+                    Set<Vertex> chosenVertices = variableSelector.select(latentVertices, sampleNum);
+                    logProb = mhStep.step(chosenVertices, logProb, temperature).getLogProbabilityAfterStep();
+                    sampleNum++;
+                }
+                logLikelihood = ProbabilityCalculator.calculateLogProbFor(observedVertices);
+                return null;
+            });
+        }
+
+        private void updateLogProbs() {
+            logLikelihood = ProbabilityCalculator.calculateLogProbFor(observedVertices);
+            logProb = ProbabilityCalculator.calculateLogProbFor(latentVertices) + logLikelihood;
+        }
+    }
+
+    private static <T> void setValueFromSample(Vertex<T> vertex, KeanuRandom random) {
+        vertex.setValue(vertex.sample(random));
+    }
+}
@@ -1,5 +1,6 @@
 package io.improbable.keanu.algorithms.mcmc.initialconditions;
 
+import io.improbable.keanu.algorithms.graphtraversal.PropagationPlan;
 import io.improbable.keanu.algorithms.graphtraversal.TopologicalSort;
 import io.improbable.keanu.algorithms.mcmc.SimulatedAnnealing;
 import io.improbable.keanu.network.BayesianNetwork;
@@ -23,9 +24,10 @@ public class MultiModeDiscovery {
         List<NetworkState> maxSamples = new ArrayList<>();
         network.cascadeObservations();
         List<Vertex> sortedByDependency = TopologicalSort.sort(network.getLatentVertices());
+        PropagationPlan propagationPlan = PropagationPlan.compile(sortedByDependency);
 
         for (int i = 0; i < attempts; i++) {
-            BayesianNetwork.setFromSampleAndCascade(sortedByDependency, random);
+            BayesianNetwork.setFromSampleAndCascade(sortedByDependency, propagationPlan, random);
             NetworkState maxAPosteriori = SimulatedAnnealing.withDefaultConfig(random).getMaxAPosteriori(network, samplesPerAttempt);
             maxSamples.add(maxAPosteriori);
         }
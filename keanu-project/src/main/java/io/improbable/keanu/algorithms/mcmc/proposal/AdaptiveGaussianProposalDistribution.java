@@ -0,0 +1,323 @@
+package io.improbable.keanu.algorithms.mcmc.proposal;
+
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.vertices.Probabilistic;
+import io.improbable.keanu.vertices.Vertex;
+import io.improbable.keanu.vertices.dbl.KeanuRandom;
+import lombok.Builder;
+import lombok.Getter;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.CholeskyDecomposition;
+import org.apache.commons.math3.linear.NonPositiveDefiniteMatrixException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Adaptive Metropolis: a random walk Gaussian proposal whose covariance is learnt from the history of the chain,
+ * following Haario, Saksman and Tamminen, 2001, with the scale tuned towards the optimal acceptance rate
+ * (Roberts and Rosenthal, 2009).
+ * <p>
+ * Each set of vertices that is proposed together, as chosen by the {@link MHStepVariableSelector}, is a block
+ * with its own joint covariance over all of its elements. With the default single variable selector this learns
+ * the scale and correlations within each vertex, and with a {@link BlockVariableSelector} it also learns the
+ * correlations between vertices.
+ * <p>
+ * Every block adapts for its first adaptCount proposals and is then frozen, so samples taken after that many
+ * steps per block come from a fixed Markov chain. The scale adapts to the acceptances reported through
+ * {@link #onProposalAccepted(Proposal)} and {@link #onProposalRejected(Proposal)}.
+ * <p>
+ * The statistics are held by this distribution, so each chain must have its own instance. A proposal that is
+ * requested on one thread while another thread's proposal is still waiting for its outcome throws an
+ * {@link IllegalStateException}, which catches an instance that is shared between chains stepping in parallel.
+ */
+@Builder
+public class AdaptiveGaussianProposalDistribution implements ProposalDistribution {
+
+    //Gelman, Roberts and Gilks, 1996: the optimal random walk scale for a d dimensional Gaussian is 2.38 / sqrt(d)
+    private static final double OPTIMAL_SCALE = 2.38;
+    private static final double OPTIMAL_ACCEPTANCE_ONE_DIMENSION = 0.44;
+    private static final double OPTIMAL_ACCEPTANCE = 0.234;
+    private static final double SCALE_ADAPTATION_EXPONENT = 0.6;
+    private static final double REGULARISATION = 1e-8;
+
+    public static AdaptiveGaussianProposalDistribution withDefaultConfig() {
+        return AdaptiveGaussianProposalDistribution.builder().build();
+    }
+
+    //The standard deviation of every element of the proposal until the covariance has been estimated
+    @Getter
+    @Builder.Default
+    private double initialSigma = 1.0;
+
+    //The number of proposals of each block during which the proposal adapts
+    @Getter
+    @Builder.Default
+    private int adaptCount = 1000;
+
+    //The number of proposals of each block before its estimated covariance replaces the initial sigma
+    @Getter
+    @Builder.Default
+    private int covarianceWarmup = 100;
+
+    //The number of proposals between refactorising the covariance while adapting, which costs O(d^3)
+    @Getter
+    @Builder.Default
+    private int refactorInterval = 20;
+
+    private final Map<List<Vertex<DoubleTensor>>, BlockAdaptation> adaptations = new HashMap<>();
+
+    //The thread whose last proposal is waiting for its outcome, if any
+    private final AtomicReference<Thread> proposingThread = new AtomicReference<>();
+    //The block of the last proposal if its outcome should adapt the scale
+    private BlockAdaptation awaitingOutcome;
+
+    @Override
+    public Proposal getProposal(Set<Vertex> vertices, KeanuRandom random) {
+        Thread thread = Thread.currentThread();
+        if (!proposingThread.compareAndSet(null, thread) && proposingThread.get() != thread) {
+            throw new IllegalStateException(
+                "This proposal distribution is in use by another chain. Each chain must have its own instance."
+            );
+        }
+
+        List<Vertex<DoubleTensor>> block = orderedBlock(vertices);
+
+        double[] current = flatValuesOf(block);
+        BlockAdaptation adaptation = adaptations.computeIfAbsent(block, b -> new BlockAdaptation(current.length));
+        adaptation.update(current);
+        double[] proposed = adaptation.propose(current, random);
+        awaitingOutcome = adaptation.isAdapting() ? adaptation : null;
+
+        Proposal proposal = new Proposal();
+        int offset = 0;
+        for (Vertex<DoubleTensor> vertex : block) {
+            int length = (int) vertex.getValue().getLength();
+            proposal.setProposal(vertex, DoubleTensor.create(Arrays.copyOfRange(proposed, offset, offset + length), vertex.getShape()));
+            offset += length;
+        }
+        return proposal;
+    }
+
+    /**
+     * The proposal is a symmetric random walk, so q(x|x') = q(x'|x) and the Hastings correction cancels. The log
+     * probabilities are given as zero, which is correct up to the constant that cancels.
+     */
+    @Override
+    public <T> double logProb(Probabilistic<T> vertex, T ofValue, T givenValue) {
+        return 0.0;
+    }
+
+    @Override
+    public void onProposalAccepted(Proposal proposal) {
+        onOutcome(1.0);
+    }
+
+    @Override
+    public void onProposalRejected(Proposal proposal) {
+        onOutcome(0.0);
+    }
+
+    private void onOutcome(double accepted) {
+        if (awaitingOutcome != null) {
+            awaitingOutcome.adaptScale(accepted);
+            awaitingOutcome = null;
+        }
+        proposingThread.compareAndSet(Thread.currentThread(), null);
+    }
+
+    /**
+     * @param vertices the vertices of a block
+     * @return the covariance of the proposal for the block, as a matrix with a row and column for each element of
+     * the vertices in order of their ids, or null if the block has not been proposed
+     */
+    public DoubleTensor getProposalCovariance(Set<? extends Vertex> vertices) {
+        BlockAdaptation adaptation = adaptations.get(orderedBlock(vertices));
+        if (adaptation == null) {
+            return null;
+        }
+        return adaptation.proposalCovariance();
+    }
+
+    private static List<Vertex<DoubleTensor>> orderedBlock(Set<? extends Vertex> vertices) {
+        List<Vertex<DoubleTensor>> block = new ArrayList<>();
+        for (Vertex<?> vertex : vertices) {
+            if (!(vertex.getValue() instanceof DoubleTensor)) {
+                throw new IllegalArgumentException(
+                    "Only DoubleTensor values are supported - not " + vertex.getValue().getClass().getSimpleName()
+                );
+            }
+            block.add((Vertex<DoubleTensor>) vertex);
+        }
+        block.sort(Comparator.comparing(Vertex::getId));
+        return block;
+    }
+
+    private static double[] flatValuesOf(List<Vertex<DoubleTensor>> block) {
+        if (block.size() == 1) {
+            return block.get(0).getValue().asFlatDoubleArray();
+        }
+
+        int length = 0;
+        for (Vertex<DoubleTensor> vertex : block) {
+            length += vertex.getValue().getLength();
+        }
+        double[] values = new double[length];
+        int offset = 0;
+        for (Vertex<DoubleTensor> vertex : block) {
+            double[] vertexValues = vertex.getValue().asFlatDoubleArray();
+            System.arraycopy(vertexValues, 0, values, offset, vertexValues.length);
+            offset += vertexValues.length;
+        }
+        return values;
+    }
+
+    private class BlockAdaptation {
+
+        private final int dimension;
+        private final double targetAcceptance;
+
+        private long count;
+        private final double[] mean;
+        private final double[][] sumOfDifferenceProducts;
+
+        //The log of a multiplier on the proposal's standard deviation, tuned towards the target acceptance
+        private double logScale;
+        //The lower triangular factor of the estimated covariance, or null while the initial sigma is used
+        private double[][] choleskyFactor;
+        private int updatesSinceFactorisation;
+
+        BlockAdaptation(int dimension) {
+            this.dimension = dimension;
+            this.targetAcceptance = dimension == 1 ? OPTIMAL_ACCEPTANCE_ONE_DIMENSION : OPTIMAL_ACCEPTANCE;
+            this.mean = new double[dimension];
+            this.sumOfDifferenceProducts = new double[dimension][dimension];
+        }
+
+        boolean isAdapting() {
+            return count < adaptCount;
+        }
+
+        /**
+         * Moves the scale towards the target acceptance by a Robbins-Monro step that shrinks as the block adapts.
+         *
+         * @param accepted 1 if the last proposal of the block was accepted and 0 if it was rejected
+         */
+        void adaptScale(double accepted) {
+            logScale += (accepted - targetAcceptance) / Math.pow(count, SCALE_ADAPTATION_EXPONENT);
+        }
+
+        /**
+         * Adds the current state of the chain to the history.
+         */
+        void update(double[] current) {
+            if (count >= adaptCount) {
+                return;
+            }
+
+            count++;
+            double[] differenceBefore = new double[dimension];
+            for (int i = 0; i < dimension; i++) {
+                differenceBefore[i] = current[i] - mean[i];
+                mean[i] += differenceBefore[i] / count;
+            }
+            for (int i = 0; i < dimension; i++) {
+                for (int j = 0; j < dimension; j++) {
+                    sumOfDifferenceProducts[i][j] += differenceBefore[i] * (current[j] - mean[j]);
+                }
+            }
+
+            updatesSinceFactorisation++;
+            if (count == covarianceWarmup) {
+                //the covariance replaces the initial sigma so the scale tuned for the initial sigma no longer applies
+                logScale = 0.0;
+                factorise();
+            } else if (count > covarianceWarmup && (updatesSinceFactorisation >= refactorInterval || count == adaptCount)) {
+                factorise();
+            }
+        }
+
+        double[] propose(double[] current, KeanuRandom random) {
+            double[] proposed = new double[dimension];
+            double[] z = new double[dimension];
+            for (int i = 0; i < dimension; i++) {
+                z[i] = random.nextGaussian();
+            }
+
+            if (choleskyFactor == null) {
+                double sigma = initialSigma * Math.exp(logScale);
+                for (int i = 0; i < dimension; i++) {
+                    proposed[i] = current[i] + sigma * z[i];
+                }
+            } else {
+                double multiplier = Math.exp(logScale) * OPTIMAL_SCALE / Math.sqrt(dimension);
+                for (int i = 0; i < dimension; i++) {
+                    double step = 0.0;
+                    for (int j = 0; j <= i; j++) {
+                        step += choleskyFactor[i][j] * z[j];
+                    }
+                    proposed[i] = current[i] + multiplier * step;
+                }
+            }
+
+            return proposed;
+        }
+
+        private void factorise() {
+            updatesSinceFactorisation = 0;
+            double[][] covariance = estimatedCovariance();
+            try {
+                choleskyFactor = new CholeskyDecomposition(new Array2DRowRealMatrix(covariance, false)).getL().getData();
+            } catch (NonPositiveDefiniteMatrixException e) {
+                //fall back to independent elements if the history is degenerate, e.g. a block that never moved
+                choleskyFactor = new double[dimension][dimension];
+                for (int i = 0; i < dimension; i++) {
+                    choleskyFactor[i][i] = Math.sqrt(Math.max(covariance[i][i], REGULARISATION));
+                }
+            }
+        }
+
+        private double[][] estimatedCovariance() {
+            double[][] covariance = new double[dimension][dimension];
+            double meanVariance = 0.0;
+            for (int i = 0; i < dimension; i++) {
+                for (int j = 0; j < dimension; j++) {
+                    covariance[i][j] = sumOfDifferenceProducts[i][j] / Math.max(count - 1, 1);
+                }
+                meanVariance += covariance[i][i] / dimension;
+            }
+            for (int i = 0; i < dimension; i++) {
+                covariance[i][i] += REGULARISATION * Math.max(meanVariance, 1.0);
+            }
+            return covariance;
+        }
+
+        DoubleTensor proposalCovariance() {
+            double[] covariance = new double[dimension * dimension];
+            if (choleskyFactor == null) {
+                double sigma = initialSigma * Math.exp(logScale);
+                for (int i = 0; i < dimension; i++) {
+                    covariance[i * dimension + i] = sigma * sigma;
+                }
+            } else {
+                double multiplier = Math.exp(logScale) * OPTIMAL_SCALE / Math.sqrt(dimension);
+                for (int i = 0; i < dimension; i++) {
+                    for (int j = 0; j < dimension; j++) {
+                        double sum = 0.0;
+                        for (int k = 0; k <= Math.min(i, j); k++) {
+                            sum += choleskyFactor[i][k] * choleskyFactor[j][k];
+                        }
+                        covariance[i * dimension + j] = multiplier * multiplier * sum;
+                    }
+                }
+            }
+            return DoubleTensor.create(covariance, dimension, dimension);
+        }
+    }
+}
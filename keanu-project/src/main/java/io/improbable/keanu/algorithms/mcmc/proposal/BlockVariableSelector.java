@@ -0,0 +1,38 @@
+package io.improbable.keanu.algorithms.mcmc.proposal;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+import io.improbable.keanu.vertices.Vertex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Proposes fixed blocks of vertices together, cycling through the blocks in order. Vertices that are strongly
+ * correlated in the posterior mix much faster when they are proposed together with a proposal that knows their
+ * correlation, e.g. {@link AdaptiveGaussianProposalDistribution}.
+ */
+public class BlockVariableSelector implements MHStepVariableSelector {
+
+    private final List<Set<Vertex>> blocks;
+
+    /**
+     * @param blocks the sets of vertices to propose together. Every latent vertex should be in exactly one block.
+     */
+    public BlockVariableSelector(List<? extends Collection<? extends Vertex>> blocks) {
+        Preconditions.checkArgument(!blocks.isEmpty(), "At least one block is required");
+
+        this.blocks = new ArrayList<>();
+        for (Collection<? extends Vertex> block : blocks) {
+            Preconditions.checkArgument(!block.isEmpty(), "Blocks must not be empty");
+            this.blocks.add(ImmutableSet.copyOf(block));
+        }
+    }
+
+    @Override
+    public Set<Vertex> select(List<? extends Vertex> latentVertices, int sampleNumber) {
+        return blocks.get(sampleNumber % blocks.size());
+    }
+}
@@ -0,0 +1,242 @@
+package io.improbable.keanu.algorithms.mcmc.proposal;
+
+import io.improbable.keanu.distributions.ContinuousDistribution;
+import io.improbable.keanu.distributions.continuous.Beta;
+import io.improbable.keanu.distributions.continuous.Gamma;
+import io.improbable.keanu.distributions.continuous.Gaussian;
+import io.improbable.keanu.tensor.Tensor;
+import io.improbable.keanu.tensor.TensorShape;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.vertices.Probabilistic;
+import io.improbable.keanu.vertices.Vertex;
+import io.improbable.keanu.vertices.bool.probabilistic.BernoulliVertex;
+import io.improbable.keanu.vertices.dbl.KeanuRandom;
+import io.improbable.keanu.vertices.dbl.probabilistic.BetaVertex;
+import io.improbable.keanu.vertices.dbl.probabilistic.GammaVertex;
+import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
+import io.improbable.keanu.vertices.intgr.probabilistic.BinomialVertex;
+import io.improbable.keanu.vertices.intgr.probabilistic.PoissonVertex;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Proposes a latent vertex from its exact conditional distribution given the rest of the network when its prior
+ * is conjugate to the likelihood of all of its children. A proposal from the conditional is always accepted, so
+ * Metropolis Hastings becomes Gibbs sampling for these vertices. Other vertices are proposed with the fallback
+ * proposal distribution.
+ * <p>
+ * The recognised structures are:
+ * <ul>
+ * <li>a {@link GaussianVertex} that is the mu of {@link GaussianVertex} children</li>
+ * <li>a {@link GammaVertex} that is the mu of {@link PoissonVertex} children</li>
+ * <li>a {@link BetaVertex} that is the probability of {@link BernoulliVertex} or {@link BinomialVertex} children</li>
+ * </ul>
+ * The latent must be the parameter itself rather than feed it through other vertices, and must either be scalar or
+ * have the shape of each child. Conditionals are only exact for one vertex at a time, so a proposal for more than
+ * one vertex, as chosen by a selector other than {@link MHStepVariableSelector#SINGLE_VARIABLE_SELECTOR}, always
+ * uses the fallback.
+ */
+public class ConjugateGibbsProposalDistribution implements ProposalDistribution {
+
+    private final ProposalDistribution fallback;
+
+    public ConjugateGibbsProposalDistribution() {
+        this(ProposalDistribution.usePrior());
+    }
+
+    /**
+     * @param fallback the proposal distribution for vertices that have no conjugate conditional
+     */
+    public ConjugateGibbsProposalDistribution(ProposalDistribution fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public Proposal getProposal(Set<Vertex> vertices, KeanuRandom random) {
+        ContinuousDistribution conditional = conditionalOfOnly(vertices);
+        if (conditional == null) {
+            return fallback.getProposal(vertices, random);
+        }
+
+        Vertex<DoubleTensor> vertex = vertices.iterator().next();
+        Proposal proposal = new Proposal();
+        proposal.setProposal(vertex, conditional.sample(vertex.getShape(), random));
+        return proposal;
+    }
+
+    @Override
+    public <T> double logProb(Probabilistic<T> vertex, T ofValue, T givenValue) {
+        ContinuousDistribution conditional = conditionalOf((Vertex<?>) vertex);
+        if (conditional == null) {
+            return fallback.logProb(vertex, ofValue, givenValue);
+        }
+        return conditional.logProb((DoubleTensor) ofValue).sum();
+    }
+
+    /**
+     * The conditional of a vertex doesn't depend on its own value so it is the same after the proposal has been
+     * applied as it was when the proposal was made.
+     */
+    @Override
+    public double logProbAtFromGivenTo(Proposal proposal) {
+        ContinuousDistribution conditional = conditionalOfOnly(proposal.getVerticesWithProposal());
+        if (conditional == null) {
+            return fallback.logProbAtFromGivenTo(proposal);
+        }
+        Vertex<DoubleTensor> vertex = proposal.getVerticesWithProposal().iterator().next();
+        return conditional.logProb(proposal.getProposalFrom(vertex)).sum();
+    }
+
+    @Override
+    public double logProbAtToGivenFrom(Proposal proposal) {
+        ContinuousDistribution conditional = conditionalOfOnly(proposal.getVerticesWithProposal());
+        if (conditional == null) {
+            return fallback.logProbAtToGivenFrom(proposal);
+        }
+        Vertex<DoubleTensor> vertex = proposal.getVerticesWithProposal().iterator().next();
+        return conditional.logProb(proposal.getProposalTo(vertex)).sum();
+    }
+
+    /**
+     * @param vertex a latent vertex
+     * @return whether the vertex has a conjugate conditional that it can be proposed from
+     */
+    public static boolean isConjugate(Vertex<?> vertex) {
+        return conditionalOf(vertex) != null;
+    }
+
+    private static ContinuousDistribution conditionalOfOnly(Set<Vertex> vertices) {
+        if (vertices.size() != 1) {
+            return null;
+        }
+        return conditionalOf(vertices.iterator().next());
+    }
+
+    private static ContinuousDistribution conditionalOf(Vertex<?> latent) {
+        if (latent instanceof GaussianVertex) {
+            return gaussianMuConditional((GaussianVertex) latent);
+        } else if (latent instanceof GammaVertex) {
+            return poissonMuConditional((GammaVertex) latent);
+        } else if (latent instanceof BetaVertex) {
+            return probabilityConditional((BetaVertex) latent);
+        }
+        return null;
+    }
+
+    /**
+     * Gaussian prior N(m, s) on the mu of Gaussian children x_i with sigma_i gives
+     * N((m/s^2 + sum(x_i/sigma_i^2)) / precision, precision^-1/2) where precision = 1/s^2 + sum(1/sigma_i^2)
+     */
+    private static ContinuousDistribution gaussianMuConditional(GaussianVertex latent) {
+        long[] shape = latent.getShape();
+        DoubleTensor precisionSum = DoubleTensor.zeros(shape);
+        DoubleTensor weightedSum = DoubleTensor.zeros(shape);
+
+        for (Vertex<?> child : latent.getChildren()) {
+            if (!(child instanceof GaussianVertex) || !hasCompatibleShape(latent, child)) {
+                return null;
+            }
+            GaussianVertex gaussianChild = (GaussianVertex) child;
+            if (gaussianChild.getMu() != latent || gaussianChild.getSigma() == latent) {
+                return null;
+            }
+
+            DoubleTensor childSigma = gaussianChild.getSigma().getValue();
+            DoubleTensor childPrecision = DoubleTensor.ones(child.getShape()).divInPlace(childSigma.times(childSigma));
+            precisionSum = sumInto(precisionSum, childPrecision);
+            weightedSum = sumInto(weightedSum, gaussianChild.getValue().times(childPrecision));
+        }
+
+        DoubleTensor priorSigma = latent.getSigma().getValue();
+        DoubleTensor priorPrecision = priorSigma.times(priorSigma).reciprocal();
+        DoubleTensor precision = precisionSum.plus(priorPrecision);
+        DoubleTensor mu = weightedSum.plus(latent.getMu().getValue().times(priorPrecision)).divInPlace(precision);
+
+        return Gaussian.withParameters(mu, precision.sqrt().reciprocal());
+    }
+
+    /**
+     * Gamma prior with scale theta and shape k on the mu of n Poisson children x_i gives a Gamma with
+     * shape k + sum(x_i) and scale 1 / (1/theta + n)
+     */
+    private static ContinuousDistribution poissonMuConditional(GammaVertex latent) {
+        long[] shape = latent.getShape();
+        DoubleTensor countSum = DoubleTensor.zeros(shape);
+        DoubleTensor childCount = DoubleTensor.zeros(shape);
+
+        for (Vertex<?> child : latent.getChildren()) {
+            if (!(child instanceof PoissonVertex) || !hasCompatibleShape(latent, child)) {
+                return null;
+            }
+            PoissonVertex poissonChild = (PoissonVertex) child;
+            if (poissonChild.getMu() != latent) {
+                return null;
+            }
+
+            countSum = sumInto(countSum, asDoubles(poissonChild.getValue()));
+            childCount = sumInto(childCount, DoubleTensor.ones(child.getShape()));
+        }
+
+        DoubleTensor k = countSum.plus(latent.getK().getValue());
+        DoubleTensor theta = childCount.plus(latent.getTheta().getValue().reciprocal()).reciprocal();
+
+        return Gamma.withParameters(theta, k);
+    }
+
+    /**
+     * Beta prior with alpha and beta on the probability of Bernoulli or Binomial children gives a Beta with
+     * alpha + successes and beta + failures
+     */
+    private static ContinuousDistribution probabilityConditional(BetaVertex latent) {
+        long[] shape = latent.getShape();
+        DoubleTensor successes = DoubleTensor.zeros(shape);
+        DoubleTensor failures = DoubleTensor.zeros(shape);
+
+        for (Vertex<?> child : latent.getChildren()) {
+            if (!hasCompatibleShape(latent, child)) {
+                return null;
+            }
+
+            if (child instanceof BernoulliVertex && ((BernoulliVertex) child).getProbTrue() == latent) {
+                DoubleTensor isTrue = ((BernoulliVertex) child).getValue().toDoubleMask();
+                successes = sumInto(successes, isTrue);
+                failures = sumInto(failures, isTrue.unaryMinus().plusInPlace(1.0));
+            } else if (child instanceof BinomialVertex && ((BinomialVertex) child).getP() == latent) {
+                BinomialVertex binomialChild = (BinomialVertex) child;
+                DoubleTensor k = asDoubles(binomialChild.getValue());
+                DoubleTensor n = asDoubles(binomialChild.getN().getValue());
+                successes = sumInto(successes, k);
+                failures = sumInto(failures, k.unaryMinus().plusInPlace(n));
+            } else {
+                return null;
+            }
+        }
+
+        return Beta.withParameters(
+            successes.plus(latent.getAlpha().getValue()),
+            failures.plus(latent.getBeta().getValue()),
+            DoubleTensor.scalar(0.),
+            DoubleTensor.scalar(1.)
+        );
+    }
+
+    /**
+     * A scalar latent is shared by every element of a child. Otherwise each element of the latent belongs to the
+     * matching element of the child.
+     */
+    private static boolean hasCompatibleShape(Vertex<?> latent, Vertex<?> child) {
+        return TensorShape.isScalar(latent.getShape()) || Arrays.equals(latent.getShape(), child.getShape());
+    }
+
+    private static DoubleTensor sumInto(DoubleTensor total, DoubleTensor childTerm) {
+        if (TensorShape.isScalar(total.getShape())) {
+            return total.plus(childTerm.sum());
+        }
+        return total.plus(childTerm);
+    }
+
+    private static DoubleTensor asDoubles(Tensor<?> tensor) {
+        return DoubleTensor.create(tensor.asFlatDoubleArray(), tensor.getShape());
+    }
+}
@@ -16,6 +16,24 @@ public interface ProposalDistribution {
 
     <T> double logProb(Probabilistic<T> vertex, T ofValue, T givenValue);
 
+    /**
+     * Called once the last proposal from {@link #getProposal(Set, KeanuRandom)} has been accepted, for proposal
+     * distributions that adapt to the outcome of their proposals.
+     *
+     * @param proposal the accepted proposal
+     */
+    default void onProposalAccepted(Proposal proposal) {
+    }
+
+    /**
+     * Called once the last proposal from {@link #getProposal(Set, KeanuRandom)} has been rejected, for proposal
+     * distributions that adapt to the outcome of their proposals.
+     *
+     * @param proposal the rejected proposal
+     */
+    default void onProposalRejected(Proposal proposal) {
+    }
+
     /**
      * Represents q(x|x') where q is the proposal distribution,
      * x' is the proposal to value and x is the proposal from value.
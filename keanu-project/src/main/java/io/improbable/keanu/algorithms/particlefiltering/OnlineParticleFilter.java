@@ -0,0 +1,345 @@
+package io.improbable.keanu.algorithms.particlefiltering;
+
+import io.improbable.keanu.algorithms.graphtraversal.TopologicalSort;
+import io.improbable.keanu.network.BayesianNetwork;
+import io.improbable.keanu.vertices.NonProbabilistic;
+import io.improbable.keanu.vertices.ProbabilityCalculator;
+import io.improbable.keanu.vertices.Vertex;
+import io.improbable.keanu.vertices.dbl.KeanuRandom;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A particle filter that is advanced one observation at a time, e.g. as the time steps of a sensor feed arrive.
+ * <p>
+ * Each call to {@link #observe(Vertex)} takes a newly observed vertex, samples the latent vertices that it depends
+ * on and that haven't been seen before from their priors, given each particle's values of their parents, and
+ * weights every particle by the likelihood of the observation (a bootstrap filter). The particles are resampled
+ * whenever the effective sample size of their weights falls below a threshold.
+ * <p>
+ * Only the vertices between the new observation and the latent vertices that have already been sampled are
+ * visited, and each particle only stores the values that are new at each step along with a link to the values of
+ * its ancestor. The cost of an observation therefore depends on the size of the new part of the graph rather than
+ * on the number of observations so far.
+ * <p>
+ * The particles are updated on a pool of threads that is kept until the filter is closed.
+ */
+public class OnlineParticleFilter implements AutoCloseable {
+
+    private final int numParticles;
+    private final Resampling resampling;
+    private final double resamplingEssThreshold;
+    private final KeanuRandom random;
+    private final ParticleWorkers workers;
+
+    private final Set<Vertex> sampledLatentVertices = new HashSet<>();
+    private final List<Vertex> observedVertices = new ArrayList<>();
+    private List<OnlineParticle> particles;
+    private double logMarginalLikelihood;
+
+    public OnlineParticleFilter(int numParticles,
+                                Resampling resampling,
+                                double resamplingEssThreshold,
+                                int threadCount,
+                                KeanuRandom random) {
+        if (numParticles <= 0) {
+            throw new IllegalArgumentException("Particle count of " + numParticles + " is invalid. Must have at least one particle.");
+        }
+        this.numParticles = numParticles;
+        this.resampling = resampling;
+        this.resamplingEssThreshold = resamplingEssThreshold;
+        this.random = random;
+        this.workers = new ParticleWorkers(threadCount, random);
+
+        this.particles = new ArrayList<>(numParticles);
+        for (int i = 0; i < numParticles; i++) {
+            particles.add(new OnlineParticle(null, 0.0, 0.0));
+        }
+    }
+
+    /**
+     * Advances the filter by a newly observed vertex. The vertex must already be observed and the latent vertices
+     * that it depends on must either be new or have been sampled by an earlier observation.
+     *
+     * @param observedVertex the next observation
+     */
+    public void observe(Vertex<?> observedVertex) {
+        observeAll(Collections.singletonList(observedVertex));
+    }
+
+    /**
+     * The observations are filtered one after another, but the contexts that the workers set values in are created
+     * once for all of them, so this is cheaper than observing them one at a time when several are available at once.
+     *
+     * @param observedVertices the next observations in the order they should be filtered
+     */
+    public void observeAll(List<? extends Vertex<?>> observedVertices) {
+        for (Vertex<?> observedVertex : observedVertices) {
+            if (!observedVertex.isObserved()) {
+                throw new IllegalArgumentException("Cannot filter on " + observedVertex + " because it isn't observed");
+            }
+        }
+
+        List<Increment> increments = new ArrayList<>(observedVertices.size());
+        Set<Vertex> incrementVertices = new LinkedHashSet<>();
+        for (Vertex<?> observedVertex : observedVertices) {
+            Increment increment = new Increment(observedVertex);
+            //later observations in the batch find the latent vertices of earlier ones already sampled
+            sampledLatentVertices.addAll(increment.newLatentVertices);
+            incrementVertices.addAll(increment.allVertices());
+            increments.add(increment);
+        }
+
+        ParticleWorkers.Contexts contexts = workers.contextsFor(new BayesianNetwork(incrementVertices));
+        for (Increment increment : increments) {
+            filter(increment, contexts);
+        }
+    }
+
+    private void filter(Increment increment, ParticleWorkers.Contexts contexts) {
+        double[] logWeightsBefore = logWeightsOf(particles);
+        workers.forEach(particles, contexts, increment::update);
+        double[] logWeightsAfter = logWeightsOf(particles);
+
+        logMarginalLikelihood += Resampling.logSumExp(logWeightsAfter) - Resampling.logSumExp(logWeightsBefore);
+
+        observedVertices.add(increment.observedVertex);
+
+        if (Resampling.effectiveSampleSize(logWeightsAfter) < resamplingEssThreshold * numParticles) {
+            resample(logWeightsAfter);
+        }
+    }
+
+    /**
+     * @param vertex a latent vertex that has been sampled by an observation
+     * @param <T>    the type of the value of the vertex
+     * @return the value of the vertex in each particle. The particles may be unevenly weighted if they haven't
+     * just been resampled, see {@link #getLogWeights()}.
+     */
+    public <T> List<T> getValuesOfVertex(Vertex<T> vertex) {
+        List<T> values = new ArrayList<>(particles.size());
+        for (OnlineParticle particle : particles) {
+            values.add((T) particle.valueOf(vertex));
+        }
+        return values;
+    }
+
+    /**
+     * @return the natural log of the unnormalised weight of each particle, in the order of the values returned
+     * by {@link #getValuesOfVertex(Vertex)}
+     */
+    public double[] getLogWeights() {
+        return logWeightsOf(particles);
+    }
+
+    /**
+     * @return an estimate of the natural log of the probability of all the observations so far
+     */
+    public double getLogMarginalLikelihood() {
+        return logMarginalLikelihood;
+    }
+
+    /**
+     * This builds the full history of every particle, so its cost grows with the number of observations.
+     *
+     * @return the particles sorted in descending order of the log prob of their values
+     */
+    public List<Particle> getSortedMostProbableParticles() {
+        List<Particle> fullParticles = new ArrayList<>(particles.size());
+        for (OnlineParticle particle : particles) {
+            fullParticles.add(toParticle(particle));
+        }
+        fullParticles.sort(Particle::sortDescending);
+        return fullParticles;
+    }
+
+    /**
+     * @return the particle with the highest log prob of its values, including its full history
+     */
+    public Particle getMostProbableParticle() {
+        OnlineParticle mostProbable = particles.get(0);
+        for (OnlineParticle particle : particles) {
+            if (particle.logProb > mostProbable.logProb) {
+                mostProbable = particle;
+            }
+        }
+        return toParticle(mostProbable);
+    }
+
+    /**
+     * Stops the threads that update the particles. The filter can't observe any more vertices afterwards, but the
+     * particles it has can still be read.
+     */
+    @Override
+    public void close() {
+        workers.shutdown();
+    }
+
+    private Particle toParticle(OnlineParticle particle) {
+        Map<Vertex, Object> latentValues = new HashMap<>();
+        for (Step step = particle.history; step != null; step = step.previous) {
+            for (Map.Entry<Vertex, Object> value : step.values.entrySet()) {
+                latentValues.putIfAbsent(value.getKey(), value.getValue());
+            }
+        }
+        return new Particle(latentValues, new ArrayList<>(observedVertices), particle.logProb);
+    }
+
+    private void resample(double[] logWeights) {
+        int[] ancestors = resampling.sampleAncestors(logWeights, numParticles, random);
+        List<OnlineParticle> resampled = new ArrayList<>(numParticles);
+        for (int ancestor : ancestors) {
+            OnlineParticle parent = particles.get(ancestor);
+            resampled.add(new OnlineParticle(parent.history, 0.0, parent.logProb));
+        }
+        particles = resampled;
+    }
+
+    private static double[] logWeightsOf(List<OnlineParticle> particles) {
+        double[] logWeights = new double[particles.size()];
+        for (int i = 0; i < logWeights.length; i++) {
+            logWeights[i] = particles.get(i).logWeight;
+        }
+        return logWeights;
+    }
+
+    /**
+     * The part of the graph that an observation adds: the new latent vertices it depends on, the non-probabilistic
+     * vertices between them, and the previously sampled latent vertices that they depend on.
+     */
+    private class Increment {
+
+        private final Vertex<?> observedVertex;
+        private final List<Vertex> observedVertexAsList;
+        private final List<Vertex> previouslySampledParents = new ArrayList<>();
+        private final List<Vertex> newLatentVertices = new ArrayList<>();
+        //the new latent and non-probabilistic vertices in the order that their values must be set
+        private final List<Vertex> inUpdateOrder;
+
+        Increment(Vertex<?> observedVertex) {
+            this.observedVertex = observedVertex;
+            this.observedVertexAsList = Collections.singletonList(observedVertex);
+
+            Set<Vertex> toUpdate = new HashSet<>();
+            Set<Vertex> visited = new HashSet<>();
+            Deque<Vertex> stack = new ArrayDeque<>(observedVertex.getParents());
+            while (!stack.isEmpty()) {
+                Vertex<?> visiting = stack.pop();
+                if (!visited.add(visiting) || visiting.isObserved()) {
+                    continue;
+                }
+
+                if (sampledLatentVertices.contains(visiting)) {
+                    previouslySampledParents.add(visiting);
+                    continue;
+                }
+
+                if (visiting.isProbabilistic()) {
+                    newLatentVertices.add(visiting);
+                }
+                toUpdate.add(visiting);
+                stack.addAll(visiting.getParents());
+            }
+
+            this.inUpdateOrder = TopologicalSort.sort(toUpdate);
+        }
+
+        Set<Vertex> allVertices() {
+            Set<Vertex> vertices = new LinkedHashSet<>(previouslySampledParents);
+            vertices.addAll(inUpdateOrder);
+            vertices.add(observedVertex);
+            return vertices;
+        }
+
+        /**
+         * Samples the new latent vertices for a particle and weights it by the observation. This runs in a
+         * worker's context so the values it sets are only seen by the worker.
+         */
+        void update(OnlineParticle particle, KeanuRandom random) {
+            Map<Vertex, Object> values = new HashMap<>();
+
+            for (Vertex parent : previouslySampledParents) {
+                Object value = particle.valueOf(parent);
+                setValue(parent, value);
+                //carrying the value forward keeps its lookup short for the next observation that needs it
+                values.put(parent, value);
+            }
+
+            for (Vertex<?> vertex : inUpdateOrder) {
+                if (vertex.isProbabilistic()) {
+                    values.put(vertex, setValueFromSample(vertex, random));
+                } else if (!vertex.isObserved()) {
+                    setValueFromCalculation((NonProbabilistic<?>) vertex);
+                }
+            }
+
+            double logLikelihood = ProbabilityCalculator.calculateLogProbFor(observedVertexAsList);
+            double logPriorOfNewLatents = ProbabilityCalculator.calculateLogProbFor(newLatentVertices);
+
+            particle.history = new Step(particle.history, values);
+            particle.logWeight += logLikelihood;
+            particle.logProb += logLikelihood + logPriorOfNewLatents;
+        }
+    }
+
+    private static <T> void setValue(Vertex<T> vertex, Object value) {
+        vertex.setValue((T) value);
+    }
+
+    private static <T> T setValueFromSample(Vertex<T> vertex, KeanuRandom random) {
+        T sample = vertex.sample(random);
+        vertex.setValue(sample);
+        return sample;
+    }
+
+    private static <T> void setValueFromCalculation(NonProbabilistic<T> vertex) {
+        ((Vertex<T>) vertex).setValue(vertex.calculate());
+    }
+
+    private static class OnlineParticle {
+
+        private Step history;
+        private double logWeight;
+        private double logProb;
+
+        OnlineParticle(Step history, double logWeight, double logProb) {
+            this.history = history;
+            this.logWeight = logWeight;
+            this.logProb = logProb;
+        }
+
+        Object valueOf(Vertex<?> vertex) {
+            for (Step step = history; step != null; step = step.previous) {
+                Object value = step.values.get(vertex);
+                if (value != null) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException(vertex + " has not been sampled by the filter");
+        }
+    }
+
+    /**
+     * The values sampled for one observation. Particles that are resampled from the same ancestor share its steps
+     * rather than copying them.
+     */
+    private static class Step {
+
+        private final Step previous;
+        private final Map<Vertex, Object> values;
+
+        Step(Step previous, Map<Vertex, Object> values) {
+            this.previous = previous;
+            this.values = values;
+        }
+    }
+}
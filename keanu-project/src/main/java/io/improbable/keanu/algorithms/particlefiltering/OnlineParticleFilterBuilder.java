@@ -0,0 +1,70 @@
+package io.improbable.keanu.algorithms.particlefiltering;
+
+import io.improbable.keanu.vertices.dbl.KeanuRandom;
+
+public class OnlineParticleFilterBuilder {
+
+    private int numParticles = 1000;
+    private Resampling resampling = Resampling.SYSTEMATIC;
+    private double resamplingEssThreshold = 0.5;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private KeanuRandom random = KeanuRandom.getDefaultRandom();
+
+    /**
+     * @param numParticles the number of particles to generate (a larger number will yield better results but is more
+     *       computationally expensive)
+     * @return this
+     */
+    public OnlineParticleFilterBuilder withNumParticles(int numParticles) {
+        this.numParticles = numParticles;
+        return this;
+    }
+
+    /**
+     * @param resampling the way new particles are drawn in proportion to the weights of the current particles
+     * @return this
+     */
+    public OnlineParticleFilterBuilder withResampling(Resampling resampling) {
+        this.resampling = resampling;
+        return this;
+    }
+
+    /**
+     * @param resamplingEssThreshold the particles are resampled after an observation only if the effective sample
+     *                               size of their weights is below this proportion of the number of particles
+     * @return this
+     */
+    public OnlineParticleFilterBuilder withResamplingEssThreshold(double resamplingEssThreshold) {
+        this.resamplingEssThreshold = resamplingEssThreshold;
+        return this;
+    }
+
+    /**
+     * @param threadCount the number of threads that sample and weight particles in parallel. The results for a seed
+     *                    are the same for any number of threads.
+     * @return this
+     */
+    public OnlineParticleFilterBuilder withThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+        return this;
+    }
+
+    /**
+     * @param random A {@link KeanuRandom KeanuRandom} used for stochastic parts of algorithm
+     * @return this
+     */
+    public OnlineParticleFilterBuilder withRandom(KeanuRandom random) {
+        this.random = random;
+        return this;
+    }
+
+    public OnlineParticleFilter build() {
+        return new OnlineParticleFilter(
+            numParticles,
+            resampling,
+            resamplingEssThreshold,
+            threadCount,
+            random
+        );
+    }
+}
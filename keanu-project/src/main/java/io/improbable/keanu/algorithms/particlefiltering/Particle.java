@@ -19,6 +19,15 @@ public class Particle {
     private List<Vertex> observedVertices = new ArrayList<>();
     private double sumLogPOfSubgraph = 1.0;
 
+    public Particle() {
+    }
+
+    Particle(Map<Vertex, Object> latentVertices, List<Vertex> observedVertices, double sumLogPOfSubgraph) {
+        this.latentVertices = latentVertices;
+        this.observedVertices = observedVertices;
+        this.sumLogPOfSubgraph = sumLogPOfSubgraph;
+    }
+
     public Map<Vertex, Object> getLatentVertices() {
         return latentVertices;
     }
@@ -48,6 +57,13 @@ public class Particle {
 
     double updateSumLogPOfSubgraph() {
         applyLatentVertexValues();
+        return calculateSumLogPOfSubgraph();
+    }
+
+    /**
+     * @return the log prob of the subgraph, assuming the values of the particle have already been applied
+     */
+    double calculateSumLogPOfSubgraph() {
         double sumLogPOfLatents = ProbabilityCalculator.calculateLogProbFor(latentVertices.keySet());
         double sumLogPOfObservables = ProbabilityCalculator.calculateLogProbFor(observedVertices);
         sumLogPOfSubgraph = sumLogPOfLatents + sumLogPOfObservables;
@@ -65,7 +81,7 @@ public class Particle {
         return Double.compare(b.logProb(), a.logProb());
     }
 
-    private void applyLatentVertexValues() {
+    void applyLatentVertexValues() {
         latentVertices.keySet().forEach(this::applyLatentVertexValue);
     }
 
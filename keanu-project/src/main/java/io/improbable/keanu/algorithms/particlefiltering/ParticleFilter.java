@@ -1,5 +1,8 @@
 package io.improbable.keanu.algorithms.particlefiltering;
 
+import io.improbable.keanu.algorithms.graphtraversal.TopologicalSort;
+import io.improbable.keanu.network.BayesianNetwork;
+import io.improbable.keanu.network.ExecutionContext;
 import io.improbable.keanu.vertices.Vertex;
 import io.improbable.keanu.vertices.dbl.KeanuRandom;
 
@@ -23,14 +26,23 @@ import java.util.Set;
  *
  * This methodology is similar to the Sequential Importance Resampling Algorithm described here
  * (https://www.lancaster.ac.uk/pg/turnerl/PartileFiltering.pdf).
+ *
+ * The particles are split into fixed size chunks that are sampled and weighted in parallel on a fork-join pool.
+ * Each chunk holds vertex values in its own {@link ExecutionContext} and has its own {@link KeanuRandom}, so the
+ * network itself is left unchanged and the results for a seed don't depend on the number of threads.
  */
 public class ParticleFilter {
     private Collection<? extends Vertex> vertices;
     private int numParticles;
     private int resamplingCycles;
     private double resamplingProportion;
+    private Resampling resampling;
+    private double resamplingEssThreshold;
+    private int threadCount;
     private KeanuRandom random;
     private List<Particle> particles;
+    private ParticleWorkers workers;
+    private ParticleWorkers.Contexts workerContexts;
 
     /**
      * Creates a {@link ParticleFilterBuilder} by retrieving connected graph from the vertex
@@ -45,15 +57,46 @@ public class ParticleFilter {
         return new ParticleFilterBuilder(vertices);
     };
 
+    /**
+     * Creates a {@link OnlineParticleFilterBuilder} for a filter that is given its observed vertices one at a time
+     * @return this
+     */
+    public static OnlineParticleFilterBuilder online() {
+        return new OnlineParticleFilterBuilder();
+    }
+
+    public ParticleFilter(Collection<? extends Vertex> vertices,
+                          int numParticles,
+                          int resamplingCycles,
+                          double resamplingProportion,
+                          KeanuRandom random) {
+        this(
+            vertices,
+            numParticles,
+            resamplingCycles,
+            resamplingProportion,
+            Resampling.SYSTEMATIC,
+            1.0,
+            Runtime.getRuntime().availableProcessors(),
+            random
+        );
+    }
+
     public ParticleFilter(Collection<? extends Vertex> vertices,
                           int numParticles,
                           int resamplingCycles,
                           double resamplingProportion,
+                          Resampling resampling,
+                          double resamplingEssThreshold,
+                          int threadCount,
                           KeanuRandom random) {
         this.vertices = vertices;
         this.numParticles = numParticles;
         this.resamplingCycles = resamplingCycles;
         this.resamplingProportion = resamplingProportion;
+        this.resampling = resampling;
+        this.resamplingEssThreshold = resamplingEssThreshold;
+        this.threadCount = threadCount;
         this.random = random;
         sort();
     }
@@ -79,10 +122,18 @@ public class ParticleFilter {
         List<Vertex> observedVertexOrder = new ArrayList<>(obsVertIncrDependencies.keySet());
         List<Particle> particles = createEmptyParticles(this.numParticles);
 
-        for (int i = 0; i < observedVertexOrder.size(); i++) {
-            Vertex<?> nextObsVertex = observedVertexOrder.get(i);
-            Set<Vertex> vertexDeps = obsVertIncrDependencies.get(nextObsVertex);
-            particles = updateParticles(nextObsVertex, vertexDeps, particles);
+        this.workers = new ParticleWorkers(threadCount, random);
+        this.workerContexts = workers.contextsFor(new BayesianNetwork(vertices));
+        try {
+            for (int i = 0; i < observedVertexOrder.size(); i++) {
+                Vertex<?> nextObsVertex = observedVertexOrder.get(i);
+                Set<Vertex> vertexDeps = obsVertIncrDependencies.get(nextObsVertex);
+                particles = updateParticles(nextObsVertex, vertexDeps, particles);
+            }
+        } finally {
+            workers.shutdown();
+            this.workers = null;
+            this.workerContexts = null;
         }
 
         this.particles = particles;
@@ -92,7 +143,8 @@ public class ParticleFilter {
                                                   Set<Vertex> vertexDeps,
                                                   List<Particle> particles) {
 
-        List<Particle> updatedParticles = sampleAndCopy(particles, numParticles);
+        List<Particle> updatedParticles = shouldResample(particles) ?
+            sampleAndCopy(particles, numParticles) : copyAll(particles);
         addObservedVertexToParticles(updatedParticles, nextObservedVertex, vertexDeps);
 
         for (int i = 0; i < this.resamplingCycles; i++) {
@@ -117,23 +169,34 @@ public class ParticleFilter {
         return emptyParticles;
     }
 
+    /**
+     * The particles are split into chunks, which are each sampled and weighted in parallel.
+     */
     private void addObservedVertexToParticles(List<Particle> particles,
                                                      Vertex<?> observedVertex,
                                                      Set<Vertex> vertexDependencies) {
 
-        for (Particle particle : particles) {
+        List<Vertex> sortedDependencies = TopologicalSort.sort(vertexDependencies);
+
+        workers.forEach(particles, workerContexts, (particle, workerRandom) -> {
             particle.addObservedVertex(observedVertex);
-            for (Vertex<?> latentVertex : vertexDependencies) {
-                sampleValueAndAddToParticle(latentVertex, particle);
+            particle.applyLatentVertexValues();
+            for (Vertex<?> latentVertex : sortedDependencies) {
+                sampleValueAndAddToParticle(latentVertex, particle, workerRandom);
             }
 
-            particle.updateSumLogPOfSubgraph();
-        }
+            particle.calculateSumLogPOfSubgraph();
+        });
     }
 
-    private <T> void sampleValueAndAddToParticle(Vertex<T> vertex, Particle particle) {
+    /**
+     * The values of the particle have been applied so the sample is conditioned on the particle's values of the
+     * vertex's parents.
+     */
+    private static <T> void sampleValueAndAddToParticle(Vertex<T> vertex, Particle particle, KeanuRandom random) {
         T sample = vertex.sample(random);
         particle.addLatentVertex(vertex, sample);
+        vertex.setAndCascade(sample);
     }
 
     private List<Particle> removeWorstParticles(List<Particle> particles) {
@@ -143,30 +206,40 @@ public class ParticleFilter {
         return new ArrayList<>(particlesToKeep);
     }
 
+    /**
+     * Particles are only resampled when their weights have degenerated, i.e. their effective sample size has
+     * fallen below the threshold proportion of the number of particles. Resampling weights that are still even
+     * adds noise without removing any degeneracy.
+     */
+    private boolean shouldResample(List<Particle> particles) {
+        double effectiveSampleSize = Resampling.effectiveSampleSize(logProbsOf(particles));
+        return effectiveSampleSize < resamplingEssThreshold * particles.size();
+    }
+
+    private List<Particle> copyAll(List<Particle> particles) {
+        List<Particle> copies = new ArrayList<>(particles.size());
+        for (Particle particle : particles) {
+            copies.add(particle.shallowCopy());
+        }
+        return copies;
+    }
+
     private List<Particle> sampleAndCopy(List<Particle> particles, int numToSample) {
 
-        double sumWeights = particles.stream().mapToDouble(p -> Math.exp(p.logProb())).sum();
-        List<Particle> sampledParticles = new ArrayList<>();
-        for (int i = 0; i < numToSample; i++) {
-            Particle sampledParticle = weightedRandomParticle(particles, sumWeights);
-            sampledParticles.add(sampledParticle.shallowCopy());
+        int[] ancestors = resampling.sampleAncestors(logProbsOf(particles), numToSample, random);
+        List<Particle> sampledParticles = new ArrayList<>(numToSample);
+        for (int ancestor : ancestors) {
+            sampledParticles.add(particles.get(ancestor).shallowCopy());
         }
 
         return sampledParticles;
     }
 
-    private Particle weightedRandomParticle(List<Particle> particles, double sumWeights) {
-        double r = random.nextDouble() * sumWeights;
-        double cumulativeWeight = 0;
-        Particle p = particles.get(0);
-        for (int i = 0; i < particles.size(); i++) {
-            p = particles.get(i);
-            cumulativeWeight += Math.exp(p.logProb());
-            if (cumulativeWeight > r) {
-                break;
-            }
+    private static double[] logProbsOf(List<Particle> particles) {
+        double[] logProbs = new double[particles.size()];
+        for (int i = 0; i < logProbs.length; i++) {
+            logProbs[i] = particles.get(i).logProb();
         }
-
-        return p;
+        return logProbs;
     }
 }
@@ -11,6 +11,9 @@ public class ParticleFilterBuilder {
     private int numParticles = 1000;
     private int resamplingCycles = 3;
     private double resamplingProportion = 0.5;
+    private Resampling resampling = Resampling.SYSTEMATIC;
+    private double resamplingEssThreshold = 1.0;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
     private KeanuRandom random = KeanuRandom.getDefaultRandom();
 
     /**
@@ -50,6 +53,36 @@ public class ParticleFilterBuilder {
         return this;
     }
 
+    /**
+     * @param resampling the way new particles are drawn in proportion to the probabilities of the current particles
+     * @return this
+     */
+    public ParticleFilterBuilder withResampling(Resampling resampling) {
+        this.resampling = resampling;
+        return this;
+    }
+
+    /**
+     * @param resamplingEssThreshold the particles are resampled when a new observed vertex is added only if the
+     *                               effective sample size of their probabilities is below this proportion of the
+     *                               number of particles (e.g. 0.5 is a common choice, while 1.0 almost always resamples)
+     * @return this
+     */
+    public ParticleFilterBuilder withResamplingEssThreshold(double resamplingEssThreshold) {
+        this.resamplingEssThreshold = resamplingEssThreshold;
+        return this;
+    }
+
+    /**
+     * @param threadCount the number of threads that sample and weight particles in parallel. The results for a seed
+     *                    are the same for any number of threads.
+     * @return this
+     */
+    public ParticleFilterBuilder withThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+        return this;
+    }
+
     /**
      * @param random A {@link KeanuRandom KeanuRandom} used for stochastic parts of algorithm
      * @return this
@@ -60,6 +93,15 @@ public class ParticleFilterBuilder {
     }
 
     public ParticleFilter build() {
-        return new ParticleFilter(vertices, numParticles, resamplingCycles, resamplingProportion, random);
+        return new ParticleFilter(
+            vertices,
+            numParticles,
+            resamplingCycles,
+            resamplingProportion,
+            resampling,
+            resamplingEssThreshold,
+            threadCount,
+            random
+        );
     }
 }
@@ -0,0 +1,119 @@
+package io.improbable.keanu.algorithms.particlefiltering;
+
+import io.improbable.keanu.network.BayesianNetwork;
+import io.improbable.keanu.network.ExecutionContext;
+import io.improbable.keanu.vertices.dbl.KeanuRandom;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Updates particles in parallel on a fork-join pool. The particles are split into chunks of a fixed size, and the
+ * chunk at each position has its own {@link KeanuRandom} and {@link ExecutionContext}. The chunks are scheduled onto
+ * however many threads the pool has, but which random and context a particle is updated with only depends on its
+ * index, so results are reproducible for a given seed on any number of threads. The contexts let the chunks set
+ * vertex values without seeing each other's values or changing the network.
+ */
+class ParticleWorkers {
+
+    static final int CHUNK_SIZE = 64;
+
+    interface ParticleTask<P> {
+        void update(P particle, KeanuRandom random);
+    }
+
+    private final ForkJoinPool pool;
+    private final KeanuRandom random;
+    //The random of each chunk, created in chunk order as they are first needed so they don't depend on the threads
+    private final List<KeanuRandom> chunkRandoms = new ArrayList<>();
+
+    ParticleWorkers(int threadCount, KeanuRandom random) {
+        if (threadCount <= 0) {
+            throw new IllegalArgumentException("Thread count of " + threadCount + " is invalid. Must use at least one thread.");
+        }
+        this.pool = new ForkJoinPool(threadCount);
+        this.random = random;
+    }
+
+    /**
+     * @param network the vertices that the workers will set the values of
+     * @return contexts for the chunks, which are created as they are needed and can be reused for later updates of
+     * the same vertices
+     */
+    Contexts contextsFor(BayesianNetwork network) {
+        return new Contexts(network);
+    }
+
+    /**
+     * Runs the task for every particle and waits for them all to finish.
+     *
+     * @param particles the particles to update
+     * @param contexts  the contexts of the chunks, from {@link #contextsFor(BayesianNetwork)}
+     * @param task      the update to apply to each particle
+     * @param <P>       the type of particle
+     */
+    <P> void forEach(List<P> particles, Contexts contexts, ParticleTask<P> task) {
+        int chunkCount = (particles.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        while (chunkRandoms.size() < chunkCount) {
+            chunkRandoms.add(new KeanuRandom(random.nextInt(Integer.MAX_VALUE)));
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>(chunkCount);
+        for (int c = 0; c < chunkCount; c++) {
+            ExecutionContext context = contexts.ofChunk(c);
+            KeanuRandom chunkRandom = chunkRandoms.get(c);
+            List<P> chunk = particles.subList(c * CHUNK_SIZE, Math.min((c + 1) * CHUNK_SIZE, particles.size()));
+            tasks.add(() -> context.run(() -> {
+                for (P particle : chunk) {
+                    task.update(particle, chunkRandom);
+                }
+                return null;
+            }));
+        }
+
+        if (!tasks.isEmpty()) {
+            waitForAll(pool.invokeAll(tasks));
+        }
+    }
+
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private static void waitForAll(List<Future<Void>> tasks) {
+        try {
+            for (Future<Void> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for particles to be updated", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Failed to update particles", e.getCause());
+        }
+    }
+
+    static class Contexts {
+
+        private final BayesianNetwork network;
+        private final List<ExecutionContext> contexts = new ArrayList<>();
+
+        private Contexts(BayesianNetwork network) {
+            this.network = network;
+        }
+
+        private ExecutionContext ofChunk(int chunk) {
+            while (contexts.size() <= chunk) {
+                contexts.add(ExecutionContext.of(network));
+            }
+            return contexts.get(chunk);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package io.improbable.keanu.algorithms.particlefiltering;
+
+import com.google.common.base.Preconditions;
+import io.improbable.keanu.vertices.dbl.KeanuRandom;
+
+/**
+ * Ways of choosing the ancestors of a new population of particles in proportion to the weights of the current
+ * population. Weights are given as logs and normalised with log-sum-exp, so they don't underflow for log
+ * likelihoods far below zero.
+ * <p>
+ * Both strategies place one point in each of count equal strata of [0, 1) and walk the cumulative weights once,
+ * so resampling is O(N) rather than the O(N^2) of drawing each ancestor with its own scan. They also have lower
+ * variance than drawing the ancestors independently (Douc, Cappe and Moulines, 2005).
+ */
+public enum Resampling {
+
+    /**
+     * One uniform offset is shared by every stratum.
+     */
+    SYSTEMATIC {
+        @Override
+        double offsetWithinStratum(KeanuRandom random, double sharedOffset) {
+            return sharedOffset;
+        }
+    },
+
+    /**
+     * Every stratum has its own uniform offset.
+     */
+    STRATIFIED {
+        @Override
+        double offsetWithinStratum(KeanuRandom random, double sharedOffset) {
+            return random.nextDouble();
+        }
+    };
+
+    abstract double offsetWithinStratum(KeanuRandom random, double sharedOffset);
+
+    /**
+     * @param logWeights the natural log of the unnormalised weight of each particle
+     * @param count      the number of ancestors to choose
+     * @param random     source of randomness
+     * @return the index of the ancestor of each new particle, in ascending order
+     */
+    public int[] sampleAncestors(double[] logWeights, int count, KeanuRandom random) {
+        Preconditions.checkArgument(logWeights.length > 0, "Cannot resample from zero particles");
+
+        double logSumOfWeights = logSumExp(logWeights);
+        if (logSumOfWeights == Double.NEGATIVE_INFINITY || Double.isNaN(logSumOfWeights)) {
+            throw new IllegalArgumentException("Cannot resample particles that all have zero weight");
+        }
+
+        //rounding can leave the cumulative weight just below 1 so the walk must not pass the last possible ancestor
+        int lastPossibleAncestor = logWeights.length - 1;
+        while (logWeights[lastPossibleAncestor] == Double.NEGATIVE_INFINITY) {
+            lastPossibleAncestor--;
+        }
+
+        int[] ancestors = new int[count];
+        double sharedOffset = random.nextDouble();
+        int ancestor = 0;
+        double cumulativeWeight = Math.exp(logWeights[0] - logSumOfWeights);
+        for (int i = 0; i < count; i++) {
+            double position = (i + offsetWithinStratum(random, sharedOffset)) / count;
+            while (position >= cumulativeWeight && ancestor < lastPossibleAncestor) {
+                ancestor++;
+                cumulativeWeight += Math.exp(logWeights[ancestor] - logSumOfWeights);
+            }
+            ancestors[i] = ancestor;
+        }
+        return ancestors;
+    }
+
+    /**
+     * @param logValues the natural logs of some values
+     * @return the natural log of the sum of the values, computed without overflow or underflow
+     */
+    public static double logSumExp(double[] logValues) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (double logValue : logValues) {
+            max = Math.max(max, logValue);
+        }
+        if (max == Double.NEGATIVE_INFINITY || max == Double.POSITIVE_INFINITY) {
+            return max;
+        }
+
+        double sum = 0.0;
+        for (double logValue : logValues) {
+            sum += Math.exp(logValue - max);
+        }
+        return max + Math.log(sum);
+    }
+
+    /**
+     * @param logWeights the natural log of the unnormalised weight of each particle
+     * @return the effective sample size of the weights, (sum w)^2 / sum w^2, which is the number of particles for
+     * equal weights and approaches 1 as the weight collapses onto one particle
+     */
+    public static double effectiveSampleSize(double[] logWeights) {
+        double logSumOfWeights = logSumExp(logWeights);
+        if (logSumOfWeights == Double.NEGATIVE_INFINITY) {
+            return 0.0;
+        }
+
+        double sumOfSquares = 0.0;
+        for (double logWeight : logWeights) {
+            double normalisedWeight = Math.exp(logWeight - logSumOfWeights);
+            sumOfSquares += normalisedWeight * normalisedWeight;
+        }
+        return 1.0 / sumOfSquares;
+    }
+}
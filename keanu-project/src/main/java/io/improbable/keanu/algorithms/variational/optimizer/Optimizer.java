@@ -1,6 +1,6 @@
 package io.improbable.keanu.algorithms.variational.optimizer;
 
-import io.improbable.keanu.algorithms.graphtraversal.VertexValuePropagation;
+import io.improbable.keanu.algorithms.graphtraversal.PropagationPlan;
 import io.improbable.keanu.algorithms.variational.optimizer.gradient.GradientOptimizer;
 import io.improbable.keanu.algorithms.variational.optimizer.nongradient.NonGradientOptimizer;
 import io.improbable.keanu.network.BayesianNetwork;
@@ -90,6 +90,11 @@ public interface Optimizer {
         return of(vertexFromNetwork.getConnectedGraph());
     }
 
+    /**
+     * @param continuousLatentVertices the vertices to take the values of
+     * @return the values of the vertices flattened and concatenated in the order of the vertices. This is the
+     * layout used by {@link io.improbable.keanu.algorithms.LatentPointLayout}.
+     */
     static double[] currentPoint(List<? extends Vertex<? extends NumberTensor>> continuousLatentVertices) {
         long totalLatentDimensions = totalNumberOfLatentDimensions(continuousLatentVertices);
 
@@ -110,6 +115,17 @@ public interface Optimizer {
     }
 
     static void setAndCascadePoint(double[] point, List<? extends Vertex<DoubleTensor>> latentVertices) {
+        setAndCascadePoint(point, latentVertices, PropagationPlan.compile(latentVertices));
+    }
+
+    /**
+     * @param point           the values to set the latent vertices to, flattened and concatenated in the order of the vertices
+     * @param latentVertices  the vertices to set the values of
+     * @param propagationPlan a plan compiled from the latent vertices that is used to cascade their new values
+     */
+    static void setAndCascadePoint(double[] point,
+                                   List<? extends Vertex<DoubleTensor>> latentVertices,
+                                   PropagationPlan propagationPlan) {
 
         int position = 0;
         for (Vertex<DoubleTensor> vertex : latentVertices) {
@@ -125,7 +141,7 @@ public interface Optimizer {
             position += dimensions;
         }
 
-        VertexValuePropagation.cascadeUpdate(latentVertices);
+        propagationPlan.cascade();
     }
 
     static long totalNumberOfLatentDimensions(List<? extends Vertex<? extends NumberTensor>> continuousLatentVertices) {
@@ -1,15 +1,18 @@
 package io.improbable.keanu.algorithms.variational.optimizer.gradient;
 
 
+import io.improbable.keanu.algorithms.graphtraversal.PropagationPlan;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
 import io.improbable.keanu.vertices.ProbabilityCalculator;
 import io.improbable.keanu.vertices.Vertex;
 import io.improbable.keanu.vertices.VertexId;
 import io.improbable.keanu.vertices.dbl.nonprobabilistic.diff.LogProbGradientCalculator;
+import lombok.Value;
 import org.apache.commons.math3.analysis.MultivariateFunction;
 import org.apache.commons.math3.analysis.MultivariateVectorFunction;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.function.BiConsumer;
@@ -22,10 +25,15 @@ public class FitnessFunctionWithGradient {
     private final List<? extends Vertex> ofVertices;
     private final List<? extends Vertex<DoubleTensor>> wrtVertices;
     private final LogProbGradientCalculator logProbGradientCalculator;
+    private final PropagationPlan propagationPlan;
 
     private final BiConsumer<double[], double[]> onGradientCalculation;
     private final BiConsumer<double[], Double> onFitnessCalculation;
 
+    private double[] lastPoint;
+    private Double lastFitness;
+    private double[] lastGradient;
+
     public FitnessFunctionWithGradient(List<? extends Vertex> ofVertices,
                                        List<? extends Vertex<DoubleTensor>> wrtVertices,
                                        BiConsumer<double[], double[]> onGradientCalculation,
@@ -33,6 +41,7 @@ public class FitnessFunctionWithGradient {
         this.ofVertices = ofVertices;
         this.wrtVertices = wrtVertices;
         this.logProbGradientCalculator = new LogProbGradientCalculator(ofVertices, wrtVertices);
+        this.propagationPlan = PropagationPlan.compile(wrtVertices);
         this.onGradientCalculation = onGradientCalculation;
         this.onFitnessCalculation = onFitnessCalculation;
     }
@@ -43,33 +52,80 @@ public class FitnessFunctionWithGradient {
     }
 
     public MultivariateVectorFunction gradient() {
-        return point -> {
+        return point -> gradientAt(point).clone();
+    }
 
-            setAndCascadePoint(point, wrtVertices);
+    public MultivariateFunction fitness() {
+        return this::fitnessAt;
+    }
 
-            Map<VertexId, DoubleTensor> diffs = logProbGradientCalculator.getJointLogProbGradientWrtLatents();
+    /**
+     * Evaluates the fitness and its gradient at a point, setting and cascading the point only once.
+     *
+     * @param point the values of the latent vertices, flattened and concatenated in the order of the vertices
+     * @return the fitness and gradient at the point
+     */
+    public FitnessAndGradient fitnessAndGradient(double[] point) {
+        return new FitnessAndGradient(fitnessAt(point), gradientAt(point).clone());
+    }
 
-            double[] gradients = alignGradientsToAppropriateIndex(diffs, wrtVertices);
+    /**
+     * Forgets the last point that was evaluated, so that the next evaluation sets and cascades its point through
+     * the graph even if it is the same point. This must be called if the values of the vertices are changed other
+     * than through this fitness function, e.g. by another optimizer or sampler working on the same network.
+     */
+    public void invalidateCache() {
+        lastPoint = null;
+        lastFitness = null;
+        lastGradient = null;
+    }
 
-            if (onGradientCalculation != null) {
-                onGradientCalculation.accept(point, gradients);
-            }
+    /**
+     * Line searches often ask for the fitness and then the gradient at the same point, so the last point is cached
+     * along with whatever has been calculated there. Only a new point is set and cascaded through the graph, so the
+     * values of the vertices must not be changed elsewhere between evaluations without calling
+     * {@link #invalidateCache()}. The optimizers create a new fitness function for each run so every run starts
+     * from the network's current values.
+     */
+    private void moveTo(double[] point) {
+        if (Arrays.equals(point, lastPoint)) {
+            return;
+        }
 
-            return gradients;
-        };
+        setAndCascadePoint(point, wrtVertices, propagationPlan);
+        lastPoint = point.clone();
+        lastFitness = null;
+        lastGradient = null;
     }
 
-    public MultivariateFunction fitness() {
-        return point -> {
-            setAndCascadePoint(point, wrtVertices);
-            double logOfTotalProbability = ProbabilityCalculator.calculateLogProbFor(ofVertices);
+    private double fitnessAt(double[] point) {
+        moveTo(point);
+
+        if (lastFitness == null) {
+            lastFitness = ProbabilityCalculator.calculateLogProbFor(ofVertices);
 
             if (onFitnessCalculation != null) {
-                onFitnessCalculation.accept(point, logOfTotalProbability);
+                onFitnessCalculation.accept(point, lastFitness);
             }
+        }
 
-            return logOfTotalProbability;
-        };
+        return lastFitness;
+    }
+
+    private double[] gradientAt(double[] point) {
+        moveTo(point);
+
+        if (lastGradient == null) {
+            Map<VertexId, DoubleTensor> diffs = logProbGradientCalculator.getJointLogProbGradientWrtLatents();
+
+            lastGradient = alignGradientsToAppropriateIndex(diffs, wrtVertices);
+
+            if (onGradientCalculation != null) {
+                onGradientCalculation.accept(point, lastGradient.clone());
+            }
+        }
+
+        return lastGradient;
     }
 
     private static double[] alignGradientsToAppropriateIndex(Map<VertexId, DoubleTensor /*Gradient*/> diffs,
@@ -105,4 +161,10 @@ public class FitnessFunctionWithGradient {
         return gradient;
     }
 
-}
\ No newline at end of file
+    @Value
+    public static class FitnessAndGradient {
+        double fitness;
+        double[] gradient;
+    }
+
+}
@@ -0,0 +1,481 @@
+package io.improbable.keanu.algorithms.variational.optimizer.gradient;
+
+import io.improbable.keanu.algorithms.variational.optimizer.Optimizer;
+import io.improbable.keanu.algorithms.variational.optimizer.nongradient.FitnessFunction;
+import io.improbable.keanu.algorithms.variational.optimizer.nongradient.OptimizerBounds;
+import io.improbable.keanu.network.BayesianNetwork;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.util.ProgressBar;
+import io.improbable.keanu.vertices.Vertex;
+import lombok.Builder;
+import lombok.Getter;
+import org.apache.commons.math3.analysis.MultivariateFunction;
+import org.apache.commons.math3.analysis.MultivariateVectorFunction;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * This class can be used to construct a limited memory BFGS (L-BFGS) gradient optimizer.
+ * It builds an approximation of the inverse Hessian from the last few steps and gradients, so it usually needs far
+ * fewer fitness and gradient evaluations than nonlinear conjugate gradient. Each step is found with a backtracking
+ * line search that only evaluates the gradient at the accepted point.
+ * <p>
+ * If any {@link OptimizerBounds} are given, the latent values are kept within them (L-BFGS-B). Values on a bound
+ * that the gradient pushes against are held fixed for the step, the quasi-Newton direction is taken over the
+ * remaining values and every point tried by the line search is projected back into the bounds.
+ *
+ * @see <a href="https://en.wikipedia.org/wiki/Limited-memory_BFGS">Limited-memory BFGS</a>
+ */
+@Builder
+public class LBFGSOptimizer implements Optimizer {
+
+    private static final double SUFFICIENT_INCREASE = 1e-4;
+    private static final double STEP_REDUCTION = 0.5;
+    private static final int MAX_STEP_REDUCTIONS = 50;
+
+    /**
+     * Creates a {@link LBFGSOptimizer} which provides methods for optimizing the values of latent variables
+     * of the Bayesian network to maximise probability.
+     *
+     * @param bayesNet The Bayesian network to run optimization on.
+     * @return a {@link LBFGSOptimizer}
+     */
+    public static LBFGSOptimizer of(BayesianNetwork bayesNet) {
+        List<Vertex> discreteLatentVertices = bayesNet.getDiscreteLatentVertices();
+        boolean containsDiscreteLatents = !discreteLatentVertices.isEmpty();
+
+        if (containsDiscreteLatents) {
+            throw new UnsupportedOperationException("Gradient Optimization unsupported on Networks containing " +
+                "Discrete Latents (" + discreteLatentVertices.size() + " found)");
+        }
+
+        return LBFGSOptimizer.builder()
+            .bayesianNetwork(bayesNet)
+            .build();
+    }
+
+    /**
+     * Creates a Bayesian network from the given vertices and uses this to
+     * create a {@link LBFGSOptimizer}. This provides methods for optimizing the values of latent variables
+     * of the Bayesian network to maximise probability.
+     *
+     * @param vertices The vertices to create a Bayesian network from.
+     * @return a {@link LBFGSOptimizer}
+     */
+    public static LBFGSOptimizer of(Collection<? extends Vertex> vertices) {
+        return of(new BayesianNetwork(vertices));
+    }
+
+    /**
+     * Creates a Bayesian network from the graph connected to the given vertex and uses this to
+     * create a {@link LBFGSOptimizer}. This provides methods for optimizing the values of latent variables
+     * of the Bayesian network to maximise probability.
+     *
+     * @param vertexFromNetwork A vertex in the graph to create the Bayesian network from
+     * @return a {@link LBFGSOptimizer}
+     */
+    public static LBFGSOptimizer ofConnectedGraph(Vertex<?> vertexFromNetwork) {
+        return of(vertexFromNetwork.getConnectedGraph());
+    }
+
+    @Getter
+    private BayesianNetwork bayesianNetwork;
+
+    /**
+     * maxEvaluations the maximum number of objective function evaluations before throwing an exception
+     * indicating convergence failure.
+     */
+    @Builder.Default
+    private int maxEvaluations = Integer.MAX_VALUE;
+
+    /**
+     * maxIterations the maximum number of steps to take. The optimizer stops at the current point once it is reached.
+     */
+    @Builder.Default
+    private int maxIterations = Integer.MAX_VALUE;
+
+    /**
+     * The number of previous steps used to approximate the inverse Hessian.
+     */
+    @Builder.Default
+    private int historySize = 10;
+
+    @Builder.Default
+    private double relativeThreshold = 1e-8;
+
+    @Builder.Default
+    private double absoluteThreshold = 1e-8;
+
+    /**
+     * The optimizer has converged when no element of the gradient that isn't held by a bound is larger than this.
+     */
+    @Builder.Default
+    private double gradientThreshold = 1e-8;
+
+    /**
+     * bounds for each specific continuous latent vertex
+     */
+    @Builder.Default
+    private OptimizerBounds optimizerBounds = new OptimizerBounds();
+
+    private final List<BiConsumer<double[], double[]>> onGradientCalculations = new ArrayList<>();
+    private final List<BiConsumer<double[], Double>> onFitnessCalculations = new ArrayList<>();
+
+    /**
+     * Adds a callback to be called whenever the optimizer evaluates the gradient at a point.
+     * @param gradientCalculationHandler a function to be called whenever the optimizer evaluates the gradient at a point.
+     *                                  The double[] argument to the handler represents the point being evaluated.
+     *                                  The double[] argument to the handler represents the gradient of that point.
+     */
+    public void addGradientCalculationHandler(BiConsumer<double[], double[]> gradientCalculationHandler) {
+        this.onGradientCalculations.add(gradientCalculationHandler);
+    }
+
+    /**
+     * Removes a callback function that previously would have been called whenever the optimizer
+     * evaluated the gradient at a point. If the callback is not registered then this function will do nothing.
+     *
+     * @param gradientCalculationHandler the function to be removed from the list of gradient evaluation callbacks
+     */
+    public void removeGradientCalculationHandler(BiConsumer<double[], double[]> gradientCalculationHandler) {
+        this.onGradientCalculations.remove(gradientCalculationHandler);
+    }
+
+    private void handleGradientCalculation(double[] point, double[] gradients) {
+        for (BiConsumer<double[], double[]> gradientCalculationHandler : onGradientCalculations) {
+            gradientCalculationHandler.accept(point, gradients);
+        }
+    }
+
+    @Override
+    public void addFitnessCalculationHandler(BiConsumer<double[], Double> fitnessCalculationHandler) {
+        this.onFitnessCalculations.add(fitnessCalculationHandler);
+    }
+
+    @Override
+    public void removeFitnessCalculationHandler(BiConsumer<double[], Double> fitnessCalculationHandler) {
+        this.onFitnessCalculations.remove(fitnessCalculationHandler);
+    }
+
+    private void handleFitnessCalculation(double[] point, Double fitness) {
+        for (BiConsumer<double[], Double> fitnessCalculationHandler : onFitnessCalculations) {
+            fitnessCalculationHandler.accept(point, fitness);
+        }
+    }
+
+    @Override
+    public double maxAPosteriori() {
+        if (bayesianNetwork.getLatentOrObservedVertices().isEmpty()) {
+            throw new IllegalArgumentException("Cannot find MAP of network without any probabilistic vertices");
+        }
+        return optimize(bayesianNetwork.getLatentOrObservedVertices());
+    }
+
+    @Override
+    public double maxLikelihood() {
+        if (bayesianNetwork.getObservedVertices().isEmpty()) {
+            throw new IllegalArgumentException("Cannot find max likelihood of network without any observations");
+        }
+        return optimize(bayesianNetwork.getObservedVertices());
+    }
+
+    private double optimize(List<Vertex> outputVertices) {
+
+        ProgressBar progressBar = Optimizer.createFitnessProgressBar(this);
+
+        bayesianNetwork.cascadeObservations();
+
+        List<? extends Vertex<DoubleTensor>> latentVertices = bayesianNetwork.getContinuousLatentVertices();
+
+        FitnessFunctionWithGradient fitnessFunction = new FitnessFunctionWithGradient(
+            outputVertices,
+            latentVertices,
+            this::handleGradientCalculation,
+            this::handleFitnessCalculation
+        );
+
+        double[] lower = flatBounds(latentVertices, optimizerBounds::getLower, Double.NEGATIVE_INFINITY);
+        double[] upper = flatBounds(latentVertices, optimizerBounds::getUpper, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < lower.length; i++) {
+            if (lower[i] > upper[i]) {
+                throw new IllegalArgumentException("Lower bound " + lower[i] + " is above upper bound " + upper[i]);
+            }
+        }
+
+        Objective objective = new Objective(fitnessFunction.fitness(), fitnessFunction.gradient());
+
+        double[] point = project(Optimizer.currentPoint(latentVertices), lower, upper);
+        double fitness = objective.fitness(point);
+
+        if (FitnessFunction.isValidInitialFitness(fitness)) {
+            throw new IllegalArgumentException("Cannot start optimizer on zero probability network");
+        }
+
+        double[] gradient = objective.gradient(point);
+
+        Deque<Correction> history = new ArrayDeque<>(historySize);
+
+        for (int iteration = 0; iteration < maxIterations; iteration++) {
+
+            boolean[] free = freeDimensions(point, gradient, lower, upper);
+            if (maxAbs(gradient, free) <= gradientThreshold) {
+                break;
+            }
+
+            double[] direction = ascentDirection(gradient, free, history);
+            if (dot(gradient, direction) <= 0) {
+                history.clear();
+                direction = ascentDirection(gradient, free, history);
+            }
+
+            double[] nextPoint = null;
+            double nextFitness = Double.NEGATIVE_INFINITY;
+            double stepLength = 1.0;
+            for (int reduction = 0; reduction < MAX_STEP_REDUCTIONS; reduction++) {
+                double[] candidate = project(plus(point, direction, stepLength), lower, upper);
+                double candidateFitness = objective.fitness(candidate);
+                double expectedIncrease = dot(gradient, minus(candidate, point));
+
+                if (candidateFitness >= fitness + SUFFICIENT_INCREASE * expectedIncrease) {
+                    nextPoint = candidate;
+                    nextFitness = candidateFitness;
+                    break;
+                }
+                stepLength *= STEP_REDUCTION;
+            }
+
+            if (nextPoint == null || Arrays.equals(nextPoint, point)) {
+                break;
+            }
+
+            double[] nextGradient = objective.gradient(nextPoint);
+
+            //differences are taken for the minimisation of -fitness so that s.y is positive for a concave fitness
+            double[] s = minus(nextPoint, point);
+            double[] y = minus(gradient, nextGradient);
+            double sy = dot(s, y);
+            if (sy > 1e-10 * dot(y, y)) {
+                if (history.size() == historySize) {
+                    history.removeFirst();
+                }
+                history.addLast(new Correction(s, y, 1.0 / sy));
+            }
+
+            boolean converged = hasConverged(fitness, nextFitness);
+
+            point = nextPoint;
+            fitness = nextFitness;
+            gradient = nextGradient;
+
+            if (converged) {
+                break;
+            }
+        }
+
+        Optimizer.setAndCascadePoint(point, latentVertices);
+
+        progressBar.finish();
+        return fitness;
+    }
+
+    private boolean hasConverged(double previousFitness, double currentFitness) {
+        double difference = Math.abs(previousFitness - currentFitness);
+        double size = Math.max(Math.abs(previousFitness), Math.abs(currentFitness));
+        return difference <= size * relativeThreshold || difference <= absoluteThreshold;
+    }
+
+    /**
+     * The two-loop recursion, which multiplies the gradient by the approximate inverse Hessian of -fitness over the
+     * dimensions that are free to move.
+     */
+    private static double[] ascentDirection(double[] gradient, boolean[] free, Deque<Correction> history) {
+        double[] q = masked(gradient, free);
+
+        if (history.isEmpty()) {
+            //without any curvature information the first step is one unit along the gradient
+            double norm = Math.sqrt(dot(q, q));
+            for (int i = 0; i < q.length; i++) {
+                q[i] /= norm;
+            }
+            return q;
+        }
+
+        double[] alphas = new double[history.size()];
+        int index = history.size() - 1;
+        for (Iterator<Correction> newestFirst = history.descendingIterator(); newestFirst.hasNext(); index--) {
+            Correction correction = newestFirst.next();
+            alphas[index] = correction.rho * dot(correction.s, q, free);
+            addScaled(q, correction.y, -alphas[index], free);
+        }
+
+        Correction newest = history.getLast();
+        double gamma = dot(newest.s, newest.y, free) / dot(newest.y, newest.y, free);
+        if (gamma > 0 && !Double.isInfinite(gamma)) {
+            for (int i = 0; i < q.length; i++) {
+                q[i] *= gamma;
+            }
+        }
+
+        index = 0;
+        for (Correction correction : history) {
+            double beta = correction.rho * dot(correction.y, q, free);
+            addScaled(q, correction.s, alphas[index] - beta, free);
+            index++;
+        }
+
+        return q;
+    }
+
+    /**
+     * A dimension is held if it is on a bound and the gradient would take it past the bound.
+     */
+    private static boolean[] freeDimensions(double[] point, double[] gradient, double[] lower, double[] upper) {
+        boolean[] free = new boolean[point.length];
+        for (int i = 0; i < point.length; i++) {
+            boolean heldAtLower = point[i] <= lower[i] && gradient[i] < 0;
+            boolean heldAtUpper = point[i] >= upper[i] && gradient[i] > 0;
+            free[i] = !heldAtLower && !heldAtUpper;
+        }
+        return free;
+    }
+
+    private double[] flatBounds(List<? extends Vertex<DoubleTensor>> latentVertices,
+                                Function<Vertex<DoubleTensor>, DoubleTensor> boundOf,
+                                double unbounded) {
+
+        double[] bounds = new double[(int) Optimizer.totalNumberOfLatentDimensions(latentVertices)];
+        int position = 0;
+        for (Vertex<DoubleTensor> vertex : latentVertices) {
+            int dimensions = (int) Optimizer.numDimensions(vertex);
+
+            if (optimizerBounds.hasBound(vertex)) {
+                DoubleTensor bound = boundOf.apply(vertex);
+                if (bound.isScalar()) {
+                    Arrays.fill(bounds, position, position + dimensions, bound.scalar());
+                } else if (Arrays.equals(vertex.getShape(), bound.getShape())) {
+                    System.arraycopy(bound.asFlatDoubleArray(), 0, bounds, position, dimensions);
+                } else {
+                    throw new IllegalArgumentException("Bounds shape does not match vertex shape");
+                }
+            } else {
+                Arrays.fill(bounds, position, position + dimensions, unbounded);
+            }
+
+            position += dimensions;
+        }
+        return bounds;
+    }
+
+    private static double[] project(double[] point, double[] lower, double[] upper) {
+        double[] projected = new double[point.length];
+        for (int i = 0; i < point.length; i++) {
+            projected[i] = Math.min(Math.max(point[i], lower[i]), upper[i]);
+        }
+        return projected;
+    }
+
+    private static double[] masked(double[] vector, boolean[] free) {
+        double[] masked = new double[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            masked[i] = free[i] ? vector[i] : 0.0;
+        }
+        return masked;
+    }
+
+    private static double maxAbs(double[] vector, boolean[] free) {
+        double max = 0.0;
+        for (int i = 0; i < vector.length; i++) {
+            if (free[i]) {
+                max = Math.max(max, Math.abs(vector[i]));
+            }
+        }
+        return max;
+    }
+
+    private static double[] plus(double[] point, double[] direction, double stepLength) {
+        double[] result = new double[point.length];
+        for (int i = 0; i < point.length; i++) {
+            result[i] = point[i] + stepLength * direction[i];
+        }
+        return result;
+    }
+
+    private static double[] minus(double[] a, double[] b) {
+        double[] result = new double[a.length];
+        for (int i = 0; i < a.length; i++) {
+            result[i] = a[i] - b[i];
+        }
+        return result;
+    }
+
+    private static double dot(double[] a, double[] b) {
+        double result = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            result += a[i] * b[i];
+        }
+        return result;
+    }
+
+    private static double dot(double[] a, double[] b, boolean[] free) {
+        double result = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            if (free[i]) {
+                result += a[i] * b[i];
+            }
+        }
+        return result;
+    }
+
+    private static void addScaled(double[] target, double[] vector, double scale, boolean[] free) {
+        for (int i = 0; i < target.length; i++) {
+            if (free[i]) {
+                target[i] += scale * vector[i];
+            }
+        }
+    }
+
+    private static class Correction {
+
+        private final double[] s;
+        private final double[] y;
+        private final double rho;
+
+        Correction(double[] s, double[] y, double rho) {
+            this.s = s;
+            this.y = y;
+            this.rho = rho;
+        }
+    }
+
+    private class Objective {
+
+        private final MultivariateFunction fitness;
+        private final MultivariateVectorFunction gradient;
+        private int evaluations;
+
+        Objective(MultivariateFunction fitness, MultivariateVectorFunction gradient) {
+            this.fitness = fitness;
+            this.gradient = gradient;
+        }
+
+        double fitness(double[] point) {
+            if (evaluations >= maxEvaluations) {
+                throw new IllegalStateException("Failed to converge within " + maxEvaluations + " fitness evaluations");
+            }
+            evaluations++;
+            return fitness.value(point);
+        }
+
+        double[] gradient(double[] point) {
+            return gradient.value(point);
+        }
+    }
+}
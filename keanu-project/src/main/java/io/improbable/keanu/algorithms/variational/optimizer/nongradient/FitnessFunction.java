@@ -1,5 +1,6 @@
 package io.improbable.keanu.algorithms.variational.optimizer.nongradient;
 
+import io.improbable.keanu.algorithms.graphtraversal.PropagationPlan;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
 import io.improbable.keanu.vertices.ProbabilityCalculator;
 import io.improbable.keanu.vertices.Vertex;
@@ -15,6 +16,7 @@ public class FitnessFunction {
     private final List<Vertex> outputVertices;
     private final List<? extends Vertex<DoubleTensor>> latentVertices;
     private final BiConsumer<double[], Double> onFitnessCalculation;
+    private final PropagationPlan propagationPlan;
 
     public FitnessFunction(List<Vertex> outputVertices,
                            List<? extends Vertex<DoubleTensor>> latentVertices,
@@ -22,6 +24,7 @@ public class FitnessFunction {
         this.outputVertices = outputVertices;
         this.latentVertices = latentVertices;
         this.onFitnessCalculation = onFitnessCalculation;
+        this.propagationPlan = PropagationPlan.compile(latentVertices);
     }
 
     public FitnessFunction(List<Vertex> outputVertices,
@@ -31,7 +34,7 @@ public class FitnessFunction {
 
     public MultivariateFunction fitness() {
         return point -> {
-            setAndCascadePoint(point, latentVertices);
+            setAndCascadePoint(point, latentVertices, propagationPlan);
             double logOfTotalProbability = ProbabilityCalculator.calculateLogProbFor(outputVertices);
 
             if (onFitnessCalculation != null) {
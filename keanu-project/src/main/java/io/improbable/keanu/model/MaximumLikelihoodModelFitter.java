@@ -1,13 +1,29 @@
 package io.improbable.keanu.model;
 
+import io.improbable.keanu.algorithms.variational.optimizer.Optimizer;
 import io.improbable.keanu.algorithms.variational.optimizer.gradient.GradientOptimizer;
+import io.improbable.keanu.network.BayesianNetwork;
+
+import java.util.function.Function;
 
 public class MaximumLikelihoodModelFitter<INPUT, OUTPUT> implements ModelFitter<INPUT, OUTPUT> {
 
     private final ModelGraph<INPUT, OUTPUT> modelGraph;
+    private final Function<BayesianNetwork, ? extends Optimizer> optimizerFactory;
 
     public MaximumLikelihoodModelFitter(ModelGraph<INPUT, OUTPUT> modelGraph) {
+        this(modelGraph, GradientOptimizer::of);
+    }
+
+    /**
+     * @param modelGraph       The model graph to fit
+     * @param optimizerFactory Creates the optimizer to fit the graph with from its Bayesian network,
+     *                         e.g. {@link io.improbable.keanu.algorithms.variational.optimizer.gradient.LBFGSOptimizer#of(BayesianNetwork) LBFGSOptimizer::of}
+     */
+    public MaximumLikelihoodModelFitter(ModelGraph<INPUT, OUTPUT> modelGraph,
+                                        Function<BayesianNetwork, ? extends Optimizer> optimizerFactory) {
         this.modelGraph = modelGraph;
+        this.optimizerFactory = optimizerFactory;
     }
 
     /**
@@ -22,6 +38,6 @@ public class MaximumLikelihoodModelFitter<INPUT, OUTPUT> implements ModelFitter<
     @Override
     public void fit(INPUT input, OUTPUT output) {
         modelGraph.observeValues(input, output);
-        GradientOptimizer.of(modelGraph.getBayesianNetwork()).maxLikelihood();
+        optimizerFactory.apply(modelGraph.getBayesianNetwork()).maxLikelihood();
     }
 }
@@ -1,6 +1,7 @@
 package io.improbable.keanu.network;
 
 import com.google.common.collect.ImmutableList;
+import io.improbable.keanu.algorithms.graphtraversal.PropagationPlan;
 import io.improbable.keanu.algorithms.graphtraversal.TopologicalSort;
 import io.improbable.keanu.algorithms.graphtraversal.VertexValuePropagation;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
@@ -23,6 +24,7 @@ public class BayesianNetwork {
     private final Map<VertexLabel, Vertex> vertexLabels;
     private final int TOP_LEVEL_INDENTATION = 1;
     private int indentation = TOP_LEVEL_INDENTATION;
+    private ExecutionContextLayout executionContextLayout;
 
     public BayesianNetwork(Set<? extends Vertex> vertices) {
         this.vertices = ImmutableList.copyOf(vertices);
@@ -57,6 +59,13 @@ public class BayesianNetwork {
         return vertices;
     }
 
+    synchronized ExecutionContextLayout getExecutionContextLayout() {
+        if (executionContextLayout == null) {
+            executionContextLayout = new ExecutionContextLayout(vertices);
+        }
+        return executionContextLayout;
+    }
+
     private interface VertexFilter {
         boolean filter(boolean isProbabilistic, boolean isObserved, int indentation);
     }
@@ -140,9 +149,10 @@ public class BayesianNetwork {
         if (isInImpossibleState()) {
 
             List<Vertex> sortedByDependency = TopologicalSort.sort(getLatentVertices());
-            setFromSampleAndCascade(sortedByDependency, random);
+            PropagationPlan propagationPlan = PropagationPlan.compile(sortedByDependency);
+            setFromSampleAndCascade(sortedByDependency, propagationPlan, random);
 
-            probeForNonZeroProbability(sortedByDependency, attempts, random);
+            probeForNonZeroProbability(sortedByDependency, propagationPlan, attempts, random);
         }
     }
 
@@ -150,11 +160,14 @@ public class BayesianNetwork {
      * Attempt to find a non-zero master probability by repeatedly
      * cascading values from the given vertices
      */
-    private void probeForNonZeroProbability(List<? extends Vertex> latentVertices, int attempts, KeanuRandom random) {
+    private void probeForNonZeroProbability(List<? extends Vertex> latentVertices,
+                                            PropagationPlan propagationPlan,
+                                            int attempts,
+                                            KeanuRandom random) {
 
         int iteration = 0;
         while (isInImpossibleState()) {
-            setFromSampleAndCascade(latentVertices, random);
+            setFromSampleAndCascade(latentVertices, propagationPlan, random);
             iteration++;
 
             if (iteration > attempts) {
@@ -173,10 +186,21 @@ public class BayesianNetwork {
     }
 
     public static void setFromSampleAndCascade(List<? extends Vertex> vertices, KeanuRandom random) {
+        setFromSampleAndCascade(vertices, PropagationPlan.compile(vertices), random);
+    }
+
+    /**
+     * @param vertices        the vertices to set from a sample of their distribution
+     * @param propagationPlan a plan compiled from the vertices, for when they are sampled repeatedly
+     * @param random          random source for sampling
+     */
+    public static void setFromSampleAndCascade(List<? extends Vertex> vertices,
+                                               PropagationPlan propagationPlan,
+                                               KeanuRandom random) {
         for (Vertex<?> vertex : vertices) {
             setValueFromSample(vertex, random);
         }
-        VertexValuePropagation.cascadeUpdate(vertices);
+        propagationPlan.cascade();
     }
 
     private static <T> void setValueFromSample(Vertex<T> vertex, KeanuRandom random) {
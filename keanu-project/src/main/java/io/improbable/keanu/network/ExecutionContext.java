@@ -0,0 +1,181 @@
+package io.improbable.keanu.network;
+
+import io.improbable.keanu.tensor.Tensor;
+import io.improbable.keanu.vertices.Vertex;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Holds the values of the vertices of a {@link BayesianNetwork} separately from the vertices themselves.
+ * While a context is running on a thread, every read and write of an unobserved vertex value made on that
+ * thread goes to the context rather than to the vertex. This allows many contexts to share one graph, e.g.
+ * for concurrent queries or parallel chains.
+ * <p>
+ * Values are stored in an array with one slot per vertex of the network. The slots are assigned once per
+ * network so creating or copying a context never copies the graph.
+ * <p>
+ * Observed values are part of the model rather than its state, so they stay on the vertices and are shared
+ * by every context. The cached log prob of every vertex, observed or not, depends on the values of its parents
+ * so it is held by the context too. Observing or unobserving a vertex changes log probs in every context at once,
+ * so it drops the log probs cached by all of them, including contexts that are running on other threads.
+ */
+public class ExecutionContext {
+
+    private static final ThreadLocal<ExecutionContext> CURRENT = new ThreadLocal<>();
+    private static final AtomicInteger RUNNING_COUNT = new AtomicInteger(0);
+    private static final AtomicLong CACHED_LOG_PROBS_VERSION = new AtomicLong(0);
+
+    /**
+     * @param network the network whose current state should be copied into the context
+     * @return a context that starts from the current values of the network's vertices
+     */
+    public static ExecutionContext of(BayesianNetwork network) {
+        ExecutionContextLayout layout = network.getExecutionContextLayout();
+        Object[] values = new Object[layout.size()];
+        for (int i = 0; i < values.length; i++) {
+            Vertex<?> vertex = layout.getVertex(i);
+            values[i] = vertex.hasValue() ? copyOf(vertex.getValue()) : null;
+        }
+        double[] cachedLogProbs = new double[values.length];
+        Arrays.fill(cachedLogProbs, Double.NaN);
+        return new ExecutionContext(layout, values, cachedLogProbs, CACHED_LOG_PROBS_VERSION.get());
+    }
+
+    /**
+     * @return the context running on the calling thread or null if there isn't one.
+     */
+    public static ExecutionContext current() {
+        if (RUNNING_COUNT.get() == 0) {
+            return null;
+        }
+        return CURRENT.get();
+    }
+
+    /**
+     * Drops the log probs cached by every context, e.g. when a vertex is observed or unobserved. Each context
+     * clears its cache the next time it is read or written, so this is safe to call while contexts are running.
+     */
+    public static void invalidateAllCachedLogProbs() {
+        CACHED_LOG_PROBS_VERSION.incrementAndGet();
+    }
+
+    private final ExecutionContextLayout layout;
+    private final Object[] values;
+    private final double[] cachedLogProbs;
+    private long cachedLogProbsVersion;
+
+    private ExecutionContext(ExecutionContextLayout layout,
+                             Object[] values,
+                             double[] cachedLogProbs,
+                             long cachedLogProbsVersion) {
+        this.layout = layout;
+        this.values = values;
+        this.cachedLogProbs = cachedLogProbs;
+        this.cachedLogProbsVersion = cachedLogProbsVersion;
+    }
+
+    /**
+     * Runs a task with this context bound to the calling thread. Any vertex value read or written by the task
+     * on this thread will use the values held by this context.
+     *
+     * @param task the task to run
+     * @param <R>  the result type of the task
+     * @return the result of the task
+     */
+    public <R> R run(Supplier<R> task) {
+        ExecutionContext previous = CURRENT.get();
+        CURRENT.set(this);
+        RUNNING_COUNT.incrementAndGet();
+        try {
+            return task.get();
+        } finally {
+            RUNNING_COUNT.decrementAndGet();
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Copies the state held by this context. The copy shares the graph and the value objects with this
+     * context but further changes to either context are not seen by the other.
+     *
+     * @return a copy of this context
+     */
+    public ExecutionContext copy() {
+        return new ExecutionContext(layout, values.clone(), cachedLogProbs.clone(), cachedLogProbsVersion);
+    }
+
+    /**
+     * Writes the values held by this context to the vertices of the network, e.g. to keep the final state of
+     * a chain. This should be called when no context is running on the calling thread.
+     */
+    public void applyToNetwork() {
+        for (int i = 0; i < values.length; i++) {
+            applyValue(layout.getVertex(i), values[i]);
+        }
+    }
+
+    private static <T> void applyValue(Vertex<T> vertex, Object value) {
+        if (value != null) {
+            vertex.setValue((T) value);
+        }
+    }
+
+    /**
+     * @param vertex the vertex to find
+     * @return the slot holding the value of the vertex or -1 if the context doesn't hold its value
+     */
+    public int indexOf(Vertex<?> vertex) {
+        return layout.indexOf(vertex);
+    }
+
+    public boolean contains(Vertex<?> vertex) {
+        return indexOf(vertex) >= 0;
+    }
+
+    public Object getValue(int index) {
+        return values[index];
+    }
+
+    public void setValue(int index, Object value) {
+        values[index] = value;
+    }
+
+    public double getCachedLogProb(int index) {
+        return validCachedLogProbs()[index];
+    }
+
+    public void setCachedLogProb(int index, double logProb) {
+        validCachedLogProbs()[index] = logProb;
+    }
+
+    private double[] validCachedLogProbs() {
+        long version = CACHED_LOG_PROBS_VERSION.get();
+        if (cachedLogProbsVersion != version) {
+            Arrays.fill(cachedLogProbs, Double.NaN);
+            cachedLogProbsVersion = version;
+        }
+        return cachedLogProbs;
+    }
+
+    public <T> T getValue(Vertex<T> vertex) {
+        return (T) values[indexOf(vertex)];
+    }
+
+    public <T> void setValue(Vertex<T> vertex, T value) {
+        values[indexOf(vertex)] = value;
+    }
+
+    private static Object copyOf(Object value) {
+        if (value instanceof Tensor) {
+            return ((Tensor) value).duplicate();
+        }
+        return value;
+    }
+}
@@ -0,0 +1,42 @@
+package io.improbable.keanu.network;
+
+import io.improbable.keanu.vertices.Vertex;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns each vertex of a network a slot in the value arrays of an {@link ExecutionContext}. A layout is
+ * built once per network and shared by every context created for that network.
+ */
+class ExecutionContextLayout {
+
+    private final Vertex[] vertices;
+    private final Map<Vertex, Integer> indices;
+
+    ExecutionContextLayout(List<? extends Vertex> vertices) {
+        this.vertices = vertices.toArray(new Vertex[0]);
+        this.indices = new IdentityHashMap<>(vertices.size());
+        for (int i = 0; i < this.vertices.length; i++) {
+            indices.put(this.vertices[i], i);
+        }
+    }
+
+    int size() {
+        return vertices.length;
+    }
+
+    Vertex<?> getVertex(int index) {
+        return vertices[index];
+    }
+
+    /**
+     * @param vertex the vertex to find
+     * @return the slot of the vertex or -1 if the vertex isn't part of the layout
+     */
+    int indexOf(Vertex<?> vertex) {
+        Integer index = indices.get(vertex);
+        return index == null ? -1 : index;
+    }
+}
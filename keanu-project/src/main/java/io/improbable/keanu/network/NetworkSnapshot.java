@@ -2,28 +2,52 @@ package io.improbable.keanu.network;
 
 import io.improbable.keanu.vertices.Vertex;
 
-import java.util.*;
+import java.util.Collection;
+import java.util.Set;
 
 /**
  * Saves the state (value and observed) of a specified collection of vertices.
+ * <p>
+ * The vertices and their saved states are held in arrays that are sized once, so a snapshot can be saved over
+ * and over with {@link #save()} without allocating, e.g. once per step of an MCMC chain.
  */
 public class NetworkSnapshot {
 
+    /**
+     * @param vertices the vertices to save the state of
+     * @return a snapshot of the current state of the vertices
+     */
     public static NetworkSnapshot create(Set<Vertex> vertices) {
+        NetworkSnapshot snapshot = new NetworkSnapshot(vertices);
+        snapshot.save();
+        return snapshot;
+    }
+
+    /**
+     * @param vertices the vertices to save the state of
+     * @return a snapshot that holds no state until {@link #save()} is called
+     */
+    public static NetworkSnapshot reusable(Collection<? extends Vertex> vertices) {
         return new NetworkSnapshot(vertices);
     }
 
-    private final Map<Vertex, Object> values;
-    private final Set<Vertex> observed;
+    private final Vertex[] vertices;
+    private final Object[] values;
+    private final boolean[] observed;
 
-    private NetworkSnapshot(Collection<Vertex> vertices) {
-        values = new HashMap<>();
-        observed = new HashSet<>();
-        for (Vertex v : vertices) {
-            values.put(v, v.getValue());
-            if (v.isObserved()) {
-                observed.add(v);
-            }
+    private NetworkSnapshot(Collection<? extends Vertex> vertices) {
+        this.vertices = vertices.toArray(new Vertex[0]);
+        this.values = new Object[this.vertices.length];
+        this.observed = new boolean[this.vertices.length];
+    }
+
+    /**
+     * Saves the current state of the vertices over any previously saved state.
+     */
+    public void save() {
+        for (int i = 0; i < vertices.length; i++) {
+            values[i] = vertices[i].getValue();
+            observed[i] = vertices[i].isObserved();
         }
     }
 
@@ -31,14 +55,18 @@ public class NetworkSnapshot {
      * Revert the state of the network to the previously saved values
      */
     public void apply() {
-        for (Vertex v : values.keySet()) {
-            if (observed.contains(v)) {
-                v.observe(values.get(v));
+        for (int i = 0; i < vertices.length; i++) {
+            Vertex v = vertices[i];
+            if (observed[i]) {
+                if (!v.isObserved() || v.getValue() != values[i]) {
+                    v.observe(values[i]);
+                }
             } else {
-                v.unobserve();
-                v.setValue(values.get(v));
+                if (v.isObserved()) {
+                    v.unobserve();
+                }
+                v.setValue(values[i]);
             }
-
         }
     }
 
@@ -0,0 +1,1416 @@
+package io.improbable.keanu.tensor.dbl;
+
+import com.google.common.base.Preconditions;
+import io.improbable.keanu.tensor.Tensor;
+import io.improbable.keanu.tensor.TensorShape;
+import io.improbable.keanu.tensor.TensorShapeValidation;
+import io.improbable.keanu.tensor.bool.BooleanTensor;
+import io.improbable.keanu.tensor.intgr.IntegerTensor;
+import io.improbable.keanu.tensor.validate.TensorValidator;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.LUDecomposition;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.special.Gamma;
+import org.apache.commons.math3.util.FastMath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Function;
+
+/**
+ * A DoubleTensor held in a row major double[] and operated on with plain Java loops. For small tensors this
+ * is much faster than ND4J as no op has to cross into native code or allocate off heap. Shapes follow the same
+ * conventions as {@link Nd4jDoubleTensor}, e.g. all tensors are at least rank 2, so the two can be used
+ * interchangeably.
+ * <p>
+ * {@link DoubleTensor#create(double[], long...)} and the other factory methods on DoubleTensor create a
+ * JavaDoubleTensor for any non scalar shape with a length of at most {@link #getMaxLength()}, which can be changed
+ * with {@link #setMaxLength(long)}.
+ */
+public class JavaDoubleTensor implements DoubleTensor {
+
+    /**
+     * Tensors of up to a 32 by 32 matrix are created as JavaDoubleTensors by default. Element-wise ops in plain
+     * loops stay ahead of the fixed cost of a native call well past this length, while the naive matrix multiply
+     * falls behind BLAS for larger matrices. DoubleTensorBenchmark compares the two backends at each size.
+     */
+    public static final long DEFAULT_MAX_LENGTH = 1024;
+
+    private static volatile long maxLength = DEFAULT_MAX_LENGTH;
+
+    /**
+     * @return the largest length of tensor that the DoubleTensor factory methods create as a JavaDoubleTensor
+     */
+    public static long getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * @param maxLength the largest length of tensor that the DoubleTensor factory methods should create as a
+     *                  JavaDoubleTensor. Larger tensors are created with ND4J. Zero turns JavaDoubleTensors off.
+     */
+    public static void setMaxLength(long maxLength) {
+        Preconditions.checkArgument(maxLength >= 0, "Max length must not be negative");
+        JavaDoubleTensor.maxLength = maxLength;
+    }
+
+    static boolean isPreferredFor(long[] shape) {
+        return shape.length > 1 && TensorShape.getLength(shape) <= maxLength;
+    }
+
+    public static JavaDoubleTensor create(double[] values, long[] shape) {
+        return new JavaDoubleTensor(Arrays.copyOf(values, values.length), shape);
+    }
+
+    public static JavaDoubleTensor create(double value, long[] shape) {
+        double[] buffer = new double[Math.toIntExact(TensorShape.getLength(shape))];
+        if (value != 0.0) {
+            Arrays.fill(buffer, value);
+        }
+        return new JavaDoubleTensor(buffer, shape);
+    }
+
+    public static JavaDoubleTensor ones(long... shape) {
+        return create(1.0, shape);
+    }
+
+    public static JavaDoubleTensor zeros(long... shape) {
+        return create(0.0, shape);
+    }
+
+    public static JavaDoubleTensor eye(long n) {
+        int size = Math.toIntExact(n);
+        double[] buffer = new double[size * size];
+        for (int i = 0; i < size; i++) {
+            buffer[i * size + i] = 1.0;
+        }
+        return new JavaDoubleTensor(buffer, new long[]{n, n});
+    }
+
+    private double[] buffer;
+    private long[] shape;
+    private long[] stride;
+
+    private JavaDoubleTensor(double[] buffer, long[] shape) {
+        shape = promoteVectorShape(shape);
+        TensorShapeValidation.checkRankIsAtLeastTwo(shape);
+        Preconditions.checkArgument(
+            buffer.length == TensorShape.getLength(shape),
+            "Cannot hold " + buffer.length + " values in shape " + Arrays.toString(shape)
+        );
+        this.buffer = buffer;
+        this.shape = Arrays.copyOf(shape, shape.length);
+        this.stride = TensorShape.getRowFirstStride(shape);
+    }
+
+    /**
+     * Like ND4J, a rank 1 shape of n is taken to be a row vector of shape [1, n].
+     */
+    private static long[] promoteVectorShape(long[] shape) {
+        if (shape.length == 1) {
+            return new long[]{1, shape[0]};
+        }
+        return shape;
+    }
+
+    @Override
+    public int getRank() {
+        return shape.length;
+    }
+
+    @Override
+    public long[] getShape() {
+        return Arrays.copyOf(shape, shape.length);
+    }
+
+    @Override
+    public long getLength() {
+        return buffer.length;
+    }
+
+    @Override
+    public boolean isShapePlaceholder() {
+        return false;
+    }
+
+    @Override
+    public Double getValue(long... index) {
+        return buffer[flatIndex(index)];
+    }
+
+    @Override
+    public DoubleTensor setValue(Double value, long... index) {
+        buffer[flatIndex(index)] = value;
+        return this;
+    }
+
+    private int flatIndex(long[] index) {
+        if (index.length == 1) {
+            return Math.toIntExact(index[0]);
+        }
+        return Math.toIntExact(TensorShape.getFlatIndex(shape, stride, index));
+    }
+
+    @Override
+    public Double scalar() {
+        return buffer[0];
+    }
+
+    @Override
+    public DoubleTensor duplicate() {
+        return new JavaDoubleTensor(Arrays.copyOf(buffer, buffer.length), shape);
+    }
+
+    @Override
+    public DoubleTensor reshape(long... newShape) {
+        newShape = inferUnknownDimension(newShape, buffer.length);
+        if (TensorShape.getLength(newShape) != buffer.length) {
+            throw new IllegalArgumentException(
+                "Cannot reshape " + Arrays.toString(shape) + " to " + Arrays.toString(newShape)
+            );
+        }
+        return new JavaDoubleTensor(Arrays.copyOf(buffer, buffer.length), newShape);
+    }
+
+    /**
+     * Like ND4J, one dimension of a new shape can be -1, in which case it's whatever length makes the shape hold
+     * all the values.
+     */
+    private static long[] inferUnknownDimension(long[] newShape, long length) {
+        int unknownDimension = ArrayUtils.indexOf(newShape, -1L);
+        if (unknownDimension < 0) {
+            return newShape;
+        }
+
+        long knownLength = 1;
+        for (int i = 0; i < newShape.length; i++) {
+            if (i != unknownDimension) {
+                knownLength *= newShape[i];
+            }
+        }
+        if (knownLength == 0 || length % knownLength != 0) {
+            throw new IllegalArgumentException("Cannot reshape " + length + " values to " + Arrays.toString(newShape));
+        }
+
+        long[] inferredShape = Arrays.copyOf(newShape, newShape.length);
+        inferredShape[unknownDimension] = length / knownLength;
+        return inferredShape;
+    }
+
+    @Override
+    public DoubleTensor permute(int... rearrange) {
+        long[] permutedShape = new long[shape.length];
+        for (int i = 0; i < rearrange.length; i++) {
+            permutedShape[i] = shape[rearrange[i]];
+        }
+        return new JavaDoubleTensor(permute(buffer, shape, rearrange), permutedShape);
+    }
+
+    /**
+     * @param buffer    a row major buffer
+     * @param shape     the shape of the buffer
+     * @param rearrange the dimension of the buffer that each dimension of the result comes from
+     * @return a row major buffer of the permuted tensor
+     */
+    private static double[] permute(double[] buffer, long[] shape, int[] rearrange) {
+        int rank = shape.length;
+        long[] stride = TensorShape.getRowFirstStride(shape);
+
+        int[] permutedShape = new int[rank];
+        int[] permutedStride = new int[rank];
+        for (int i = 0; i < rank; i++) {
+            permutedShape[i] = (int) shape[rearrange[i]];
+            permutedStride[i] = (int) stride[rearrange[i]];
+        }
+
+        double[] permuted = new double[buffer.length];
+        int[] index = new int[rank];
+        int from = 0;
+        for (int to = 0; to < permuted.length; to++) {
+            permuted[to] = buffer[from];
+
+            for (int dimension = rank - 1; dimension >= 0; dimension--) {
+                index[dimension]++;
+                from += permutedStride[dimension];
+                if (index[dimension] < permutedShape[dimension]) {
+                    break;
+                }
+                from -= permutedStride[dimension] * index[dimension];
+                index[dimension] = 0;
+            }
+        }
+        return permuted;
+    }
+
+    @Override
+    public DoubleTensor diag() {
+        if (isVector()) {
+            int n = buffer.length;
+            double[] diagonal = new double[n * n];
+            for (int i = 0; i < n; i++) {
+                diagonal[i * n + i] = buffer[i];
+            }
+            return new JavaDoubleTensor(diagonal, new long[]{n, n});
+        } else if (isMatrix()) {
+            int n = (int) Math.min(shape[0], shape[1]);
+            double[] diagonal = new double[n];
+            for (int i = 0; i < n; i++) {
+                diagonal[i] = buffer[i * (int) shape[1] + i];
+            }
+            return new JavaDoubleTensor(diagonal, new long[]{1, n});
+        }
+        throw new IllegalArgumentException("Can only take the diagonal of a vector or a matrix");
+    }
+
+    @Override
+    public DoubleTensor transpose() {
+        int[] reversed = new int[shape.length];
+        for (int i = 0; i < reversed.length; i++) {
+            reversed[i] = reversed.length - 1 - i;
+        }
+        return permute(reversed);
+    }
+
+    @Override
+    public Double sum() {
+        double sum = 0.0;
+        for (double value : buffer) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    /**
+     * @param overDimensions the dimensions to sum over
+     * @return the sum with the summed dimensions dropped, but not below rank 2. This matches ND4J, so a
+     * 2x3 summed over dimension 1 is 2x1 and a 2x3x4 summed over dimension 1 is 2x4.
+     */
+    @Override
+    public DoubleTensor sum(int... overDimensions) {
+        int rank = shape.length;
+        boolean[] isSummed = new boolean[rank];
+        if (overDimensions.length == 0) {
+            Arrays.fill(isSummed, true);
+        }
+        for (int dimension : overDimensions) {
+            isSummed[dimension < 0 ? dimension + rank : dimension] = true;
+        }
+
+        long[] keptShape = Arrays.copyOf(shape, rank);
+        for (int i = 0; i < rank; i++) {
+            if (isSummed[i]) {
+                keptShape[i] = 1;
+            }
+        }
+        long[] keptStride = TensorShape.getRowFirstStride(keptShape);
+
+        double[] summed = new double[(int) TensorShape.getLength(keptShape)];
+        int[] index = new int[rank];
+        int to = 0;
+        for (int from = 0; from < buffer.length; from++) {
+            summed[to] += buffer[from];
+
+            for (int dimension = rank - 1; dimension >= 0; dimension--) {
+                index[dimension]++;
+                if (!isSummed[dimension]) {
+                    to += keptStride[dimension];
+                }
+                if (index[dimension] < shape[dimension]) {
+                    break;
+                }
+                if (!isSummed[dimension]) {
+                    to -= keptStride[dimension] * index[dimension];
+                }
+                index[dimension] = 0;
+            }
+        }
+
+        return new JavaDoubleTensor(summed, summedShape(isSummed));
+    }
+
+    private long[] summedShape(boolean[] isSummed) {
+        List<Long> summedShape = new ArrayList<>();
+        for (long dimensionLength : shape) {
+            summedShape.add(dimensionLength);
+        }
+
+        for (int i = shape.length - 1; i >= 0; i--) {
+            if (isSummed[i]) {
+                if (summedShape.size() > 2) {
+                    summedShape.remove(i);
+                } else {
+                    summedShape.set(i, 1L);
+                }
+            }
+        }
+
+        return ArrayUtils.toPrimitive(summedShape.toArray(new Long[0]));
+    }
+
+    @Override
+    public DoubleTensor toDouble() {
+        return duplicate();
+    }
+
+    @Override
+    public IntegerTensor toInteger() {
+        return IntegerTensor.create(asFlatIntegerArray(), getShape());
+    }
+
+    @Override
+    public DoubleTensor matrixMultiply(DoubleTensor value) {
+        long[] valueShape = value.getShape();
+        if (shape.length != 2 || valueShape.length != 2 || shape[1] != valueShape[0]) {
+            throw new IllegalArgumentException(
+                "Cannot matrix multiply " + Arrays.toString(shape) + " by " + Arrays.toString(valueShape)
+            );
+        }
+
+        int rows = (int) shape[0];
+        int inner = (int) shape[1];
+        int columns = (int) valueShape[1];
+        double[] result = matrixMultiply(buffer, bufferOf(value), rows, inner, columns);
+        return new JavaDoubleTensor(result, new long[]{rows, columns});
+    }
+
+    private static double[] matrixMultiply(double[] left, double[] right, int rows, int inner, int columns) {
+        double[] result = new double[rows * columns];
+        for (int i = 0; i < rows; i++) {
+            for (int k = 0; k < inner; k++) {
+                double leftValue = left[i * inner + k];
+                if (leftValue == 0.0) {
+                    continue;
+                }
+                int rightRow = k * columns;
+                int resultRow = i * columns;
+                for (int j = 0; j < columns; j++) {
+                    result[resultRow + j] += leftValue * right[rightRow + j];
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sums the product of this and value over the given pairs of dimensions, in the same way as numpy's
+     * tensordot. The result has the dimensions of this that were not summed over followed by those of value.
+     */
+    @Override
+    public DoubleTensor tensorMultiply(DoubleTensor value, int[] dimsLeft, int[] dimsRight) {
+        Preconditions.checkArgument(dimsLeft.length == dimsRight.length, "Must sum over as many dimensions on the left as on the right");
+        long[] valueShape = value.getShape();
+
+        int[] freeLeft = freeDimensions(shape.length, dimsLeft);
+        int[] freeRight = freeDimensions(valueShape.length, dimsRight);
+
+        long summedLength = 1;
+        for (int i = 0; i < dimsLeft.length; i++) {
+            if (shape[dimsLeft[i]] != valueShape[dimsRight[i]]) {
+                throw new IllegalArgumentException(
+                    "Cannot tensor multiply " + Arrays.toString(shape) + " by " + Arrays.toString(valueShape) +
+                        " over dimensions " + Arrays.toString(dimsLeft) + " and " + Arrays.toString(dimsRight)
+                );
+            }
+            summedLength *= shape[dimsLeft[i]];
+        }
+
+        long[] resultShape = new long[freeLeft.length + freeRight.length];
+        long freeLeftLength = 1;
+        for (int i = 0; i < freeLeft.length; i++) {
+            resultShape[i] = shape[freeLeft[i]];
+            freeLeftLength *= shape[freeLeft[i]];
+        }
+        long freeRightLength = 1;
+        for (int i = 0; i < freeRight.length; i++) {
+            resultShape[freeLeft.length + i] = valueShape[freeRight[i]];
+            freeRightLength *= valueShape[freeRight[i]];
+        }
+
+        double[] left = permute(buffer, shape, ArrayUtils.addAll(freeLeft, dimsLeft));
+        double[] right = permute(bufferOf(value), valueShape, ArrayUtils.addAll(dimsRight, freeRight));
+        double[] result = matrixMultiply(left, right, (int) freeLeftLength, (int) summedLength, (int) freeRightLength);
+
+        return new JavaDoubleTensor(result, TensorShape.shapeToDesiredRankByPrependingOnes(resultShape, Math.max(2, resultShape.length)));
+    }
+
+    private static int[] freeDimensions(int rank, int[] summedDimensions) {
+        int[] free = new int[rank - summedDimensions.length];
+        int i = 0;
+        for (int dimension = 0; dimension < rank; dimension++) {
+            if (!ArrayUtils.contains(summedDimensions, dimension)) {
+                free[i++] = dimension;
+            }
+        }
+        return free;
+    }
+
+    @Override
+    public DoubleTensor matrixInverse() {
+        TensorShapeValidation.checkShapeIsSquareMatrix(shape);
+        RealMatrix inverse = new LUDecomposition(asRealMatrix()).getSolver().getInverse();
+        return fromRealMatrix(inverse);
+    }
+
+    @Override
+    public double determinant() {
+        TensorShapeValidation.checkShapeIsSquareMatrix(shape);
+        return new LUDecomposition(asRealMatrix()).getDeterminant();
+    }
+
+    /**
+     * @return the lower triangular L where this = L L^T
+     */
+    @Override
+    public DoubleTensor choleskyDecomposition() {
+        TensorShapeValidation.checkShapeIsSquareMatrix(shape);
+        int n = (int) shape[0];
+        double[] lower = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j <= i; j++) {
+                double sum = buffer[i * n + j];
+                for (int k = 0; k < j; k++) {
+                    sum -= lower[i * n + k] * lower[j * n + k];
+                }
+                if (i == j) {
+                    if (!(sum > 0.0)) {
+                        throw new IllegalArgumentException("Cannot take the Cholesky decomposition of a matrix that isn't positive definite");
+                    }
+                    lower[i * n + i] = Math.sqrt(sum);
+                } else {
+                    lower[i * n + j] = sum / lower[j * n + j];
+                }
+            }
+        }
+        return new JavaDoubleTensor(lower, shape);
+    }
+
+    private RealMatrix asRealMatrix() {
+        int rows = (int) shape[0];
+        int columns = (int) shape[1];
+        double[][] matrix = new double[rows][columns];
+        for (int i = 0; i < rows; i++) {
+            System.arraycopy(buffer, i * columns, matrix[i], 0, columns);
+        }
+        return new Array2DRowRealMatrix(matrix, false);
+    }
+
+    private static JavaDoubleTensor fromRealMatrix(RealMatrix matrix) {
+        int rows = matrix.getRowDimension();
+        int columns = matrix.getColumnDimension();
+        double[] buffer = new double[rows * columns];
+        for (int i = 0; i < rows; i++) {
+            System.arraycopy(matrix.getRow(i), 0, buffer, i * columns, columns);
+        }
+        return new JavaDoubleTensor(buffer, new long[]{rows, columns});
+    }
+
+    @Override
+    public double max() {
+        double max = Double.NEGATIVE_INFINITY;
+        for (double value : buffer) {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+
+    @Override
+    public double min() {
+        double min = Double.POSITIVE_INFINITY;
+        for (double value : buffer) {
+            min = Math.min(min, value);
+        }
+        return min;
+    }
+
+    @Override
+    public int argMax() {
+        int argMax = 0;
+        for (int i = 1; i < buffer.length; i++) {
+            if (buffer[i] > buffer[argMax]) {
+                argMax = i;
+            }
+        }
+        return argMax;
+    }
+
+    @Override
+    public IntegerTensor argMax(int axis) {
+        TensorShapeValidation.checkDimensionExistsInShape(axis, shape);
+
+        int axisLength = (int) shape[axis];
+        int inner = (int) stride[axis];
+        int outer = buffer.length / (axisLength * inner);
+
+        int[] argMax = new int[outer * inner];
+        for (int o = 0; o < outer; o++) {
+            for (int i = 0; i < inner; i++) {
+                int start = o * axisLength * inner + i;
+                int maxAt = 0;
+                for (int k = 1; k < axisLength; k++) {
+                    if (buffer[start + k * inner] > buffer[start + maxAt * inner]) {
+                        maxAt = k;
+                    }
+                }
+                argMax[o * inner + i] = maxAt;
+            }
+        }
+
+        return IntegerTensor.create(argMax, TensorShape.removeDimensionSafe(axis, shape));
+    }
+
+    @Override
+    public double average() {
+        return sum() / buffer.length;
+    }
+
+    /**
+     * @return the bias corrected standard deviation, as ND4J does
+     */
+    @Override
+    public double standardDeviation() {
+        double average = average();
+        double sumOfSquares = 0.0;
+        for (double value : buffer) {
+            sumOfSquares += (value - average) * (value - average);
+        }
+        return Math.sqrt(sumOfSquares / (buffer.length - 1));
+    }
+
+    @Override
+    public double product() {
+        double product = 1.0;
+        for (double value : buffer) {
+            product *= value;
+        }
+        return product;
+    }
+
+    @Override
+    public boolean equalsWithinEpsilon(DoubleTensor other, double epsilon) {
+        if (this == other) return true;
+        if (!this.hasSameShapeAs(other)) return false;
+
+        double[] otherBuffer = bufferOf(other);
+        for (int i = 0; i < buffer.length; i++) {
+            if (!(Math.abs(buffer[i] - otherBuffer[i]) <= epsilon)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Slicing a matrix leaves the sliced dimension with a length of one. Slicing a higher rank tensor drops
+     * the sliced dimension. This matches ND4J.
+     */
+    @Override
+    public DoubleTensor slice(int dimension, long index) {
+        TensorShapeValidation.checkDimensionExistsInShape(dimension, shape);
+
+        int dimensionLength = (int) shape[dimension];
+        int inner = (int) stride[dimension];
+        int outer = buffer.length / (dimensionLength * inner);
+
+        double[] slice = new double[outer * inner];
+        for (int o = 0; o < outer; o++) {
+            System.arraycopy(buffer, (o * dimensionLength + (int) index) * inner, slice, o * inner, inner);
+        }
+
+        long[] slicedShape = shape.length > 2 ?
+            ArrayUtils.remove(shape, dimension) :
+            TensorShape.shapeSlice(dimension, shape);
+
+        return new JavaDoubleTensor(slice, slicedShape);
+    }
+
+    @Override
+    public List<DoubleTensor> split(int dimension, long... splitAtIndices) {
+        if (dimension < 0) {
+            dimension += shape.length;
+        }
+
+        if (dimension < 0 || dimension >= shape.length) {
+            throw new IllegalArgumentException("Invalid dimension to split on " + dimension);
+        }
+
+        int dimensionLength = (int) shape[dimension];
+        int inner = (int) stride[dimension];
+        int outer = buffer.length / (dimensionLength * inner);
+
+        List<DoubleTensor> splits = new ArrayList<>();
+        long previousSplitIndex = 0;
+        for (long splitAtIndex : splitAtIndices) {
+
+            if (previousSplitIndex == splitAtIndex) {
+                throw new IllegalArgumentException("Invalid index to split on " + splitAtIndex + " at dimension " + dimension + " for tensor of shape " + Arrays.toString(shape));
+            }
+
+            int splitLength = (int) (splitAtIndex - previousSplitIndex);
+            double[] split = new double[outer * splitLength * inner];
+            for (int o = 0; o < outer; o++) {
+                System.arraycopy(
+                    buffer, (o * dimensionLength + (int) previousSplitIndex) * inner,
+                    split, o * splitLength * inner,
+                    splitLength * inner
+                );
+            }
+
+            long[] splitShape = getShape();
+            splitShape[dimension] = splitLength;
+            splits.add(new JavaDoubleTensor(split, splitShape));
+
+            previousSplitIndex = splitAtIndex;
+        }
+
+        return splits;
+    }
+
+    // New tensor Ops and transforms
+
+    @Override
+    public DoubleTensor reciprocal() {
+        return duplicate().reciprocalInPlace();
+    }
+
+    @Override
+    public DoubleTensor minus(double value) {
+        return duplicate().minusInPlace(value);
+    }
+
+    @Override
+    public DoubleTensor plus(double value) {
+        return duplicate().plusInPlace(value);
+    }
+
+    @Override
+    public DoubleTensor times(double value) {
+        return duplicate().timesInPlace(value);
+    }
+
+    @Override
+    public DoubleTensor div(double value) {
+        return duplicate().divInPlace(value);
+    }
+
+    @Override
+    public DoubleTensor pow(DoubleTensor exponent) {
+        return duplicate().powInPlace(exponent);
+    }
+
+    @Override
+    public DoubleTensor pow(double exponent) {
+        return duplicate().powInPlace(exponent);
+    }
+
+    @Override
+    public DoubleTensor sqrt() {
+        return duplicate().sqrtInPlace();
+    }
+
+    @Override
+    public DoubleTensor log() {
+        return duplicate().logInPlace();
+    }
+
+    @Override
+    public DoubleTensor safeLogTimes(DoubleTensor y) {
+        return duplicate().safeLogTimesInPlace(y);
+    }
+
+    @Override
+    public DoubleTensor logGamma() {
+        return duplicate().logGammaInPlace();
+    }
+
+    @Override
+    public DoubleTensor digamma() {
+        return duplicate().digammaInPlace();
+    }
+
+    @Override
+    public DoubleTensor sin() {
+        return duplicate().sinInPlace();
+    }
+
+    @Override
+    public DoubleTensor cos() {
+        return duplicate().cosInPlace();
+    }
+
+    @Override
+    public DoubleTensor tan() {
+        return duplicate().tanInPlace();
+    }
+
+    @Override
+    public DoubleTensor atan() {
+        return duplicate().atanInPlace();
+    }
+
+    @Override
+    public DoubleTensor atan2(double y) {
+        return duplicate().atan2InPlace(y);
+    }
+
+    @Override
+    public DoubleTensor atan2(DoubleTensor y) {
+        return duplicate().atan2InPlace(y);
+    }
+
+    @Override
+    public DoubleTensor asin() {
+        return duplicate().asinInPlace();
+    }
+
+    @Override
+    public DoubleTensor acos() {
+        return duplicate().acosInPlace();
+    }
+
+    @Override
+    public DoubleTensor exp() {
+        return duplicate().expInPlace();
+    }
+
+    @Override
+    public DoubleTensor standardize() {
+        return duplicate().standardizeInPlace();
+    }
+
+    @Override
+    public DoubleTensor replaceNaN(double value) {
+        return duplicate().replaceNaNInPlace(value);
+    }
+
+    @Override
+    public DoubleTensor clamp(DoubleTensor min, DoubleTensor max) {
+        return duplicate().clampInPlace(min, max);
+    }
+
+    @Override
+    public DoubleTensor ceil() {
+        return duplicate().ceilInPlace();
+    }
+
+    @Override
+    public DoubleTensor floor() {
+        return duplicate().floorInPlace();
+    }
+
+    @Override
+    public DoubleTensor round() {
+        return duplicate().roundInPlace();
+    }
+
+    @Override
+    public DoubleTensor sigmoid() {
+        return duplicate().sigmoidInPlace();
+    }
+
+    @Override
+    public DoubleTensor minus(DoubleTensor that) {
+        if (that.isScalar()) {
+            return this.minus(that.scalar());
+        } else if (this.isScalar()) {
+            return that.unaryMinus().plusInPlace(this);
+        } else {
+            return this.duplicate().minusInPlace(that);
+        }
+    }
+
+    @Override
+    public DoubleTensor plus(DoubleTensor that) {
+        if (that.isScalar()) {
+            return this.plus(that.scalar());
+        } else if (this.isScalar()) {
+            return that.plus(this.scalar());
+        } else {
+            return this.duplicate().plusInPlace(that);
+        }
+    }
+
+    @Override
+    public DoubleTensor times(DoubleTensor that) {
+        if (that.isScalar()) {
+            return this.times(that.scalar());
+        } else if (this.isScalar()) {
+            return that.times(this.scalar());
+        } else {
+            return this.duplicate().timesInPlace(that);
+        }
+    }
+
+    @Override
+    public DoubleTensor div(DoubleTensor that) {
+        if (that.isScalar()) {
+            return this.div(that.scalar());
+        } else if (this.isScalar()) {
+            return that.reciprocal().timesInPlace(this);
+        } else {
+            return this.duplicate().divInPlace(that);
+        }
+    }
+
+    @Override
+    public DoubleTensor unaryMinus() {
+        return duplicate().unaryMinusInPlace();
+    }
+
+    @Override
+    public DoubleTensor abs() {
+        return duplicate().absInPlace();
+    }
+
+    @Override
+    public DoubleTensor getGreaterThanMask(DoubleTensor greaterThanThis) {
+        return mask(greaterThanThis, (a, b) -> a > b ? 1.0 : 0.0);
+    }
+
+    @Override
+    public DoubleTensor getGreaterThanOrEqualToMask(DoubleTensor greaterThanOrEqualToThis) {
+        return mask(greaterThanOrEqualToThis, (a, b) -> a >= b ? 1.0 : 0.0);
+    }
+
+    @Override
+    public DoubleTensor getLessThanMask(DoubleTensor lessThanThis) {
+        return mask(lessThanThis, (a, b) -> a < b ? 1.0 : 0.0);
+    }
+
+    @Override
+    public DoubleTensor getLessThanOrEqualToMask(DoubleTensor lessThanOrEqualToThis) {
+        return mask(lessThanOrEqualToThis, (a, b) -> a <= b ? 1.0 : 0.0);
+    }
+
+    private DoubleTensor mask(DoubleTensor that, DoubleBinaryOperator comparison) {
+        return duplicate().operateInPlace(that, comparison);
+    }
+
+    @Override
+    public DoubleTensor setWithMaskInPlace(DoubleTensor mask, Double value) {
+        if (this.getLength() != mask.getLength()) {
+            throw new IllegalArgumentException("The lengths of the tensor and mask must match, but got tensor length: " + this.getLength() + ", mask length: " + mask.getLength());
+        }
+
+        double[] maskBuffer = bufferOf(mask);
+        for (int i = 0; i < buffer.length; i++) {
+            if (maskBuffer[i] == 1.0) {
+                buffer[i] = value;
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public DoubleTensor setWithMask(DoubleTensor mask, Double value) {
+        return duplicate().setWithMaskInPlace(mask, value);
+    }
+
+    @Override
+    public DoubleTensor apply(Function<Double, Double> function) {
+        return duplicate().applyInPlace(function);
+    }
+
+    // In place Ops and Transforms
+
+    @Override
+    public DoubleTensor applyInPlace(Function<Double, Double> function) {
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = function.apply(buffer[i]);
+        }
+        return this;
+    }
+
+    private DoubleTensor transformInPlace(DoubleUnaryOperator transform) {
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = transform.applyAsDouble(buffer[i]);
+        }
+        return this;
+    }
+
+    /**
+     * Applies op to each element of this and the matching element of that, broadcasting the two tensors
+     * against each other if they have different shapes.
+     *
+     * @return this if the result has the shape of this, otherwise a new tensor with the broadcast shape
+     */
+    private DoubleTensor operateInPlace(DoubleTensor that, DoubleBinaryOperator op) {
+        if (that.isScalar()) {
+            double thatValue = that.scalar();
+            for (int i = 0; i < buffer.length; i++) {
+                buffer[i] = op.applyAsDouble(buffer[i], thatValue);
+            }
+            return this;
+        }
+
+        long[] thatShape = that.getShape();
+        double[] thatBuffer = bufferOf(that);
+
+        if (Arrays.equals(shape, thatShape)) {
+            for (int i = 0; i < buffer.length; i++) {
+                buffer[i] = op.applyAsDouble(buffer[i], thatBuffer[i]);
+            }
+            return this;
+        }
+
+        if (this.isScalar()) {
+            double thisValue = buffer[0];
+            double[] result = new double[thatBuffer.length];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = op.applyAsDouble(thisValue, thatBuffer[i]);
+            }
+            return new JavaDoubleTensor(result, thatShape);
+        }
+
+        long[] resultShape = broadcastShape(shape, thatShape);
+        double[] result = broadcast(buffer, shape, thatBuffer, thatShape, resultShape, op);
+
+        if (Arrays.equals(resultShape, shape)) {
+            buffer = result;
+            return this;
+        }
+        return new JavaDoubleTensor(result, resultShape);
+    }
+
+    private static long[] broadcastShape(long[] left, long[] right) {
+        int rank = Math.max(left.length, right.length);
+        long[] paddedLeft = TensorShape.shapeToDesiredRankByPrependingOnes(left, rank);
+        long[] paddedRight = TensorShape.shapeToDesiredRankByPrependingOnes(right, rank);
+
+        long[] result = new long[rank];
+        for (int i = 0; i < rank; i++) {
+            if (paddedLeft[i] == paddedRight[i] || paddedRight[i] == 1) {
+                result[i] = paddedLeft[i];
+            } else if (paddedLeft[i] == 1) {
+                result[i] = paddedRight[i];
+            } else {
+                throw new IllegalArgumentException(
+                    "Cannot broadcast " + Arrays.toString(left) + " with " + Arrays.toString(right)
+                );
+            }
+        }
+        return result;
+    }
+
+    private static double[] broadcast(double[] left, long[] leftShape,
+                                      double[] right, long[] rightShape,
+                                      long[] resultShape,
+                                      DoubleBinaryOperator op) {
+        int rank = resultShape.length;
+        int[] leftStride = broadcastStride(leftShape, resultShape);
+        int[] rightStride = broadcastStride(rightShape, resultShape);
+
+        double[] result = new double[(int) TensorShape.getLength(resultShape)];
+        int[] index = new int[rank];
+        int leftIndex = 0;
+        int rightIndex = 0;
+        for (int i = 0; i < result.length; i++) {
+            result[i] = op.applyAsDouble(left[leftIndex], right[rightIndex]);
+
+            for (int dimension = rank - 1; dimension >= 0; dimension--) {
+                index[dimension]++;
+                leftIndex += leftStride[dimension];
+                rightIndex += rightStride[dimension];
+                if (index[dimension] < resultShape[dimension]) {
+                    break;
+                }
+                leftIndex -= leftStride[dimension] * index[dimension];
+                rightIndex -= rightStride[dimension] * index[dimension];
+                index[dimension] = 0;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the stride of shape once it has been padded to the rank of resultShape, with a stride of zero
+     * along the dimensions that it is broadcast over
+     */
+    private static int[] broadcastStride(long[] shape, long[] resultShape) {
+        long[] paddedShape = TensorShape.shapeToDesiredRankByPrependingOnes(shape, resultShape.length);
+        long[] stride = TensorShape.getRowFirstStride(paddedShape);
+
+        int[] broadcastStride = new int[resultShape.length];
+        for (int i = 0; i < resultShape.length; i++) {
+            broadcastStride[i] = paddedShape[i] == 1 ? 0 : (int) stride[i];
+        }
+        return broadcastStride;
+    }
+
+    @Override
+    public DoubleTensor reciprocalInPlace() {
+        return transformInPlace(x -> 1.0 / x);
+    }
+
+    @Override
+    public DoubleTensor minusInPlace(double value) {
+        return transformInPlace(x -> x - value);
+    }
+
+    @Override
+    public DoubleTensor plusInPlace(double value) {
+        return transformInPlace(x -> x + value);
+    }
+
+    @Override
+    public DoubleTensor timesInPlace(double value) {
+        return transformInPlace(x -> x * value);
+    }
+
+    @Override
+    public DoubleTensor divInPlace(double value) {
+        return transformInPlace(x -> x / value);
+    }
+
+    @Override
+    public DoubleTensor powInPlace(double exponent) {
+        return transformInPlace(x -> Math.pow(x, exponent));
+    }
+
+    @Override
+    public DoubleTensor powInPlace(DoubleTensor exponent) {
+        return operateInPlace(exponent, Math::pow);
+    }
+
+    @Override
+    public DoubleTensor sqrtInPlace() {
+        return transformInPlace(Math::sqrt);
+    }
+
+    @Override
+    public DoubleTensor logInPlace() {
+        return transformInPlace(Math::log);
+    }
+
+    /**
+     * This is identical to log().times(y), except that it changes NaN results to 0.
+     * This is important when calculating 0log0, which should return 0
+     * See https://arcsecond.wordpress.com/2009/03/19/0log0-0-for-real/ for some mathematical justification
+     *
+     * @param y The tensor value to multiply by
+     * @return the log of this tensor multiplied by y
+     */
+    @Override
+    public DoubleTensor safeLogTimesInPlace(DoubleTensor y) {
+        TensorValidator.NAN_CATCHER.validate(this);
+        TensorValidator.NAN_CATCHER.validate(y);
+        DoubleTensor result = this.logInPlace().timesInPlace(y);
+        return TensorValidator.NAN_FIXER.validate(result);
+    }
+
+    @Override
+    public DoubleTensor logGammaInPlace() {
+        return transformInPlace(Gamma::logGamma);
+    }
+
+    @Override
+    public DoubleTensor digammaInPlace() {
+        return transformInPlace(Gamma::digamma);
+    }
+
+    @Override
+    public DoubleTensor sinInPlace() {
+        return transformInPlace(Math::sin);
+    }
+
+    @Override
+    public DoubleTensor cosInPlace() {
+        return transformInPlace(Math::cos);
+    }
+
+    @Override
+    public DoubleTensor tanInPlace() {
+        return transformInPlace(Math::tan);
+    }
+
+    @Override
+    public DoubleTensor atanInPlace() {
+        return transformInPlace(Math::atan);
+    }
+
+    @Override
+    public DoubleTensor atan2InPlace(double y) {
+        return transformInPlace(x -> Math.atan2(y, x));
+    }
+
+    @Override
+    public DoubleTensor atan2InPlace(DoubleTensor y) {
+        return operateInPlace(y, (x, yValue) -> Math.atan2(yValue, x));
+    }
+
+    @Override
+    public DoubleTensor asinInPlace() {
+        return transformInPlace(Math::asin);
+    }
+
+    @Override
+    public DoubleTensor acosInPlace() {
+        return transformInPlace(Math::acos);
+    }
+
+    @Override
+    public DoubleTensor expInPlace() {
+        return transformInPlace(Math::exp);
+    }
+
+    @Override
+    public DoubleTensor minInPlace(DoubleTensor min) {
+        return operateInPlace(min, Math::min);
+    }
+
+    @Override
+    public DoubleTensor maxInPlace(DoubleTensor max) {
+        return operateInPlace(max, Math::max);
+    }
+
+    @Override
+    public DoubleTensor clampInPlace(DoubleTensor min, DoubleTensor max) {
+        return minInPlace(max).maxInPlace(min);
+    }
+
+    @Override
+    public DoubleTensor ceilInPlace() {
+        return transformInPlace(Math::ceil);
+    }
+
+    @Override
+    public DoubleTensor floorInPlace() {
+        return transformInPlace(Math::floor);
+    }
+
+    /**
+     * Note that we have modified the native Java behaviour to match Python (and therefore ND4J) behaviour
+     * Which rounds negative numbers down if they end in 0.5
+     * e.g.
+     * Java: round(-2.5) == -2.0
+     * Python: round(-2.5) == -3.0
+     *
+     * @return Nearest integer value as a DoubleTensor
+     */
+    @Override
+    public DoubleTensor roundInPlace() {
+        return transformInPlace(x -> Math.copySign(Math.floor(Math.abs(x) + 0.5), x));
+    }
+
+    @Override
+    public DoubleTensor sigmoidInPlace() {
+        return transformInPlace(x -> 1.0D / (1.0D + FastMath.exp(-x)));
+    }
+
+    @Override
+    public DoubleTensor standardizeInPlace() {
+        double average = average();
+        double standardDeviation = standardDeviation();
+        return transformInPlace(x -> (x - average) / standardDeviation);
+    }
+
+    @Override
+    public DoubleTensor replaceNaNInPlace(double value) {
+        return transformInPlace(x -> Double.isNaN(x) ? value : x);
+    }
+
+    @Override
+    public DoubleTensor setAllInPlace(double value) {
+        Arrays.fill(buffer, value);
+        return this;
+    }
+
+    @Override
+    public DoubleTensor minusInPlace(DoubleTensor that) {
+        return operateInPlace(that, (a, b) -> a - b);
+    }
+
+    @Override
+    public DoubleTensor plusInPlace(DoubleTensor that) {
+        return operateInPlace(that, (a, b) -> a + b);
+    }
+
+    @Override
+    public DoubleTensor timesInPlace(DoubleTensor that) {
+        return operateInPlace(that, (a, b) -> a * b);
+    }
+
+    @Override
+    public DoubleTensor divInPlace(DoubleTensor that) {
+        return operateInPlace(that, (a, b) -> a / b);
+    }
+
+    @Override
+    public DoubleTensor unaryMinusInPlace() {
+        return transformInPlace(x -> -x);
+    }
+
+    @Override
+    public DoubleTensor absInPlace() {
+        return transformInPlace(Math::abs);
+    }
+
+    // Comparisons
+
+    @Override
+    public BooleanTensor lessThan(double value) {
+        return compare(value, (a, b) -> a < b ? 1.0 : 0.0);
+    }
+
+    @Override
+    public BooleanTensor lessThanOrEqual(double value) {
+        return compare(value, (a, b) -> a <= b ? 1.0 : 0.0);
+    }
+
+    @Override
+    public BooleanTensor greaterThan(double value) {
+        return compare(value, (a, b) -> a > b ? 1.0 : 0.0);
+    }
+
+    @Override
+    public BooleanTensor greaterThanOrEqual(double value) {
+        return compare(value, (a, b) -> a >= b ? 1.0 : 0.0);
+    }
+
+    @Override
+    public BooleanTensor lessThan(DoubleTensor value) {
+        return fromMask(getLessThanMask(value));
+    }
+
+    @Override
+    public BooleanTensor lessThanOrEqual(DoubleTensor value) {
+        return fromMask(getLessThanOrEqualToMask(value));
+    }
+
+    @Override
+    public BooleanTensor greaterThan(DoubleTensor value) {
+        return fromMask(getGreaterThanMask(value));
+    }
+
+    @Override
+    public BooleanTensor greaterThanOrEqual(DoubleTensor value) {
+        return fromMask(getGreaterThanOrEqualToMask(value));
+    }
+
+    @Override
+    public BooleanTensor notNaN() {
+        boolean[] notNaN = new boolean[buffer.length];
+        for (int i = 0; i < buffer.length; i++) {
+            notNaN[i] = !Double.isNaN(buffer[i]);
+        }
+        return BooleanTensor.create(notNaN, getShape());
+    }
+
+    @Override
+    public BooleanTensor elementwiseEquals(Double value) {
+        return compare(value, (a, b) -> a == b ? 1.0 : 0.0);
+    }
+
+    private BooleanTensor compare(double value, DoubleBinaryOperator comparison) {
+        boolean[] result = new boolean[buffer.length];
+        for (int i = 0; i < buffer.length; i++) {
+            result[i] = comparison.applyAsDouble(buffer[i], value) != 0.0;
+        }
+        return BooleanTensor.create(result, getShape());
+    }
+
+    private static BooleanTensor fromMask(DoubleTensor mask) {
+        double[] maskBuffer = bufferOf(mask);
+        boolean[] result = new boolean[maskBuffer.length];
+        for (int i = 0; i < maskBuffer.length; i++) {
+            result[i] = maskBuffer[i] != 0.0;
+        }
+        return BooleanTensor.create(result, mask.getShape());
+    }
+
+    @Override
+    public FlattenedView<Double> getFlattenedView() {
+        return new JavaDoubleFlattenedView();
+    }
+
+    @Override
+    public double[] asFlatDoubleArray() {
+        return Arrays.copyOf(buffer, buffer.length);
+    }
+
+    /**
+     * @return the values with their fractional part dropped, as ND4J does
+     */
+    @Override
+    public int[] asFlatIntegerArray() {
+        int[] integers = new int[buffer.length];
+        for (int i = 0; i < buffer.length; i++) {
+            integers[i] = (int) buffer[i];
+        }
+        return integers;
+    }
+
+    @Override
+    public Double[] asFlatArray() {
+        return ArrayUtils.toObject(buffer);
+    }
+
+    /**
+     * @return the values of a tensor without copying them if it is a JavaDoubleTensor
+     */
+    private static double[] bufferOf(DoubleTensor tensor) {
+        if (tensor instanceof JavaDoubleTensor) {
+            return ((JavaDoubleTensor) tensor).buffer;
+        }
+        return tensor.asFlatDoubleArray();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Tensor)) return false;
+
+        Tensor that = (Tensor) o;
+        if (!Arrays.equals(that.getShape(), shape)) return false;
+
+        if (that instanceof DoubleTensor) {
+            return Arrays.equals(buffer, bufferOf((DoubleTensor) that));
+        }
+        return Arrays.equals(that.asFlatArray(), this.asFlatArray());
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Arrays.hashCode(buffer);
+        result = 31 * result + Arrays.hashCode(shape);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "{\n" +
+            "data = " + Arrays.toString(buffer) +
+            "\nshape = " + Arrays.toString(shape) +
+            "\n}";
+    }
+
+    private class JavaDoubleFlattenedView implements FlattenedView<Double> {
+
+        @Override
+        public long size() {
+            return buffer.length;
+        }
+
+        @Override
+        public Double get(long index) {
+            return buffer[Math.toIntExact(index)];
+        }
+
+        @Override
+        public Double getOrScalar(long index) {
+            if (buffer.length == 1) {
+                return buffer[0];
+            } else {
+                return get(index);
+            }
+        }
+
+        @Override
+        public void set(long index, Double value) {
+            buffer[Math.toIntExact(index)] = value;
+        }
+    }
+}
@@ -43,6 +43,9 @@ import static java.util.Arrays.copyOf;
 public class Nd4jDoubleTensor implements DoubleTensor {
 
     private static final DataBuffer.Type BUFFER_TYPE = DataBuffer.Type.DOUBLE;
+    //The message of the Error that ND4J's potrf throws when the matrix is not positive definite
+    private static final String POTRF_NOT_POSITIVE_DEFINITE = "not positive definite";
+
     private INDArray tensor;
 
     public Nd4jDoubleTensor(double[] data, long[] shape) {
@@ -95,8 +98,10 @@ public class Nd4jDoubleTensor implements DoubleTensor {
     static INDArray unsafeGetNd4J(DoubleTensor that) {
         if (that.isScalar()) {
             return TypedINDArrayFactory.scalar(that.scalar(), BUFFER_TYPE).reshape(that.getShape());
+        } else if (that instanceof Nd4jDoubleTensor) {
+            return ((Nd4jDoubleTensor) that).tensor;
         }
-        return ((Nd4jDoubleTensor) that).tensor;
+        return TypedINDArrayFactory.create(that.asFlatDoubleArray(), that.getShape(), BUFFER_TYPE);
     }
 
     @Override
@@ -261,7 +266,16 @@ public class Nd4jDoubleTensor implements DoubleTensor {
     @Override
     public DoubleTensor choleskyDecomposition() {
         INDArray dup = tensor.dup();
-        Nd4j.getBlasWrapper().lapack().potrf(dup, false);
+        try {
+            Nd4j.getBlasWrapper().lapack().potrf(dup, false);
+        } catch (Error e) {
+            //ND4J reports a failed decomposition with a plain Error rather than an exception, so only that Error
+            //is translated and anything else, e.g. running out of memory, is passed on
+            if (e.getClass() != Error.class || e.getMessage() == null || !e.getMessage().contains(POTRF_NOT_POSITIVE_DEFINITE)) {
+                throw e;
+            }
+            throw new IllegalArgumentException("Cannot take the Cholesky decomposition of a matrix that isn't positive definite", e);
+        }
         return new Nd4jDoubleTensor(dup);
     }
 
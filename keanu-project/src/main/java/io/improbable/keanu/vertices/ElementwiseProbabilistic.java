@@ -0,0 +1,23 @@
+package io.improbable.keanu.vertices;
+
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+
+/**
+ * A probabilistic vertex whose log prob is a sum of independent terms, one for each element of its value and
+ * parameters after broadcasting. This lets a batch of independent values, e.g. one per chain along a batch
+ * dimension, be evaluated in one operation and then reduced per batch entry.
+ *
+ * @param <T> the type of the value of the vertex
+ */
+public interface ElementwiseProbabilistic<T> extends Probabilistic<T> {
+
+    /**
+     * The natural log of the probability of each element of the supplied value, before they are summed into
+     * {@link #logProb(Object)}.
+     *
+     * @param value The supplied value.
+     * @return The natural log of the probability of each element, broadcast to the shape of the value and the
+     * parameters.
+     */
+    DoubleTensor elementwiseLogProb(T value);
+}
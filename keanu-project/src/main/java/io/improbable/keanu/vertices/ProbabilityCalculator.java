@@ -9,7 +9,7 @@ public class ProbabilityCalculator {
         double sum = 0.0;
         for (Vertex<?> vertex : vertices) {
             if (vertex instanceof Probabilistic) {
-                sum += ((Probabilistic) vertex).logProbAtValue();
+                sum += logProbAtValue(vertex);
             } else if (vertex instanceof NonProbabilistic) {
                 if (((NonProbabilistic) vertex).contradictsObservation()) {
                     return Double.NEGATIVE_INFINITY;
@@ -20,4 +20,70 @@ public class ProbabilityCalculator {
         }
         return sum;
     }
+
+    /**
+     * @param vertices the vertices to sum the log probs of the observed probabilistic vertices of
+     * @return the log likelihood of the observations among the vertices. Observed non-probabilistic vertices are
+     * not checked against their observations so this should be used alongside {@link #calculateLogProbFor(Collection)}.
+     */
+    public static double calculateObservedLogProbFor(Collection<? extends Vertex> vertices) {
+        double sum = 0.0;
+        for (Vertex<?> vertex : vertices) {
+            if (vertex.isObserved() && vertex instanceof Probabilistic) {
+                sum += logProbAtValue(vertex);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @param vertices the vertices to read the cached log probs of
+     * @return the cached log probs of the vertices in iteration order, e.g. to put them back with
+     * {@link #restoreCachedLogProbs(Collection, double[])} after reverting a change to the values of the vertices.
+     */
+    public static double[] getCachedLogProbs(Collection<? extends Vertex> vertices) {
+        return getCachedLogProbs(vertices, new double[vertices.size()]);
+    }
+
+    /**
+     * @param vertices       the vertices to read the cached log probs of
+     * @param cachedLogProbs an array with a slot for each vertex to read the log probs into, so it can be reused
+     * @return cachedLogProbs
+     */
+    public static double[] getCachedLogProbs(Collection<? extends Vertex> vertices, double[] cachedLogProbs) {
+        int i = 0;
+        for (Vertex<?> vertex : vertices) {
+            cachedLogProbs[i++] = vertex.getCachedLogProb();
+        }
+        return cachedLogProbs;
+    }
+
+    /**
+     * Puts back log probs read with {@link #getCachedLogProbs(Collection)}. This is only correct if the vertices
+     * and their parents have the same values as when the log probs were read.
+     *
+     * @param vertices       the vertices in the same iteration order as when the log probs were read
+     * @param cachedLogProbs the log probs to put back
+     */
+    public static void restoreCachedLogProbs(Collection<? extends Vertex> vertices, double[] cachedLogProbs) {
+        int i = 0;
+        for (Vertex<?> vertex : vertices) {
+            vertex.setCachedLogProb(cachedLogProbs[i++]);
+        }
+    }
+
+    /**
+     * The log prob of a vertex is cached until the value of the vertex or of one of its parents is set, so
+     * summing over vertices that haven't changed since the last calculation doesn't recalculate their log prob.
+     * Values must be changed with {@link Vertex#setValue(Object)} rather than by mutating them in place for the
+     * cache to see the change.
+     */
+    private static double logProbAtValue(Vertex<?> vertex) {
+        double logProb = vertex.getCachedLogProb();
+        if (Double.isNaN(logProb)) {
+            logProb = ((Probabilistic<?>) vertex).logProbAtValue();
+            vertex.setCachedLogProb(logProb);
+        }
+        return logProb;
+    }
 }
@@ -3,6 +3,7 @@ package io.improbable.keanu.vertices;
 import com.google.common.collect.ImmutableSet;
 import io.improbable.keanu.algorithms.graphtraversal.DiscoverGraph;
 import io.improbable.keanu.algorithms.graphtraversal.VertexValuePropagation;
+import io.improbable.keanu.network.ExecutionContext;
 import io.improbable.keanu.tensor.Tensor;
 import io.improbable.keanu.vertices.dbl.KeanuRandom;
 
@@ -18,6 +19,7 @@ public abstract class Vertex<T> implements Observable<T> {
     private Set<Vertex> children = Collections.emptySet();
     private Set<Vertex> parents = Collections.emptySet();
     private T value;
+    private double cachedLogProb = Double.NaN;
     private final Observable<T> observation;
     private VertexLabel label = null;
 
@@ -103,19 +105,34 @@ public abstract class Vertex<T> implements Observable<T> {
      */
     public void setValue(T value) {
         if (!observation.isObserved()) {
-            this.value = value;
+            ExecutionContext context = ExecutionContext.current();
+            int index = context != null ? context.indexOf(this) : -1;
+            if (index >= 0) {
+                context.setValue(index, value);
+            } else {
+                this.value = value;
+            }
+            invalidateCachedLogProbs(context);
         }
     }
 
     public T getValue() {
-        return hasValue() ? value : lazyEval();
+        return hasValue() ? getRawValue() : lazyEval();
     }
 
     protected T getRawValue() {
+        ExecutionContext context = ExecutionContext.current();
+        if (context != null && !observation.isObserved()) {
+            int index = context.indexOf(this);
+            if (index >= 0) {
+                return (T) context.getValue(index);
+            }
+        }
         return value;
     }
 
     public boolean hasValue() {
+        T value = getRawValue();
         if (value instanceof Tensor) {
             return !((Tensor) value).isShapePlaceholder();
         } else {
@@ -124,6 +141,7 @@ public abstract class Vertex<T> implements Observable<T> {
     }
 
     public long[] getShape() {
+        T value = getRawValue();
         if (value instanceof Tensor) {
             return ((Tensor) value).getShape();
         } else {
@@ -156,6 +174,7 @@ public abstract class Vertex<T> implements Observable<T> {
     public void observe(T value) {
         this.value = value;
         observation.observe(value);
+        invalidateCachedLogProbsOfEveryContext();
     }
 
     /**
@@ -168,6 +187,56 @@ public abstract class Vertex<T> implements Observable<T> {
     @Override
     public void unobserve() {
         observation.unobserve();
+        invalidateCachedLogProbsOfEveryContext();
+    }
+
+    /**
+     * Observations are shared by every {@link ExecutionContext}, so a change to one invalidates the cached log
+     * probs held by the vertices and by all of the contexts, not just by the context running on this thread.
+     */
+    private void invalidateCachedLogProbsOfEveryContext() {
+        invalidateCachedLogProbs(null);
+        ExecutionContext.invalidateAllCachedLogProbs();
+    }
+
+    /**
+     * The log prob of a probabilistic vertex only depends on its own value and the values of its parents, so
+     * a change to the value of this vertex can only invalidate the cached log prob of this vertex and of its
+     * children.
+     */
+    private void invalidateCachedLogProbs(ExecutionContext context) {
+        setCachedLogProb(context, Double.NaN);
+        for (Vertex<?> child : children) {
+            child.setCachedLogProb(context, Double.NaN);
+        }
+    }
+
+    /**
+     * @return the log prob of this vertex at its current value as last calculated by {@link ProbabilityCalculator}
+     * or NaN if it has not been calculated since the value of this vertex or of one of its parents was set.
+     */
+    double getCachedLogProb() {
+        ExecutionContext context = ExecutionContext.current();
+        if (context != null) {
+            int index = context.indexOf(this);
+            if (index >= 0) {
+                return context.getCachedLogProb(index);
+            }
+        }
+        return cachedLogProb;
+    }
+
+    void setCachedLogProb(double logProb) {
+        setCachedLogProb(ExecutionContext.current(), logProb);
+    }
+
+    private void setCachedLogProb(ExecutionContext context, double logProb) {
+        int index = context != null ? context.indexOf(this) : -1;
+        if (index >= 0) {
+            context.setCachedLogProb(index, logProb);
+        } else {
+            this.cachedLogProb = logProb;
+        }
     }
 
     @Override
@@ -208,6 +277,7 @@ public abstract class Vertex<T> implements Observable<T> {
     public void addParents(Collection<? extends Vertex> parents) {
         this.parents = ImmutableSet.<Vertex>builder().addAll(this.getParents()).addAll(parents).build();
         parents.forEach(p -> p.addChild(this));
+        this.cachedLogProb = Double.NaN;
     }
 
     public void addParent(Vertex<?> parent) {
@@ -41,6 +41,13 @@ public class VertexId implements Comparable<VertexId> {
         idValues[0] = id;
     }
 
+    /**
+     * @param idValues the values of an id, as returned by {@link #getIdValues()}
+     */
+    public VertexId(long[] idValues) {
+        this.idValues = Arrays.copyOf(idValues, idValues.length);
+    }
+
     @Override
     public int compareTo(VertexId that) {
         long comparisonValue = 0;
@@ -76,6 +83,10 @@ public class VertexId implements Comparable<VertexId> {
         return Arrays.toString(idValues);
     }
 
+    public long[] getIdValues() {
+        return Arrays.copyOf(idValues, idValues.length);
+    }
+
     public int getIndentation() {
         return idValues.length;
     }
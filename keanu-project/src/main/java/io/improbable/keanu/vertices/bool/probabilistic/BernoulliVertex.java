@@ -4,6 +4,7 @@ import io.improbable.keanu.distributions.discrete.Bernoulli;
 import io.improbable.keanu.tensor.Tensor;
 import io.improbable.keanu.tensor.bool.BooleanTensor;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.vertices.ElementwiseProbabilistic;
 import io.improbable.keanu.vertices.Vertex;
 import io.improbable.keanu.vertices.bool.BoolVertex;
 import io.improbable.keanu.vertices.dbl.Differentiable;
@@ -16,7 +17,7 @@ import java.util.Set;
 
 import static io.improbable.keanu.tensor.TensorShapeValidation.checkTensorsMatchNonScalarShapeOrAreScalar;
 
-public class BernoulliVertex extends BoolVertex implements ProbabilisticBoolean {
+public class BernoulliVertex extends BoolVertex implements ProbabilisticBoolean, ElementwiseProbabilistic<BooleanTensor> {
 
     private final Vertex<DoubleTensor> probTrue;
 
@@ -59,7 +60,12 @@ public class BernoulliVertex extends BoolVertex implements ProbabilisticBoolean
 
     @Override
     public double logProb(BooleanTensor value) {
-        return Bernoulli.withParameters(probTrue.getValue()).logProb(value).sum();
+        return elementwiseLogProb(value).sum();
+    }
+
+    @Override
+    public DoubleTensor elementwiseLogProb(BooleanTensor value) {
+        return Bernoulli.withParameters(probTrue.getValue()).logProb(value);
     }
 
     @Override
@@ -22,15 +22,33 @@ import static java.util.Collections.singletonMap;
 public class Differentiator {
 
     public static PartialDerivatives reverseModeAutoDiff(Vertex<?> ofVertex, PartialDerivatives dWrtOfVertex, Set<? extends Vertex<?>> wrt) {
+        return reverseModeAutoDiff(singletonMap(ofVertex, dWrtOfVertex), wrt).get(ofVertex.getId());
+    }
 
-        PriorityQueue<Vertex> priorityQueue = new PriorityQueue<>(Comparator.<Vertex, VertexId>comparing(Vertex::getId, Comparator.naturalOrder()).reversed());
-        priorityQueue.add(ofVertex);
+    /**
+     * Back propagates partials from many vertices in a single sweep, visiting each vertex at most once. Partials
+     * that reach the same vertex from different starting vertices, or along different paths, are summed before
+     * they are propagated further. This makes finding the derivatives of something that depends on many vertices,
+     * e.g. a joint log prob, proportional to the size of the graph rather than to the number of starting vertices
+     * times the depth of the graph.
+     *
+     * @param dWrtStartingVertices the partials to start from for each starting vertex
+     * @param wrt                  the vertices to find the partials with respect to. Back propagation stops at these.
+     * @return the partials of each "of" in the starting partials with respect to the wrt vertices, by "of" id
+     */
+    public static Map<VertexId, PartialDerivatives> reverseModeAutoDiff(Map<? extends Vertex<?>, PartialDerivatives> dWrtStartingVertices,
+                                                                        Set<? extends Vertex<?>> wrt) {
 
+        PriorityQueue<Vertex> priorityQueue = new PriorityQueue<>(Comparator.<Vertex, VertexId>comparing(Vertex::getId, Comparator.naturalOrder()).reversed());
         HashSet<Vertex> alreadyQueued = new HashSet<>();
-        alreadyQueued.add(ofVertex);
-
         Map<Vertex, PartialDerivatives> dwrtOf = new HashMap<>();
-        collectPartials(singletonMap(ofVertex, dWrtOfVertex), dwrtOf, ofVertex);
+
+        for (Map.Entry<? extends Vertex<?>, PartialDerivatives> startingVertex : dWrtStartingVertices.entrySet()) {
+            Vertex<?> ofVertex = startingVertex.getKey();
+            priorityQueue.add(ofVertex);
+            alreadyQueued.add(ofVertex);
+            collectPartials(singletonMap(ofVertex, startingVertex.getValue()), dwrtOf, ofVertex);
+        }
 
         Map<VertexId, PartialDerivatives> wrtOf = new HashMap<>();
 
@@ -58,7 +76,7 @@ public class Differentiator {
             }
         }
 
-        return wrtOfToOfWrt(wrtOf).get(ofVertex.getId());
+        return wrtOfToOfWrt(wrtOf);
     }
 
     private static void collectPartials(Map<Vertex, PartialDerivatives> partialDerivatives,
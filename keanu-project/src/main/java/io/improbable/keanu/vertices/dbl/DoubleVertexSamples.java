@@ -1,5 +1,6 @@
 package io.improbable.keanu.vertices.dbl;
 
+import io.improbable.keanu.algorithms.DoubleTensorColumn;
 import io.improbable.keanu.algorithms.VertexSamples;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
 
@@ -16,6 +17,10 @@ public class DoubleVertexSamples extends VertexSamples<DoubleTensor> {
             throw new IllegalStateException("No samples exist for averaging.");
         }
 
+        if (samples instanceof DoubleTensorColumn) {
+            return ((DoubleTensorColumn) samples).getAverages();
+        }
+
         long[] shape = samples.iterator().next().getShape();
 
         return this.samples.stream()
@@ -21,28 +21,63 @@ public class LogProbGradientCalculator {
     private final Set<? extends Vertex<?>> logProbOfVertices;
     private final Set<? extends Vertex<?>> wrtVertices;
 
-    private final Map<Vertex, Set<DoubleVertex>> parentToLatentLookup;
     private final Map<Vertex, Set<DoubleVertex>> verticesWithNonzeroDiffWrtLatent;
+    private final Set<Vertex<?>> stopBackPropagationAt;
+
+    /**
+     * Stands in for the joint log prob as the "of" of the partial derivatives that are back propagated.
+     */
+    private final VertexId jointLogProbId = new VertexId();
 
     public LogProbGradientCalculator(List<? extends Vertex> logProbOfVerticesList, List<? extends Vertex<?>> wrtVerticesList) {
         this.logProbOfVertices = new HashSet<>((List<Vertex<?>>) logProbOfVerticesList);
         this.wrtVertices = new HashSet<>(wrtVerticesList);
 
-        parentToLatentLookup = getParentsThatAreConnectedToWrtVertices(logProbOfVertices);
+        Map<Vertex, Set<DoubleVertex>> parentToLatentLookup = getParentsThatAreConnectedToWrtVertices(logProbOfVertices);
         verticesWithNonzeroDiffWrtLatent = getVerticesWithNonzeroDiffWrt(logProbOfVertices, parentToLatentLookup);
+        stopBackPropagationAt = getVerticesToStopBackPropagationAt(logProbOfVertices, wrtVertices);
     }
 
     /**
+     * The dLogProb of every vertex is found first and summed per vertex. The sums are then back propagated
+     * to the latents in a single sweep, so each vertex of the graph is visited at most once no matter how many
+     * log probs depend on it.
+     *
      * @return the partial derivatives with respect to a given set of latent vertices
      */
     public Map<VertexId, DoubleTensor> getJointLogProbGradientWrtLatents() {
-        PartialDerivatives diffOfLogWrt = new PartialDerivatives(new HashMap<>());
+        Map<Vertex<?>, PartialDerivatives> dJointLogProbWrtVertices = new HashMap<>();
 
         for (final Vertex<?> ofVertex : logProbOfVertices) {
-            diffOfLogWrt = diffOfLogWrt.add(reverseModeLogProbGradientWrtLatents(ofVertex));
+            for (Map.Entry<Vertex, DoubleTensor> dLogProbWrtVertex : dLogProbWrtVerticesWithNonzeroDiff(ofVertex).entrySet()) {
+                dJointLogProbWrtVertices.merge(
+                    dLogProbWrtVertex.getKey(),
+                    new PartialDerivatives(jointLogProbId, dLogProbWrtVertex.getValue()),
+                    PartialDerivatives::add
+                );
+            }
         }
 
-        return diffOfLogWrt.asMap();
+        PartialDerivatives diffOfLogWrt = Differentiator
+            .reverseModeAutoDiff(dJointLogProbWrtVertices, stopBackPropagationAt)
+            .get(jointLogProbId);
+
+        return diffOfLogWrt == null ? new HashMap<>() : diffOfLogWrt.asMap();
+    }
+
+    /**
+     * The gradient of the log prob of a latent vertex with respect to its own value is not back propagated, so
+     * back propagation stops at those latents as well as at the vertices the gradient is with respect to.
+     */
+    private static Set<Vertex<?>> getVerticesToStopBackPropagationAt(Set<? extends Vertex<?>> ofVertices,
+                                                                     Set<? extends Vertex<?>> wrtVertices) {
+        Set<Vertex<?>> stopAt = new HashSet<>(wrtVertices);
+        for (Vertex<?> ofVertex : ofVertices) {
+            if (!ofVertex.isObserved()) {
+                stopAt.add(ofVertex);
+            }
+        }
+        return stopAt;
     }
 
     /**
@@ -114,41 +149,17 @@ public class LogProbGradientCalculator {
 
     /**
      * @param ofVertex the vertex we are taking the derivative of
-     * @return partial derivatives of the "ofVertex" wrt to any "this.wrtVertices" that it descends.
+     * @return the partial derivatives of the log prob of the "ofVertex" wrt itself and any of its parents that
+     * descend from "this.wrtVertices".
      */
-    private PartialDerivatives reverseModeLogProbGradientWrtLatents(final Vertex ofVertex) {
+    private Map<Vertex, DoubleTensor> dLogProbWrtVerticesWithNonzeroDiff(final Vertex ofVertex) {
         Preconditions.checkArgument(
             ofVertex instanceof Probabilistic<?>,
             "Cannot get logProb gradient on non-probabilistic vertex %s", ofVertex
         );
 
         Set<DoubleVertex> verticesWithNonzeroDiff = verticesWithNonzeroDiffWrtLatent.get(ofVertex);
-        final Map<Vertex, DoubleTensor> dlogProbOfVertexWrtVertices = ((Probabilistic<?>) ofVertex).dLogProbAtValue(verticesWithNonzeroDiff);
-
-        PartialDerivatives dOfWrtLatentsAccumulated = new PartialDerivatives(new HashMap<>());
-
-        for (Map.Entry<Vertex, DoubleTensor> dlogProbWrtVertex : dlogProbOfVertexWrtVertices.entrySet()) {
-
-            DoubleVertex vertexWithDiff = (DoubleVertex) dlogProbWrtVertex.getKey();
-            DoubleTensor dLogProbOfWrtVertexWithDiff = dlogProbWrtVertex.getValue();
-
-            if (vertexWithDiff.equals(ofVertex)) {
-
-                dOfWrtLatentsAccumulated.putWithRespectTo(vertexWithDiff.getId(), dLogProbOfWrtVertexWithDiff);
-            } else {
-
-                PartialDerivatives partialWrtVertexWithDiff = new PartialDerivatives(new HashMap<>());
-                partialWrtVertexWithDiff.putWithRespectTo(vertexWithDiff.getId(), dLogProbOfWrtVertexWithDiff);
-
-                PartialDerivatives dOfWrtLatentsContributionFromParent = Differentiator
-                    .reverseModeAutoDiff(vertexWithDiff, partialWrtVertexWithDiff, this.parentToLatentLookup.get(vertexWithDiff));
-
-                dOfWrtLatentsAccumulated = dOfWrtLatentsAccumulated.add(dOfWrtLatentsContributionFromParent);
-            }
-
-        }
-
-        return dOfWrtLatentsAccumulated;
+        return ((Probabilistic<?>) ofVertex).dLogProbAtValue(verticesWithNonzeroDiff);
     }
 
 }
@@ -9,31 +9,43 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-
-import static java.util.Collections.singletonMap;
-
+import java.util.function.BinaryOperator;
+import java.util.function.UnaryOperator;
+
+/**
+ * Partial derivatives are held per "wrt" vertex as tensors of shape [ofShape, wrtShape]. A partial that is zero
+ * everywhere but its diagonal, such as the partial of a vertex with respect to itself or of an element-wise
+ * operation on it, is instead held as just its diagonal, which has the "of" shape. Element-wise operations,
+ * reshapes and sums over every "of" dimension keep these partials as small as their diagonal. Any other operation,
+ * or a caller asking for the partials as tensors, expands them to the full [ofShape, wrtShape] tensor first.
+ */
 public class PartialDerivatives {
 
     public static final PartialDerivatives OF_CONSTANT = new PartialDerivatives(Collections.emptyMap());
 
     public static PartialDerivatives withRespectToSelf(VertexId withRespectTo, long[] shape) {
-        return new PartialDerivatives(
-            singletonMap(
-                withRespectTo,
-                DoubleTensor.eye((int) TensorShape.getLength(shape)).reshape(TensorShape.concat(shape, shape))
-            )
-        );
+        Map<VertexId, Diagonal> diagonal = new HashMap<>();
+        diagonal.put(withRespectTo, new Diagonal(DoubleTensor.ones(shape), shape));
+        return new PartialDerivatives(new HashMap<>(), diagonal);
     }
 
-    private Map<VertexId, DoubleTensor> derivativeWithRespectTo;
+    private final Map<VertexId, DoubleTensor> derivativeWithRespectTo;
+    private final Map<VertexId, Diagonal> diagonalWithRespectTo;
 
     public PartialDerivatives(VertexId id, DoubleTensor derivativeWithRespectTo) {
         this.derivativeWithRespectTo = new HashMap<>();
         this.derivativeWithRespectTo.put(id, derivativeWithRespectTo);
+        this.diagonalWithRespectTo = new HashMap<>();
     }
 
     public PartialDerivatives(Map<VertexId, DoubleTensor> derivativeWithRespectTo) {
+        this(derivativeWithRespectTo, new HashMap<>());
+    }
+
+    private PartialDerivatives(Map<VertexId, DoubleTensor> derivativeWithRespectTo,
+                               Map<VertexId, Diagonal> diagonalWithRespectTo) {
         this.derivativeWithRespectTo = derivativeWithRespectTo;
+        this.diagonalWithRespectTo = diagonalWithRespectTo;
     }
 
     public DoubleTensor withRespectTo(Vertex vertex) {
@@ -41,24 +53,51 @@ public class PartialDerivatives {
     }
 
     public DoubleTensor withRespectTo(VertexId id) {
+        Diagonal diagonal = diagonalWithRespectTo.get(id);
+        if (diagonal != null) {
+            return diagonal.expand();
+        }
         return derivativeWithRespectTo.getOrDefault(id, DoubleTensor.ZERO_SCALAR);
     }
 
     public boolean isEmpty() {
-        return derivativeWithRespectTo.isEmpty();
+        return derivativeWithRespectTo.isEmpty() && diagonalWithRespectTo.isEmpty();
     }
 
+    /**
+     * @return the partials as tensors of shape [ofShape, wrtShape]. Any partials held as diagonals are expanded
+     * into the returned map, which leaves them held as diagonals here.
+     */
     public Map<VertexId, DoubleTensor> asMap() {
-        return derivativeWithRespectTo;
+        if (diagonalWithRespectTo.isEmpty()) {
+            return derivativeWithRespectTo;
+        }
+
+        Map<VertexId, DoubleTensor> expanded = new HashMap<>(derivativeWithRespectTo);
+        for (Map.Entry<VertexId, Diagonal> entry : diagonalWithRespectTo.entrySet()) {
+            expanded.put(entry.getKey(), entry.getValue().expand());
+        }
+        return expanded;
+    }
+
+    /**
+     * @return true if every partial is held as just its diagonal
+     */
+    public boolean isDiagonal() {
+        return derivativeWithRespectTo.isEmpty();
     }
 
     public void putWithRespectTo(VertexId id, DoubleTensor value) {
+        diagonalWithRespectTo.remove(id);
         derivativeWithRespectTo.put(id, value);
     }
 
     /**
      * This will sum partial derivatives that are represented as tensors over given dimensions.
      * The dimensions that are summed over will be reshaped to the specified resultShape.
+     * <p>
+     * Summing a diagonal over every "of" dimension leaves each element of the diagonal in its own "wrt" element,
+     * so the diagonal is just reshaped to [resultShape, wrtShape] rather than expanded and summed.
      *
      * @param dimensions  dimensions to sum over
      * @param resultShape shape of sum result
@@ -66,24 +105,33 @@ public class PartialDerivatives {
      * @return summed and reshaped partials
      */
     public PartialDerivatives sumOverOfDimensions(int[] dimensions, long[] resultShape, int ofRank) {
-        Map<VertexId, DoubleTensor> summed = cloneInfinitesimals(derivativeWithRespectTo);
+        Map<VertexId, DoubleTensor> summed = new HashMap<>();
+        boolean sumsEveryOfDimension = TensorShape.getLength(resultShape) == 1;
 
-        for (Map.Entry<VertexId, DoubleTensor> entry : derivativeWithRespectTo.entrySet()) {
-            VertexId k = entry.getKey();
-            DoubleTensor v = entry.getValue();
-            long[] vShape = v.getShape();
-            long[] wrtShape = TensorShape.selectDimensions(ofRank, vShape.length, vShape);
+        for (Map.Entry<VertexId, Diagonal> entry : diagonalWithRespectTo.entrySet()) {
+            Diagonal diagonal = entry.getValue();
 
-            DoubleTensor summedV = v.sum(dimensions);
-            long[] newShape = TensorShape.concat(resultShape, wrtShape);
-            summedV = summedV.reshape(newShape);
+            if (sumsEveryOfDimension) {
+                summed.put(entry.getKey(), diagonal.values.reshape(TensorShape.concat(resultShape, diagonal.wrtShape)));
+            } else {
+                summed.put(entry.getKey(), sumOverOfDimensions(diagonal.expand(), dimensions, resultShape, ofRank));
+            }
+        }
 
-            summed.put(k, summedV);
+        for (Map.Entry<VertexId, DoubleTensor> entry : derivativeWithRespectTo.entrySet()) {
+            summed.put(entry.getKey(), sumOverOfDimensions(entry.getValue(), dimensions, resultShape, ofRank));
         }
 
         return new PartialDerivatives(summed);
     }
 
+    private static DoubleTensor sumOverOfDimensions(DoubleTensor partial, int[] dimensions, long[] resultShape, int ofRank) {
+        long[] partialShape = partial.getShape();
+        long[] wrtShape = TensorShape.selectDimensions(ofRank, partialShape.length, partialShape);
+
+        return partial.sum(dimensions).reshape(TensorShape.concat(resultShape, wrtShape));
+    }
+
     /**
      * This will sum partial derivatives that are represented as tensors over given dimensions.
      * The dimensions that are summed over will be reshaped to the specified resultShape.
@@ -94,9 +142,9 @@ public class PartialDerivatives {
      * @return summed and reshaped partials
      */
     public PartialDerivatives sumOverWrtDimensions(int[] dimensions, long[] resultShape, int wrtRank) {
-        Map<VertexId, DoubleTensor> summed = cloneInfinitesimals(derivativeWithRespectTo);
+        Map<VertexId, DoubleTensor> summed = new HashMap<>();
 
-        for (Map.Entry<VertexId, DoubleTensor> entry : derivativeWithRespectTo.entrySet()) {
+        for (Map.Entry<VertexId, DoubleTensor> entry : asMap().entrySet()) {
             VertexId k = entry.getKey();
             DoubleTensor v = entry.getValue();
             long[] vShape = v.getShape();
@@ -117,22 +165,7 @@ public class PartialDerivatives {
     }
 
     public PartialDerivatives add(PartialDerivatives addition, long[] ofShape) {
-
-        Map<VertexId, DoubleTensor> added = cloneWithCorrectShape(derivativeWithRespectTo, ofShape);
-        Map<VertexId, DoubleTensor> toAdd = cloneWithCorrectShape(addition.derivativeWithRespectTo, ofShape);
-
-        for (Map.Entry<VertexId, DoubleTensor> entry : toAdd.entrySet()) {
-            VertexId k = entry.getKey();
-            DoubleTensor v = entry.getValue();
-
-            if (added.containsKey(k)) {
-                added.put(k, added.get(k).plus(v));
-            } else {
-                added.put(k, v);
-            }
-        }
-
-        return new PartialDerivatives(added);
+        return combine(addition, ofShape, DoubleTensor::plus, v -> v);
     }
 
     public PartialDerivatives subtract(PartialDerivatives subtraction) {
@@ -140,22 +173,72 @@ public class PartialDerivatives {
     }
 
     public PartialDerivatives subtract(PartialDerivatives subtraction, long[] ofShape) {
+        return combine(subtraction, ofShape, DoubleTensor::minus, DoubleTensor::unaryMinus);
+    }
+
+    /**
+     * Combines partials that are held wrt the same vertex. Two diagonals stay a diagonal unless the result needs
+     * broadcasting to ofShape.
+     *
+     * @param other            the partials to combine with these
+     * @param ofShape          the shape of the "of" that the partials are broadcast to, or null if they need no broadcast
+     * @param combiner         combines two partials wrt the same vertex
+     * @param whenOnlyInOther  applied to partials wrt vertices that only the other partials have
+     * @return the combined partials
+     */
+    private PartialDerivatives combine(PartialDerivatives other,
+                                       long[] ofShape,
+                                       BinaryOperator<DoubleTensor> combiner,
+                                       UnaryOperator<DoubleTensor> whenOnlyInOther) {
+
+        Map<VertexId, DoubleTensor> thisPartials = new HashMap<>(derivativeWithRespectTo);
+        Map<VertexId, DoubleTensor> otherPartials = new HashMap<>(other.derivativeWithRespectTo);
+        Map<VertexId, Diagonal> combinedDiagonals = new HashMap<>();
+
+        Map<VertexId, Diagonal> allDiagonals = new HashMap<>(other.diagonalWithRespectTo);
+        allDiagonals.putAll(diagonalWithRespectTo);
 
-        Map<VertexId, DoubleTensor> subtracted = cloneWithCorrectShape(derivativeWithRespectTo, ofShape);
-        Map<VertexId, DoubleTensor> toSubtract = cloneWithCorrectShape(subtraction.derivativeWithRespectTo, ofShape);
+        for (Map.Entry<VertexId, Diagonal> entry : allDiagonals.entrySet()) {
+            VertexId k = entry.getKey();
+            Diagonal thisDiagonal = diagonalWithRespectTo.get(k);
+            Diagonal otherDiagonal = other.diagonalWithRespectTo.get(k);
+
+            boolean staysDiagonal = !thisPartials.containsKey(k) && !otherPartials.containsKey(k) &&
+                (ofShape == null || Arrays.equals(ofShape, entry.getValue().values.getShape()));
+
+            if (staysDiagonal) {
+                if (thisDiagonal != null && otherDiagonal != null) {
+                    combinedDiagonals.put(k, thisDiagonal.withValues(combiner.apply(thisDiagonal.values, otherDiagonal.values)));
+                } else if (thisDiagonal != null) {
+                    combinedDiagonals.put(k, thisDiagonal);
+                } else {
+                    combinedDiagonals.put(k, otherDiagonal.withValues(whenOnlyInOther.apply(otherDiagonal.values)));
+                }
+            } else {
+                if (thisDiagonal != null) {
+                    thisPartials.put(k, thisDiagonal.expand());
+                }
+                if (otherDiagonal != null) {
+                    otherPartials.put(k, otherDiagonal.expand());
+                }
+            }
+        }
 
-        for (Map.Entry<VertexId, DoubleTensor> entry : toSubtract.entrySet()) {
+        Map<VertexId, DoubleTensor> combined = cloneWithCorrectShape(thisPartials, ofShape);
+        Map<VertexId, DoubleTensor> toCombine = cloneWithCorrectShape(otherPartials, ofShape);
+
+        for (Map.Entry<VertexId, DoubleTensor> entry : toCombine.entrySet()) {
             VertexId k = entry.getKey();
             DoubleTensor v = entry.getValue();
 
-            if (subtracted.containsKey(k)) {
-                subtracted.put(k, subtracted.get(k).minus(v));
+            if (combined.containsKey(k)) {
+                combined.put(k, combiner.apply(combined.get(k), v));
             } else {
-                subtracted.put(k, v.unaryMinus());
+                combined.put(k, whenOnlyInOther.apply(v));
             }
         }
 
-        return new PartialDerivatives(subtracted);
+        return new PartialDerivatives(combined, combinedDiagonals);
     }
 
     private static Map<VertexId, DoubleTensor> cloneWithCorrectShape(Map<VertexId, DoubleTensor> infinitesimals, long[] ofShape) {
@@ -190,9 +273,11 @@ public class PartialDerivatives {
     }
 
     public PartialDerivatives multiplyAlongOfDimensions(DoubleTensor multiplier, long[] ofShape) {
+        Map<VertexId, DoubleTensor> toMultiply = new HashMap<>(derivativeWithRespectTo);
+        Map<VertexId, Diagonal> multipliedDiagonals = multiplyDiagonals(multiplier, false, toMultiply);
         Map<VertexId, DoubleTensor> multiplied = new HashMap<>();
 
-        for (Map.Entry<VertexId, DoubleTensor> entry : derivativeWithRespectTo.entrySet()) {
+        for (Map.Entry<VertexId, DoubleTensor> entry : toMultiply.entrySet()) {
             VertexId k = entry.getKey();
             DoubleTensor partial = entry.getValue();
             DoubleTensor result;
@@ -206,13 +291,15 @@ public class PartialDerivatives {
             multiplied.put(k, result);
         }
 
-        return new PartialDerivatives(multiplied);
+        return new PartialDerivatives(multiplied, multipliedDiagonals);
     }
 
     public PartialDerivatives multiplyAlongWrtDimensions(DoubleTensor multiplier, long[] wrtShape) {
+        Map<VertexId, DoubleTensor> toMultiply = new HashMap<>(derivativeWithRespectTo);
+        Map<VertexId, Diagonal> multipliedDiagonals = multiplyDiagonals(multiplier, true, toMultiply);
         Map<VertexId, DoubleTensor> multiplied = new HashMap<>();
 
-        for (Map.Entry<VertexId, DoubleTensor> entry : derivativeWithRespectTo.entrySet()) {
+        for (Map.Entry<VertexId, DoubleTensor> entry : toMultiply.entrySet()) {
             VertexId k = entry.getKey();
             DoubleTensor partial = entry.getValue();
             DoubleTensor result;
@@ -226,7 +313,39 @@ public class PartialDerivatives {
             multiplied.put(k, result);
         }
 
-        return new PartialDerivatives(multiplied);
+        return new PartialDerivatives(multiplied, multipliedDiagonals);
+    }
+
+    /**
+     * Multiplying a diagonal element-wise along either its "of" or its "wrt" dimensions scales each element of
+     * the diagonal. A multiplier that would broadcast the diagonal to a different shape can't keep it diagonal.
+     *
+     * @param multiplier  the element-wise multiplier
+     * @param alongWrt    true if the multiplier has the "wrt" shape rather than the "of" shape
+     * @param notDiagonal diagonals that can't stay diagonal are expanded into this
+     * @return the multiplied diagonals
+     */
+    private Map<VertexId, Diagonal> multiplyDiagonals(DoubleTensor multiplier,
+                                                      boolean alongWrt,
+                                                      Map<VertexId, DoubleTensor> notDiagonal) {
+        Map<VertexId, Diagonal> multiplied = new HashMap<>();
+
+        for (Map.Entry<VertexId, Diagonal> entry : diagonalWithRespectTo.entrySet()) {
+            Diagonal diagonal = entry.getValue();
+            long[] ofShape = diagonal.values.getShape();
+            long[] multipliedShape = alongWrt ? diagonal.wrtShape : ofShape;
+
+            if (multiplier.isScalar()) {
+                multiplied.put(entry.getKey(), diagonal.withValues(diagonal.values.times(multiplier.scalar())));
+            } else if (Arrays.equals(multiplier.getShape(), multipliedShape)) {
+                DoubleTensor alignedMultiplier = alongWrt ? multiplier.reshape(ofShape) : multiplier;
+                multiplied.put(entry.getKey(), diagonal.withValues(diagonal.values.times(alignedMultiplier)));
+            } else {
+                notDiagonal.put(entry.getKey(), diagonal.expand());
+            }
+        }
+
+        return multiplied;
     }
 
     private DoubleTensor elementWiseMultiplyAlongOf(DoubleTensor partial, DoubleTensor multiplier, long[] ofShape) {
@@ -270,7 +389,7 @@ public class PartialDerivatives {
     public static PartialDerivatives matrixMultiplyAlongOfDimensions(PartialDerivatives partials, DoubleTensor multiplier, boolean partialIsLeft) {
         Map<VertexId, DoubleTensor> multiplied = new HashMap<>();
 
-        for (Map.Entry<VertexId, DoubleTensor> partial : partials.derivativeWithRespectTo.entrySet()) {
+        for (Map.Entry<VertexId, DoubleTensor> partial : partials.asMap().entrySet()) {
 
             int partialRank = partial.getValue().getRank();
 
@@ -296,7 +415,7 @@ public class PartialDerivatives {
     public static PartialDerivatives matrixMultiplyAlongWrtDimensions(PartialDerivatives partials, DoubleTensor multiplier, boolean partialIsLeft) {
         Map<VertexId, DoubleTensor> multiplied = new HashMap<>();
 
-        for (Map.Entry<VertexId, DoubleTensor> partial : partials.derivativeWithRespectTo.entrySet()) {
+        for (Map.Entry<VertexId, DoubleTensor> partial : partials.asMap().entrySet()) {
 
             int partialRank = partial.getValue().getRank();
 
@@ -323,21 +442,52 @@ public class PartialDerivatives {
     }
 
     public PartialDerivatives multiplyBy(double multiplier) {
-        Map<VertexId, DoubleTensor> multiplied = new HashMap<>();
+        return new PartialDerivatives(
+            applyToEach(derivativeWithRespectTo, v -> v.times(multiplier)),
+            applyToEachDiagonal(diagonalWithRespectTo, v -> v.times(multiplier))
+        );
+    }
 
-        for (Map.Entry<VertexId, DoubleTensor> entry : derivativeWithRespectTo.entrySet()) {
-            VertexId k = entry.getKey();
-            DoubleTensor v = entry.getValue().times(multiplier);
-            multiplied.put(k, v);
+    private static Map<VertexId, DoubleTensor> applyToEach(Map<VertexId, DoubleTensor> partials, UnaryOperator<DoubleTensor> operation) {
+        Map<VertexId, DoubleTensor> applied = new HashMap<>();
+
+        for (Map.Entry<VertexId, DoubleTensor> entry : partials.entrySet()) {
+            applied.put(entry.getKey(), operation.apply(entry.getValue()));
         }
 
-        return new PartialDerivatives(multiplied);
+        return applied;
+    }
+
+    private static Map<VertexId, Diagonal> applyToEachDiagonal(Map<VertexId, Diagonal> diagonals, UnaryOperator<DoubleTensor> operation) {
+        Map<VertexId, Diagonal> applied = new HashMap<>();
+
+        for (Map.Entry<VertexId, Diagonal> entry : diagonals.entrySet()) {
+            Diagonal diagonal = entry.getValue();
+            applied.put(entry.getKey(), diagonal.withValues(operation.apply(diagonal.values)));
+        }
+
+        return applied;
     }
 
     public PartialDerivatives divideBy(DoubleTensor divisor) {
+        Map<VertexId, DoubleTensor> toDivide = new HashMap<>(derivativeWithRespectTo);
+        Map<VertexId, Diagonal> dividedDiagonals = new HashMap<>();
+
+        for (Map.Entry<VertexId, Diagonal> entry : diagonalWithRespectTo.entrySet()) {
+            Diagonal diagonal = entry.getValue();
+
+            if (divisor.isScalar()) {
+                dividedDiagonals.put(entry.getKey(), diagonal.withValues(diagonal.values.div(divisor.scalar())));
+            } else if (Arrays.equals(divisor.getShape(), diagonal.values.getShape())) {
+                dividedDiagonals.put(entry.getKey(), diagonal.withValues(diagonal.values.div(divisor)));
+            } else {
+                toDivide.put(entry.getKey(), diagonal.expand());
+            }
+        }
+
         Map<VertexId, DoubleTensor> divided = new HashMap<>();
 
-        for (Map.Entry<VertexId, DoubleTensor> entry : derivativeWithRespectTo.entrySet()) {
+        for (Map.Entry<VertexId, DoubleTensor> entry : toDivide.entrySet()) {
             VertexId k = entry.getKey();
             DoubleTensor partial = entry.getValue();
 
@@ -345,27 +495,39 @@ public class PartialDerivatives {
             divided.put(k, v);
         }
 
-        return new PartialDerivatives(divided);
+        return new PartialDerivatives(divided, dividedDiagonals);
     }
 
     public PartialDerivatives divideBy(double divisor) {
-        Map<VertexId, DoubleTensor> divided = new HashMap<>();
-
-        for (Map.Entry<VertexId, DoubleTensor> entry : derivativeWithRespectTo.entrySet()) {
-            VertexId k = entry.getKey();
-            DoubleTensor v = entry.getValue().div(divisor);
-            divided.put(k, v);
-        }
-
-        return new PartialDerivatives(divided);
+        return new PartialDerivatives(
+            applyToEach(derivativeWithRespectTo, v -> v.div(divisor)),
+            applyToEachDiagonal(diagonalWithRespectTo, v -> v.div(divisor))
+        );
     }
 
     public PartialDerivatives clone() {
-        return new PartialDerivatives(cloneInfinitesimals(derivativeWithRespectTo));
+        return new PartialDerivatives(
+            cloneInfinitesimals(derivativeWithRespectTo),
+            new HashMap<>(diagonalWithRespectTo)
+        );
     }
 
+    /**
+     * Reshapes the "of" part of the partials. A reshape keeps the order of the elements, so a diagonal stays on
+     * its diagonal and only its values are reshaped.
+     *
+     * @param currentRank   the rank of the "of" part of the partials
+     * @param proposedShape the new shape of the "of" part
+     * @return the reshaped partials
+     */
     public PartialDerivatives reshape(int currentRank, long[] proposedShape) {
         Map<VertexId, DoubleTensor> reshapedDerivatives = new HashMap<>();
+        Map<VertexId, Diagonal> reshapedDiagonals = new HashMap<>();
+
+        for (Map.Entry<VertexId, Diagonal> entry : diagonalWithRespectTo.entrySet()) {
+            Diagonal diagonal = entry.getValue();
+            reshapedDiagonals.put(entry.getKey(), diagonal.withValues(diagonal.values.reshape(proposedShape)));
+        }
 
         for (Map.Entry<VertexId, DoubleTensor> partialDerivative : derivativeWithRespectTo.entrySet()) {
             long[] shape = partialDerivative.getValue().getShape();
@@ -376,7 +538,34 @@ public class PartialDerivatives {
             reshapedDerivatives.put(partialDerivative.getKey(), reshapedPartialDerivative);
         }
 
-        return new PartialDerivatives(reshapedDerivatives);
+        return new PartialDerivatives(reshapedDerivatives, reshapedDiagonals);
+    }
+
+    /**
+     * Reshapes the "wrt" part of the partials. As with {@link #reshape(int, long[])}, a diagonal stays on its
+     * diagonal and only the "wrt" shape it expands to changes.
+     *
+     * @param currentWrtRank   the rank of the "wrt" part of the partials
+     * @param proposedWrtShape the new shape of the "wrt" part
+     * @return the reshaped partials
+     */
+    public PartialDerivatives reshapeWithRespectTo(int currentWrtRank, long[] proposedWrtShape) {
+        Map<VertexId, DoubleTensor> reshapedDerivatives = new HashMap<>();
+        Map<VertexId, Diagonal> reshapedDiagonals = new HashMap<>();
+
+        for (Map.Entry<VertexId, Diagonal> entry : diagonalWithRespectTo.entrySet()) {
+            reshapedDiagonals.put(entry.getKey(), new Diagonal(entry.getValue().values, proposedWrtShape));
+        }
+
+        for (Map.Entry<VertexId, DoubleTensor> partialDerivative : derivativeWithRespectTo.entrySet()) {
+            DoubleTensor partial = partialDerivative.getValue();
+            long[] ofShape = extractOfShape(partial.getShape(), partial.getRank() - currentWrtRank);
+            long[] newPartialShape = TensorShape.concat(ofShape, proposedWrtShape);
+
+            reshapedDerivatives.put(partialDerivative.getKey(), partial.reshape(newPartialShape));
+        }
+
+        return new PartialDerivatives(reshapedDerivatives, reshapedDiagonals);
     }
 
     /**
@@ -395,7 +584,7 @@ public class PartialDerivatives {
     public PartialDerivatives slice(int dimension, long index, boolean reshape) {
         Map<VertexId, DoubleTensor> slicedDerivatives = new HashMap<>();
 
-        for (Map.Entry<VertexId, DoubleTensor> partialDerivative : derivativeWithRespectTo.entrySet()) {
+        for (Map.Entry<VertexId, DoubleTensor> partialDerivative : asMap().entrySet()) {
             long[] partialDerivativeShape = Arrays.copyOf(partialDerivative.getValue().getShape(), partialDerivative.getValue().getShape().length);
             partialDerivativeShape[dimension] = 1;
             DoubleTensor slicedPartialDerivative = partialDerivative.getValue().slice(dimension, index);
@@ -417,6 +606,35 @@ public class PartialDerivatives {
         return clone;
     }
 
+    /**
+     * The diagonal of a partial that is zero everywhere else. Its values have the "of" shape and its "wrt" shape
+     * has the same length, and an element of each is on the diagonal when they have the same flat index.
+     */
+    private static class Diagonal {
+        private final DoubleTensor values;
+        private final long[] wrtShape;
+
+        Diagonal(DoubleTensor values, long[] wrtShape) {
+            this.values = values;
+            this.wrtShape = wrtShape;
+        }
+
+        Diagonal withValues(DoubleTensor values) {
+            return new Diagonal(values, wrtShape);
+        }
+
+        /**
+         * @return the partial as a tensor of shape [ofShape, wrtShape] that is zero off its diagonal
+         */
+        DoubleTensor expand() {
+            long[] ofShape = values.getShape();
+            long length = TensorShape.getLength(ofShape);
+            return DoubleTensor.eye(length)
+                .times(values.reshape(length, 1))
+                .reshape(TensorShape.concat(ofShape, wrtShape));
+        }
+    }
+
     private long[] extractWrtShape(long[] partialDerivativeShape, int rankOfSource) {
         return Arrays.copyOfRange(partialDerivativeShape, rankOfSource, partialDerivativeShape.length);
     }
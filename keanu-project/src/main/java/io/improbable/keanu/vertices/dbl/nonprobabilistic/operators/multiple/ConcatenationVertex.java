@@ -93,8 +93,10 @@ public class ConcatenationVertex extends DoubleVertex implements Differentiable,
             PartialDerivatives partialOfOperand = derivativeOfOperandsWrtInputs.get(i);
             DoubleTensor operandValue = operandValues.get(i);
 
-            if (partialOfOperand.asMap().containsKey(wrtVertexId)) {
-                partialsToConcat.computeIfAbsent(wrtVertexId, k -> new ArrayList<>()).add(partialOfOperand.asMap().get(wrtVertexId));
+            DoubleTensor partial = partialOfOperand.asMap().get(wrtVertexId);
+
+            if (partial != null) {
+                partialsToConcat.computeIfAbsent(wrtVertexId, k -> new ArrayList<>()).add(partial);
             } else {
                 long[] wrtShape = Arrays.copyOfRange(partialWrtShape, operandValue.getRank(), partialWrtShape.length);
                 long[] resultShape = TensorShape.concat(operandValue.getShape(), wrtShape);
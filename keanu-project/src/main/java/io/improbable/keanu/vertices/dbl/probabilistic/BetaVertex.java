@@ -4,6 +4,7 @@ import io.improbable.keanu.distributions.ContinuousDistribution;
 import io.improbable.keanu.distributions.continuous.Beta;
 import io.improbable.keanu.distributions.hyperparam.Diffs;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.vertices.ElementwiseProbabilistic;
 import io.improbable.keanu.vertices.Vertex;
 import io.improbable.keanu.vertices.dbl.DoubleVertex;
 import io.improbable.keanu.vertices.dbl.KeanuRandom;
@@ -19,7 +20,7 @@ import static io.improbable.keanu.distributions.hyperparam.Diffs.X;
 import static io.improbable.keanu.tensor.TensorShapeValidation.checkHasSingleNonScalarShapeOrAllScalar;
 import static io.improbable.keanu.tensor.TensorShapeValidation.checkTensorsMatchNonScalarShapeOrAreScalar;
 
-public class BetaVertex extends DoubleVertex implements ProbabilisticDouble {
+public class BetaVertex extends DoubleVertex implements ProbabilisticDouble, ElementwiseProbabilistic<DoubleTensor> {
 
     private final DoubleVertex alpha;
     private final DoubleVertex beta;
@@ -82,10 +83,22 @@ public class BetaVertex extends DoubleVertex implements ProbabilisticDouble {
         this(tensorShape, new ConstantDoubleVertex(alpha), new ConstantDoubleVertex(beta));
     }
 
+    public DoubleVertex getAlpha() {
+        return alpha;
+    }
+
+    public DoubleVertex getBeta() {
+        return beta;
+    }
+
     @Override
     public double logProb(DoubleTensor value) {
-        DoubleTensor logPdfs = distribution().logProb(value);
-        return logPdfs.sum();
+        return elementwiseLogProb(value).sum();
+    }
+
+    @Override
+    public DoubleTensor elementwiseLogProb(DoubleTensor value) {
+        return distribution().logProb(value);
     }
 
     @Override
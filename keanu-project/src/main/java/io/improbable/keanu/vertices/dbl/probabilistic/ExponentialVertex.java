@@ -4,6 +4,7 @@ import io.improbable.keanu.annotation.ExportVertexToPythonBindings;
 import io.improbable.keanu.distributions.continuous.Exponential;
 import io.improbable.keanu.distributions.hyperparam.Diffs;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.vertices.ElementwiseProbabilistic;
 import io.improbable.keanu.vertices.Vertex;
 import io.improbable.keanu.vertices.dbl.DoubleVertex;
 import io.improbable.keanu.vertices.dbl.KeanuRandom;
@@ -18,7 +19,7 @@ import static io.improbable.keanu.distributions.hyperparam.Diffs.X;
 import static io.improbable.keanu.tensor.TensorShapeValidation.checkHasSingleNonScalarShapeOrAllScalar;
 import static io.improbable.keanu.tensor.TensorShapeValidation.checkTensorsMatchNonScalarShapeOrAreScalar;
 
-public class ExponentialVertex extends DoubleVertex implements ProbabilisticDouble {
+public class ExponentialVertex extends DoubleVertex implements ProbabilisticDouble, ElementwiseProbabilistic<DoubleTensor> {
 
     private final DoubleVertex lambda;
 
@@ -58,12 +59,12 @@ public class ExponentialVertex extends DoubleVertex implements ProbabilisticDoub
 
     @Override
     public double logProb(DoubleTensor value) {
+        return elementwiseLogProb(value).sum();
+    }
 
-        DoubleTensor lambdaValues = lambda.getValue();
-
-        DoubleTensor logPdfs = Exponential.withParameters(lambdaValues).logProb(value);
-
-        return logPdfs.sum();
+    @Override
+    public DoubleTensor elementwiseLogProb(DoubleTensor value) {
+        return Exponential.withParameters(lambda.getValue()).logProb(value);
     }
 
     @Override
@@ -4,6 +4,7 @@ import io.improbable.keanu.annotation.ExportVertexToPythonBindings;
 import io.improbable.keanu.distributions.continuous.Gamma;
 import io.improbable.keanu.distributions.hyperparam.Diffs;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.vertices.ElementwiseProbabilistic;
 import io.improbable.keanu.vertices.Vertex;
 import io.improbable.keanu.vertices.dbl.DoubleVertex;
 import io.improbable.keanu.vertices.dbl.KeanuRandom;
@@ -19,7 +20,7 @@ import static io.improbable.keanu.distributions.hyperparam.Diffs.X;
 import static io.improbable.keanu.tensor.TensorShapeValidation.checkHasSingleNonScalarShapeOrAllScalar;
 import static io.improbable.keanu.tensor.TensorShapeValidation.checkTensorsMatchNonScalarShapeOrAreScalar;
 
-public class GammaVertex extends DoubleVertex implements ProbabilisticDouble {
+public class GammaVertex extends DoubleVertex implements ProbabilisticDouble, ElementwiseProbabilistic<DoubleTensor> {
 
     private final DoubleVertex theta;
     private final DoubleVertex k;
@@ -66,13 +67,25 @@ public class GammaVertex extends DoubleVertex implements ProbabilisticDouble {
         this(new ConstantDoubleVertex(theta), new ConstantDoubleVertex(k));
     }
 
+    public DoubleVertex getTheta() {
+        return theta;
+    }
+
+    public DoubleVertex getK() {
+        return k;
+    }
+
     @Override
     public double logProb(DoubleTensor value) {
+        return elementwiseLogProb(value).sum();
+    }
+
+    @Override
+    public DoubleTensor elementwiseLogProb(DoubleTensor value) {
         DoubleTensor thetaValues = theta.getValue();
         DoubleTensor kValues = k.getValue();
 
-        DoubleTensor logPdfs = Gamma.withParameters(thetaValues, kValues).logProb(value);
-        return logPdfs.sum();
+        return Gamma.withParameters(thetaValues, kValues).logProb(value);
     }
 
     @Override
@@ -1,5 +1,6 @@
 package io.improbable.keanu.vertices.intgr;
 
+import io.improbable.keanu.algorithms.IntegerTensorColumn;
 import io.improbable.keanu.algorithms.VertexSamples;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
 import io.improbable.keanu.tensor.intgr.IntegerTensor;
@@ -22,6 +23,10 @@ public class IntegerTensorVertexSamples extends VertexSamples<IntegerTensor> {
             throw new IllegalStateException("No samples exist for averaging.");
         }
 
+        if (samples instanceof IntegerTensorColumn) {
+            return ((IntegerTensorColumn) samples).getAverages();
+        }
+
         long[] shape = samples.iterator().next().getShape();
 
         return this.samples.stream()
@@ -4,6 +4,7 @@ import io.improbable.keanu.distributions.discrete.Binomial;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
 import io.improbable.keanu.tensor.intgr.IntegerTensor;
 import io.improbable.keanu.vertices.ConstantVertex;
+import io.improbable.keanu.vertices.ElementwiseProbabilistic;
 import io.improbable.keanu.vertices.Vertex;
 import io.improbable.keanu.vertices.dbl.DoubleVertex;
 import io.improbable.keanu.vertices.dbl.KeanuRandom;
@@ -16,7 +17,7 @@ import java.util.Set;
 import static io.improbable.keanu.tensor.TensorShapeValidation.checkHasSingleNonScalarShapeOrAllScalar;
 import static io.improbable.keanu.tensor.TensorShapeValidation.checkTensorsMatchNonScalarShapeOrAreScalar;
 
-public class BinomialVertex extends IntegerVertex implements ProbabilisticInteger {
+public class BinomialVertex extends IntegerVertex implements ProbabilisticInteger, ElementwiseProbabilistic<IntegerTensor> {
 
     private final DoubleVertex p;
     private final IntegerVertex n;
@@ -59,9 +60,22 @@ public class BinomialVertex extends IntegerVertex implements ProbabilisticIntege
         this(ConstantVertex.of(p), ConstantVertex.of(n));
     }
 
+    public DoubleVertex getP() {
+        return p;
+    }
+
+    public IntegerVertex getN() {
+        return n;
+    }
+
     @Override
     public double logProb(IntegerTensor kTensor) {
-        return Binomial.withParameters(p.getValue(), n.getValue()).logProb(kTensor).sum();
+        return elementwiseLogProb(kTensor).sum();
+    }
+
+    @Override
+    public DoubleTensor elementwiseLogProb(IntegerTensor kTensor) {
+        return Binomial.withParameters(p.getValue(), n.getValue()).logProb(kTensor);
     }
 
     @Override
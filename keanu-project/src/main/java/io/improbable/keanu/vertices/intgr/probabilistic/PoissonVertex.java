@@ -6,6 +6,7 @@ import io.improbable.keanu.tensor.NumberTensor;
 import io.improbable.keanu.tensor.Tensor;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
 import io.improbable.keanu.tensor.intgr.IntegerTensor;
+import io.improbable.keanu.vertices.ElementwiseProbabilistic;
 import io.improbable.keanu.vertices.Vertex;
 import io.improbable.keanu.vertices.dbl.DoubleVertex;
 import io.improbable.keanu.vertices.dbl.KeanuRandom;
@@ -19,7 +20,7 @@ import java.util.Set;
 
 import static io.improbable.keanu.tensor.TensorShapeValidation.checkTensorsMatchNonScalarShapeOrAreScalar;
 
-public class PoissonVertex extends IntegerVertex implements ProbabilisticInteger {
+public class PoissonVertex extends IntegerVertex implements ProbabilisticInteger, ElementwiseProbabilistic<IntegerTensor> {
 
     private final DoubleVertex mu;
 
@@ -69,7 +70,12 @@ public class PoissonVertex extends IntegerVertex implements ProbabilisticInteger
 
     @Override
     public double logProb(IntegerTensor value) {
-        return Poisson.withParameters(mu.getValue()).logProb(value).sum();
+        return elementwiseLogProb(value).sum();
+    }
+
+    @Override
+    public DoubleTensor elementwiseLogProb(IntegerTensor value) {
+        return Poisson.withParameters(mu.getValue()).logProb(value);
     }
 
     @Override
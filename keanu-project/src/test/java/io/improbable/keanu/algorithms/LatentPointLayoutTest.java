@@ -0,0 +1,82 @@
+package io.improbable.keanu.algorithms;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.improbable.keanu.algorithms.variational.optimizer.Optimizer;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.vertices.Vertex;
+import io.improbable.keanu.vertices.dbl.DoubleVertex;
+import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class LatentPointLayoutTest {
+
+    private DoubleVertex A;
+    private DoubleVertex B;
+    private DoubleVertex C;
+    private List<Vertex<DoubleTensor>> latentVertices;
+    private LatentPointLayout layout;
+
+    @Before
+    public void setup() {
+        A = new GaussianVertex(0, 1);
+        B = new GaussianVertex(new long[]{2, 2}, 0, 1);
+        C = new GaussianVertex(new long[]{1, 3}, 0, 1);
+        A.setValue(1.0);
+        B.setValue(DoubleTensor.create(new double[]{2, 3, 4, 5}, 2, 2));
+        C.setValue(DoubleTensor.create(new double[]{6, 7, 8}, 1, 3));
+        latentVertices = ImmutableList.of(A, B, C);
+        layout = new LatentPointLayout(latentVertices);
+    }
+
+    @Test
+    public void hasTheSameLayoutAsTheOptimizer() {
+        assertEquals(8, layout.getDimensionCount());
+        assertEquals(1, layout.getOffset(1));
+        assertEquals(5, layout.getOffset(2));
+        assertEquals(4, layout.getLength(1));
+        assertArrayEquals(Optimizer.currentPoint(latentVertices), layout.currentPoint(), 0.0);
+    }
+
+    @Test
+    public void canSetPointOnLatentVertices() {
+        layout.setPoint(new double[]{-1, -2, -3, -4, -5, -6, -7, -8});
+
+        assertEquals(-1.0, A.getValue().scalar(), 0.0);
+        assertArrayEquals(new long[]{2, 2}, B.getValue().getShape());
+        assertArrayEquals(new double[]{-2, -3, -4, -5}, B.getValue().asFlatDoubleArray(), 0.0);
+        assertArrayEquals(new double[]{-6, -7, -8}, C.getValue().asFlatDoubleArray(), 0.0);
+    }
+
+    @Test
+    public void settingAnotherPointLeavesThePreviousValuesUnchanged() {
+        layout.setPoint(new double[]{-1, -2, -3, -4, -5, -6, -7, -8});
+        DoubleTensor previousA = A.getValue();
+        DoubleTensor previousB = B.getValue();
+
+        layout.setPoint(new double[]{1, 2, 3, 4, 5, 6, 7, 8});
+
+        assertEquals(-1.0, previousA.scalar(), 0.0);
+        assertArrayEquals(new double[]{-2, -3, -4, -5}, previousB.asFlatDoubleArray(), 0.0);
+        assertArrayEquals(new long[]{1, 1}, A.getValue().getShape());
+        assertArrayEquals(new double[]{2, 3, 4, 5}, B.getValue().asFlatDoubleArray(), 0.0);
+    }
+
+    @Test
+    public void flattensTensorsHeldPerVertexWithMissingVerticesAsZero() {
+        double[] point = new double[]{9, 9, 9, 9, 9, 9, 9, 9};
+
+        layout.flatten(ImmutableMap.of(
+            A.getId(), DoubleTensor.scalar(1.0),
+            C.getId(), DoubleTensor.create(new double[]{6, 7, 8}, 1, 3)
+        ), point);
+
+        assertArrayEquals(new double[]{1, 0, 0, 0, 0, 6, 7, 8}, point, 0.0);
+    }
+}
@@ -0,0 +1,145 @@
+package io.improbable.keanu.algorithms;
+
+import io.improbable.keanu.algorithms.mcmc.MetropolisHastings;
+import io.improbable.keanu.network.BayesianNetwork;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.tensor.intgr.IntegerTensor;
+import io.improbable.keanu.vertices.Vertex;
+import io.improbable.keanu.vertices.VertexId;
+import io.improbable.keanu.vertices.bool.probabilistic.BernoulliVertex;
+import io.improbable.keanu.vertices.dbl.KeanuRandom;
+import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
+import io.improbable.keanu.vertices.intgr.probabilistic.UniformIntVertex;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class MappedSampleStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private GaussianVertex mu;
+    private UniformIntVertex count;
+    private BayesianNetwork network;
+
+    @Before
+    public void setup() {
+        mu = new GaussianVertex(new long[]{1, 2}, 0, 1);
+        GaussianVertex observed = new GaussianVertex(mu, 1);
+        observed.observe(DoubleTensor.create(new double[]{0.5, 1.5}, 1, 2));
+        count = new UniformIntVertex(new long[]{1, 2}, 0, 10);
+
+        network = new BayesianNetwork(Arrays.asList(mu, observed, count));
+    }
+
+    @Test
+    public void storesTheSameSamplesAsTheHeap() {
+        Path directory = folder.getRoot().toPath().resolve("samples");
+        List<Vertex> sampled = Arrays.asList(mu, count);
+
+        resetLatents();
+        NetworkSamples onHeap = MetropolisHastings.withDefaultConfig(new KeanuRandom(1))
+            .generatePosteriorSamples(network, sampled)
+            .dropCount(10)
+            .generate(200);
+
+        resetLatents();
+        NetworkSamples onDisk = MetropolisHastings.withDefaultConfig(new KeanuRandom(1))
+            .generatePosteriorSamples(network, sampled)
+            .dropCount(10)
+            .generate(200, MappedSampleStore.create(directory));
+
+        assertSameSamples(onHeap, onDisk);
+        assertSameSamples(onHeap, MappedSampleStore.open(directory));
+    }
+
+    @Test
+    public void reopenedSamplesCanBeDroppedAndDownSampled() {
+        Path directory = folder.getRoot().toPath();
+
+        MetropolisHastings.withDefaultConfig(new KeanuRandom(1))
+            .generatePosteriorSamples(network, Collections.singletonList(mu))
+            .generate(100, MappedSampleStore.create(directory));
+
+        NetworkSamples reopened = MappedSampleStore.open(directory);
+        NetworkSamples downSampled = reopened.drop(10).downSample(3);
+
+        assertEquals(30, downSampled.size());
+        assertEquals(reopened.getDoubleTensorSamples(mu).asList().get(13), downSampled.getDoubleTensorSamples(mu).asList().get(1));
+        assertEquals(reopened.getLogOfMasterP(13), downSampled.getLogOfMasterP(1), 0.0);
+    }
+
+    @Test
+    public void reopensVertexIdsWithTheirValues() {
+        Path directory = folder.getRoot().toPath();
+        VertexId id = new VertexId(new long[]{3, 7});
+
+        MappedSampleStore store = MappedSampleStore.create(directory);
+        SampleColumns.columnFor(store.getSamplesByVertex(), id, DoubleTensor.scalar(2.5)).add(DoubleTensor.scalar(2.5));
+        store.getLogOfMasterPForEachSample().add(-1.0);
+        store.finish(1);
+
+        NetworkSamples reopened = MappedSampleStore.open(directory);
+
+        assertEquals(DoubleTensor.scalar(2.5), reopened.getDoubleTensorSamples(id).asList().get(0));
+    }
+
+    @Test
+    public void reopensOnlyTheSamplesWrittenToEachFile() throws IOException {
+        Path directory = folder.getRoot().toPath();
+
+        MetropolisHastings.withDefaultConfig(new KeanuRandom(1))
+            .generatePosteriorSamples(network, Arrays.asList(mu, count))
+            .generate(100, MappedSampleStore.create(directory));
+
+        NetworkSamples reopened = MappedSampleStore.open(directory);
+
+        assertEquals(MappedSegments.SEGMENT_BYTES, Files.size(directory.resolve("log-prob.bin")));
+        assertEquals(100, reopened.size());
+        assertEquals(100, reopened.getDoubleTensorSamples(mu).asList().size());
+        assertEquals(100, reopened.getIntegerTensorSamples(count).asList().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsSamplesThatAreNotDoubleOrIntegerTensors() {
+        BernoulliVertex flip = new BernoulliVertex(0.5);
+
+        MetropolisHastings.withDefaultConfig()
+            .generatePosteriorSamples(new BayesianNetwork(flip.getConnectedGraph()), Collections.singletonList(flip))
+            .generate(10, MappedSampleStore.create(folder.getRoot().toPath()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void doesNotOverwriteStoredSamples() {
+        Path directory = folder.getRoot().toPath();
+
+        MappedSampleStore.create(directory).finish(0);
+        MappedSampleStore.create(directory);
+    }
+
+    private void resetLatents() {
+        mu.setValue(DoubleTensor.zeros(1, 2));
+        count.setValue(IntegerTensor.create(new int[]{5, 5}, 1, 2));
+    }
+
+    private static void assertSameSamples(NetworkSamples expected, NetworkSamples actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getLogOfMasterP(i), actual.getLogOfMasterP(i), 0.0);
+        }
+        for (VertexId id : expected.getNetworkState(0).getVertexIds()) {
+            assertEquals(expected.get(id).asList(), actual.get(id).asList());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package io.improbable.keanu.algorithms;
+
+import io.improbable.keanu.algorithms.mcmc.MetropolisHastings;
+import io.improbable.keanu.algorithms.mcmc.NUTS;
+import io.improbable.keanu.network.BayesianNetwork;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.util.ProgressBar;
+import io.improbable.keanu.vertices.dbl.DoubleVertex;
+import io.improbable.keanu.vertices.dbl.KeanuRandom;
+import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class MultiChainSamplerTest {
+
+    private KeanuRandom random;
+    private DoubleVertex A;
+    private DoubleVertex B;
+    private BayesianNetwork bayesNet;
+
+    @Before
+    public void setup() {
+        ProgressBar.disable();
+        random = new KeanuRandom(1);
+
+        A = new GaussianVertex(20.0, 1.0);
+        B = new GaussianVertex(20.0, 1.0);
+        A.setValue(20.0);
+        B.setValue(20.0);
+
+        DoubleVertex C = new GaussianVertex(A.plus(B), 1.0);
+        C.observe(46.0);
+
+        bayesNet = new BayesianNetwork(Arrays.asList(A, B, C));
+    }
+
+    @After
+    public void enableProgressBar() {
+        ProgressBar.enable();
+    }
+
+    @Test
+    public void samplesFromEachChain() {
+        MultiChainNetworkSamples samples = MultiChainSampler.builder()
+            .algorithm(MetropolisHastings::withDefaultConfig)
+            .chainCount(3)
+            .random(random)
+            .build()
+            .getPosteriorSamples(bayesNet, Arrays.asList(A, B), 1000);
+
+        assertEquals(3, samples.getChainCount());
+        assertEquals(3000, samples.size());
+        for (NetworkSamples chain : samples.getChains()) {
+            assertEquals(1000, chain.size());
+        }
+    }
+
+    @Test
+    public void doesNotChangeTheStateOfTheNetwork() {
+        MultiChainSampler.withDefaultConfig(NUTS::withDefaultConfig, random)
+            .getPosteriorSamples(bayesNet, Arrays.asList(A, B), 100);
+
+        assertEquals(20.0, A.getValue().scalar(), 0.0);
+        assertEquals(20.0, B.getValue().scalar(), 0.0);
+    }
+
+    @Test
+    public void mergedSamplesMatchPosterior() {
+        MultiChainNetworkSamples samples = MultiChainSampler.builder()
+            .algorithm(MetropolisHastings::withDefaultConfig)
+            .chainCount(4)
+            .random(random)
+            .build()
+            .getPosteriorSamples(bayesNet, Arrays.asList(A, B), 20000)
+            .drop(1000);
+
+        double averageA = samples.getDoubleTensorSamples(A).getAverages().scalar();
+        double averageB = samples.getDoubleTensorSamples(B).getAverages().scalar();
+
+        assertEquals(44.0, averageA + averageB, 0.1);
+    }
+
+    @Test
+    public void dropsFromEachChain() {
+        MultiChainNetworkSamples samples = MultiChainSampler.builder()
+            .algorithm(MetropolisHastings::withDefaultConfig)
+            .chainCount(2)
+            .random(random)
+            .build()
+            .getPosteriorSamples(bayesNet, Arrays.asList(A, B), 100);
+
+        MultiChainNetworkSamples dropped = samples.drop(10);
+        List<DoubleTensor> firstChain = samples.getChain(0).getDoubleTensorSamples(A).asList();
+
+        assertEquals(180, dropped.size());
+        assertEquals(firstChain.subList(10, 100), dropped.getChain(0).getDoubleTensorSamples(A).asList());
+    }
+}
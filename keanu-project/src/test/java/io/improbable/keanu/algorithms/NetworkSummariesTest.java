@@ -0,0 +1,107 @@
+package io.improbable.keanu.algorithms;
+
+import io.improbable.keanu.algorithms.mcmc.MetropolisHastings;
+import io.improbable.keanu.network.BayesianNetwork;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.vertices.VertexId;
+import io.improbable.keanu.vertices.dbl.KeanuRandom;
+import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class NetworkSummariesTest {
+
+    private KeanuRandom random;
+
+    @Before
+    public void setup() {
+        random = new KeanuRandom(1);
+    }
+
+    @Test
+    public void summarisesMomentsElementWise() {
+        NetworkSummaries summaries = new NetworkSummaries(true);
+        VertexId id = new VertexId();
+
+        List<DoubleTensor> samples = (List<DoubleTensor>) summaries.getSamplesByVertex().computeIfAbsent(id, v -> null);
+        samples.add(DoubleTensor.create(new double[]{1, 10}, 1, 2));
+        samples.add(DoubleTensor.create(new double[]{2, 30}, 1, 2));
+        samples.add(DoubleTensor.create(new double[]{3, 20}, 1, 2));
+
+        VertexSummary summary = summaries.get(id);
+
+        assertEquals(3, summary.getCount());
+        assertArrayEquals(new long[]{1, 2}, summary.getMean().getShape());
+        assertArrayEquals(new double[]{2, 20}, summary.getMean().asFlatDoubleArray(), 1e-10);
+        assertArrayEquals(new double[]{1, 100}, summary.getVariance().asFlatDoubleArray(), 1e-10);
+        assertArrayEquals(new double[]{1, 5, 5, 100}, summary.getCovariance().asFlatDoubleArray(), 1e-10);
+    }
+
+    @Test
+    public void estimatesQuantiles() {
+        NetworkSummaries summaries = new NetworkSummaries(0.05, 0.5, 0.95);
+
+        for (int i = 0; i < 20000; i++) {
+            summaries.getLogOfMasterPForEachSample().add(random.nextGaussian());
+        }
+
+        VertexSummary summary = summaries.getLogOfMasterP();
+        assertEquals(-1.645, summary.getQuantile(0.05).scalar(), 0.05);
+        assertEquals(0.0, summary.getQuantile(0.5).scalar(), 0.05);
+        assertEquals(1.645, summary.getQuantile(0.95).scalar(), 0.05);
+    }
+
+    @Test
+    public void interpolatesQuantilesOfFewSamples() {
+        NetworkSummaries summaries = new NetworkSummaries(0.5);
+        summaries.getLogOfMasterPForEachSample().add(1.0);
+        summaries.getLogOfMasterPForEachSample().add(4.0);
+
+        assertEquals(2.5, summaries.getLogOfMasterP().getQuantile(0.5).scalar(), 1e-10);
+    }
+
+    @Test
+    public void summarisesTheSamplesThatWouldHaveBeenKept() {
+        GaussianVertex mu = new GaussianVertex(0, 1);
+        GaussianVertex observed = new GaussianVertex(mu, 1);
+        observed.observe(1.0);
+        BayesianNetwork network = new BayesianNetwork(mu.getConnectedGraph());
+
+        mu.setValue(0.0);
+        NetworkSamples kept = MetropolisHastings.withDefaultConfig(new KeanuRandom(1))
+            .generatePosteriorSamples(network, Collections.singletonList(mu))
+            .dropCount(100)
+            .downSampleInterval(2)
+            .generate(2000);
+
+        mu.setValue(0.0);
+        NetworkSummaries summaries = MetropolisHastings.withDefaultConfig(new KeanuRandom(1))
+            .generatePosteriorSamples(network, Collections.singletonList(mu))
+            .dropCount(100)
+            .downSampleInterval(2)
+            .generate(2000, new NetworkSummaries(0.5));
+
+        assertEquals(kept.size(), summaries.get(mu).getCount());
+        assertEquals(kept.getDoubleTensorSamples(mu).getAverages().scalar(), summaries.get(mu).getMean().scalar(), 1e-10);
+        assertEquals(0.5, summaries.get(mu).getMean().scalar(), 0.1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsQuantilesThatWereNotSummarised() {
+        NetworkSummaries summaries = new NetworkSummaries(0.5);
+        summaries.getLogOfMasterPForEachSample().add(1.0);
+
+        summaries.getLogOfMasterP().getQuantile(0.25);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsVerticesThatWereNotSampled() {
+        new NetworkSummaries().get(new VertexId());
+    }
+}
@@ -0,0 +1,102 @@
+package io.improbable.keanu.algorithms;
+
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.tensor.intgr.IntegerTensor;
+import io.improbable.keanu.vertices.VertexId;
+import io.improbable.keanu.vertices.dbl.DoubleVertexSamples;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class SampleColumnTest {
+
+    @Test
+    public void holdsTensorsAndDoublesAsPrimitives() {
+        assertThat(SampleColumn.newColumnFor(DoubleTensor.scalar(1.0)), instanceOf(DoubleTensorColumn.class));
+        assertThat(SampleColumn.newColumnFor(IntegerTensor.scalar(1)), instanceOf(IntegerTensorColumn.class));
+        assertThat(SampleColumn.newColumnFor(1.0), instanceOf(DoubleColumn.class));
+        assertThat(SampleColumn.newColumnFor("other"), instanceOf(ArrayList.class));
+    }
+
+    @Test
+    public void returnsTheSamplesThatWereAdded() {
+        List<DoubleTensor> column = new DoubleTensorColumn(new long[]{2, 2});
+        for (int i = 0; i < 100; i++) {
+            column.add(DoubleTensor.create(new double[]{i, i + 1, i + 2, i + 3}, 2, 2));
+        }
+
+        assertEquals(100, column.size());
+        assertEquals(DoubleTensor.create(new double[]{42, 43, 44, 45}, 2, 2), column.get(42));
+    }
+
+    @Test
+    public void dropsAndDownSamplesAsViews() {
+        SampleColumn<IntegerTensor> column = new IntegerTensorColumn(new long[]{1, 1});
+        for (int i = 1; i <= 10; i++) {
+            column.add(IntegerTensor.scalar(i));
+        }
+
+        SampleColumn<IntegerTensor> view = column.subList(3, 10).downSample(3);
+
+        assertThat(view, instanceOf(IntegerTensorColumn.class));
+        assertEquals(Arrays.asList(IntegerTensor.scalar(4), IntegerTensor.scalar(7), IntegerTensor.scalar(10)), view);
+        assertEquals(Arrays.asList(IntegerTensor.scalar(7)), view.subList(1, 2));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void cannotAddToAView() {
+        DoubleColumn column = new DoubleColumn();
+        column.add(1.0);
+        column.add(2.0);
+
+        column.subList(1, 2).add(3.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsSamplesOfADifferentShape() {
+        DoubleTensorColumn column = new DoubleTensorColumn(new long[]{1, 2});
+        column.add(DoubleTensor.create(new double[]{1, 2, 3}, 1, 3));
+    }
+
+    @Test
+    public void averagesWithoutBoxing() {
+        DoubleTensorColumn column = new DoubleTensorColumn(new long[]{1, 2});
+        column.add(DoubleTensor.create(new double[]{1, 10}, 1, 2));
+        column.add(DoubleTensor.create(new double[]{2, 20}, 1, 2));
+        column.add(DoubleTensor.create(new double[]{3, 30}, 1, 2));
+
+        DoubleTensor averages = new DoubleVertexSamples(column.subList(1, 3)).getAverages();
+
+        assertArrayEquals(new long[]{1, 2}, averages.getShape());
+        assertArrayEquals(new double[]{2.5, 25}, averages.asFlatDoubleArray(), 1e-10);
+    }
+
+    @Test
+    public void networkSamplesKeepColumnsWhenDroppingAndDownSampling() {
+        VertexId id = new VertexId();
+        DoubleTensorColumn column = new DoubleTensorColumn(new long[]{1, 1});
+        DoubleColumn logProbs = new DoubleColumn();
+        for (int i = 0; i < 10; i++) {
+            column.add(DoubleTensor.scalar(i));
+            logProbs.add(-1.0 * i);
+        }
+
+        Map<VertexId, List<DoubleTensor>> samplesByVertex = new HashMap<>(Collections.singletonMap(id, column));
+        NetworkSamples samples = new NetworkSamples(samplesByVertex, logProbs, 10).drop(2).downSample(4);
+
+        assertEquals(2, samples.size());
+        assertEquals(Arrays.asList(DoubleTensor.scalar(2), DoubleTensor.scalar(6)), samples.get(id).asList());
+        assertEquals(-6.0, samples.getLogOfMasterP(1), 0.0);
+        assertThat(samples.getLogOfMasterPForEachSample(), instanceOf(DoubleColumn.class));
+    }
+}
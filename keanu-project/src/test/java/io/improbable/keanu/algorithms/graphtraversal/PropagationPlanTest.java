@@ -0,0 +1,65 @@
+package io.improbable.keanu.algorithms.graphtraversal;
+
+import io.improbable.keanu.vertices.dbl.DoubleVertex;
+import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class PropagationPlanTest {
+
+    @Test
+    public void cascadesThroughDiamondOfNonProbabilisticVertices() {
+        DoubleVertex A = new GaussianVertex(0, 1);
+        DoubleVertex B = A.times(2);
+        DoubleVertex C = A.plus(1);
+        DoubleVertex D = B.times(C);
+        A.setAndCascade(1.0);
+
+        PropagationPlan plan = PropagationPlan.compile(A);
+
+        A.setValue(2.0);
+        plan.cascade();
+
+        assertEquals(4.0, B.getValue().scalar(), 0.0);
+        assertEquals(3.0, C.getValue().scalar(), 0.0);
+        assertEquals(12.0, D.getValue().scalar(), 0.0);
+    }
+
+    @Test
+    public void stopsAtProbabilisticVertices() {
+        DoubleVertex A = new GaussianVertex(0, 1);
+        DoubleVertex B = new GaussianVertex(A.times(2), 1);
+        DoubleVertex C = B.times(3);
+        A.setValue(1.0);
+        B.setAndCascade(1.0);
+
+        PropagationPlan plan = PropagationPlan.compile(A);
+
+        A.setValue(5.0);
+        plan.cascade();
+
+        assertEquals(1.0, B.getValue().scalar(), 0.0);
+        assertEquals(3.0, C.getValue().scalar(), 0.0);
+    }
+
+    @Test
+    public void canBeReplayedFromMultipleVertices() {
+        DoubleVertex A = new GaussianVertex(0, 1);
+        DoubleVertex B = new GaussianVertex(0, 1);
+        DoubleVertex C = A.plus(B);
+        A.setValue(1.0);
+        B.setAndCascade(1.0);
+
+        PropagationPlan plan = PropagationPlan.compile(Arrays.asList(A, B));
+
+        for (int i = 0; i < 3; i++) {
+            A.setValue((double) i);
+            B.setValue((double) i);
+            plan.cascade();
+            assertEquals(2.0 * i, C.getValue().scalar(), 0.0);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package io.improbable.keanu.algorithms.mcmc;
+
+import io.improbable.keanu.algorithms.MultiChainNetworkSamples;
+import io.improbable.keanu.algorithms.NetworkSamples;
+import io.improbable.keanu.network.BayesianNetwork;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.vertices.dbl.KeanuRandom;
+import io.improbable.keanu.vertices.dbl.probabilistic.CauchyVertex;
+import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class BatchMetropolisHastingsTest {
+
+    @Test
+    public void eachChainSamplesThePosteriorOfAGaussianMean() {
+        GaussianVertex mu = new GaussianVertex(0, 10);
+        GaussianVertex observations = new GaussianVertex(new long[]{1, 4}, mu, 1);
+        observations.observe(DoubleTensor.create(new double[]{1.5, 2.5, 1.0, 3.0}, 1, 4));
+        BayesianNetwork network = new BayesianNetwork(mu.getConnectedGraph());
+        mu.setValue(0.0);
+
+        MultiChainNetworkSamples samples = BatchMetropolisHastings.builder()
+            .random(new KeanuRandom(1))
+            .batchSize(20)
+            .build()
+            .getPosteriorSamples(network, Collections.singletonList(mu), 2000)
+            .drop(200);
+
+        double posteriorPrecision = 4 + 1 / 100.0;
+        double posteriorMean = 8.0 / posteriorPrecision;
+
+        assertEquals(20, samples.getChainCount());
+        assertEquals(1800, samples.getChain(0).size());
+        assertEquals(posteriorMean, samples.getDoubleTensorSamples(mu).getAverages().scalar(), 0.05);
+        assertEquals(posteriorMean, samples.getChain(7).getDoubleTensorSamples(mu).getAverages().scalar(), 0.2);
+        assertArrayEquals(mu.getShape(), samples.getChain(0).getDoubleTensorSamples(mu).asList().get(0).getShape());
+    }
+
+    @Test
+    public void leavesTheNetworkInItsStateBeforeSampling() {
+        GaussianVertex a = new GaussianVertex(0, 1);
+        GaussianVertex b = new GaussianVertex(a, 1);
+        GaussianVertex observed = new GaussianVertex(a.plus(b), 1);
+        observed.observe(2.0);
+        BayesianNetwork network = new BayesianNetwork(a.getConnectedGraph());
+        a.setValue(0.25);
+        b.setValue(0.5);
+
+        BatchMetropolisHastings.builder()
+            .random(new KeanuRandom(1))
+            .batchSize(5)
+            .build()
+            .getPosteriorSamples(network, Arrays.asList(a, b), 10);
+
+        assertEquals(0.25, a.getValue().scalar(), 0.0);
+        assertEquals(0.5, b.getValue().scalar(), 0.0);
+    }
+
+    @Test
+    public void elementwiseLogProbSumsToTheLogProb() {
+        GaussianVertex x = new GaussianVertex(new long[]{1, 3}, 0, 2);
+        DoubleTensor value = DoubleTensor.create(new double[]{-1, 0.5, 3}, 1, 3);
+
+        DoubleTensor elementwise = x.elementwiseLogProb(value);
+
+        assertArrayEquals(new long[]{1, 3}, elementwise.getShape());
+        assertEquals(x.logProb(value), elementwise.sum(), 1e-10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonScalarLatentVertices() {
+        GaussianVertex x = new GaussianVertex(new long[]{1, 2}, 0, 1);
+        BayesianNetwork network = new BayesianNetwork(x.getConnectedGraph());
+
+        BatchMetropolisHastings.withDefaultConfig()
+            .getPosteriorSamples(network, Collections.singletonList(x), 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsVerticesWithoutElementwiseLogProbs() {
+        GaussianVertex mu = new GaussianVertex(0, 1);
+        CauchyVertex observed = new CauchyVertex(mu, 1);
+        observed.observe(0.5);
+        BayesianNetwork network = new BayesianNetwork(mu.getConnectedGraph());
+
+        BatchMetropolisHastings.withDefaultConfig()
+            .getPosteriorSamples(network, Collections.singletonList(mu), 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsObservationsWithALeadingDimensionThatIsNotOne() {
+        GaussianVertex mu = new GaussianVertex(0, 10);
+        GaussianVertex observations = new GaussianVertex(new long[]{3, 1}, mu, 1);
+        observations.observe(DoubleTensor.create(new double[]{1.5, 2.5, 1.0}, 3, 1));
+        BayesianNetwork network = new BayesianNetwork(mu.getConnectedGraph());
+        mu.setValue(0.0);
+
+        BatchMetropolisHastings.builder()
+            .batchSize(3)
+            .build()
+            .getPosteriorSamples(network, Collections.singletonList(mu), 10);
+    }
+
+    @Test
+    public void sharesTheLogProbOfVerticesThatNoLatentVertexAffects() {
+        GaussianVertex mu = new GaussianVertex(0, 1);
+        GaussianVertex unrelated = new GaussianVertex(new long[]{3, 1}, 0, 1);
+        DoubleTensor observation = DoubleTensor.create(new double[]{0, 5, 10}, 3, 1);
+        unrelated.observe(observation);
+        BayesianNetwork network = new BayesianNetwork(Arrays.asList(mu, unrelated));
+        mu.setValue(0.0);
+
+        MultiChainNetworkSamples samples = BatchMetropolisHastings.builder()
+            .random(new KeanuRandom(1))
+            .batchSize(3)
+            .build()
+            .getPosteriorSamples(network, Collections.singletonList(mu), 10);
+
+        GaussianVertex prior = new GaussianVertex(0, 1);
+        double sharedLogProb = unrelated.logProb(observation);
+        for (int chain = 0; chain < 3; chain++) {
+            NetworkSamples chainSamples = samples.getChain(chain);
+            for (int i = 0; i < chainSamples.size(); i++) {
+                DoubleTensor muSample = chainSamples.getDoubleTensorSamples(mu).asList().get(i);
+                assertEquals(prior.logProb(muSample) + sharedLogProb, chainSamples.getLogOfMasterP(i), 1e-6);
+            }
+        }
+    }
+}
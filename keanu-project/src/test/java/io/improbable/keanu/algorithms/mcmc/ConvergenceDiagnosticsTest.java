@@ -0,0 +1,129 @@
+package io.improbable.keanu.algorithms.mcmc;
+
+import io.improbable.keanu.algorithms.NetworkSamples;
+import io.improbable.keanu.network.BayesianNetwork;
+import io.improbable.keanu.vertices.dbl.KeanuRandom;
+import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConvergenceDiagnosticsTest {
+
+    private KeanuRandom random;
+
+    @Before
+    public void setup() {
+        random = new KeanuRandom(1);
+    }
+
+    @Test
+    public void independentSamplesHaveAnEffectiveSampleSizeCloseToTheirCount() {
+        double ess = ConvergenceDiagnostics.effectiveSampleSize(Arrays.asList(gaussian(4000, 0.0), gaussian(4000, 0.0)));
+
+        assertEquals(8000, ess, 800);
+    }
+
+    @Test
+    public void autocorrelatedSamplesHaveASmallerEffectiveSampleSize() {
+        double phi = 0.9;
+        double[] chain = new double[4000];
+        for (int i = 1; i < chain.length; i++) {
+            chain[i] = phi * chain[i - 1] + random.nextGaussian();
+        }
+
+        double ess = ConvergenceDiagnostics.effectiveSampleSize(Collections.singletonList(chain));
+
+        double expected = chain.length * (1 - phi) / (1 + phi);
+        assertEquals(expected, ess, expected * 0.5);
+    }
+
+    @Test
+    public void autocovarianceMatchesTheDirectSum() {
+        double[] chain = gaussian(37, 0.0);
+        double[] autocovariance = ConvergenceDiagnostics.autocovariance(chain);
+
+        double mean = Arrays.stream(chain).average().getAsDouble();
+        for (int lag = 0; lag < chain.length; lag++) {
+            double sum = 0.0;
+            for (int i = 0; i + lag < chain.length; i++) {
+                sum += (chain[i] - mean) * (chain[i + lag] - mean);
+            }
+            assertEquals(sum / chain.length, autocovariance[lag], 1e-10);
+        }
+    }
+
+    @Test
+    public void rHatIsCloseToOneForChainsFromTheSameDistribution() {
+        double rHat = ConvergenceDiagnostics.splitRHat(Arrays.asList(gaussian(1000, 0.0), gaussian(1000, 0.0)));
+
+        assertEquals(1.0, rHat, 0.01);
+    }
+
+    @Test
+    public void rHatIsLargeForChainsThatDisagree() {
+        double rHat = ConvergenceDiagnostics.splitRHat(Arrays.asList(gaussian(1000, 0.0), gaussian(1000, 2.0)));
+
+        assertTrue(rHat > 1.1);
+    }
+
+    @Test
+    public void rHatDetectsASingleChainThatHasNotMixed() {
+        double[] chain = gaussian(1000, 0.0);
+        for (int i = chain.length / 2; i < chain.length; i++) {
+            chain[i] += 2.0;
+        }
+
+        assertTrue(ConvergenceDiagnostics.splitRHat(Collections.singletonList(chain)) > 1.1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsChainsOfDifferentLengths() {
+        ConvergenceDiagnostics.splitRHat(Arrays.asList(gaussian(10, 0.0), gaussian(12, 0.0)));
+    }
+
+    @Test
+    public void generatesUntilTheCriterionIsMet() {
+        GaussianVertex mu = new GaussianVertex(0, 1);
+        GaussianVertex observed = new GaussianVertex(mu, 1);
+        observed.observe(1.0);
+        BayesianNetwork network = new BayesianNetwork(mu.getConnectedGraph());
+
+        ConvergenceCriterion criterion = ConvergenceCriterion.builder()
+            .vertex(mu.getId())
+            .minEffectiveSampleSize(200)
+            .maxRHat(1.05)
+            .build();
+
+        NetworkSamples samples = MetropolisHastings.withDefaultConfig(random)
+            .generatePosteriorSamples(network, Collections.singletonList(mu))
+            .dropCount(100)
+            .generateUntil(criterion, 100000);
+
+        assertTrue(samples.size() < 100000 - 100);
+        assertTrue(criterion.isMetBy(samples));
+        assertEquals(0.5, samples.getDoubleTensorSamples(mu).getAverages().scalar(), 0.15);
+    }
+
+    @Test
+    public void doublesTheSamplesBetweenChecks() {
+        ConvergenceCriterion criterion = ConvergenceCriterion.builder().checkInterval(100).build();
+
+        assertEquals(100, criterion.nextCheckAfter(0));
+        assertEquals(200, criterion.nextCheckAfter(100));
+        assertEquals(400, criterion.nextCheckAfter(200));
+    }
+
+    private double[] gaussian(int length, double mean) {
+        double[] samples = new double[length];
+        for (int i = 0; i < length; i++) {
+            samples[i] = mean + random.nextGaussian();
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,101 @@
+package io.improbable.keanu.algorithms.mcmc;
+
+import io.improbable.keanu.vertices.dbl.KeanuRandom;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class MassMatrixAdapterTest {
+
+    private KeanuRandom random;
+
+    @Before
+    public void setup() {
+        random = new KeanuRandom(1);
+    }
+
+    @Test
+    public void adaptsInWindowsThatDoubleInSize() {
+        MassMatrixAdapter adapter = new MassMatrixAdapter(MassMatrixAdaptation.DIAGONAL, 1, 1000);
+
+        int adaptations = 0;
+        int lastAdaptedAt = 0;
+        for (int sampleNum = 1; sampleNum <= 1000; sampleNum++) {
+            if (adapter.update(sampleNum, new double[]{random.nextGaussian()}) != null) {
+                adaptations++;
+                lastAdaptedAt = sampleNum;
+            }
+        }
+
+        assertEquals(5, adaptations);
+        assertEquals(950, lastAdaptedAt);
+    }
+
+    @Test
+    public void estimatesDiagonalFromSampleVariance() {
+        MassMatrixAdapter adapter = new MassMatrixAdapter(MassMatrixAdaptation.DIAGONAL, 2, 1000);
+
+        MassMatrix massMatrix = null;
+        for (int sampleNum = 1; sampleNum <= 1000; sampleNum++) {
+            double[] position = new double[]{10 * random.nextGaussian(), 0.1 * random.nextGaussian()};
+            MassMatrix adapted = adapter.update(sampleNum, position);
+            if (adapted != null) {
+                massMatrix = adapted;
+            }
+        }
+
+        double[] variance = massMatrix.velocity(new double[]{1.0, 1.0});
+        assertEquals(100.0, variance[0], 15.0);
+        assertEquals(0.01, variance[1], 0.0015);
+    }
+
+    @Test
+    public void estimatesDenseFromSampleCovariance() {
+        MassMatrixAdapter adapter = new MassMatrixAdapter(MassMatrixAdaptation.DENSE, 2, 1000);
+
+        MassMatrix massMatrix = null;
+        for (int sampleNum = 1; sampleNum <= 1000; sampleNum++) {
+            double shared = random.nextGaussian();
+            double[] position = new double[]{shared, shared + random.nextGaussian()};
+            MassMatrix adapted = adapter.update(sampleNum, position);
+            if (adapted != null) {
+                massMatrix = adapted;
+            }
+        }
+
+        assertArrayEquals(new double[]{1.0, 1.0}, massMatrix.velocity(new double[]{1.0, 0.0}), 0.2);
+        assertArrayEquals(new double[]{1.0, 2.0}, massMatrix.velocity(new double[]{0.0, 1.0}), 0.3);
+    }
+
+    @Test
+    public void doesNotAdaptWhenAdaptationIsOff() {
+        MassMatrixAdapter adapter = new MassMatrixAdapter(MassMatrixAdaptation.NONE, 1, 1000);
+
+        for (int sampleNum = 1; sampleNum <= 1000; sampleNum++) {
+            assertNull(adapter.update(sampleNum, new double[]{random.nextGaussian()}));
+        }
+    }
+
+    @Test
+    public void denseMomentumHasTheMassMatrixAsItsCovariance() {
+        MassMatrix massMatrix = MassMatrix.dense(new double[][]{{4.0, 1.0}, {1.0, 2.0}});
+        int sampleCount = 20000;
+
+        double[][] momentumCovariance = new double[2][2];
+        for (int i = 0; i < sampleCount; i++) {
+            double[] momentum = massMatrix.scaleMomentum(new double[]{random.nextGaussian(), random.nextGaussian()});
+            for (int row = 0; row < 2; row++) {
+                for (int column = 0; column < 2; column++) {
+                    momentumCovariance[row][column] += momentum[row] * momentum[column] / sampleCount;
+                }
+            }
+        }
+
+        //the inverse of {{4, 1}, {1, 2}}
+        assertArrayEquals(new double[]{2.0 / 7, -1.0 / 7}, momentumCovariance[0], 0.02);
+        assertArrayEquals(new double[]{-1.0 / 7, 4.0 / 7}, momentumCovariance[1], 0.02);
+    }
+}
@@ -1,6 +1,8 @@
 package io.improbable.keanu.algorithms.mcmc;
 
+import com.google.common.collect.ImmutableSet;
 import io.improbable.keanu.DeterministicRule;
+import io.improbable.keanu.algorithms.mcmc.proposal.GaussianProposalDistribution;
 import io.improbable.keanu.algorithms.mcmc.proposal.PriorProposalDistribution;
 import io.improbable.keanu.algorithms.mcmc.proposal.Proposal;
 import io.improbable.keanu.algorithms.mcmc.proposal.ProposalDistribution;
@@ -125,6 +127,55 @@ public class MetropolisHastingsStepTest {
         assertEquals(0.5, A.getValue(0), 1e-10);
     }
 
+    @Test
+    public void doesCountSharedChildrenOnceWhenSteppingABlock() {
+        DoubleVertex A = new GaussianVertex(0, 1);
+        A.setValue(0.5);
+        DoubleVertex B = new GaussianVertex(A, 1);
+        B.setValue(0.25);
+        DoubleVertex C = new GaussianVertex(B, 1);
+        C.observe(1.0);
+        BayesianNetwork network = new BayesianNetwork(A.getConnectedGraph());
+
+        MetropolisHastingsStep mhStep = stepFunctionWithConstantProposal(network, 2.0, alwaysAccept);
+
+        MetropolisHastingsStep.StepResult result = mhStep.step(
+            ImmutableSet.<Vertex>of(A, B),
+            network.getLogOfMasterP()
+        );
+
+        assertTrue(result.isAccepted());
+        assertEquals(network.getLogOfMasterP(), result.getLogProbabilityAfterStep(), 1e-10);
+    }
+
+    @Test
+    public void tempersOnlyTheLikelihoodWhenAsked() {
+        GaussianVertex mu = new GaussianVertex(0, 1);
+        GaussianVertex observed = new GaussianVertex(mu, 1);
+        observed.observe(4.0);
+        BayesianNetwork network = new BayesianNetwork(mu.getConnectedGraph());
+        mu.setValue(0.0);
+
+        MetropolisHastingsStep mhStep = new MetropolisHastingsStep(
+            network.getLatentVertices(),
+            new GaussianProposalDistribution(DoubleTensor.scalar(1.0)),
+            true,
+            true,
+            new KeanuRandom(1)
+        );
+
+        //with the likelihood switched off the chain should sample the prior
+        double sum = 0.0;
+        int sampleCount = 20000;
+        double logProb = network.getLogOfMasterP();
+        for (int i = 0; i < sampleCount; i++) {
+            logProb = mhStep.step(Collections.<Vertex>singleton(mu), logProb, Double.POSITIVE_INFINITY).getLogProbabilityAfterStep();
+            sum += mu.getValue().scalar();
+        }
+
+        assertEquals(0.0, sum / sampleCount, 0.1);
+    }
+
     private MetropolisHastingsStep stepFunctionWithConstantProposal(BayesianNetwork network, double constant, KeanuRandom random) {
         return new MetropolisHastingsStep(
             network.getLatentVertices(),
@@ -9,6 +9,9 @@ import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
 import static junit.framework.TestCase.assertTrue;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -45,6 +48,52 @@ public class NUTSTest {
         MCMCTestDistributions.samplesMatchSimpleGaussian(mu, sigma, posteriorSamples.get(vertex).asList());
     }
 
+    @Test
+    public void samplesBadlyScaledGaussianWithAdaptedDiagonalMassMatrix() {
+        double mu = 0.0;
+        double sigma = 50.0;
+        BayesianNetwork simpleGaussian = MCMCTestDistributions.createSimpleGaussian(mu, sigma, random);
+
+        NUTS nuts = NUTS.builder()
+            .adaptCount(500)
+            .massMatrixAdaptation(MassMatrixAdaptation.DIAGONAL)
+            .random(random)
+            .build();
+
+        NetworkSamples posteriorSamples = nuts.getPosteriorSamples(
+            simpleGaussian,
+            simpleGaussian.getLatentVertices(),
+            3000
+        ).drop(500);
+
+        Vertex<DoubleTensor> vertex = simpleGaussian.getContinuousLatentVertices().get(0);
+
+        MCMCTestDistributions.samplesMatchSimpleGaussian(mu / sigma, 1.0, scaled(posteriorSamples.get(vertex).asList(), 1.0 / sigma));
+    }
+
+    @Test
+    public void samplesContinuousPriorWithAdaptedDenseMassMatrix() {
+
+        BayesianNetwork bayesNet = MCMCTestDistributions.createSumOfGaussianDistribution(20.0, 1.0, 46.);
+
+        NUTS nuts = NUTS.builder()
+            .adaptCount(500)
+            .massMatrixAdaptation(MassMatrixAdaptation.DENSE)
+            .random(random)
+            .build();
+
+        NetworkSamples posteriorSamples = nuts.getPosteriorSamples(
+            bayesNet,
+            bayesNet.getLatentVertices(),
+            2000
+        ).drop(500);
+
+        Vertex<DoubleTensor> A = bayesNet.getContinuousLatentVertices().get(0);
+        Vertex<DoubleTensor> B = bayesNet.getContinuousLatentVertices().get(1);
+
+        MCMCTestDistributions.samplesMatchesSumOfGaussians(44.0, posteriorSamples.get(A).asList(), posteriorSamples.get(B).asList());
+    }
+
     @Test
     public void samplesContinuousPrior() {
 
@@ -113,4 +162,8 @@ public class NUTSTest {
 
         assertFalse(posteriorSamples.get(A).asList().isEmpty());
     }
+
+    private static List<DoubleTensor> scaled(List<DoubleTensor> samples, double factor) {
+        return samples.stream().map(sample -> sample.times(factor)).collect(Collectors.toList());
+    }
 }
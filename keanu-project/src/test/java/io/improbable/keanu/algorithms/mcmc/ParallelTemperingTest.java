@@ -0,0 +1,121 @@
+package io.improbable.keanu.algorithms.mcmc;
+
+import io.improbable.keanu.algorithms.NetworkSamples;
+import io.improbable.keanu.algorithms.mcmc.proposal.GaussianProposalDistribution;
+import io.improbable.keanu.network.BayesianNetwork;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.vertices.dbl.DoubleVertex;
+import io.improbable.keanu.vertices.dbl.KeanuRandom;
+import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ParallelTemperingTest {
+
+    @Test
+    public void samplesFromBothModesOfABimodalPosterior() {
+        GaussianVertex x = new GaussianVertex(0, 5);
+        DoubleVertex y = new GaussianVertex(x.multiply(x), 0.5);
+        y.observe(9.0);
+        BayesianNetwork network = new BayesianNetwork(x.getConnectedGraph());
+        x.setValue(3.0);
+
+        NetworkSamples samples = ParallelTempering.builder()
+            .random(new KeanuRandom(1))
+            .proposalDistributionSupplier(() -> new GaussianProposalDistribution(DoubleTensor.scalar(0.3)))
+            .replicaCount(8)
+            .maxTemperature(500)
+            .build()
+            .getPosteriorSamples(network, Collections.singletonList(x), 2000);
+
+        List<DoubleTensor> xSamples = samples.getDoubleTensorSamples(x).asList();
+        long positive = xSamples.stream().filter(sample -> sample.scalar() > 0).count();
+
+        assertEquals(0.5, positive / (double) xSamples.size(), 0.2);
+        assertEquals(3.0, xSamples.stream().mapToDouble(sample -> Math.abs(sample.scalar())).average().getAsDouble(), 0.2);
+    }
+
+    @Test
+    public void samplesThePosteriorWithASingleReplica() {
+        GaussianVertex mu = new GaussianVertex(0, 1);
+        GaussianVertex observed = new GaussianVertex(mu, 1);
+        observed.observe(1.0);
+        BayesianNetwork network = new BayesianNetwork(mu.getConnectedGraph());
+
+        NetworkSamples samples = ParallelTempering.builder()
+            .random(new KeanuRandom(1))
+            .temperatures(new double[]{1.0})
+            .build()
+            .getPosteriorSamples(network, Collections.singletonList(mu), 2000);
+
+        assertEquals(0.5, samples.getDoubleTensorSamples(mu).getAverages().scalar(), 0.1);
+    }
+
+    @Test
+    public void isDeterministicForASeedAndLeavesTheNetworkUnchanged() {
+        GaussianVertex mu = new GaussianVertex(0, 1);
+        GaussianVertex observed = new GaussianVertex(mu, 1);
+        observed.observe(1.0);
+        BayesianNetwork network = new BayesianNetwork(mu.getConnectedGraph());
+        mu.setValue(0.25);
+
+        double[] first = sampleMu(network, mu);
+        double[] second = sampleMu(network, mu);
+
+        assertArrayEquals(first, second, 0.0);
+        assertEquals(0.25, mu.getValue().scalar(), 0.0);
+    }
+
+    @Test
+    public void createsAProposalDistributionForEachReplica() {
+        GaussianVertex mu = new GaussianVertex(0, 1);
+        GaussianVertex observed = new GaussianVertex(mu, 1);
+        observed.observe(1.0);
+        BayesianNetwork network = new BayesianNetwork(mu.getConnectedGraph());
+
+        AtomicInteger created = new AtomicInteger();
+        ParallelTempering.builder()
+            .proposalDistributionSupplier(() -> {
+                created.incrementAndGet();
+                return new GaussianProposalDistribution(DoubleTensor.scalar(0.3));
+            })
+            .replicaCount(4)
+            .build()
+            .getPosteriorSamples(network, Collections.singletonList(mu), 10);
+
+        assertEquals(4, created.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsALadderThatDoesNotStartAtOne() {
+        GaussianVertex mu = new GaussianVertex(0, 1);
+        GaussianVertex observed = new GaussianVertex(mu, 1);
+        observed.observe(1.0);
+
+        ParallelTempering.builder()
+            .temperatures(new double[]{2.0, 4.0})
+            .build()
+            .getPosteriorSamples(new BayesianNetwork(mu.getConnectedGraph()), mu, 10);
+    }
+
+    @Test
+    public void geometricLadderSpansOneToTheMaxTemperature() {
+        assertArrayEquals(new double[]{1, 2, 4, 8}, ParallelTempering.geometricLadder(4, 8), 1e-10);
+    }
+
+    private double[] sampleMu(BayesianNetwork network, GaussianVertex mu) {
+        NetworkSamples samples = ParallelTempering.builder()
+            .random(new KeanuRandom(3))
+            .replicaCount(4)
+            .build()
+            .getPosteriorSamples(network, Collections.singletonList(mu), 100);
+
+        return samples.getDoubleTensorSamples(mu).asList().stream().mapToDouble(DoubleTensor::scalar).toArray();
+    }
+}
@@ -0,0 +1,65 @@
+package io.improbable.keanu.algorithms.mcmc;
+
+import io.improbable.keanu.algorithms.mcmc.proposal.GaussianProposalDistribution;
+import io.improbable.keanu.network.BayesianNetwork;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.vertices.dbl.KeanuRandom;
+import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SequentialMonteCarloTest {
+
+    @Test
+    public void estimatesThePosteriorAndMarginalLikelihoodOfAConjugateGaussian() {
+        GaussianVertex mu = new GaussianVertex(0, 1);
+        GaussianVertex observed = new GaussianVertex(mu, 1);
+        observed.observe(1.0);
+        BayesianNetwork network = new BayesianNetwork(mu.getConnectedGraph());
+
+        SequentialMonteCarlo.Result result = SequentialMonteCarlo.builder()
+            .random(new KeanuRandom(1))
+            .particleCount(2000)
+            .build()
+            .run(network, Collections.singletonList(mu));
+
+        //the observation is marginally N(0, 2)
+        double expectedLogMarginalLikelihood = -0.5 * Math.log(2 * Math.PI * 2) - 1.0 / 4;
+
+        assertEquals(expectedLogMarginalLikelihood, result.getLogMarginalLikelihood(), 0.05);
+        assertEquals(2000, result.getSamples().size());
+        assertEquals(0.5, result.getSamples().getDoubleTensorSamples(mu).getAverages().scalar(), 0.05);
+    }
+
+    @Test
+    public void tempersThroughSeveralStagesForAnInformativeLikelihood() {
+        GaussianVertex mu = new GaussianVertex(0, 10);
+        GaussianVertex observed = new GaussianVertex(new long[]{1, 20}, mu, 0.5);
+        observed.observe(DoubleTensor.create(3.0, new long[]{1, 20}));
+        BayesianNetwork network = new BayesianNetwork(mu.getConnectedGraph());
+        mu.setValue(0.0);
+
+        SequentialMonteCarlo.Result result = SequentialMonteCarlo.builder()
+            .random(new KeanuRandom(1))
+            .particleCount(500)
+            .proposalDistributionSupplier(() -> new GaussianProposalDistribution(DoubleTensor.scalar(0.2)))
+            .build()
+            .run(network, Collections.singletonList(mu));
+
+        List<Double> betas = result.getBetas();
+        assertTrue(betas.size() > 2);
+        assertEquals(0.0, betas.get(0), 0.0);
+        assertEquals(1.0, betas.get(betas.size() - 1), 0.0);
+        for (int i = 1; i < betas.size(); i++) {
+            assertTrue(betas.get(i) > betas.get(i - 1));
+        }
+
+        assertEquals(3.0, result.getSamples().getDoubleTensorSamples(mu).getAverages().scalar(), 0.1);
+        assertEquals(0.0, mu.getValue().scalar(), 0.0);
+    }
+}
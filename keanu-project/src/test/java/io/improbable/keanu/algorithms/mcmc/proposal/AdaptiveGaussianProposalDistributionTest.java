@@ -0,0 +1,140 @@
+package io.improbable.keanu.algorithms.mcmc.proposal;
+
+import com.google.common.collect.ImmutableSet;
+import io.improbable.keanu.algorithms.NetworkSamples;
+import io.improbable.keanu.algorithms.mcmc.MetropolisHastings;
+import io.improbable.keanu.network.BayesianNetwork;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.vertices.Vertex;
+import io.improbable.keanu.vertices.dbl.KeanuRandom;
+import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AdaptiveGaussianProposalDistributionTest {
+
+    @Test
+    public void learnsTheScaleOfAWidePosterior() {
+        GaussianVertex x = new GaussianVertex(0, 100);
+        BayesianNetwork network = new BayesianNetwork(x.getConnectedGraph());
+
+        AdaptiveGaussianProposalDistribution proposal = AdaptiveGaussianProposalDistribution.builder()
+            .adaptCount(2000)
+            .build();
+
+        NetworkSamples samples = MetropolisHastings.builder()
+            .random(new KeanuRandom(1))
+            .proposalDistribution(proposal)
+            .build()
+            .generatePosteriorSamples(network, Collections.singletonList(x))
+            .dropCount(2000)
+            .generate(22000);
+
+        double acceptance = acceptanceRate(samples.get(x).asList());
+        assertEquals(0.44, acceptance, 0.12);
+
+        double proposalSigma = Math.sqrt(proposal.getProposalCovariance(Collections.singleton(x)).scalar());
+        assertTrue(proposalSigma > 50 && proposalSigma < 500);
+        assertEquals(100.0, standardDeviation(samples.get(x).asList()), 20.0);
+    }
+
+    @Test
+    public void learnsTheCorrelationOfABlock() {
+        GaussianVertex a = new GaussianVertex(0, 1);
+        GaussianVertex b = new GaussianVertex(a, 0.1);
+        BayesianNetwork network = new BayesianNetwork(a.getConnectedGraph());
+        Set<Vertex> block = ImmutableSet.of(a, b);
+
+        AdaptiveGaussianProposalDistribution proposal = AdaptiveGaussianProposalDistribution.builder()
+            .adaptCount(5000)
+            .build();
+
+        NetworkSamples samples = MetropolisHastings.builder()
+            .random(new KeanuRandom(1))
+            .proposalDistribution(proposal)
+            .variableSelector(new BlockVariableSelector(Collections.singletonList(block)))
+            .build()
+            .generatePosteriorSamples(network, Arrays.asList(a, b))
+            .dropCount(5000)
+            .generate(25000);
+
+        double[] covariance = proposal.getProposalCovariance(block).asFlatDoubleArray();
+        double correlation = covariance[1] / Math.sqrt(covariance[0] * covariance[3]);
+        assertTrue(correlation > 0.9);
+
+        double acceptance = acceptanceRate(samples.get(a).asList());
+        assertTrue(acceptance > 0.1 && acceptance < 0.4);
+        assertEquals(1.0, standardDeviation(samples.get(b).asList()), 0.25);
+    }
+
+    @Test
+    public void hasNoCovarianceForABlockThatWasNeverProposed() {
+        GaussianVertex x = new GaussianVertex(0, 1);
+
+        assertNull(AdaptiveGaussianProposalDistribution.withDefaultConfig().getProposalCovariance(Collections.singleton(x)));
+    }
+
+    @Test
+    public void rejectsAProposalOnAnotherThreadWhileOneIsWaitingForItsOutcome() throws InterruptedException {
+        GaussianVertex x = new GaussianVertex(0, 1);
+        x.setValue(DoubleTensor.scalar(0.0));
+        Set<Vertex> vertices = Collections.singleton(x);
+        AdaptiveGaussianProposalDistribution proposalDistribution = AdaptiveGaussianProposalDistribution.withDefaultConfig();
+
+        Proposal proposal = proposalDistribution.getProposal(vertices, new KeanuRandom(1));
+
+        try {
+            CompletableFuture.runAsync(() -> proposalDistribution.getProposal(vertices, new KeanuRandom(2))).get();
+            fail("A proposal distribution that is shared between threads should be rejected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+        proposalDistribution.onProposalRejected(proposal);
+        CompletableFuture.runAsync(() -> proposalDistribution.getProposal(vertices, new KeanuRandom(2))).join();
+    }
+
+    @Test
+    public void blockSelectorCyclesThroughItsBlocks() {
+        GaussianVertex a = new GaussianVertex(0, 1);
+        GaussianVertex b = new GaussianVertex(0, 1);
+        GaussianVertex c = new GaussianVertex(0, 1);
+        List<GaussianVertex> latents = Arrays.asList(a, b, c);
+
+        BlockVariableSelector selector = new BlockVariableSelector(Arrays.asList(
+            Arrays.asList(a, b),
+            Collections.singletonList(c)
+        ));
+
+        assertEquals(ImmutableSet.of(a, b), selector.select(latents, 0));
+        assertEquals(ImmutableSet.of(c), selector.select(latents, 1));
+        assertEquals(ImmutableSet.of(a, b), selector.select(latents, 2));
+    }
+
+    private static double acceptanceRate(List<DoubleTensor> samples) {
+        int moves = 0;
+        for (int i = 1; i < samples.size(); i++) {
+            if (!samples.get(i).equals(samples.get(i - 1))) {
+                moves++;
+            }
+        }
+        return moves / (double) (samples.size() - 1);
+    }
+
+    private static double standardDeviation(List<DoubleTensor> samples) {
+        double mean = samples.stream().mapToDouble(DoubleTensor::scalar).average().getAsDouble();
+        double sumOfSquares = samples.stream().mapToDouble(sample -> Math.pow(sample.scalar() - mean, 2)).sum();
+        return Math.sqrt(sumOfSquares / (samples.size() - 1));
+    }
+}
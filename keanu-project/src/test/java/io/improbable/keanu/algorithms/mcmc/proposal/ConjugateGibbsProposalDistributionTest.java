@@ -0,0 +1,110 @@
+package io.improbable.keanu.algorithms.mcmc.proposal;
+
+import io.improbable.keanu.algorithms.NetworkSamples;
+import io.improbable.keanu.algorithms.mcmc.MetropolisHastings;
+import io.improbable.keanu.network.BayesianNetwork;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.vertices.Vertex;
+import io.improbable.keanu.vertices.bool.probabilistic.BernoulliVertex;
+import io.improbable.keanu.vertices.dbl.KeanuRandom;
+import io.improbable.keanu.vertices.dbl.probabilistic.BetaVertex;
+import io.improbable.keanu.vertices.dbl.probabilistic.GammaVertex;
+import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
+import io.improbable.keanu.vertices.intgr.probabilistic.BinomialVertex;
+import io.improbable.keanu.vertices.intgr.probabilistic.PoissonVertex;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConjugateGibbsProposalDistributionTest {
+
+    @Test
+    public void samplesTheMuOfGaussianChildrenExactly() {
+        GaussianVertex mu = new GaussianVertex(0, 1);
+        GaussianVertex observed = new GaussianVertex(new long[]{1, 3}, mu, 1);
+        observed.observe(new double[]{1, 2, 3});
+
+        List<DoubleTensor> samples = sample(mu, 5000);
+
+        assertTrue(ConjugateGibbsProposalDistribution.isConjugate(mu));
+        assertEquals(1.5, mean(samples), 0.03);
+        assertEquals(0.25, variance(samples), 0.02);
+        assertAlwaysAccepted(samples);
+    }
+
+    @Test
+    public void samplesTheMuOfPoissonChildrenExactly() {
+        GammaVertex rate = new GammaVertex(1, 2);
+        PoissonVertex counts = new PoissonVertex(new long[]{1, 4}, rate);
+        counts.observe(new int[]{3, 4, 5, 4});
+
+        List<DoubleTensor> samples = sample(rate, 5000);
+
+        assertTrue(ConjugateGibbsProposalDistribution.isConjugate(rate));
+        assertEquals(18.0 / 5.0, mean(samples), 0.05);
+        assertEquals(18.0 / 25.0, variance(samples), 0.05);
+    }
+
+    @Test
+    public void samplesTheProbabilityOfBernoulliAndBinomialChildrenExactly() {
+        BetaVertex p = new BetaVertex(1, 1);
+        BernoulliVertex flips = new BernoulliVertex(new long[]{1, 4}, p);
+        flips.observe(new boolean[]{true, true, false, true});
+        BinomialVertex successes = new BinomialVertex(p, 10);
+        successes.observe(7);
+
+        List<DoubleTensor> samples = sample(p, 5000);
+
+        assertTrue(ConjugateGibbsProposalDistribution.isConjugate(p));
+        assertEquals(11.0 / 16.0, mean(samples), 0.01);
+    }
+
+    @Test
+    public void fallsBackWhenAChildIsNotConjugate() {
+        GaussianVertex mu = new GaussianVertex(0, 1);
+        GaussianVertex observed = new GaussianVertex(mu.times(2), 1);
+        observed.observe(1.0);
+
+        assertFalse(ConjugateGibbsProposalDistribution.isConjugate(mu));
+    }
+
+    @Test
+    public void fallsBackWhenTheLatentIsTheChildsSigma() {
+        GaussianVertex sigma = new GaussianVertex(5, 1);
+        GaussianVertex observed = new GaussianVertex(0, sigma);
+        observed.observe(1.0);
+
+        assertFalse(ConjugateGibbsProposalDistribution.isConjugate(sigma));
+    }
+
+    private static List<DoubleTensor> sample(Vertex<DoubleTensor> latent, int sampleCount) {
+        BayesianNetwork network = new BayesianNetwork(latent.getConnectedGraph());
+
+        NetworkSamples samples = MetropolisHastings.builder()
+            .random(new KeanuRandom(1))
+            .proposalDistribution(new ConjugateGibbsProposalDistribution())
+            .build()
+            .getPosteriorSamples(network, latent, sampleCount);
+
+        return samples.get(latent).asList();
+    }
+
+    private static void assertAlwaysAccepted(List<DoubleTensor> samples) {
+        for (int i = 1; i < samples.size(); i++) {
+            assertTrue(samples.get(i).scalar() != samples.get(i - 1).scalar());
+        }
+    }
+
+    private static double mean(List<DoubleTensor> samples) {
+        return samples.stream().mapToDouble(DoubleTensor::scalar).average().getAsDouble();
+    }
+
+    private static double variance(List<DoubleTensor> samples) {
+        double mean = mean(samples);
+        return samples.stream().mapToDouble(sample -> Math.pow(sample.scalar() - mean, 2)).sum() / (samples.size() - 1);
+    }
+}
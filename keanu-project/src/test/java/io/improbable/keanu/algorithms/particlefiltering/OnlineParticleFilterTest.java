@@ -0,0 +1,136 @@
+package io.improbable.keanu.algorithms.particlefiltering;
+
+import io.improbable.keanu.DeterministicRule;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.vertices.dbl.DoubleVertex;
+import io.improbable.keanu.vertices.dbl.KeanuRandom;
+import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class OnlineParticleFilterTest {
+
+    @Rule
+    public DeterministicRule deterministicRule = new DeterministicRule();
+
+    @Test
+    public void estimatesTheMarginalLikelihoodOfAConjugateGaussian() {
+        DoubleVertex mu = new GaussianVertex(0.0, 1.0);
+        DoubleVertex observation = new GaussianVertex(mu, 1.0);
+        observation.observe(1.0);
+
+        try (OnlineParticleFilter filter = ParticleFilter.online()
+            .withNumParticles(5000)
+            .withRandom(new KeanuRandom(1))
+            .build()) {
+
+            filter.observe(observation);
+
+            //the observation is marginally N(0, 2)
+            double expectedLogMarginalLikelihood = -0.5 * Math.log(2 * Math.PI * 2) - 1.0 / 4;
+            assertEquals(expectedLogMarginalLikelihood, filter.getLogMarginalLikelihood(), 0.05);
+            assertEquals(0.5, weightedMean(filter.getValuesOfVertex(mu), filter.getLogWeights()), 0.05);
+        }
+    }
+
+    @Test
+    public void tracksARandomWalkOneObservationAtATime() {
+        KeanuRandom random = new KeanuRandom(1);
+        try (OnlineParticleFilter filter = ParticleFilter.online()
+            .withNumParticles(500)
+            .withThreadCount(4)
+            .withRandom(random)
+            .build()) {
+
+            double trueState = 0.0;
+            DoubleVertex state = new GaussianVertex(0.0, 1.0);
+            for (int t = 0; t < 50; t++) {
+                if (t > 0) {
+                    state = new GaussianVertex(state, 1.0);
+                    trueState += random.nextGaussian();
+                }
+
+                DoubleVertex observation = new GaussianVertex(state, 0.1);
+                observation.observe(trueState + 0.1 * random.nextGaussian());
+                filter.observe(observation);
+
+                assertEquals(trueState, weightedMean(filter.getValuesOfVertex(state), filter.getLogWeights()), 0.5);
+            }
+
+            assertEquals(50, filter.getMostProbableParticle().getLatentVertices().size());
+        }
+    }
+
+    @Test
+    public void filtersAPrebuiltRandomWalkInOneBatch() {
+        KeanuRandom random = new KeanuRandom(1);
+
+        double trueState = 0.0;
+        DoubleVertex state = new GaussianVertex(0.0, 1.0);
+        List<DoubleVertex> observations = new ArrayList<>();
+        for (int t = 0; t < 20; t++) {
+            if (t > 0) {
+                state = new GaussianVertex(state, 1.0);
+                trueState += random.nextGaussian();
+            }
+
+            DoubleVertex observation = new GaussianVertex(state, 0.1);
+            observation.observe(trueState + 0.1 * random.nextGaussian());
+            observations.add(observation);
+        }
+
+        try (OnlineParticleFilter filter = ParticleFilter.online()
+            .withNumParticles(500)
+            .withThreadCount(2)
+            .withRandom(new KeanuRandom(1))
+            .build()) {
+
+            filter.observeAll(observations);
+
+            assertEquals(trueState, weightedMean(filter.getValuesOfVertex(state), filter.getLogWeights()), 0.5);
+            assertEquals(20, filter.getMostProbableParticle().getLatentVertices().size());
+        }
+    }
+
+    @Test
+    public void doesNotChangeTheValuesOfTheNetwork() {
+        DoubleVertex mu = new GaussianVertex(0.0, 1.0);
+        mu.setValue(42.0);
+        DoubleVertex observation = new GaussianVertex(mu.times(2.0), 1.0);
+        observation.observe(1.0);
+
+        try (OnlineParticleFilter filter = ParticleFilter.online()
+            .withNumParticles(100)
+            .withThreadCount(2)
+            .withRandom(new KeanuRandom(1))
+            .build()) {
+
+            filter.observe(observation);
+        }
+
+        assertEquals(42.0, mu.getValue().scalar(), 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cannotObserveAVertexWithoutAnObservation() {
+        DoubleVertex mu = new GaussianVertex(0.0, 1.0);
+
+        try (OnlineParticleFilter filter = ParticleFilter.online().withThreadCount(1).build()) {
+            filter.observe(mu);
+        }
+    }
+
+    private static double weightedMean(List<DoubleTensor> values, double[] logWeights) {
+        double logSumOfWeights = Resampling.logSumExp(logWeights);
+        double mean = 0.0;
+        for (int i = 0; i < logWeights.length; i++) {
+            mean += Math.exp(logWeights[i] - logSumOfWeights) * values.get(i).scalar();
+        }
+        return mean;
+    }
+}
@@ -2,6 +2,7 @@ package io.improbable.keanu.algorithms.particlefiltering;
 
 import io.improbable.keanu.DeterministicRule;
 import io.improbable.keanu.vertices.dbl.DoubleVertex;
+import io.improbable.keanu.vertices.dbl.KeanuRandom;
 import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
 import io.improbable.keanu.vertices.dbl.probabilistic.UniformVertex;
 import org.junit.Rule;
@@ -9,6 +10,7 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 public class ParticleFilteringTest {
@@ -58,4 +60,57 @@ public class ParticleFilteringTest {
         assertTrue(estimatedTemp > 18.0);
         assertTrue(estimatedTemp < 22.0);
     }
+
+    @Test
+    public void findsCorrectTempWithStratifiedResamplingTriggeredByEffectiveSampleSize() {
+
+        DoubleVertex temperature = new UniformVertex(0.0, 100.0);
+        DoubleVertex thermometerA = new GaussianVertex(temperature, 1.0);
+        DoubleVertex thermometerB = new GaussianVertex(temperature, 1.0);
+        thermometerA.observe(21.0);
+        thermometerB.observe(19.5);
+
+        ParticleFilter particleFilter = ParticleFilter.ofVertexInGraph(temperature)
+                .withNumParticles(5000)
+                .withResampling(Resampling.STRATIFIED)
+                .withResamplingEssThreshold(0.5)
+                .build();
+
+        double estimatedTemp = particleFilter.getMostProbableParticle().getScalarValueOfVertex(temperature);
+
+        assertTrue(estimatedTemp > 18.0);
+        assertTrue(estimatedTemp < 22.0);
+    }
+
+    @Test
+    public void updatesParticlesInParallelReproduciblyWithoutChangingTheNetwork() {
+
+        DoubleVertex temperature = new UniformVertex(0.0, 100.0);
+        DoubleVertex noiseA = new GaussianVertex(0.0, 2.0);
+        DoubleVertex thermometerA = new GaussianVertex(temperature.plus(noiseA), 1.0);
+        DoubleVertex thermometerB = new GaussianVertex(temperature, 1.0);
+        thermometerA.observe(21.0);
+        thermometerB.observe(19.5);
+        temperature.setValue(50.0);
+        noiseA.setValue(0.0);
+
+        ParticleFilter parallel = ParticleFilter.ofVertexInGraph(temperature)
+                .withNumParticles(2000)
+                .withThreadCount(4)
+                .withRandom(new KeanuRandom(1))
+                .build();
+        ParticleFilter singleThreaded = ParticleFilter.ofVertexInGraph(temperature)
+                .withNumParticles(2000)
+                .withThreadCount(1)
+                .withRandom(new KeanuRandom(1))
+                .build();
+
+        double estimatedTemp = parallel.getMostProbableParticle().getScalarValueOfVertex(temperature);
+        assertTrue(estimatedTemp > 18.0);
+        assertTrue(estimatedTemp < 22.0);
+        assertEquals(estimatedTemp, singleThreaded.getMostProbableParticle().getScalarValueOfVertex(temperature), 0.0);
+
+        assertEquals(50.0, temperature.getValue().scalar(), 0.0);
+        assertEquals(0.0, noiseA.getValue().scalar(), 0.0);
+    }
 }
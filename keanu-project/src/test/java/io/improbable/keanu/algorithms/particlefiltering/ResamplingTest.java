@@ -0,0 +1,78 @@
+package io.improbable.keanu.algorithms.particlefiltering;
+
+import io.improbable.keanu.vertices.dbl.KeanuRandom;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ResamplingTest {
+
+    @Test
+    public void systematicResamplingGivesEachParticleWithinOneOfItsExpectedCount() {
+        double[] weights = new double[]{0.1, 0.25, 0.05, 0.6};
+        double[] logWeights = new double[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            logWeights[i] = Math.log(weights[i]);
+        }
+
+        KeanuRandom random = new KeanuRandom(1);
+        for (int trial = 0; trial < 100; trial++) {
+            int[] counts = countAncestors(Resampling.SYSTEMATIC.sampleAncestors(logWeights, 100, random), weights.length);
+            for (int i = 0; i < weights.length; i++) {
+                assertEquals(100 * weights[i], counts[i], 1.0);
+            }
+        }
+    }
+
+    @Test
+    public void stratifiedResamplingIsUnbiased() {
+        double[] logWeights = new double[]{Math.log(0.2), Math.log(0.8)};
+
+        int[] counts = countAncestors(Resampling.STRATIFIED.sampleAncestors(logWeights, 100000, new KeanuRandom(1)), 2);
+
+        assertEquals(0.2, counts[0] / 100000.0, 0.01);
+    }
+
+    @Test
+    public void ancestorsAreInAscendingOrder() {
+        double[] logWeights = new double[]{-1, -2, -0.5, -3, -1};
+
+        int[] ancestors = Resampling.STRATIFIED.sampleAncestors(logWeights, 50, new KeanuRandom(1));
+
+        for (int i = 1; i < ancestors.length; i++) {
+            assertTrue(ancestors[i] >= ancestors[i - 1]);
+        }
+    }
+
+    @Test
+    public void doesNotUnderflowForVeryLowLogWeights() {
+        double[] logWeights = new double[]{-10000, -10000 + Math.log(3), Double.NEGATIVE_INFINITY};
+
+        int[] counts = countAncestors(Resampling.SYSTEMATIC.sampleAncestors(logWeights, 4, new KeanuRandom(1)), 3);
+
+        assertArrayEquals(new int[]{1, 3, 0}, counts);
+        assertEquals(Math.log(4) - 10000, Resampling.logSumExp(logWeights), 1e-9);
+    }
+
+    @Test
+    public void effectiveSampleSizeIsTheParticleCountForEqualWeightsAndOneForACollapse() {
+        assertEquals(5.0, Resampling.effectiveSampleSize(new double[]{-700, -700, -700, -700, -700}), 1e-9);
+        assertEquals(1.0, Resampling.effectiveSampleSize(new double[]{0, -1000, -1000}), 1e-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cannotResampleParticlesWithZeroWeight() {
+        double[] logWeights = new double[]{Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        Resampling.SYSTEMATIC.sampleAncestors(logWeights, 2, new KeanuRandom(1));
+    }
+
+    private static int[] countAncestors(int[] ancestors, int particleCount) {
+        int[] counts = new int[particleCount];
+        for (int ancestor : ancestors) {
+            counts[ancestor]++;
+        }
+        return counts;
+    }
+}
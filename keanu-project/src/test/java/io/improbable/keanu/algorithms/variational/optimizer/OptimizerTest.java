@@ -1,6 +1,7 @@
 package io.improbable.keanu.algorithms.variational.optimizer;
 
 import io.improbable.keanu.algorithms.variational.optimizer.gradient.GradientOptimizer;
+import io.improbable.keanu.algorithms.variational.optimizer.gradient.LBFGSOptimizer;
 import io.improbable.keanu.algorithms.variational.optimizer.nongradient.NonGradientOptimizer;
 import io.improbable.keanu.network.BayesianNetwork;
 import io.improbable.keanu.vertices.dbl.DoubleVertex;
@@ -39,12 +40,28 @@ public class OptimizerTest {
         assertCanCalculateMaxAPosteriori(getNonGradientOptimizer());
     }
 
+    @Test
+    public void lbfgsOptimizerCanMLE() {
+        assertCanCalculateMaxLikelihood(getLBFGSOptimizer());
+    }
+
+    @Test
+    public void lbfgsOptimizerCanMAP() {
+        assertCanCalculateMaxAPosteriori(getLBFGSOptimizer());
+    }
+
     private Function<BayesianNetwork, Optimizer> getGradientOptimizer() {
         return (bayesNet) -> GradientOptimizer.builder()
             .bayesianNetwork(bayesNet)
             .build();
     }
 
+    private Function<BayesianNetwork, Optimizer> getLBFGSOptimizer() {
+        return (bayesNet) -> LBFGSOptimizer.builder()
+            .bayesianNetwork(bayesNet)
+            .build();
+    }
+
     private Function<BayesianNetwork, Optimizer> getNonGradientOptimizer() {
         return (bayesNet) -> NonGradientOptimizer.builder()
             .bayesianNetwork(bayesNet)
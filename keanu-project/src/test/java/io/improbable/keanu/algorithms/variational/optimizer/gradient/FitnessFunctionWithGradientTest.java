@@ -8,9 +8,13 @@ import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
 import org.junit.Test;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 public class FitnessFunctionWithGradientTest {
 
@@ -100,6 +104,84 @@ public class FitnessFunctionWithGradientTest {
         );
     }
 
+    @Test
+    public void evaluatesEachPointOnlyOnce() {
+        GaussianVertex A = new GaussianVertex(1.0, 1.0);
+        GaussianVertex observation = new GaussianVertex(A.times(2.0), 1.0);
+        observation.observe(3.0);
+
+        AtomicInteger fitnessCalculations = new AtomicInteger();
+        AtomicInteger gradientCalculations = new AtomicInteger();
+        FitnessFunctionWithGradient fitness = new FitnessFunctionWithGradient(
+            Arrays.asList(A, observation),
+            Collections.singletonList(A),
+            (point, gradient) -> gradientCalculations.incrementAndGet(),
+            (point, logProb) -> fitnessCalculations.incrementAndGet()
+        );
+
+        double[] point = new double[]{0.5};
+        double fitnessAtPoint = fitness.fitness().value(point);
+        double[] gradientAtPoint = fitness.gradient().value(point);
+        FitnessFunctionWithGradient.FitnessAndGradient both = fitness.fitnessAndGradient(new double[]{0.5});
+
+        assertEquals(1, fitnessCalculations.get());
+        assertEquals(1, gradientCalculations.get());
+        assertEquals(fitnessAtPoint, both.getFitness(), 0.0);
+        assertArrayEquals(gradientAtPoint, both.getGradient(), 0.0);
+
+        fitness.fitnessAndGradient(new double[]{1.5});
+        point[0] = 1.5;
+        fitness.fitness().value(point);
+
+        assertEquals(2, fitnessCalculations.get());
+        assertEquals(2, gradientCalculations.get());
+        assertEquals(fitnessAtPoint, fitness.fitness().value(new double[]{0.5}), 1e-12);
+        assertEquals(3, fitnessCalculations.get());
+    }
+
+    @Test
+    public void gradientCallbacksCannotChangeTheCachedGradient() {
+        GaussianVertex A = new GaussianVertex(1.0, 1.0);
+        GaussianVertex observation = new GaussianVertex(A.times(2.0), 1.0);
+        observation.observe(3.0);
+
+        FitnessFunctionWithGradient fitness = new FitnessFunctionWithGradient(
+            Arrays.asList(A, observation),
+            Collections.singletonList(A),
+            (point, gradient) -> Arrays.fill(gradient, Double.NaN),
+            null
+        );
+
+        double[] point = new double[]{0.5};
+        double[] gradient = fitness.gradient().value(point);
+
+        assertArrayEquals(gradient, fitness.fitnessAndGradient(point).getGradient(), 0.0);
+        assertFalse(Double.isNaN(gradient[0]));
+    }
+
+    @Test
+    public void reevaluatesTheLastPointAfterTheCacheIsInvalidated() {
+        GaussianVertex A = new GaussianVertex(1.0, 1.0);
+        GaussianVertex observation = new GaussianVertex(A.times(2.0), 1.0);
+        observation.observe(3.0);
+
+        AtomicInteger fitnessCalculations = new AtomicInteger();
+        FitnessFunctionWithGradient fitness = new FitnessFunctionWithGradient(
+            Arrays.asList(A, observation),
+            Collections.singletonList(A),
+            null,
+            (point, logProb) -> fitnessCalculations.incrementAndGet()
+        );
+
+        double[] point = new double[]{0.5};
+        double fitnessAtPoint = fitness.fitness().value(point);
+        A.setAndCascade(1.5);
+
+        fitness.invalidateCache();
+
+        assertEquals(fitnessAtPoint, fitness.fitness().value(point), 1e-12);
+        assertEquals(2, fitnessCalculations.get());
+    }
 
     /**
      * @param topRight   max input 1 and max input 2
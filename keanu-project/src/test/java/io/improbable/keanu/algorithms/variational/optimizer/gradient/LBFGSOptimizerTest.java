@@ -0,0 +1,99 @@
+package io.improbable.keanu.algorithms.variational.optimizer.gradient;
+
+import io.improbable.keanu.algorithms.variational.optimizer.nongradient.OptimizerBounds;
+import io.improbable.keanu.network.BayesianNetwork;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.vertices.dbl.DoubleVertex;
+import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
+import io.improbable.keanu.vertices.intgr.probabilistic.PoissonVertex;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LBFGSOptimizerTest {
+
+    @Test
+    public void findsTheMAPOfAConjugateGaussian() {
+        DoubleVertex mu = new GaussianVertex(0, 1);
+        DoubleVertex observed = new GaussianVertex(mu, 1);
+        observed.observe(5.0);
+
+        LBFGSOptimizer.ofConnectedGraph(mu).maxAPosteriori();
+
+        assertEquals(2.5, mu.getValue().scalar(), 1e-4);
+    }
+
+    @Test
+    public void keepsTheLatentsWithinTheirBounds() {
+        DoubleVertex mu = new GaussianVertex(new long[]{1, 2}, 0, 1);
+        mu.setValue(DoubleTensor.create(new double[]{0.5, 0.5}, 1, 2));
+        DoubleVertex observed = new GaussianVertex(mu, 1);
+        observed.observe(DoubleTensor.create(new double[]{5.0, -0.4}, 1, 2));
+
+        OptimizerBounds bounds = new OptimizerBounds();
+        bounds.addBound(mu, 0.0, 1.0);
+
+        LBFGSOptimizer.builder()
+            .bayesianNetwork(new BayesianNetwork(mu.getConnectedGraph()))
+            .optimizerBounds(bounds)
+            .build()
+            .maxAPosteriori();
+
+        assertArrayEquals(new double[]{1.0, 0.0}, mu.getValue().asFlatDoubleArray(), 1e-6);
+    }
+
+    @Test
+    public void needsFewerFitnessEvaluationsThanConjugateGradient() {
+        Supplier<BayesianNetwork> network = () -> {
+            DoubleVertex a = new GaussianVertex(0, 10);
+            DoubleVertex b = new GaussianVertex(0, 10);
+            DoubleVertex c = new GaussianVertex(0, 10);
+            new GaussianVertex(a.plus(b), 0.1).observe(3.0);
+            new GaussianVertex(b.minus(c), 0.5).observe(1.0);
+            new GaussianVertex(a.plus(c.times(2)), 1.0).observe(-2.0);
+            return new BayesianNetwork(a.getConnectedGraph());
+        };
+
+        AtomicInteger lbfgsEvaluations = new AtomicInteger();
+        LBFGSOptimizer lbfgs = LBFGSOptimizer.of(network.get());
+        lbfgs.addFitnessCalculationHandler((point, fitness) -> lbfgsEvaluations.incrementAndGet());
+        double lbfgsMax = lbfgs.maxAPosteriori();
+
+        AtomicInteger conjugateGradientEvaluations = new AtomicInteger();
+        GradientOptimizer conjugateGradient = GradientOptimizer.of(network.get());
+        conjugateGradient.addFitnessCalculationHandler((point, fitness) -> conjugateGradientEvaluations.incrementAndGet());
+        double conjugateGradientMax = conjugateGradient.maxAPosteriori();
+
+        assertEquals(conjugateGradientMax, lbfgsMax, 1e-4);
+        assertTrue(lbfgsEvaluations.get() < conjugateGradientEvaluations.get());
+    }
+
+    @Test
+    public void doesCallOnFitnessAndOnGradientHandler() {
+        AtomicInteger fitnessTimesCalled = new AtomicInteger(0);
+        AtomicInteger gradientTimesCalled = new AtomicInteger(0);
+        LBFGSOptimizer optimizer = LBFGSOptimizer.ofConnectedGraph(
+            new GaussianVertex(0, 1)
+        );
+        optimizer.getBayesianNetwork().getLatentVertices().get(0).setValue(DoubleTensor.scalar(1.0));
+        optimizer.addFitnessCalculationHandler((point, fitness) -> fitnessTimesCalled.incrementAndGet());
+        optimizer.addGradientCalculationHandler((point, fitness) -> gradientTimesCalled.incrementAndGet());
+        optimizer.maxAPosteriori();
+
+        assertTrue(fitnessTimesCalled.get() > 0);
+        assertTrue(gradientTimesCalled.get() > 0);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void errorOnDiscreteLatents() {
+        PoissonVertex v1 = new PoissonVertex(15);
+        PoissonVertex v2 = new PoissonVertex(v1);
+
+        LBFGSOptimizer.ofConnectedGraph(v1);
+    }
+}
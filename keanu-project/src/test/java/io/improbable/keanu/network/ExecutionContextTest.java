@@ -0,0 +1,129 @@
+package io.improbable.keanu.network;
+
+import io.improbable.keanu.vertices.dbl.DoubleVertex;
+import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class ExecutionContextTest {
+
+    private DoubleVertex A;
+    private DoubleVertex B;
+    private DoubleVertex C;
+    private BayesianNetwork network;
+
+    @Before
+    public void setup() {
+        A = new GaussianVertex(0, 1);
+        B = A.times(2);
+        C = new GaussianVertex(B, 1);
+        C.observe(4.0);
+        A.setAndCascade(1.0);
+        network = new BayesianNetwork(A.getConnectedGraph());
+    }
+
+    @Test
+    public void readsAndWritesThroughTheRunningContext() {
+        ExecutionContext context = ExecutionContext.of(network);
+
+        double valueInContext = context.run(() -> {
+            A.setAndCascade(3.0);
+            return B.getValue().scalar();
+        });
+
+        assertEquals(6.0, valueInContext, 0.0);
+        assertEquals(2.0, B.getValue().scalar(), 0.0);
+        assertEquals(3.0, context.getValue(A).scalar(), 0.0);
+    }
+
+    @Test
+    public void sharesObservationsWithTheNetwork() {
+        ExecutionContext context = ExecutionContext.of(network);
+
+        double observedInContext = context.run(() -> C.getValue().scalar());
+
+        assertEquals(4.0, observedInContext, 0.0);
+    }
+
+    @Test
+    public void observingDropsTheLogProbsCachedByEveryContext() {
+        ExecutionContext context = ExecutionContext.of(network);
+        double logProbBeforeObserving = context.run(network::getLogOfMasterP);
+
+        C.observe(5.0);
+
+        double logProbInContext = context.run(network::getLogOfMasterP);
+        double logProbInCopy = context.copy().run(network::getLogOfMasterP);
+
+        assertNotEquals(logProbBeforeObserving, logProbInContext, 0.0);
+        assertEquals(network.getLogOfMasterP(), logProbInContext, 0.0);
+        assertEquals(network.getLogOfMasterP(), logProbInCopy, 0.0);
+    }
+
+    @Test
+    public void copiesAreIndependent() {
+        ExecutionContext context = ExecutionContext.of(network);
+        ExecutionContext copy = context.copy();
+
+        context.run(() -> {
+            A.setAndCascade(5.0);
+            return null;
+        });
+
+        assertEquals(5.0, context.getValue(A).scalar(), 0.0);
+        assertEquals(1.0, copy.getValue(A).scalar(), 0.0);
+    }
+
+    @Test
+    public void canApplyStateToNetwork() {
+        ExecutionContext context = ExecutionContext.of(network);
+        context.run(() -> {
+            A.setAndCascade(5.0);
+            return null;
+        });
+
+        context.applyToNetwork();
+
+        assertEquals(5.0, A.getValue().scalar(), 0.0);
+        assertEquals(10.0, B.getValue().scalar(), 0.0);
+    }
+
+    @Test
+    public void canEvaluateNetworkFromManyThreadsAtOnce() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            List<Future<Double>> results = IntStream.range(0, 16)
+                .mapToObj(i -> executor.submit(() -> ExecutionContext.of(network).run(() -> {
+                    A.setAndCascade((double) i);
+                    return B.getValue().scalar();
+                })))
+                .collect(Collectors.toList());
+
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(2.0 * i, results.get(i).get(), 0.0);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(2.0, B.getValue().scalar(), 0.0);
+    }
+
+    @Test
+    public void thereIsNoContextOutsideOfRun() {
+        ExecutionContext.of(network).run(() -> null);
+        assertNull(ExecutionContext.current());
+    }
+}
@@ -0,0 +1,54 @@
+package io.improbable.keanu.network;
+
+import com.google.common.collect.ImmutableSet;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.vertices.Vertex;
+import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NetworkSnapshotTest {
+
+    @Test
+    public void restoresValuesAndObservations() {
+        GaussianVertex a = new GaussianVertex(0, 1);
+        GaussianVertex b = new GaussianVertex(a, 1);
+        a.setValue(1.0);
+        b.observe(2.0);
+
+        NetworkSnapshot snapshot = NetworkSnapshot.create(ImmutableSet.<Vertex>of(a, b));
+
+        a.setValue(5.0);
+        b.unobserve();
+        b.setValue(6.0);
+        snapshot.apply();
+
+        assertEquals(1.0, a.getValue().scalar(), 0.0);
+        assertFalse(a.isObserved());
+        assertEquals(2.0, b.getValue().scalar(), 0.0);
+        assertTrue(b.isObserved());
+    }
+
+    @Test
+    public void reusableSnapshotRestoresTheLastSavedState() {
+        GaussianVertex a = new GaussianVertex(0, 1);
+        NetworkSnapshot snapshot = NetworkSnapshot.reusable(Arrays.asList(a));
+
+        a.setValue(1.0);
+        snapshot.save();
+        a.setValue(2.0);
+        snapshot.apply();
+        assertEquals(1.0, a.getValue().scalar(), 0.0);
+
+        a.setValue(DoubleTensor.scalar(3.0));
+        snapshot.save();
+        a.setValue(4.0);
+        snapshot.apply();
+        assertEquals(3.0, a.getValue().scalar(), 0.0);
+    }
+}
@@ -0,0 +1,104 @@
+package io.improbable.keanu.tensor.dbl;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs the same operations on a {@link JavaDoubleTensor} and an {@link Nd4jDoubleTensor} holding the same values
+ * and checks that they give tensors of the same shape and values.
+ */
+@RunWith(Parameterized.class)
+public class DoubleTensorBackendParityTest {
+
+    private static final double[] VALUES = new double[]{1, -2, 3, 4, -5, 6, 7, 8, 0.5, -1, 2, 11};
+    private static final long[] SHAPE = new long[]{2, 3, 2};
+
+    private static final DoubleTensor ROW = Nd4jDoubleTensor.create(new double[]{10, 20}, new long[]{1, 2});
+    private static final DoubleTensor COLUMN = Nd4jDoubleTensor.create(new double[]{1, 2, 3}, new long[]{3, 1});
+    private static final DoubleTensor MATRIX = Nd4jDoubleTensor.create(new double[]{1, 2, 3, 4, 5, 6}, new long[]{3, 2});
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> operations() {
+        return Arrays.asList(new Object[][]{
+            {"broadcast plus row", op(t -> t.plus(ROW))},
+            {"broadcast times matrix", op(t -> t.times(MATRIX))},
+            {"broadcast minus column", op(t -> t.reshape(3, 4).minus(COLUMN))},
+            {"broadcast column times", op(t -> COLUMN.times(t.reshape(3, 4)))},
+            {"broadcast column div row", op(t -> t.reshape(3, 4).slice(1, 0).div(ROW))},
+            {"sum dim 0", op(t -> t.sum(0))},
+            {"sum dim 1", op(t -> t.sum(1))},
+            {"sum dim 2", op(t -> t.sum(2))},
+            {"sum dims 0 and 2", op(t -> t.sum(0, 2))},
+            {"sum all dims", op(t -> t.sum(0, 1, 2))},
+            {"sum matrix rows", op(t -> t.reshape(4, 3).sum(0))},
+            {"sum matrix columns", op(t -> t.reshape(4, 3).sum(1))},
+            {"slice rank 3 dim 0", op(t -> t.slice(0, 1))},
+            {"slice rank 3 dim 1", op(t -> t.slice(1, 2))},
+            {"slice matrix row", op(t -> t.reshape(4, 3).slice(0, 1))},
+            {"slice matrix column", op(t -> t.reshape(4, 3).slice(1, 2))},
+            {"reshape", op(t -> t.reshape(6, 2))},
+            {"reshape with -1 first", op(t -> t.reshape(-1, 4))},
+            {"reshape with -1 last", op(t -> t.reshape(3, -1))},
+            {"reshape with -1 middle", op(t -> t.reshape(2, -1, 3))},
+            {"reshape to rank 1", op(t -> t.reshape(12))},
+            {"reshape to rank 1 with -1", op(t -> t.reshape(-1))},
+            {"reshape to rank 1 then diag", op(t -> t.reshape(12).diag())},
+            {"cholesky of a matrix that is not positive definite", op(t -> {
+                DoubleTensor matrix = t.reshape(4, 3);
+                return matrix.transpose().matrixMultiply(matrix).times(-1.0).choleskyDecomposition();
+            })}
+        });
+    }
+
+    private final Function<DoubleTensor, DoubleTensor> operation;
+
+    public DoubleTensorBackendParityTest(String name, Function<DoubleTensor, DoubleTensor> operation) {
+        this.operation = operation;
+    }
+
+    @Test
+    public void javaAndNd4jGiveTheSameResult() {
+        Outcome expected = Outcome.of(operation, Nd4jDoubleTensor.create(VALUES, SHAPE));
+        Outcome actual = Outcome.of(operation, JavaDoubleTensor.create(VALUES, SHAPE));
+
+        assertEquals(expected.exceptionType, actual.exceptionType);
+        if (expected.result != null) {
+            assertArrayEquals(expected.result.getShape(), actual.result.getShape());
+            assertArrayEquals(expected.result.asFlatDoubleArray(), actual.result.asFlatDoubleArray(), 1e-10);
+        }
+    }
+
+    /**
+     * Either the result of an operation or the type of exception it threw, so that failures are compared too.
+     */
+    private static class Outcome {
+
+        private final DoubleTensor result;
+        private final Class<? extends RuntimeException> exceptionType;
+
+        private Outcome(DoubleTensor result, Class<? extends RuntimeException> exceptionType) {
+            this.result = result;
+            this.exceptionType = exceptionType;
+        }
+
+        static Outcome of(Function<DoubleTensor, DoubleTensor> operation, DoubleTensor input) {
+            try {
+                return new Outcome(operation.apply(input), null);
+            } catch (RuntimeException e) {
+                return new Outcome(null, e.getClass());
+            }
+        }
+    }
+
+    private static Function<DoubleTensor, DoubleTensor> op(Function<DoubleTensor, DoubleTensor> operation) {
+        return operation;
+    }
+}
@@ -0,0 +1,180 @@
+package io.improbable.keanu.tensor.dbl;
+
+import io.improbable.keanu.tensor.intgr.IntegerTensor;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.function.Function;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class JavaDoubleTensorTest {
+
+    private static final double[] RANK_THREE_VALUES = new double[]{1, -2, 3, 4, -5, 6, 7, 8, 0.5, -1, 2, 11};
+    private static final long[] RANK_THREE_SHAPE = new long[]{2, 3, 2};
+
+    @After
+    public void resetMaxLength() {
+        JavaDoubleTensor.setMaxLength(JavaDoubleTensor.DEFAULT_MAX_LENGTH);
+    }
+
+    @Test
+    public void isCreatedForSmallTensorsOnly() {
+        JavaDoubleTensor.setMaxLength(4);
+
+        assertThat(DoubleTensor.create(new double[]{1, 2, 3, 4}, 2, 2), instanceOf(JavaDoubleTensor.class));
+        assertThat(DoubleTensor.zeros(2, 2), instanceOf(JavaDoubleTensor.class));
+        assertThat(DoubleTensor.eye(3), instanceOf(Nd4jDoubleTensor.class));
+        assertThat(DoubleTensor.ones(1, 5), instanceOf(Nd4jDoubleTensor.class));
+        assertThat(DoubleTensor.create(2.0, new long[]{1, 1}), instanceOf(ScalarDoubleTensor.class));
+    }
+
+    @Test
+    public void doesElementWiseOperationsLikeNd4j() {
+        DoubleTensor other = Nd4jDoubleTensor.create(new double[]{2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13}, RANK_THREE_SHAPE);
+
+        assertMatchesNd4j(t -> t.plus(other));
+        assertMatchesNd4j(t -> t.minus(other));
+        assertMatchesNd4j(t -> t.times(other));
+        assertMatchesNd4j(t -> t.div(other));
+        assertMatchesNd4j(t -> t.times(3.0).minusInPlace(1.5));
+        assertMatchesNd4j(t -> t.abs().log());
+        assertMatchesNd4j(t -> t.sin().plus(t.cos()));
+        assertMatchesNd4j(t -> t.sigmoid());
+        assertMatchesNd4j(t -> t.reverseDiv(1.0));
+        assertMatchesNd4j(t -> t.clamp(DoubleTensor.scalar(-1.0), DoubleTensor.scalar(5.0)));
+        assertMatchesNd4j(t -> t.getGreaterThanMask(other.div(3.0)));
+    }
+
+    @Test
+    public void broadcastsLikeNd4j() {
+        DoubleTensor row = Nd4jDoubleTensor.create(new double[]{10, 20}, new long[]{1, 2});
+        DoubleTensor column = Nd4jDoubleTensor.create(new double[]{1, 2, 3}, new long[]{3, 1});
+        DoubleTensor matrix = Nd4jDoubleTensor.create(new double[]{1, 2, 3, 4, 5, 6}, new long[]{3, 2});
+
+        assertMatchesNd4j(t -> t.plus(row));
+        assertMatchesNd4j(t -> t.times(matrix));
+        assertMatchesNd4j(t -> t.reshape(3, 4).minus(column));
+        assertMatchesNd4j(t -> column.times(t.reshape(3, 4)));
+    }
+
+    @Test
+    public void reshapesLikeNd4j() {
+        assertMatchesNd4j(t -> t.permute(2, 0, 1));
+        assertMatchesNd4j(t -> t.reshape(4, 3).transpose());
+        assertMatchesNd4j(t -> t.slice(1, 2));
+        assertMatchesNd4j(t -> t.reshape(4, 3).slice(0, 1));
+        assertMatchesNd4j(t -> t.reshape(4, 3).slice(1, 2));
+        assertMatchesNd4j(t -> t.reshape(1, 12).diag());
+    }
+
+    @Test
+    public void sumsLikeNd4j() {
+        assertMatchesNd4j(t -> t.sum(0));
+        assertMatchesNd4j(t -> t.sum(1));
+        assertMatchesNd4j(t -> t.sum(0, 2));
+        assertMatchesNd4j(t -> t.sum(0, 1, 2));
+        assertMatchesNd4j(t -> t.reshape(4, 3).sum(0));
+        assertMatchesNd4j(t -> t.reshape(4, 3).sum(1));
+        assertEquals(nd4j().sum(), java().sum(), 1e-10);
+        assertEquals(nd4j().product(), java().product(), 1e-10);
+        assertEquals(nd4j().standardDeviation(), java().standardDeviation(), 1e-10);
+    }
+
+    @Test
+    public void multipliesLikeNd4j() {
+        DoubleTensor right = Nd4jDoubleTensor.create(new double[]{1, 2, 3, 4, 5, 6}, new long[]{3, 2});
+        DoubleTensor rank3 = Nd4jDoubleTensor.create(new double[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12}, new long[]{2, 3, 2});
+
+        assertMatchesNd4j(t -> t.reshape(4, 3).matrixMultiply(right));
+        assertMatchesNd4j(t -> t.tensorMultiply(rank3, new int[]{1, 2}, new int[]{1, 2}));
+        assertMatchesNd4j(t -> t.tensorMultiply(rank3, new int[]{0}, new int[]{0}));
+        assertMatchesNd4j(t -> t.tensorMultiply(right, new int[]{1}, new int[]{0}));
+    }
+
+    @Test
+    public void doesLinearAlgebraLikeNd4j() {
+        double[] matrix = new double[]{4, 2, 0.6, 2, 5, 1.5, 0.6, 1.5, 3};
+        long[] shape = new long[]{3, 3};
+        DoubleTensor nd4j = Nd4jDoubleTensor.create(matrix, shape);
+        DoubleTensor java = JavaDoubleTensor.create(matrix, shape);
+
+        assertArrayEquals(nd4j.matrixInverse().asFlatDoubleArray(), java.matrixInverse().asFlatDoubleArray(), 1e-10);
+        assertEquals(nd4j.determinant(), java.determinant(), 1e-10);
+
+        DoubleTensor lower = java.choleskyDecomposition();
+        assertArrayEquals(matrix, lower.matrixMultiply(lower.transpose()).asFlatDoubleArray(), 1e-10);
+        assertEquals(0.0, lower.getValue(0, 1), 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void choleskyRejectsAMatrixThatIsNotPositiveDefinite() {
+        JavaDoubleTensor.create(new double[]{1, 2, 2, 1}, new long[]{2, 2}).choleskyDecomposition();
+    }
+
+    @Test
+    public void promotesARankOneShapeToARowVector() {
+        assertArrayEquals(new long[]{1, 12}, java().reshape(12).getShape());
+        assertArrayEquals(new long[]{1, 3}, JavaDoubleTensor.zeros(3).getShape());
+    }
+
+    @Test
+    public void findsArgMaxLikeNd4j() {
+        assertEquals(nd4j().argMax(), java().argMax());
+        for (int axis = 0; axis < RANK_THREE_SHAPE.length; axis++) {
+            IntegerTensor expected = nd4j().argMax(axis);
+            IntegerTensor actual = java().argMax(axis);
+            assertArrayEquals(expected.getShape(), actual.getShape());
+            assertArrayEquals(expected.asFlatIntegerArray(), actual.asFlatIntegerArray());
+        }
+    }
+
+    @Test
+    public void splitsLikeNd4j() {
+        List<DoubleTensor> expected = nd4j().split(1, 1, 3);
+        List<DoubleTensor> actual = java().split(1, 1, 3);
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i).getShape(), actual.get(i).getShape());
+            assertArrayEquals(expected.get(i).asFlatDoubleArray(), actual.get(i).asFlatDoubleArray(), 0.0);
+        }
+    }
+
+    @Test
+    public void canBeUsedAsAnOperandOfAnNd4jTensor() {
+        DoubleTensor result = nd4j().plus(java());
+
+        assertThat(result, instanceOf(Nd4jDoubleTensor.class));
+        assertArrayEquals(java().times(2.0).asFlatDoubleArray(), result.asFlatDoubleArray(), 0.0);
+    }
+
+    @Test
+    public void inPlaceOperationsMutateTheTensor() {
+        DoubleTensor java = java();
+        DoubleTensor result = java.timesInPlace(2.0).plusInPlace(JavaDoubleTensor.ones(RANK_THREE_SHAPE));
+
+        assertEquals(java, result);
+        assertEquals(3.0, java.getValue(0, 0, 0), 0.0);
+    }
+
+    private static DoubleTensor nd4j() {
+        return Nd4jDoubleTensor.create(RANK_THREE_VALUES, RANK_THREE_SHAPE);
+    }
+
+    private static DoubleTensor java() {
+        return JavaDoubleTensor.create(RANK_THREE_VALUES, RANK_THREE_SHAPE);
+    }
+
+    private static void assertMatchesNd4j(Function<DoubleTensor, DoubleTensor> operation) {
+        DoubleTensor expected = operation.apply(nd4j());
+        DoubleTensor actual = operation.apply(java());
+
+        assertArrayEquals(expected.getShape(), actual.getShape());
+        assertArrayEquals(expected.asFlatDoubleArray(), actual.asFlatDoubleArray(), 1e-10);
+    }
+}
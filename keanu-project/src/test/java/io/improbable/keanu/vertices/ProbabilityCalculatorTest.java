@@ -0,0 +1,133 @@
+package io.improbable.keanu.vertices;
+
+import com.google.common.collect.ImmutableList;
+import io.improbable.keanu.network.BayesianNetwork;
+import io.improbable.keanu.network.ExecutionContext;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.vertices.dbl.DoubleVertex;
+import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class ProbabilityCalculatorTest {
+
+    private CountingGaussianVertex A;
+    private CountingGaussianVertex B;
+    private CountingGaussianVertex C;
+    private List<Vertex> probabilisticVertices;
+
+    @Before
+    public void setup() {
+        A = new CountingGaussianVertex(new GaussianVertex(0, 1), 1);
+        B = new CountingGaussianVertex(A.times(2), 1);
+        C = new CountingGaussianVertex(new GaussianVertex(0, 1), 1);
+        A.setAndCascade(1.0);
+        B.setValue(2.0);
+        C.setValue(0.5);
+        probabilisticVertices = ImmutableList.of(A, B, C);
+    }
+
+    @Test
+    public void doesNotRecalculateLogProbOfUnchangedVertices() {
+        double logProb = ProbabilityCalculator.calculateLogProbFor(probabilisticVertices);
+        double logProbAgain = ProbabilityCalculator.calculateLogProbFor(probabilisticVertices);
+
+        assertEquals(logProb, logProbAgain, 0.0);
+        assertEquals(1, A.logProbCalls);
+        assertEquals(1, B.logProbCalls);
+        assertEquals(1, C.logProbCalls);
+    }
+
+    @Test
+    public void recalculatesLogProbWhenValueIsSet() {
+        ProbabilityCalculator.calculateLogProbFor(probabilisticVertices);
+
+        C.setValue(1.5);
+        double logProb = ProbabilityCalculator.calculateLogProbFor(probabilisticVertices);
+
+        assertEquals(1, A.logProbCalls);
+        assertEquals(1, B.logProbCalls);
+        assertEquals(2, C.logProbCalls);
+        assertEquals(uncachedLogProb(), logProb, 1e-10);
+    }
+
+    @Test
+    public void recalculatesLogProbWhenParentValueIsSet() {
+        ProbabilityCalculator.calculateLogProbFor(probabilisticVertices);
+
+        A.setAndCascade(3.0);
+        double logProb = ProbabilityCalculator.calculateLogProbFor(probabilisticVertices);
+
+        assertEquals(2, A.logProbCalls);
+        assertEquals(2, B.logProbCalls);
+        assertEquals(1, C.logProbCalls);
+        assertEquals(uncachedLogProb(), logProb, 1e-10);
+    }
+
+    @Test
+    public void canRestoreCachedLogProbsAfterRevertingAChange() {
+        double logProbBefore = ProbabilityCalculator.calculateLogProbFor(probabilisticVertices);
+        double[] cachedLogProbs = ProbabilityCalculator.getCachedLogProbs(probabilisticVertices);
+
+        DoubleTensor previousValue = A.getValue();
+        A.setAndCascade(3.0);
+        ProbabilityCalculator.calculateLogProbFor(probabilisticVertices);
+        A.setAndCascade(previousValue);
+        ProbabilityCalculator.restoreCachedLogProbs(probabilisticVertices, cachedLogProbs);
+
+        assertEquals(logProbBefore, ProbabilityCalculator.calculateLogProbFor(probabilisticVertices), 0.0);
+        assertEquals(2, A.logProbCalls);
+        assertEquals(2, B.logProbCalls);
+    }
+
+    @Test
+    public void readsCachedLogProbsIntoAReusableArray() {
+        ProbabilityCalculator.calculateLogProbFor(probabilisticVertices);
+        double[] buffer = new double[probabilisticVertices.size()];
+
+        double[] cachedLogProbs = ProbabilityCalculator.getCachedLogProbs(probabilisticVertices, buffer);
+
+        assertSame(buffer, cachedLogProbs);
+        assertArrayEquals(ProbabilityCalculator.getCachedLogProbs(probabilisticVertices), buffer, 0.0);
+    }
+
+    @Test
+    public void cachesLogProbSeparatelyForEachExecutionContext() {
+        double logProbOutside = ProbabilityCalculator.calculateLogProbFor(probabilisticVertices);
+        ExecutionContext context = ExecutionContext.of(new BayesianNetwork(A.getConnectedGraph()));
+
+        double logProbInContext = context.run(() -> {
+            A.setAndCascade(3.0);
+            return ProbabilityCalculator.calculateLogProbFor(probabilisticVertices);
+        });
+
+        assertEquals(uncachedLogProb(), logProbOutside, 1e-10);
+        assertEquals(logProbOutside, ProbabilityCalculator.calculateLogProbFor(probabilisticVertices), 0.0);
+        assertEquals(logProbInContext, context.run(this::uncachedLogProb), 1e-10);
+    }
+
+    private double uncachedLogProb() {
+        return A.logProbAtValue() + B.logProbAtValue() + C.logProbAtValue();
+    }
+
+    private static class CountingGaussianVertex extends GaussianVertex {
+
+        private int logProbCalls = 0;
+
+        CountingGaussianVertex(DoubleVertex mu, double sigma) {
+            super(mu, sigma);
+        }
+
+        @Override
+        public double logProb(DoubleTensor value) {
+            logProbCalls++;
+            return super.logProb(value);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package io.improbable.keanu.vertices.dbl.nonprobabilistic.diff;
 import io.improbable.keanu.tensor.TensorShape;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
 import io.improbable.keanu.vertices.ConstantVertex;
+import io.improbable.keanu.vertices.dbl.Differentiator;
 import io.improbable.keanu.vertices.dbl.DoubleVertex;
 import io.improbable.keanu.vertices.dbl.probabilistic.UniformVertex;
 import org.junit.Test;
@@ -10,6 +11,7 @@ import org.junit.Test;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
 
 public class AutoDiffTensorTest {
 
@@ -82,4 +84,79 @@ public class AutoDiffTensorTest {
         assertThat(wrtA, equalTo(expectedWrt));
     }
 
+    @Test
+    public void elementWiseOperationsKeepPartialsDiagonal() {
+
+        DoubleVertex A = new UniformVertex(new long[]{2, 2}, 0, 1);
+        A.setValue(DoubleTensor.create(new double[]{0.1, 0.2, 0.3, 0.4}, 2, 2));
+
+        DoubleVertex output = A.times(A).plus(A.sin()).minus(A).div(2);
+
+        PartialDerivatives derivative = output.getDerivativeWrtLatents();
+
+        assertTrue(derivative.isDiagonal());
+
+        DoubleTensor aValue = A.getValue();
+        DoubleTensor expectedWrt = aValue.times(2).plus(aValue.cos()).minus(1).div(2)
+            .reshape(4)
+            .diag()
+            .reshape(TensorShape.concat(A.getShape(), A.getShape()));
+
+        DoubleTensor wrtA = derivative.withRespectTo(A);
+        assertArrayEquals(expectedWrt.getShape(), wrtA.getShape());
+        assertArrayEquals(expectedWrt.asFlatDoubleArray(), wrtA.asFlatDoubleArray(), 1e-10);
+    }
+
+    @Test
+    public void reshapeKeepsPartialsDiagonal() {
+
+        DoubleVertex A = new UniformVertex(new long[]{2, 2}, 0, 1);
+        A.setValue(DoubleTensor.create(new double[]{0.1, 0.2, 0.3, 0.4}, 2, 2));
+
+        PartialDerivatives derivative = A.times(3).reshape(4, 1).getDerivativeWrtLatents();
+
+        assertTrue(derivative.isDiagonal());
+
+        DoubleTensor expectedWrt = DoubleTensor.create(new double[]{3, 3, 3, 3})
+            .diag()
+            .reshape(4, 1, 2, 2);
+
+        DoubleTensor wrtA = derivative.withRespectTo(A);
+        assertArrayEquals(expectedWrt.getShape(), wrtA.getShape());
+        assertArrayEquals(expectedWrt.asFlatDoubleArray(), wrtA.asFlatDoubleArray(), 0.0);
+    }
+
+    @Test
+    public void expandingPartialsAsTensorsLeavesThemDiagonal() {
+
+        DoubleVertex A = new UniformVertex(new long[]{2, 2}, 0, 1);
+        A.setValue(DoubleTensor.create(new double[]{0.1, 0.2, 0.3, 0.4}, 2, 2));
+
+        PartialDerivatives derivative = A.times(A).getDerivativeWrtLatents();
+
+        DoubleTensor wrtA = derivative.asMap().get(A.getId());
+
+        assertArrayEquals(new long[]{2, 2, 2, 2}, wrtA.getShape());
+        assertTrue(derivative.isDiagonal());
+    }
+
+    @Test
+    public void sumOverEveryDimensionOfADiagonalMatchesItsExpandedSum() {
+
+        DoubleVertex A = new UniformVertex(new long[]{2, 2}, 0, 1);
+        A.setValue(DoubleTensor.create(new double[]{0.1, 0.2, 0.3, 0.4}, 2, 2));
+
+        DoubleVertex output = A.times(A).sum();
+
+        DoubleTensor wrtA = output.getDerivativeWrtLatents().withRespectTo(A);
+        DoubleTensor reverseWrtA = Differentiator.reverseModeAutoDiff(output, A).withRespectTo(A);
+
+        DoubleTensor expectedWrt = A.getValue().times(2).reshape(1, 1, 2, 2);
+
+        assertArrayEquals(expectedWrt.getShape(), wrtA.getShape());
+        assertArrayEquals(expectedWrt.asFlatDoubleArray(), wrtA.asFlatDoubleArray(), 1e-10);
+        assertArrayEquals(expectedWrt.getShape(), reverseWrtA.getShape());
+        assertArrayEquals(expectedWrt.asFlatDoubleArray(), reverseWrtA.asFlatDoubleArray(), 1e-10);
+    }
+
 }
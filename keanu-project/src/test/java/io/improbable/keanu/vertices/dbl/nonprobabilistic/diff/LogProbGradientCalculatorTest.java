@@ -4,13 +4,17 @@ import com.google.common.collect.ImmutableList;
 import io.improbable.keanu.distributions.ContinuousDistribution;
 import io.improbable.keanu.distributions.continuous.Gaussian;
 import io.improbable.keanu.distributions.hyperparam.Diffs;
+import io.improbable.keanu.network.BayesianNetwork;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
 import io.improbable.keanu.vertices.ConstantVertex;
+import io.improbable.keanu.vertices.Vertex;
 import io.improbable.keanu.vertices.VertexId;
 import io.improbable.keanu.vertices.dbl.DoubleVertex;
 import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -160,4 +164,44 @@ public class LogProbGradientCalculatorTest {
         assertEquals(expectedDJLogProbWrtBValue, dJLogProbWrtBValue);
     }
 
+    @Test
+    public void sumsGradientsOfManyLogProbsThatShareUpstreamVertices() {
+        DoubleVertex A = new GaussianVertex(0, 1);
+        A.setValue(0.3);
+        DoubleVertex B = new GaussianVertex(0, 1);
+        B.setValue(-0.7);
+        DoubleVertex shared = A.times(B).plus(A).sin();
+
+        List<GaussianVertex> observations = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            GaussianVertex observation = new GaussianVertex(shared.times(i), 1);
+            observation.observe(0.1 * i);
+            observations.add(observation);
+        }
+
+        List<Vertex> ofVertices = new ArrayList<>(observations);
+        ofVertices.add(A);
+        ofVertices.add(B);
+
+        Map<VertexId, DoubleTensor> gradient = new LogProbGradientCalculator(ofVertices, ImmutableList.of(A, B))
+            .getJointLogProbGradientWrtLatents();
+
+        BayesianNetwork network = new BayesianNetwork(A.getConnectedGraph());
+
+        assertEquals(centralDifferenceOfLogOfMasterP(network, A), gradient.get(A.getId()).scalar(), 1e-6);
+        assertEquals(centralDifferenceOfLogOfMasterP(network, B), gradient.get(B.getId()).scalar(), 1e-6);
+    }
+
+    private static double centralDifferenceOfLogOfMasterP(BayesianNetwork network, DoubleVertex wrt) {
+        double step = 1e-6;
+        double value = wrt.getValue().scalar();
+
+        wrt.setAndCascade(value + step);
+        double logOfMasterPAbove = network.getLogOfMasterP();
+        wrt.setAndCascade(value - step);
+        double logOfMasterPBelow = network.getLogOfMasterP();
+        wrt.setAndCascade(value);
+
+        return (logOfMasterPAbove - logOfMasterPBelow) / (2 * step);
+    }
 }